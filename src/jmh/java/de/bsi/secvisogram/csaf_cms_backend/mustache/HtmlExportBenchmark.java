@@ -0,0 +1,60 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the HTML export of an advisory with mustache.js in a pooled GraalJS context
+ * and with the Java port of the template engine. The gc profiler reports the allocation per export.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class HtmlExportBenchmark {
+
+    private String advisoryJson;
+    private JavascriptExporter javascriptExporter;
+    private JavaHtmlExporter javaHtmlExporter;
+
+    @Setup
+    public void createExporters() throws IOException, ReflectiveOperationException {
+
+        advisoryJson = ExportResources.read("/de/bsi/secvisogram/csaf_cms_backend/mustache/golden-advisory-full.json");
+        javascriptExporter = new JavascriptExporter();
+        setField(javascriptExporter, "companyLogoPath", "");
+        setField(javascriptExporter, "contextPoolSize", 1);
+        javascriptExporter.init();
+        javaHtmlExporter = new JavaHtmlExporter();
+        setField(javaHtmlExporter, "companyLogoPath", "");
+        javaHtmlExporter.init();
+    }
+
+    @TearDown
+    public void closeExporters() {
+
+        javascriptExporter.close();
+    }
+
+    @Benchmark
+    public String javascript() throws IOException {
+
+        return javascriptExporter.createHtml(advisoryJson);
+    }
+
+    @Benchmark
+    public String java() throws IOException {
+
+        return javaHtmlExporter.createHtml(advisoryJson);
+    }
+
+    private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,63 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.QueryPlan;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.Expression;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the costs of a repeated dashboard search: parsing with a new ObjectMapper,
+ * parsing and planning with the shared reader and array path trie, and the lookup in the plan cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class AdvisorySearchBenchmark {
+
+    private static final List<ObjectType> TYPES = List.of(ObjectType.Advisory);
+    private static final String EXPRESSION = """
+            { "type" : "AND",
+              "expressions" : [ {
+                "type" : "Operator",
+                "selector" : [ "csaf", "vulnerabilities", "cve" ],
+                "operatorType" : "Equal",
+                "value" : "CVE-2021-44228",
+                "valueType" : "Text"
+              }, {
+                "type" : "Operator",
+                "selector" : [ "csaf", "document", "tracking", "status" ],
+                "operatorType" : "NotEqual",
+                "value" : "draft",
+                "valueType" : "Text"
+              }, {
+                "type" : "Operator",
+                "selector" : [ "csaf", "document", "title" ],
+                "operatorType" : "ContainsIgnoreCase",
+                "value" : "log4j",
+                "valueType" : "Text"
+              } ]
+            }""";
+
+    @Benchmark
+    public Expression parseWithNewMapper() throws IOException {
+
+        return new ObjectMapper().readValue(EXPRESSION, Expression.class);
+    }
+
+    @Benchmark
+    public QueryPlan parseAndPlan() throws CsafException {
+
+        return AdvisorySearchUtil.createAdvisoryQueryPlan(EXPRESSION, TYPES);
+    }
+
+    @Benchmark
+    public QueryPlan cachedPlan() throws CsafException {
+
+        return AdvisorySearchUtil.planAdvisoryQuery(EXPRESSION, TYPES);
+    }
+}
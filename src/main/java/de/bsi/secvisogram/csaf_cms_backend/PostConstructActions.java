@@ -3,6 +3,8 @@ package de.bsi.secvisogram.csaf_cms_backend;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbIndexInitializer;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.PartitionedDatabaseMigration;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
 import jakarta.annotation.PostConstruct;
@@ -32,9 +34,17 @@ public class PostConstructActions {
     @Autowired
     private AdvisoryService advisoryService;
 
+    @Autowired
+    private CouchDbIndexInitializer couchDbIndexInitializer;
+
+    @Autowired
+    private PartitionedDatabaseMigration partitionedDatabaseMigration;
+
     @PostConstruct
     private void postConstruct() {
         checkConfiguration();
+        partitionedDatabaseMigration.migrateIfConfigured();
+        couchDbIndexInitializer.createOrVerifyIndexes();
         importAdvisories("import");
     }
 
@@ -0,0 +1,70 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prefix tree of the selectors that mark an array field in the JSON structure.
+ * A selector is checked in one walk along its segments, independent of the number of array fields.
+ * The trie is not changed after its creation, so it can be shared between threads.
+ */
+class ArrayPathTrie {
+
+    private final Node root = new Node();
+
+    ArrayPathTrie(Collection<String[]> arrayFieldSelectors) {
+
+        for (String[] arrayFieldSelector : arrayFieldSelectors) {
+            Node node = root;
+            for (String segment : arrayFieldSelector) {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.arrayField = true;
+        }
+    }
+
+    /**
+     * Mark the segments of the selector that end a path to an array field
+     *
+     * @param selector the selector to check
+     * @return for every segment of the selector: true - the path up to this segment is an array field
+     */
+    boolean[] arrayFieldPositions(String[] selector) {
+
+        boolean[] positions = new boolean[selector.length];
+        Node node = root;
+        for (int i = 0; i < selector.length && node != null; i++) {
+            node = node.children.get(selector[i]);
+            positions[i] = node != null && node.arrayField;
+        }
+        return positions;
+    }
+
+    /**
+     * Check whether the selector passes an array field
+     *
+     * @param selector the selector to check
+     * @return true - the selector or one of its parents is an array field
+     */
+    boolean passesArrayField(String[] selector) {
+
+        Node node = root;
+        for (String segment : selector) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return false;
+            }
+            if (node.arrayField) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private boolean arrayField;
+    }
+}
@@ -0,0 +1,66 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.UUID;
+
+/**
+ * A document to write with {@link CouchDbService#writeDocuments(java.util.Collection)}
+ */
+public class BulkWriteDocument {
+
+    private final String id;
+    private final String json;
+
+    private BulkWriteDocument(String id, String json) {
+        this.id = id;
+        this.json = json;
+    }
+
+    /**
+     * Create a new document with the given id
+     *
+     * @param id   id of the new document
+     * @param json JSON encoded string of the document to add
+     * @return the document to write
+     */
+    public static BulkWriteDocument newDocument(String id, String json) {
+        return new BulkWriteDocument(id, json);
+    }
+
+    /**
+     * Create a new document with a random UUID as id
+     *
+     * @param json JSON encoded string of the document to add
+     * @return the document to write
+     */
+    public static BulkWriteDocument newDocument(String json) {
+        return new BulkWriteDocument(UUID.randomUUID().toString(), json);
+    }
+
+    /**
+     * Change an existing document
+     *
+     * @param json JSON encoded string of the changed document, including _id and _rev
+     * @return the document to write
+     */
+    public static BulkWriteDocument changedDocument(String json) {
+        return new BulkWriteDocument(null, json);
+    }
+
+    /**
+     * @return id of a new document, null for a changed document which contains its id
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * @return true - the document is created by the write
+     */
+    public boolean isNew() {
+        return id != null;
+    }
+}
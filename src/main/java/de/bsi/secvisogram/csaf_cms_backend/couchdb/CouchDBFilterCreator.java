@@ -21,6 +21,11 @@ public class CouchDBFilterCreator {
         return new CouchDBFilterCreator().expression2CouchDbFilter(expr);
     }
 
+    /**
+     * Highest character CouchDB sorts strings with, a prefix followed by it is greater than all strings with the prefix
+     */
+    static final String PREFIX_RANGE_END = "\ufff0";
+
     private final Map<TypeOfOperator, String> operator2CouchDB = Map.of(
             TypeOfOperator.Equal, "$eq",
             TypeOfOperator.Greater, "$gt",
@@ -45,17 +50,17 @@ public class CouchDBFilterCreator {
     /**
      * Selectors that mark an array field in the JSON structure
      */
-    private final List<String[]> arrayFieldSelectors;
+    private final ArrayPathTrie arrayFieldSelectors;
 
     public CouchDBFilterCreator() {
 
-        this.arrayFieldSelectors = Collections.emptyList();
+        this.arrayFieldSelectors = new ArrayPathTrie(Collections.emptyList());
 
     }
 
     public CouchDBFilterCreator(List<String[]> arrayFieldSelectors) {
 
-        this.arrayFieldSelectors = Collections.unmodifiableList(arrayFieldSelectors);
+        this.arrayFieldSelectors = new ArrayPathTrie(arrayFieldSelectors);
     }
 
     /**
@@ -114,6 +119,22 @@ public class CouchDBFilterCreator {
      */
     private Map<String, Object> createOperatorExpression(OperatorExpression opExpr) {
 
+        return createSelectorExpression(opExpr.getSelector(), createOperatorCondition(opExpr));
+    }
+
+    /**
+     * Create the condition on the value of the selected field, like {"$eq": "exccellent.de"}.
+     * A StartsWith is converted to a range of all strings with the prefix, so it can be answered from an index.
+     *
+     * @param opExpr the expression to convert
+     * @return the condition with the couchDB operators
+     */
+    Map<String, Object> createOperatorCondition(OperatorExpression opExpr) {
+
+        if (opExpr.getOperatorType() == TypeOfOperator.StartsWith) {
+            return Map.of("$gte", opExpr.getValue(), "$lt", opExpr.getValue() + PREFIX_RANGE_END);
+        }
+
         final String couchDBOperator = convertOperator(opExpr);
 
         final Object compareValue;
@@ -127,22 +148,22 @@ public class CouchDBFilterCreator {
             compareValue = opExpr.getValue();
         }
 
-        return createSelectorExpression(opExpr.getSelector(), couchDBOperator, compareValue);
+        return Map.of(couchDBOperator, compareValue);
     }
 
     /**
      * Create operator selector expression
      * @param selector the json selector
-     * @param couchDBOperator the couchDB operator: $gt, $eq, ...
-     * @param compareValue the value to compare
+     * @param condition the condition on the selected field, like {"$gt": 5}
      * @return the created selector expression
      */
-    private Map<String, Object> createSelectorExpression(String[] selector, String couchDBOperator, Object compareValue) {
+    Map<String, Object> createSelectorExpression(String[] selector, Map<String, Object> condition) {
         // create subfields selector for nested objects
-        Map<String, Object> lastOperator = Map.of(couchDBOperator, compareValue);
+        boolean[] arrayFieldPositions = this.arrayFieldSelectors.arrayFieldPositions(selector);
+        Map<String, Object> lastOperator = condition;
         for (int i = selector.length - 1; i >= 0; i--) {
             // a query on an array field needs a $elemMatch to be inserted
-            if (isArrayFieldSelector(selector, i)) {
+            if (arrayFieldPositions[i]) {
                 lastOperator = Map.of("$elemMatch", lastOperator);
             }
             lastOperator = Map.of(selector[i], lastOperator);
@@ -152,18 +173,14 @@ public class CouchDBFilterCreator {
     }
 
     /**
-     * Checks whether the selector is a path to an array field in the JSON structure
+     * Checks whether the selector passes an array field in the JSON structure.
+     * Conditions on such a selector need $elemMatch and can not be answered from a JSON index.
      * @param selectorToCheck path to check
-     * @param toIndex compare selector from 0 to toIndex
-     * @return true - selector is an array
+     * @return true - the selector or one of its parents is an array
      */
-    private boolean isArrayFieldSelector(String[] selectorToCheck, int toIndex) {
-
-        Optional<String[]> arrayFieldSelector = this.arrayFieldSelectors.stream()
-                .filter(selector -> Arrays.compare(selectorToCheck, 0, toIndex + 1, selector, 0, selector.length) == 0)
-                .findFirst();
+    boolean passesArrayField(String[] selectorToCheck) {
 
-        return arrayFieldSelector.isPresent();
+        return this.arrayFieldSelectors.passesArrayField(selectorToCheck);
     }
 
     /** Convert expression operator to couchDB operator
@@ -0,0 +1,176 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import com.ibm.cloud.cloudant.v1.Cloudant;
+import com.ibm.cloud.sdk.core.security.BasicAuthenticator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.netty.channel.ChannelOption;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Creates the single, shared client to access the couchDB database.
+ * The underlying OkHttp client is thread safe and keeps its connections in a pool,
+ * so connections and TLS sessions are reused between requests.
+ * The client is created lazily on first use, so the application starts without database settings.
+ */
+@Configuration
+public class CouchDbClientConfiguration {
+
+    private static final String CLOUDANT_SERVICE_NAME = "SECVISOGRAM";
+    private static final String POOL_METRIC_NAME = "csaf.couchdb.pool.connections";
+    private static final String REACTIVE_POOL_NAME = "couchdb";
+
+    @Value("${csaf.couchdb.host}")
+    private String dbHost;
+
+    @Value("${csaf.couchdb.ssl}")
+    private Boolean dbSsl;
+
+    @Value("${csaf.couchdb.port}")
+    private int dbPort;
+
+    @Value("${csaf.couchdb.user}")
+    private String dbUser;
+
+    @Value("${csaf.couchdb.password}")
+    private String dbPassword;
+
+    @Value("${csaf.couchdb.pool.maxIdleConnections}")
+    private int maxIdleConnections;
+
+    @Value("${csaf.couchdb.pool.keepAliveSeconds}")
+    private long keepAliveSeconds;
+
+    @Value("${csaf.couchdb.pool.connectTimeoutSeconds}")
+    private long connectTimeoutSeconds;
+
+    @Value("${csaf.couchdb.pool.readTimeoutSeconds}")
+    private long readTimeoutSeconds;
+
+    @Value("${csaf.couchdb.reactive.maxConnections}")
+    private int reactiveMaxConnections;
+
+    @Value("${csaf.couchdb.reactive.maxInMemorySize}")
+    private int reactiveMaxInMemorySize;
+
+    /**
+     * Create the client to access the couchDB database
+     *
+     * @param couchDbConnectionPool the connection pool used by the client
+     * @return the client shared by all database operations
+     */
+    @Bean
+    @Lazy
+    public Cloudant cloudantClient(ConnectionPool couchDbConnectionPool) {
+
+        Cloudant cloudant = new Cloudant(CLOUDANT_SERVICE_NAME, createBasicAuthenticator());
+        cloudant.setServiceUrl(getDbUrl());
+        OkHttpClient httpClient = cloudant.getClient().newBuilder()
+                .connectionPool(couchDbConnectionPool)
+                .connectTimeout(this.connectTimeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(this.readTimeoutSeconds, TimeUnit.SECONDS)
+                .build();
+        cloudant.setClient(httpClient);
+        return cloudant;
+    }
+
+    /**
+     * Create the non-blocking client to read from the couchDB database.
+     * It uses its own pool of connections on the Netty event loop, so waiting for the database does not block a thread.
+     *
+     * @return the client used by {@link ReactiveCouchDbService}
+     */
+    @Bean
+    @Lazy
+    public WebClient couchDbWebClient() {
+
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(REACTIVE_POOL_NAME)
+                .maxConnections(this.reactiveMaxConnections)
+                .maxIdleTime(Duration.ofSeconds(this.keepAliveSeconds))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) TimeUnit.SECONDS.toMillis(this.connectTimeoutSeconds))
+                .responseTimeout(Duration.ofSeconds(this.readTimeoutSeconds));
+        ExchangeStrategies strategies = ExchangeStrategies.builder()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(this.reactiveMaxInMemorySize))
+                .build();
+        return WebClient.builder()
+                .baseUrl(getDbUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .exchangeStrategies(strategies)
+                .defaultHeaders(headers -> headers.setBasicAuth(this.dbUser, this.dbPassword))
+                .build();
+    }
+
+    /**
+     * Create the pool of HTTP connections to the couchDB database
+     *
+     * @return the connection pool
+     */
+    @Bean
+    public ConnectionPool couchDbConnectionPool() {
+
+        return new ConnectionPool(this.maxIdleConnections, this.keepAliveSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Expose the usage of the connection pool as metrics
+     *
+     * @param couchDbConnectionPool the pool to measure
+     * @return binder for the pool gauges
+     */
+    @Bean
+    public MeterBinder couchDbConnectionPoolMetrics(ConnectionPool couchDbConnectionPool) {
+
+        return registry -> {
+            Gauge.builder(POOL_METRIC_NAME, couchDbConnectionPool, ConnectionPool::connectionCount)
+                    .tag("state", "total")
+                    .description("Open connections to the couchDB server")
+                    .register(registry);
+            Gauge.builder(POOL_METRIC_NAME, couchDbConnectionPool, ConnectionPool::idleConnectionCount)
+                    .tag("state", "idle")
+                    .description("Idle connections to the couchDB server")
+                    .register(registry);
+            Gauge.builder(POOL_METRIC_NAME, couchDbConnectionPool,
+                            pool -> pool.connectionCount() - pool.idleConnectionCount())
+                    .tag("state", "active")
+                    .description("Connections to the couchDB server currently in use")
+                    .register(registry);
+        };
+    }
+
+    /**
+     * Get the CouchDB connection string
+     *
+     * @return CouchDB connection string
+     */
+    private String getDbUrl() {
+        String protocol = this.dbSsl ? "https://" : "http://";
+        return protocol + dbHost + ":" + dbPort;
+    }
+
+    /**
+     * Create authenticator for the couchDB database
+     *
+     * @return a new base authentication
+     */
+    private BasicAuthenticator createBasicAuthenticator() {
+
+        return new BasicAuthenticator.Builder()
+                .username(this.dbUser)
+                .password(this.dbPassword)
+                .build();
+    }
+}
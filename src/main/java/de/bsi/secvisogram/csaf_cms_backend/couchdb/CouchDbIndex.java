@@ -0,0 +1,121 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Registry of all JSON (Mango) indexes the backend needs for its _find queries.
+ * Every index is stored in its own design document, so changing one index does not rebuild the others.
+ * Indexes for the documents of one advisory are partition scoped, all others are global.
+ */
+public enum CouchDbIndex {
+
+    /**
+     * All objects of a type, e.g. the list of advisories or the lookup of an advisory by type and id
+     */
+    TYPE("csaf-type-index", false, CouchDbField.TYPE_FIELD, CouchDbField.ID_FIELD),
+    /**
+     * Comments and advisory audit trails of an advisory
+     */
+    ADVISORY_ID("csaf-advisory-id-index", true, CommentField.ADVISORY_ID, CouchDbField.TYPE_FIELD),
+    /**
+     * Audit trails of a comment
+     */
+    COMMENT_ID("csaf-comment-id-index", true, CommentAuditTrailField.COMMENT_ID),
+    /**
+     * Answers to a comment
+     */
+    ANSWER_TO("csaf-answer-to-index", true, CommentField.ANSWER_TO, CouchDbField.TYPE_FIELD),
+    /**
+     * Advisories by their /document/tracking/id
+     */
+    TRACKING_ID("csaf-tracking-id-index", false, AdvisorySearchField.DOCUMENT_TRACKING_ID),
+    /**
+     * Objects sorted by /document/title, the type is the second field so objects of all types are sorted together
+     */
+    TITLE_TYPE("csaf-title-type-index", false, AdvisorySearchField.DOCUMENT_TITLE, CouchDbField.TYPE_FIELD),
+    /**
+     * Objects sorted by /document/tracking/id, the type is the second field so objects of all types are sorted together
+     */
+    TRACKING_ID_TYPE("csaf-tracking-id-type-index", false, AdvisorySearchField.DOCUMENT_TRACKING_ID,
+            CouchDbField.TYPE_FIELD),
+    /**
+     * Objects sorted by /document/tracking/current_release_date, the type is the second field so objects
+     * of all types are sorted together
+     */
+    CURRENT_RELEASE_DATE_TYPE("csaf-current-release-date-type-index", false,
+            AdvisorySearchField.DOCUMENT_TRACKING_CURRENT_RELEASE_DATE, CouchDbField.TYPE_FIELD);
+
+    private static final String PROBE_VALUE = "probe";
+
+    private final String indexName;
+    private final boolean partitionScoped;
+    private final DbField[] fields;
+
+    CouchDbIndex(String indexName, boolean partitionScoped, DbField... fields) {
+        this.indexName = indexName;
+        this.partitionScoped = partitionScoped;
+        this.fields = fields;
+    }
+
+    /**
+     * Get the name of the index, this is also the name of its design document
+     *
+     * @return the index name
+     */
+    public String getIndexName() {
+        return indexName;
+    }
+
+    /**
+     * @return true - the index only answers queries for the documents of one advisory,
+     *      in a partitioned database it is created as partitioned index
+     */
+    public boolean isPartitionScoped() {
+        return partitionScoped;
+    }
+
+    /**
+     * Get the id of the design document that holds the index
+     *
+     * @return the design document id
+     */
+    public String getDesignDocument() {
+        return "_design/" + indexName;
+    }
+
+    /**
+     * Get the names of all indexed fields in index order
+     *
+     * @return list of field names
+     */
+    public List<String> getFieldNames() {
+        return Arrays.stream(fields).map(DbField::getDbName).toList();
+    }
+
+    /**
+     * Get the value for the use_index parameter of _find and _explain requests
+     *
+     * @return design document and index name
+     */
+    public List<String> getUseIndex() {
+        return List.of(getDesignDocument(), getIndexName());
+    }
+
+    /**
+     * Create a selector with an equal condition on all indexed fields.
+     * It is used to check with _explain that CouchDB answers queries on these fields from the index.
+     *
+     * @return the probe selector
+     */
+    public Map<String, Object> createProbeSelector() {
+
+        Map<String, Object> selector = new HashMap<>();
+        for (DbField field : fields) {
+            selector.put(field.getDbName(), Map.of("$eq", PROBE_VALUE));
+        }
+        return selector;
+    }
+}
@@ -0,0 +1,28 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the backend as out of service while the indexes, views and update handlers
+ * of the couchDB could not be created. It is part of the readiness group, so no requests are
+ * routed to the backend before the queries can be answered from the indexes.
+ */
+@Component
+public class CouchDbIndexHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private CouchDbIndexInitializer couchDbIndexInitializer;
+
+    @Override
+    public Health health() {
+
+        String initializationError = this.couchDbIndexInitializer.retryIfFailed();
+        if (initializationError != null) {
+            return Health.outOfService().withDetail("error", initializationError).build();
+        }
+        return Health.up().build();
+    }
+}
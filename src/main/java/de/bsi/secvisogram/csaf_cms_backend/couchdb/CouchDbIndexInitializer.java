@@ -0,0 +1,115 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Creates or verifies all indexes of the {@link CouchDbIndex} registry
+ * and checks with _explain that CouchDB really uses them.
+ * Also creates or updates the design document with the map/reduce views of the {@link CouchDbView} registry
+ * and the design document with the update handlers of the {@link CouchDbUpdateHandler} registry.
+ * The backend is only ready when all of them are created, see {@link CouchDbIndexHealthIndicator}.
+ */
+@Service
+public class CouchDbIndexInitializer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CouchDbIndexInitializer.class);
+
+    @Value("${csaf.couchdb.indexes.failOnUnindexedQuery}")
+    private boolean failOnUnindexedQuery;
+
+    @Value("${csaf.couchdb.indexes.failOnError}")
+    private boolean failOnError;
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    // error of the last attempt to create the indexes, null when they are created
+    private volatile String initializationError = "The indexes are not created yet";
+
+    /**
+     * Create all missing indexes, views and update handlers and check that queries on the indexed fields use them.
+     * When the database can not be accessed, the startup fails if csaf.couchdb.indexes.failOnError is set.
+     * Otherwise the error is reported by {@link CouchDbIndexHealthIndicator} and the indexes are created
+     * again on the next health check.
+     *
+     * @throws IllegalStateException the indexes could not be created and csaf.couchdb.indexes.failOnError is set,
+     *                               or a query is not answered from its index and
+     *                               csaf.couchdb.indexes.failOnUnindexedQuery is set
+     */
+    public synchronized void createOrVerifyIndexes() {
+
+        List<String> unindexedQueries;
+        try {
+            unindexedQueries = createAndVerify();
+        } catch (RuntimeException ex) {
+            if (this.failOnError) {
+                throw new IllegalStateException("Could not create or verify the indexes of the couchDB", ex);
+            }
+            LOG.error("Could not create or verify the indexes of the couchDB", ex);
+            return;
+        }
+
+        if (this.failOnUnindexedQuery && !unindexedQueries.isEmpty()) {
+            throw new IllegalStateException(String.join("; ", unindexedQueries));
+        }
+    }
+
+    /**
+     * Create the indexes again when the last attempt failed
+     *
+     * @return null when the indexes are created, otherwise the error of the last attempt
+     */
+    public synchronized String retryIfFailed() {
+
+        if (this.initializationError != null) {
+            try {
+                createAndVerify();
+            } catch (RuntimeException ex) {
+                LOG.warn("Could not create or verify the indexes of the couchDB: {}", ex.getMessage());
+            }
+        }
+        return this.initializationError;
+    }
+
+    private List<String> createAndVerify() {
+
+        List<String> unindexedQueries = new ArrayList<>();
+        try {
+            for (CouchDbIndex index : CouchDbIndex.values()) {
+                String result = this.couchDbService.createIndex(index);
+                LOG.info("Index {}: {}", index.getIndexName(), result);
+            }
+            String viewsResult = this.couchDbService.createOrUpdateViews();
+            LOG.info("Views {}: {}", CouchDbView.DESIGN_DOCUMENT_NAME, viewsResult);
+            if (this.couchDbService.isUpdateHandlersEnabled()) {
+                String updatesResult = this.couchDbService.createOrUpdateUpdateHandlers();
+                LOG.info("Update handlers {}: {}", CouchDbUpdateHandler.DESIGN_DOCUMENT_NAME, updatesResult);
+            }
+
+            for (CouchDbIndex index : CouchDbIndex.values()) {
+                if (this.couchDbService.isPartitioned() && index.isPartitionScoped()) {
+                    // _explain is global, it never uses partitioned indexes
+                    continue;
+                }
+                String usedIndex = this.couchDbService.explainIndexUsage(index.createProbeSelector(), index);
+                if (!index.getIndexName().equals(usedIndex)) {
+                    String msg = String.format("Query on %s is not answered from index %s but from %s",
+                            index.getFieldNames(), index.getIndexName(), usedIndex);
+                    LOG.warn(msg);
+                    unindexedQueries.add(msg);
+                }
+            }
+        } catch (RuntimeException ex) {
+            this.initializationError = ex.toString();
+            throw ex;
+        }
+        this.initializationError = null;
+        return unindexedQueries;
+    }
+}
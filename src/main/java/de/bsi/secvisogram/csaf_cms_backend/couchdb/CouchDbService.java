@@ -4,25 +4,42 @@ import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDBFilterCreator.e
 import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
 import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.equal;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.ibm.cloud.cloudant.v1.Cloudant;
 import com.ibm.cloud.cloudant.v1.model.*;
-import com.ibm.cloud.sdk.core.security.BasicAuthenticator;
 import com.ibm.cloud.sdk.core.service.exception.BadRequestException;
 import com.ibm.cloud.sdk.core.service.exception.ConflictException;
 import com.ibm.cloud.sdk.core.service.exception.NotFoundException;
+import com.ibm.cloud.sdk.core.service.exception.ServiceResponseException;
 import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
 import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
+import jakarta.annotation.PostConstruct;
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -32,34 +49,61 @@ import org.springframework.stereotype.Repository;
 public class CouchDbService {
 
     private static final Logger LOG = LoggerFactory.getLogger(CouchDbService.class);
-    private static final String CLOUDANT_SERVICE_NAME = "SECVISOGRAM";
+    // only reads and creates nodes, which is thread safe, and is shared by the update handler calls
+    private static final ObjectMapper UPDATE_HANDLER_MAPPER = new ObjectMapper();
+
+    /**
+     * Separator of partition key and document key in the ids of a partitioned database
+     */
+    public static final String PARTITION_SEPARATOR = ":";
+    /**
+     * Document key of an advisory in its own partition
+     */
+    public static final String ADVISORY_DOCUMENT_KEY = "advisory";
+    /**
+     * Partition of the tracking id counters
+     */
+    static final String COUNTER_PARTITION = "counter";
 
     @Value("${csaf.couchdb.dbname}")
     private String dbName;
 
-    @Value("${csaf.couchdb.host}")
-    private String dbHost;
+    @Value("${csaf.couchdb.partitioned}")
+    private boolean partitioned;
 
-    @Value("${csaf.couchdb.ssl}")
-    private Boolean dbSsl;
+    @Value("${csaf.couchdb.bulkDeleteChunkSize}")
+    private int bulkDeleteChunkSize;
 
-    @Value("${csaf.couchdb.port}")
-    private int dbPort;
+    @Value("${csaf.couchdb.updateHandlers.enabled}")
+    private boolean updateHandlersEnabled;
 
-    @Value("${csaf.couchdb.user}")
-    private String dbUser;
+    @Autowired
+    @Lazy
+    private Cloudant client;
 
-    @Value("${csaf.couchdb.password}")
-    private String dbPassword;
+    @Autowired
+    private DocumentCache documentCache;
 
     /**
-     * Get the CouchDB connection string
+     * Check the configuration at startup, a chunk size below 1 would never finish a bulk delete
+     */
+    @PostConstruct
+    void checkConfiguration() {
+
+        if (this.bulkDeleteChunkSize <= 0) {
+            throw new IllegalArgumentException("csaf.couchdb.bulkDeleteChunkSize must be greater than 0, but is "
+                    + this.bulkDeleteChunkSize);
+        }
+    }
+
+    /**
+     * Check whether narrow changes of single documents are applied with the update handlers
+     * of {@link CouchDbUpdateHandler} instead of reading and writing the whole document
      *
-     * @return CouchDB connection string
+     * @return true - use the update handlers
      */
-    private String getDbUrl() {
-        String protocol = this.dbSsl ? "https://" : "http://";
-        return protocol + dbHost + ":" + dbPort;
+    public boolean isUpdateHandlersEnabled() {
+        return updateHandlersEnabled;
     }
 
     /**
@@ -69,7 +113,6 @@ public class CouchDbService {
      */
     public String getServerVersion() {
 
-        Cloudant client = createCloudantClient();
         ServerInformation serverInformation = client
                 .getServerInformation()
                 .execute()
@@ -85,7 +128,6 @@ public class CouchDbService {
      */
     public Long getDocumentCount() {
 
-        Cloudant client = createCloudantClient();
         GetDatabaseInformationOptions dbInformationOptions =
                 new GetDatabaseInformationOptions.Builder(this.dbName).build();
 
@@ -97,6 +139,78 @@ public class CouchDbService {
         return dbInformationResponse.getDocCount();
     }
 
+    /**
+     * Get the update sequence of the database, it changes with every write to the database
+     *
+     * @return the current update sequence
+     */
+    public String getUpdateSequence() {
+
+        GetDatabaseInformationOptions dbInformationOptions =
+                new GetDatabaseInformationOptions.Builder(this.dbName).build();
+
+        return client.getDatabaseInformation(dbInformationOptions)
+                .execute()
+                .getResult()
+                .getUpdateSeq();
+    }
+
+    /**
+     * @return true - the database is partitioned, every advisory has its own partition
+     *      that also holds its versions, comments and audit trails
+     */
+    public boolean isPartitioned() {
+        return partitioned;
+    }
+
+    /**
+     * Create the id for a new advisory. In a partitioned database the advisory gets a new partition.
+     *
+     * @return the new id
+     */
+    public String newAdvisoryId() {
+
+        String uuid = UUID.randomUUID().toString();
+        return partitioned ? uuid + PARTITION_SEPARATOR + ADVISORY_DOCUMENT_KEY : uuid;
+    }
+
+    /**
+     * Create the id for a new document that belongs to the same advisory as the related document,
+     * e.g. a comment of an advisory or an audit trail of a comment.
+     * In a partitioned database the new document is placed in the partition of the related document.
+     *
+     * @param relatedId id of the advisory or comment the new document belongs to
+     * @return the new id
+     */
+    public String newDocumentId(String relatedId) {
+
+        String uuid = UUID.randomUUID().toString();
+        return partitioned ? partitionKey(relatedId) + PARTITION_SEPARATOR + uuid : uuid;
+    }
+
+    /**
+     * Get the document id of a tracking id counter
+     *
+     * @param counterName name of the counter
+     * @return the id of the counter document
+     */
+    public String counterId(String counterName) {
+
+        return partitioned ? COUNTER_PARTITION + PARTITION_SEPARATOR + counterName : counterName;
+    }
+
+    /**
+     * Get the partition key of a document id in a partitioned database
+     *
+     * @param documentId the document id
+     * @return the part before the separator, the whole id if it has no separator
+     */
+    public static String partitionKey(String documentId) {
+
+        int separator = documentId.indexOf(PARTITION_SEPARATOR);
+        return separator > 0 ? documentId.substring(0, separator) : documentId;
+    }
+
 
     /**
      * Write a new document to the database with a UUID as objectId
@@ -117,14 +231,13 @@ public class CouchDbService {
      * @return revision for concurrent control
      */
     public String writeDocument(final String objectId, String createString) {
-        Cloudant client = createCloudantClient();
-
         PutDocumentOptions createDocumentOptions = new PutDocumentOptions.Builder()
                 .db(this.dbName)
                 .docId(objectId)
                 .contentType("application/json")
                 .body(new ByteArrayInputStream(createString.getBytes(StandardCharsets.UTF_8)))
                 .build();
+        this.documentCache.invalidate(objectId);
         DocumentResult createDocumentResponse = client
                 .putDocument(createDocumentOptions)
                 .execute()
@@ -134,6 +247,47 @@ public class CouchDbService {
     }
 
 
+    /**
+     * Write multiple new or changed documents to the database with one _bulk_docs request.
+     * CouchDB writes each document independently, so some documents may be written while others fail.
+     *
+     * @param documents the documents to write
+     * @return the result of each document in the order of the given documents
+     * @throws DatabaseException the request was rejected as a whole
+     */
+    public List<DocumentResult> writeDocuments(Collection<BulkWriteDocument> documents) throws DatabaseException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode bulkRequest = mapper.createObjectNode();
+        ArrayNode docs = bulkRequest.putArray("docs");
+        try {
+            for (BulkWriteDocument document : documents) {
+                ObjectNode docNode = (ObjectNode) mapper.readTree(document.getJson());
+                if (document.isNew()) {
+                    docNode.put(CouchDbField.ID_FIELD.getDbName(), document.getId());
+                }
+                docs.add(docNode);
+            }
+        } catch (JsonProcessingException | ClassCastException ex) {
+            throw new DatabaseException("Invalid document in bulk write", ex);
+        }
+
+        PostBulkDocsOptions bulkDocsOptions = new PostBulkDocsOptions.Builder()
+                .db(this.dbName)
+                .body(new ByteArrayInputStream(bulkRequest.toString().getBytes(StandardCharsets.UTF_8)))
+                .build();
+
+        try {
+            List<DocumentResult> results = client.postBulkDocs(bulkDocsOptions).execute().getResult();
+            results.forEach(result -> this.documentCache.invalidate(result.getId()));
+            return results;
+        } catch (BadRequestException brEx) {
+            String msg = "Bad request, possibly one of the given revisions is invalid";
+            LOG.error(msg);
+            throw new DatabaseException(msg, brEx);
+        }
+    }
+
     /**
      * Change a document in the couchDB
      *
@@ -142,8 +296,6 @@ public class CouchDbService {
      */
     public String updateDocument(String updateString) throws DatabaseException {
 
-        Cloudant client = createCloudantClient();
-
         PostDocumentOptions updateDocumentOptions =
                 new PostDocumentOptions.Builder()
                         .db(this.dbName)
@@ -156,6 +308,7 @@ public class CouchDbService {
                     .postDocument(updateDocumentOptions)
                     .execute()
                     .getResult();
+            this.documentCache.invalidate(response.getId());
             if (!response.isOk()) {
                 throw new DatabaseException(response.getError());
             }
@@ -171,6 +324,98 @@ public class CouchDbService {
         }
     }
 
+    /**
+     * Read a document from the database. A cached copy of the document is only read again,
+     * when CouchDB does not confirm its revision with 304 Not Modified.
+     *
+     * @param id id of the document to read
+     * @return the requested document, the caller may change it
+     * @throws IdNotFoundException if the requested document was not found
+     * @throws DatabaseException   if the document could not be parsed
+     */
+    public ObjectNode readDocument(final String id) throws DatabaseException {
+
+        ObjectNode cachedDocument = this.documentCache.get(id);
+        GetDocumentOptions.Builder documentOptions = new GetDocumentOptions.Builder()
+                .db(this.dbName)
+                .docId(id);
+        if (cachedDocument != null) {
+            // CouchDB uses the quoted revision as ETag
+            documentOptions.ifNoneMatch("\"" + CouchDbField.REVISION_FIELD.stringVal(cachedDocument) + "\"");
+        }
+
+        try (InputStream documentStream = client.getDocumentAsStream(documentOptions.build()).execute().getResult()) {
+            ObjectNode document = new ObjectMapper().readValue(documentStream, ObjectNode.class);
+            return this.documentCache.put(id, document, cachedDocument != null);
+        } catch (NotFoundException nfEx) {
+            this.documentCache.invalidate(id);
+            String msg = "No element with such an ID";
+            LOG.error(msg);
+            throw new IdNotFoundException(msg, nfEx);
+        } catch (ServiceResponseException srEx) {
+            if (cachedDocument != null && srEx.getStatusCode() == HttpStatus.NOT_MODIFIED.value()) {
+                return this.documentCache.revalidated(cachedDocument);
+            }
+            throw srEx;
+        } catch (IOException ioEx) {
+            throw new DatabaseException(ioEx);
+        }
+    }
+
+    /**
+     * Read an older revision of a document. CouchDB keeps the content of older revisions until the
+     * database is compacted.
+     *
+     * @param id       id of the document to read
+     * @param revision the revision to read
+     * @return the document in the given revision
+     * @throws IdNotFoundException if the document or its revision was not found
+     * @throws DatabaseException   if the document could not be parsed
+     */
+    public ObjectNode readDocument(final String id, final String revision) throws DatabaseException {
+
+        GetDocumentOptions documentOptions = new GetDocumentOptions.Builder()
+                .db(this.dbName)
+                .docId(id)
+                .rev(revision)
+                .build();
+
+        try (InputStream documentStream = client.getDocumentAsStream(documentOptions).execute().getResult()) {
+            return new ObjectMapper().readValue(documentStream, ObjectNode.class);
+        } catch (NotFoundException nfEx) {
+            String msg = "No element with such an ID and revision";
+            LOG.error(msg);
+            throw new IdNotFoundException(msg, nfEx);
+        } catch (IOException ioEx) {
+            throw new DatabaseException(ioEx);
+        }
+    }
+
+    /**
+     * Read the current revision of a document without reading the document
+     *
+     * @param id id of the document
+     * @return the revision of the document
+     * @throws IdNotFoundException if the requested document was not found
+     */
+    public String readRevision(final String id) throws IdNotFoundException {
+
+        HeadDocumentOptions documentOptions = new HeadDocumentOptions.Builder()
+                .db(this.dbName)
+                .docId(id)
+                .build();
+
+        try {
+            List<String> eTags = client.headDocument(documentOptions).execute().getHeaders().values("ETag");
+            // CouchDB uses the quoted revision as ETag
+            return eTags.isEmpty() ? null : eTags.get(0).replace("\"", "");
+        } catch (NotFoundException nfEx) {
+            String msg = "No element with such an ID";
+            LOG.error(msg);
+            throw new IdNotFoundException(msg, nfEx);
+        }
+    }
+
     /**
      * Read a document from the database as stream
      *
@@ -180,7 +425,6 @@ public class CouchDbService {
      */
     public InputStream readDocumentAsStream(final String uuid) throws IdNotFoundException {
 
-        Cloudant client = createCloudantClient();
         GetDocumentOptions documentOptions =
                 new GetDocumentOptions.Builder()
                         .db(this.dbName)
@@ -196,6 +440,24 @@ public class CouchDbService {
         }
     }
 
+    /**
+     * Read several documents with one _all_docs request.
+     * The response has a row for every id in the order of the ids, the row of a missing
+     * or deleted document has no field "doc".
+     *
+     * @param ids ids of the documents to read
+     * @return the _all_docs response as stream
+     */
+    public InputStream readDocumentsAsStream(final Collection<String> ids) {
+
+        PostAllDocsOptions allDocsOptions = new PostAllDocsOptions.Builder(this.dbName)
+                .keys(List.copyOf(ids))
+                .includeDocs(Boolean.TRUE)
+                .build();
+
+        return client.postAllDocsAsStream(allDocsOptions).execute().getResult();
+    }
+
     /**
      * Read the information of all documents of a given type
      *
@@ -218,16 +480,21 @@ public class CouchDbService {
      */
     public List<Document> findDocuments(Map<String, Object> selector, Collection<DbField> fields) {
 
-        Cloudant client = createCloudantClient();
+        return findDocuments(selector, fields, null);
+    }
 
-        PostFindOptions findOptions = new PostFindOptions.Builder()
-                .db(this.dbName)
-                .selector(selector)
-                .fields(fields.stream().map(DbField::getDbName).collect(Collectors.toList()))
-                .build();
+    /**
+     * Read the information of the documents matching the selector
+     *
+     * @param selector the selector to search for
+     * @param fields   the fields of information to select
+     * @param index    the index CouchDB should use to answer the query, null to let CouchDB choose
+     * @return list of all document information that match the selector
+     */
+    public List<Document> findDocuments(Map<String, Object> selector, Collection<DbField> fields, CouchDbIndex index) {
 
         FindResult findDocumentResult = client
-                .postFind(findOptions)
+                .postFind(createFindOptions(selector, fields, index))
                 .execute()
                 .getResult();
 
@@ -243,20 +510,400 @@ public class CouchDbService {
      */
     public InputStream findDocumentsAsStream(Map<String, Object> selector, Collection<DbField> fields) {
 
-        Cloudant client = createCloudantClient();
+        return findDocumentsAsStream(selector, fields, null);
+    }
+
+    /**
+     * Read the information of the documents matching the selector
+     *
+     * @param selector the selector to search for
+     * @param fields   the fields of information to select
+     * @param index    the index CouchDB should use to answer the query, null to let CouchDB choose
+     * @return the result as stream
+     */
+    public InputStream findDocumentsAsStream(Map<String, Object> selector, Collection<DbField> fields, CouchDbIndex index) {
+
+        return client
+                .postFindAsStream(createFindOptions(selector, fields, index))
+                .execute()
+                .getResult();
+    }
+
+    /**
+     * Read the information of the documents matching the selector that belong to the same advisory
+     * as the related document. In a partitioned database only the partition of the advisory is queried,
+     * otherwise this is the same as {@link #findDocumentsAsStream(Map, Collection, CouchDbIndex)}.
+     *
+     * @param relatedId id of the advisory or comment the documents belong to
+     * @param selector  the selector to search for, it has to restrict the result to the related documents
+     * @param fields    the fields of information to select
+     * @param index     the index CouchDB should use to answer the query, null to let CouchDB choose
+     * @return the result as stream
+     */
+    public InputStream findRelatedDocumentsAsStream(String relatedId, Map<String, Object> selector, Collection<DbField> fields,
+                                                    CouchDbIndex index) {
 
-        PostFindOptions findOptions = new PostFindOptions.Builder()
+        if (!partitioned) {
+            return findDocumentsAsStream(selector, fields, index);
+        }
+        PostPartitionFindOptions.Builder findOptions = new PostPartitionFindOptions.Builder()
                 .db(this.dbName)
+                .partitionKey(partitionKey(relatedId))
                 .selector(selector)
-                .fields(fields.stream().map(DbField::getDbName).collect(Collectors.toList()))
-                .build();
-
+                .fields(fields.stream().map(DbField::getDbName).collect(Collectors.toList()));
+        if (index != null) {
+            findOptions.useIndex(index.getUseIndex());
+        }
         return client
-                .postFindAsStream(findOptions)
+                .postPartitionFindAsStream(findOptions.build())
                 .execute()
                 .getResult();
     }
 
+    /**
+     * Read one page of the documents matching the selector.
+     * Besides the documents the result contains the bookmark to request the following page.
+     *
+     * @param selector    the selector to search for
+     * @param fields      the fields of information to select
+     * @param index       the index CouchDB should use to answer the query, it has to contain the sort fields
+     * @param pageRequest limit, bookmark and sort order of the page
+     * @return the result as stream
+     * @throws DatabaseException the bookmark or the sort order is invalid
+     */
+    public InputStream findDocumentsAsStream(Map<String, Object> selector, Collection<DbField> fields, CouchDbIndex index,
+                                             PageRequest pageRequest) throws DatabaseException {
+
+        PostFindOptions.Builder findOptions = createFindOptions(selector, fields, index).newBuilder()
+                .limit(pageRequest.getLimit());
+        if (pageRequest.getBookmark() != null) {
+            findOptions.bookmark(pageRequest.getBookmark());
+        }
+        String direction = pageRequest.isDescending() ? "desc" : "asc";
+        for (DbField sortField : pageRequest.getSortFields()) {
+            findOptions.addSort(Map.of(sortField.getDbName(), direction));
+        }
+
+        try {
+            return client
+                    .postFindAsStream(findOptions.build())
+                    .execute()
+                    .getResult();
+        } catch (BadRequestException brEx) {
+            String msg = "Bad request, possibly the given bookmark or sort order is invalid";
+            LOG.error(msg);
+            throw new DatabaseException(msg, brEx);
+        }
+    }
+
+    /**
+     * Create the options for a _find request
+     *
+     * @param selector the selector to search for
+     * @param fields   the fields of information to select
+     * @param index    the index hint, null for none
+     * @return the find options
+     */
+    private PostFindOptions createFindOptions(Map<String, Object> selector, Collection<DbField> fields, CouchDbIndex index) {
+
+        PostFindOptions.Builder findOptions = new PostFindOptions.Builder()
+                .db(this.dbName)
+                .selector(selector)
+                .fields(fields.stream().map(DbField::getDbName).collect(Collectors.toList()));
+        if (index != null) {
+            findOptions.useIndex(index.getUseIndex());
+        }
+        return findOptions.build();
+    }
+
+    /**
+     * Create the given JSON index, if it does not exist already
+     *
+     * @param index the index to create
+     * @return result of the creation, "created" or "exists"
+     */
+    public String createIndex(CouchDbIndex index) {
+
+        IndexDefinition.Builder definition = new IndexDefinition.Builder();
+        for (String fieldName : index.getFieldNames()) {
+            definition.addFields(new IndexField.Builder().add(fieldName, "asc").build());
+        }
+
+        PostIndexOptions.Builder indexOptions = new PostIndexOptions.Builder()
+                .db(this.dbName)
+                .ddoc(index.getIndexName())
+                .name(index.getIndexName())
+                .type("json")
+                .index(definition.build());
+        if (partitioned) {
+            // indexes of a partitioned database are partitioned by default, global queries need global indexes
+            indexOptions.partitioned(index.isPartitionScoped());
+        }
+
+        return client.postIndex(indexOptions.build()).execute().getResult().getResult();
+    }
+
+    /**
+     * Ask CouchDB which index it would use to answer a query with the given selector
+     *
+     * @param selector the selector of the query
+     * @param index    the index hint, null for none
+     * @return the name of the used index, "_all_docs" for a scan of all documents
+     */
+    public String explainIndexUsage(Map<String, Object> selector, CouchDbIndex index) {
+
+        PostExplainOptions.Builder explainOptions = new PostExplainOptions.Builder()
+                .db(this.dbName)
+                .selector(selector);
+        if (index != null) {
+            explainOptions.useIndex(index.getUseIndex());
+        }
+
+        ExplainResult explainResult = client.postExplain(explainOptions.build()).execute().getResult();
+        return explainResult.getIndex().getName();
+    }
+
+    /**
+     * Create the design document with all views of the {@link CouchDbView} registry.
+     * An existing design document is only replaced when its views differ, because CouchDB rebuilds
+     * all views of a changed design document.
+     *
+     * @return "created", "updated" or "exists"
+     */
+    public String createOrUpdateViews() {
+
+        Map<String, DesignDocumentViewsMapReduce> views = new HashMap<>();
+        for (CouchDbView view : CouchDbView.values()) {
+            views.put(view.getViewName(), new DesignDocumentViewsMapReduce.Builder(view.getMapFunction())
+                    .reduce(CouchDbView.REDUCE_FUNCTION)
+                    .build());
+        }
+
+        String revision = null;
+        try {
+            DesignDocument existing = client.getDesignDocument(
+                    new GetDesignDocumentOptions.Builder(this.dbName, CouchDbView.DESIGN_DOCUMENT_NAME).build())
+                    .execute()
+                    .getResult();
+            if (sameViews(views, existing.getViews())) {
+                return "exists";
+            }
+            revision = existing.getRev();
+        } catch (NotFoundException nfEx) {
+            // create the design document
+        }
+
+        DesignDocument.Builder designDocument = new DesignDocument.Builder()
+                .language("javascript")
+                .views(views)
+                .rev(revision);
+        if (partitioned) {
+            // the views count over all partitions
+            designDocument.options(new DesignDocumentOptions.Builder().partitioned(Boolean.FALSE).build());
+        }
+        client.putDesignDocument(new PutDesignDocumentOptions.Builder()
+                        .db(this.dbName)
+                        .ddoc(CouchDbView.DESIGN_DOCUMENT_NAME)
+                        .designDocument(designDocument.build())
+                        .build())
+                .execute();
+        return revision == null ? "created" : "updated";
+    }
+
+    private static boolean sameViews(Map<String, DesignDocumentViewsMapReduce> expected,
+                                     Map<String, DesignDocumentViewsMapReduce> existing) {
+
+        return existing != null && existing.size() == expected.size()
+                && expected.entrySet().stream().allMatch(entry -> {
+                    DesignDocumentViewsMapReduce existingView = existing.get(entry.getKey());
+                    return existingView != null
+                            && entry.getValue().map().equals(existingView.map())
+                            && entry.getValue().reduce().equals(existingView.reduce());
+                });
+    }
+
+    /**
+     * Create the design document with all update handlers of the {@link CouchDbUpdateHandler} registry.
+     * An existing design document is only replaced when its handlers differ.
+     *
+     * @return "created", "updated" or "exists"
+     */
+    public String createOrUpdateUpdateHandlers() {
+
+        Map<String, String> updates = new HashMap<>();
+        for (CouchDbUpdateHandler handler : CouchDbUpdateHandler.values()) {
+            updates.put(handler.getHandlerName(), handler.getUpdateFunction());
+        }
+
+        String revision = null;
+        try {
+            DesignDocument existing = client.getDesignDocument(
+                    new GetDesignDocumentOptions.Builder(this.dbName, CouchDbUpdateHandler.DESIGN_DOCUMENT_NAME).build())
+                    .execute()
+                    .getResult();
+            if (updates.equals(existing.getUpdates())) {
+                return "exists";
+            }
+            revision = existing.getRev();
+        } catch (NotFoundException nfEx) {
+            // create the design document
+        }
+
+        DesignDocument.Builder designDocument = new DesignDocument.Builder()
+                .language("javascript")
+                .updates(updates)
+                .rev(revision);
+        if (partitioned) {
+            // update handlers are only allowed in global design documents
+            designDocument.options(new DesignDocumentOptions.Builder().partitioned(Boolean.FALSE).build());
+        }
+        try {
+            client.putDesignDocument(new PutDesignDocumentOptions.Builder()
+                            .db(this.dbName)
+                            .ddoc(CouchDbUpdateHandler.DESIGN_DOCUMENT_NAME)
+                            .designDocument(designDocument.build())
+                            .build())
+                    .execute();
+        } catch (ConflictException cEx) {
+            // another instance installed the handlers concurrently
+            return "exists";
+        }
+        return revision == null ? "created" : "updated";
+    }
+
+    /**
+     * Apply an update handler to a document with one PUT request. CouchDB runs the handler on the current
+     * revision of the document and writes the result atomically. When the handler is not installed,
+     * for example because the database was created after the start, it is installed and called again.
+     *
+     * @param handler the update handler to call
+     * @param docId   id of the document to change
+     * @param query   query parameters of the handler
+     * @param body    JSON request body of the handler, null for an empty body
+     * @return the status, the new revision and the JSON response of the handler
+     * @throws DatabaseException the handler could not be called
+     */
+    public UpdateHandlerResult callUpdateHandler(CouchDbUpdateHandler handler, String docId,
+                                                 Map<String, String> query, String body) throws DatabaseException {
+
+        UpdateHandlerResult result = executeUpdateHandler(handler, docId, query, body);
+        if (result.getStatusCode() == HttpStatus.NOT_FOUND.value()
+                && !CouchDbUpdateHandler.DOCUMENT_NOT_FOUND.equals(result.getBody().path("reason").asText())) {
+            LOG.info("Update handler {} is missing: {}", handler.getHandlerName(), createOrUpdateUpdateHandlers());
+            result = executeUpdateHandler(handler, docId, query, body);
+        }
+        if (result.getStatusCode() >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+            throw new DatabaseException("Update handler " + handler.getHandlerName() + " failed: " + result.getBody());
+        }
+        return result;
+    }
+
+    private UpdateHandlerResult executeUpdateHandler(CouchDbUpdateHandler handler, String docId,
+                                                     Map<String, String> query, String body) throws DatabaseException {
+
+        HttpUrl.Builder url = HttpUrl.get(client.getServiceUrl()).newBuilder()
+                .addPathSegment(this.dbName)
+                .addPathSegment("_design")
+                .addPathSegment(CouchDbUpdateHandler.DESIGN_DOCUMENT_NAME)
+                .addPathSegment("_update")
+                .addPathSegment(handler.getHandlerName())
+                .addPathSegment(docId);
+        query.forEach(url::addQueryParameter);
+        Request.Builder request = new Request.Builder()
+                .url(url.build())
+                .put(RequestBody.create(body != null ? body : "", MediaType.get("application/json")));
+        client.getAuthenticator().authenticate(request);
+
+        this.documentCache.invalidate(docId);
+        try (Response response = client.getClient().newCall(request.build()).execute()) {
+            String responseBody = response.body() != null ? response.body().string() : "";
+            JsonNode responseJson = responseBody.isBlank()
+                    ? UPDATE_HANDLER_MAPPER.createObjectNode()
+                    : UPDATE_HANDLER_MAPPER.readTree(responseBody);
+            return new UpdateHandlerResult(response.code(), response.header("X-Couch-Update-NewRev"), responseJson);
+        } catch (IOException ioEx) {
+            throw new DatabaseException(ioEx);
+        }
+    }
+
+    /**
+     * Count the documents of a view grouped by the first elements of its keys.
+     * CouchDB answers the query from the reduce values stored in the view index,
+     * so the costs depend on the number of keys and not on the number of documents.
+     *
+     * @param view       the view to query
+     * @param groupLevel number of key elements to group by
+     * @return the count per key in key order, the key elements are joined with '-'
+     */
+    public Map<String, Long> readViewCounts(CouchDbView view, int groupLevel) {
+
+        PostViewOptions viewOptions = new PostViewOptions.Builder()
+                .db(this.dbName)
+                .ddoc(CouchDbView.DESIGN_DOCUMENT_NAME)
+                .view(view.getViewName())
+                .reduce(Boolean.TRUE)
+                .groupLevel(groupLevel)
+                .build();
+
+        ViewResult viewResult = client.postView(viewOptions).execute().getResult();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (ViewResultRow row : viewResult.getRows()) {
+            String key = row.getKey() instanceof List<?> keyElements
+                    ? keyElements.stream().map(String::valueOf).collect(Collectors.joining("-"))
+                    : String.valueOf(row.getKey());
+            counts.put(key, ((Number) row.getValue()).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Read the ids of the documents a view emits for a key.
+     * The view is used as reverse index, so the ids are read from the view rows without reading the documents.
+     *
+     * @param view the view to read
+     * @param key  the single element of the array key
+     * @return the ids of the documents in the order of the view
+     */
+    public List<String> readViewDocumentIds(CouchDbView view, String key) {
+
+        PostViewOptions viewOptions = new PostViewOptions.Builder()
+                .db(this.dbName)
+                .ddoc(CouchDbView.DESIGN_DOCUMENT_NAME)
+                .view(view.getViewName())
+                .reduce(Boolean.FALSE)
+                .key(List.of(key))
+                .build();
+
+        ViewResult viewResult = client.postView(viewOptions).execute().getResult();
+        return viewResult.getRows().stream()
+                .map(ViewResultRow::getId)
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Read the changes of the database since the given sequence.
+     * With longpoll the request waits until there is at least one change or the timeout is over.
+     *
+     * @param since         sequence of the last processed change, "0" to read all changes
+     * @param limit         maximum number of changes to return
+     * @param longpoll      true - wait for changes if there are none
+     * @param timeoutMillis maximum time to wait for changes
+     * @return the _changes response as stream
+     */
+    public InputStream readChangesAsStream(String since, long limit, boolean longpoll, long timeoutMillis) {
+
+        PostChangesOptions changesOptions = new PostChangesOptions.Builder()
+                .db(this.dbName)
+                .since(since)
+                .limit(limit)
+                .feed(longpoll ? "longpoll" : "normal")
+                .timeout(timeoutMillis)
+                .build();
+
+        return client.postChangesAsStream(changesOptions).execute().getResult();
+    }
+
     /**
      * Delete a document from the database
      *
@@ -265,7 +912,6 @@ public class CouchDbService {
      */
     public void deleteDocument(final String uuid, final String revision) throws DatabaseException {
 
-        Cloudant client = createCloudantClient();
         DeleteDocumentOptions documentOptions =
                 new DeleteDocumentOptions.Builder()
                         .db(this.dbName)
@@ -273,6 +919,7 @@ public class CouchDbService {
                         .rev(revision)
                         .build();
 
+        this.documentCache.invalidate(uuid);
         try {
             DocumentResult response = client.deleteDocument(documentOptions).execute().getResult();
             if (response.isOk() == null || !response.isOk()) {
@@ -291,18 +938,26 @@ public class CouchDbService {
     }
 
     /**
-     * Delete multiple objects from the database
+     * Delete multiple objects from the database.
+     * The objects are deleted in bulk requests of at most csaf.couchdb.bulkDeleteChunkSize documents.
      *
      * @param objectsToDelete collection of ids and revisions of all documents to delete
      * @throws DatabaseException Deletion of at least one object failed
      */
     public void bulkDeleteDocuments(final Collection<IdAndRevision> objectsToDelete) throws DatabaseException {
 
-        Cloudant client = createCloudantClient();
         List<Document> documents = objectsToDelete.stream()
                 .map(this::createBulkDelete)
                 .collect(Collectors.toList());
+        documents.forEach(document -> this.documentCache.invalidate(document.getId()));
 
+        for (int chunkStart = 0; chunkStart < documents.size(); chunkStart += this.bulkDeleteChunkSize) {
+            List<Document> chunk = documents.subList(chunkStart, Math.min(chunkStart + this.bulkDeleteChunkSize, documents.size()));
+            bulkDeleteChunk(chunk);
+        }
+    }
+
+    private void bulkDeleteChunk(final List<Document> documents) throws DatabaseException {
 
         BulkDocs bulkDocs = new BulkDocs.Builder()
                 .docs(documents)
@@ -344,29 +999,4 @@ public class CouchDbService {
         return eventDoc1;
     }
 
-    /**
-     * Create a client to access the couchDB database
-     *
-     * @return the new client
-     */
-    private Cloudant createCloudantClient() {
-        BasicAuthenticator authenticator = createBasicAuthenticator();
-        Cloudant cloudant = new Cloudant(CLOUDANT_SERVICE_NAME, authenticator);
-        cloudant.setServiceUrl(getDbUrl());
-        return cloudant;
-    }
-
-    /**
-     * Create authenticator for the couchDB database
-     *
-     * @return a new base authentication
-     */
-    private BasicAuthenticator createBasicAuthenticator() {
-
-        return new BasicAuthenticator.Builder()
-                .username(this.dbUser)
-                .password(this.dbPassword)
-                .build();
-    }
-
-}
\ No newline at end of file
+}
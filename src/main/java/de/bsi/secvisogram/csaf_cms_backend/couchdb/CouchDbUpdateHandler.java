@@ -0,0 +1,101 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+/**
+ * Registry of all update handlers the backend uses for narrow changes of single documents.
+ * CouchDB applies a handler to the current revision of the document in one request,
+ * so these changes need neither a read of the document nor a write of the whole document.
+ * All handlers are stored in one design document. They answer with 404 and the reason
+ * {@link #DOCUMENT_NOT_FOUND}, when the document is missing, and with 409, when the revision
+ * sent by the caller is outdated. The new revision is returned by CouchDB in the header X-Couch-Update-NewRev.
+ */
+public enum CouchDbUpdateHandler {
+
+    /**
+     * Increase the count of a tracking id counter by the query parameter amount,
+     * the counter is created when it does not exist. Answers {"count": new count}.
+     */
+    INCREMENT_COUNTER("increment-counter", """
+            function (doc, req) {
+              var amount = parseInt(req.query.amount || '1', 10);
+              if (!doc) {
+                doc = {_id: req.id, type: 'Counter', count: 0};
+              }
+              doc.count = doc.count + amount;
+              return [doc, {json: {count: doc.count}}];
+            }"""),
+    /**
+     * Set the workflow state and optionally the /document/tracking/status of an advisory.
+     * Body: {"revision": expected revision, "workflowState": state, "trackingStatus": optional status}
+     */
+    SET_WORKFLOW_STATE("set-workflow-state", """
+            function (doc, req) {
+              var change = JSON.parse(req.body);
+              if (!doc || doc.type !== 'Advisory') {
+                return [null, {code: 404, json: {error: 'not_found', reason: 'document'}}];
+              }
+              if (doc._rev !== change.revision) {
+                return [null, {code: 409, json: {error: 'conflict', reason: 'Document update conflict.'}}];
+              }
+              doc.workflowState = change.workflowState;
+              if (change.trackingStatus) {
+                doc.csaf.document.tracking.status = change.trackingStatus;
+              }
+              return [doc, {json: {ok: true}}];
+            }"""),
+    /**
+     * Set the text of a comment or answer, only the owner of the comment may change it.
+     * Body: {"revision": expected revision, "owner": user, "commentText": text}.
+     * Answers with 403, when the user is not the owner, and with the fields of the comment otherwise.
+     */
+    SET_COMMENT_TEXT("set-comment-text", """
+            function (doc, req) {
+              var change = JSON.parse(req.body);
+              if (!doc || doc.type !== 'Comment') {
+                return [null, {code: 404, json: {error: 'not_found', reason: 'document'}}];
+              }
+              if (doc.owner !== change.owner) {
+                return [null, {code: 403, json: {error: 'forbidden', reason: 'not the owner of the comment'}}];
+              }
+              if (doc._rev !== change.revision) {
+                return [null, {code: 409, json: {error: 'conflict', reason: 'Document update conflict.'}}];
+              }
+              doc.commentText = change.commentText;
+              return [doc, {json: doc}];
+            }""");
+
+    /**
+     * Name of the design document that holds all update handlers
+     */
+    public static final String DESIGN_DOCUMENT_NAME = "csaf-updates";
+    /**
+     * Reason in the 404 response of a handler, when the document is missing.
+     * CouchDB itself answers with 404 and another reason, when the handler is not installed.
+     */
+    public static final String DOCUMENT_NOT_FOUND = "document";
+
+    private final String handlerName;
+    private final String updateFunction;
+
+    CouchDbUpdateHandler(String handlerName, String updateFunction) {
+        this.handlerName = handlerName;
+        this.updateFunction = updateFunction;
+    }
+
+    /**
+     * Get the name of the update handler in the design document
+     *
+     * @return the handler name
+     */
+    public String getHandlerName() {
+        return handlerName;
+    }
+
+    /**
+     * Get the JavaScript update function of the handler
+     *
+     * @return the update function
+     */
+    public String getUpdateFunction() {
+        return updateFunction;
+    }
+}
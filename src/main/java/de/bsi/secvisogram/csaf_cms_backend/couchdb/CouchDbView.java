@@ -0,0 +1,191 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+/**
+ * Registry of all map/reduce views the backend needs for counts and facets.
+ * All views use the built-in _count reduce and are stored in one design document,
+ * so CouchDB builds them in a single pass over the changed documents.
+ * Every map function emits an array key, so the views can be queried with group_level.
+ */
+public enum CouchDbView {
+
+    /**
+     * Advisories by [workflowState]
+     */
+    WORKFLOW_STATE("advisories-by-workflow-state", """
+            function (doc) {
+              if (doc.type === 'Advisory' && doc.workflowState) {
+                emit([doc.workflowState], null);
+              }
+            }"""),
+    /**
+     * Advisories by [/document/tracking/status]
+     */
+    TRACKING_STATUS("advisories-by-tracking-status", """
+            function (doc) {
+              if (doc.type === 'Advisory' && doc.csaf && doc.csaf.document && doc.csaf.document.tracking
+                  && doc.csaf.document.tracking.status) {
+                emit([doc.csaf.document.tracking.status], null);
+              }
+            }"""),
+    /**
+     * Advisories by [/document/distribution/tlp/label]
+     */
+    TLP_LABEL("advisories-by-tlp-label", """
+            function (doc) {
+              if (doc.type === 'Advisory' && doc.csaf && doc.csaf.document && doc.csaf.document.distribution
+                  && doc.csaf.document.distribution.tlp && doc.csaf.document.distribution.tlp.label) {
+                emit([doc.csaf.document.distribution.tlp.label], null);
+              }
+            }"""),
+    /**
+     * Advisories by [owner]
+     */
+    OWNER("advisories-by-owner", """
+            function (doc) {
+              if (doc.type === 'Advisory' && doc.owner) {
+                emit([doc.owner], null);
+              }
+            }"""),
+    /**
+     * Advisories by [year, month] of /document/tracking/initial_release_date,
+     * group level 1 counts per year, group level 2 per month
+     */
+    INITIAL_RELEASE_DATE("advisories-by-initial-release-date", """
+            function (doc) {
+              if (doc.type === 'Advisory' && doc.csaf && doc.csaf.document && doc.csaf.document.tracking
+                  && typeof doc.csaf.document.tracking.initial_release_date === 'string'
+                  && doc.csaf.document.tracking.initial_release_date.length >= 7) {
+                var date = doc.csaf.document.tracking.initial_release_date;
+                emit([date.substring(0, 4), date.substring(5, 7)], null);
+              }
+            }"""),
+    /**
+     * Advisories by [CVE] of /vulnerabilities[]/cve in upper case, each advisory once per CVE
+     */
+    ADVISORIES_BY_CVE("advisories-by-cve", """
+            function (doc) {
+              if (doc.type === 'Advisory' && doc.csaf && Array.isArray(doc.csaf.vulnerabilities)) {
+                var cves = {};
+                doc.csaf.vulnerabilities.forEach(function (vulnerability) {
+                  if (vulnerability && typeof vulnerability.cve === 'string') {
+                    cves[vulnerability.cve.toUpperCase()] = true;
+                  }
+                });
+                Object.keys(cves).forEach(function (cve) {
+                  emit([cve], null);
+                });
+              }
+            }"""),
+    /**
+     * Advisories by [CWE] of /vulnerabilities[]/cwe/id in upper case, each advisory once per CWE
+     */
+    ADVISORIES_BY_CWE("advisories-by-cwe", """
+            function (doc) {
+              if (doc.type === 'Advisory' && doc.csaf && Array.isArray(doc.csaf.vulnerabilities)) {
+                var cwes = {};
+                doc.csaf.vulnerabilities.forEach(function (vulnerability) {
+                  if (vulnerability && vulnerability.cwe && typeof vulnerability.cwe.id === 'string') {
+                    cwes[vulnerability.cwe.id.toUpperCase()] = true;
+                  }
+                });
+                Object.keys(cwes).forEach(function (cwe) {
+                  emit([cwe], null);
+                });
+              }
+            }"""),
+    /**
+     * Advisories by [product_id] of all full product names in /product_tree, each advisory once per product id
+     */
+    ADVISORIES_BY_PRODUCT_ID("advisories-by-product-id", productTreeMapFunction("product_id", false)),
+    /**
+     * Advisories by [name] in lower case of all full product names in /product_tree,
+     * each advisory once per product name
+     */
+    ADVISORIES_BY_PRODUCT_NAME("advisories-by-product-name", productTreeMapFunction("name", true)),
+    /**
+     * Comments and answers by [advisoryId]
+     */
+    COMMENTS_BY_ADVISORY("comments-by-advisory", """
+            function (doc) {
+              if (doc.type === 'Comment' && doc.advisoryId) {
+                emit([doc.advisoryId], null);
+              }
+            }""");
+
+    /**
+     * Name of the design document that holds all views
+     */
+    public static final String DESIGN_DOCUMENT_NAME = "csaf-views";
+    /**
+     * The built-in reduce function of all views
+     */
+    public static final String REDUCE_FUNCTION = "_count";
+
+    private final String viewName;
+    private final String mapFunction;
+
+    CouchDbView(String viewName, String mapFunction) {
+        this.viewName = viewName;
+        this.mapFunction = mapFunction;
+    }
+
+    /**
+     * Create a map function that emits a field of all full product names in the product tree:
+     * the products of the branches, the full product names and the products of the relationships
+     *
+     * @param field     the field of the full product name to emit
+     * @param lowerCase true - emit the value in lower case
+     * @return the map function
+     */
+    private static String productTreeMapFunction(String field, boolean lowerCase) {
+
+        return """
+                function (doc) {
+                  if (doc.type === 'Advisory' && doc.csaf && doc.csaf.product_tree) {
+                    var values = {};
+                    var add = function (product) {
+                      if (product && typeof product.%1$s === 'string') {
+                        values[%2$s] = true;
+                      }
+                    };
+                    var addBranches = function (branches) {
+                      if (Array.isArray(branches)) {
+                        branches.forEach(function (branch) {
+                          if (branch) {
+                            add(branch.product);
+                            addBranches(branch.branches);
+                          }
+                        });
+                      }
+                    };
+                    var tree = doc.csaf.product_tree;
+                    addBranches(tree.branches);
+                    (Array.isArray(tree.full_product_names) ? tree.full_product_names : []).forEach(add);
+                    (Array.isArray(tree.relationships) ? tree.relationships : []).forEach(function (relationship) {
+                      add(relationship && relationship.full_product_name);
+                    });
+                    Object.keys(values).forEach(function (value) {
+                      emit([value], null);
+                    });
+                  }
+                }""".formatted(field, lowerCase ? "product." + field + ".toLowerCase()" : "product." + field);
+    }
+
+    /**
+     * Get the name of the view in the design document
+     *
+     * @return the view name
+     */
+    public String getViewName() {
+        return viewName;
+    }
+
+    /**
+     * Get the JavaScript map function of the view
+     *
+     * @return the map function
+     */
+    public String getMapFunction() {
+        return mapFunction;
+    }
+}
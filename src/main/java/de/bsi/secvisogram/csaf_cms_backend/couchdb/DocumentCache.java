@@ -0,0 +1,142 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of parsed documents read from the couchDB database, keyed by document id.
+ * Every entry keeps the revision of its document, the entry is only used after CouchDB confirmed
+ * with 304 Not Modified that this revision is still current. The entries are evicted by the
+ * frequency and recency of their use, the documents written by this application are removed immediately.
+ * The cached documents must not be changed, callers get a copy.
+ */
+@Component
+public class DocumentCache implements MeterBinder {
+
+    private static final String METRIC_PREFIX = "csaf.couchdb.cache.";
+
+    private final Cache<String, ObjectNode> cache;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create the cache
+     *
+     * @param maxDocuments maximum number of cached documents, 0 disables the cache
+     */
+    public DocumentCache(@Value("${csaf.couchdb.cache.maxDocuments}") long maxDocuments) {
+
+        this.cache = maxDocuments > 0
+                ? Caffeine.newBuilder().maximumSize(maxDocuments).recordStats().build()
+                : null;
+    }
+
+    /**
+     * Get the cached document to revalidate it with its revision
+     *
+     * @param id id of the document
+     * @return the cached document or null, if it is not cached
+     */
+    ObjectNode get(String id) {
+
+        if (this.cache == null) {
+            return null;
+        }
+        ObjectNode document = this.cache.getIfPresent(id);
+        if (document == null) {
+            this.misses.incrementAndGet();
+        }
+        return document;
+    }
+
+    /**
+     * Record that CouchDB confirmed the revision of a cached document
+     *
+     * @param document the revalidated document
+     * @return a copy of the document
+     */
+    ObjectNode revalidated(ObjectNode document) {
+
+        this.hits.incrementAndGet();
+        return document.deepCopy();
+    }
+
+    /**
+     * Cache a document read from CouchDB
+     *
+     * @param id       id of the document
+     * @param document the document read
+     * @param replaced true - a cached document with an outdated revision is replaced
+     * @return a copy of the document
+     */
+    ObjectNode put(String id, ObjectNode document, boolean replaced) {
+
+        if (this.cache == null) {
+            return document;
+        }
+        if (replaced) {
+            this.staleHits.incrementAndGet();
+        }
+        this.cache.put(id, document);
+        return document.deepCopy();
+    }
+
+    /**
+     * Remove a document that was changed or deleted
+     *
+     * @param id id of the document
+     */
+    void invalidate(String id) {
+
+        if (this.cache != null && id != null) {
+            this.cache.invalidate(id);
+        }
+    }
+
+    /**
+     * @return part of the reads answered from the cache, NaN if nothing was read yet
+     */
+    public double hitRatio() {
+
+        long requests = this.hits.get() + this.staleHits.get() + this.misses.get();
+        return requests == 0 ? Double.NaN : (double) this.hits.get() / requests;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        if (this.cache == null) {
+            return;
+        }
+        FunctionCounter.builder(METRIC_PREFIX + "reads", this.hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Document reads answered from the cache after revalidation")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "reads", this.staleHits, AtomicLong::get)
+                .tag("result", "stale")
+                .description("Document reads of a cached document with an outdated revision")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "reads", this.misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Document reads of documents that were not cached")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "hit.ratio", this, DocumentCache::hitRatio)
+                .description("Part of the document reads answered from the cache")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "size", this.cache, Cache::estimatedSize)
+                .description("Number of cached documents")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "evictions", this.cache, cache -> cache.stats().evictionCount())
+                .description("Documents evicted from the cache because it was full")
+                .register(registry);
+    }
+}
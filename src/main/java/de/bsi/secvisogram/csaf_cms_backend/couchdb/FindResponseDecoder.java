@@ -0,0 +1,127 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+/**
+ * Decode the documents of a CouchDB _find response while the response is received.
+ * Only the tokens of the document being read are buffered, so the size of the response
+ * is not limited by the in-memory size of the codecs.
+ */
+final class FindResponseDecoder {
+
+    private static final ObjectMapper FIND_RESPONSE_MAPPER = new ObjectMapper();
+
+    private static final String DOCS_FIELD = "docs";
+    private static final int DOCS_DEPTH = 2;
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private int depth;
+    private boolean inDocs;
+    private TokenBuffer document;
+
+    private FindResponseDecoder() throws IOException {
+
+        this.parser = FIND_RESPONSE_MAPPER.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) this.parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Decode the documents of a _find response
+     *
+     * @param responseBody the parts of the response as they are received
+     * @return the documents in the order of the response
+     */
+    static Flux<JsonNode> decodeDocs(Flux<DataBuffer> responseBody) {
+
+        return Flux.defer(() -> {
+            FindResponseDecoder decoder = create();
+            return responseBody
+                    .concatMapIterable(decoder::decode)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(decoder.endOfInput())));
+        });
+    }
+
+    private static FindResponseDecoder create() {
+
+        try {
+            return new FindResponseDecoder();
+        } catch (IOException ex) {
+            throw new DecodingException("Could not create the parser of the find response", ex);
+        }
+    }
+
+    private List<JsonNode> decode(DataBuffer buffer) {
+
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            this.feeder.feedInput(bytes, 0, bytes.length);
+            return readAvailableDocs();
+        } catch (IOException ex) {
+            throw new DecodingException("Could not decode the find response", ex);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private List<JsonNode> endOfInput() {
+
+        this.feeder.endOfInput();
+        try {
+            List<JsonNode> docs = readAvailableDocs();
+            if (this.depth != 0) {
+                throw new DecodingException("The find response ended unexpectedly");
+            }
+            return docs;
+        } catch (IOException ex) {
+            throw new DecodingException("Could not decode the find response", ex);
+        }
+    }
+
+    /**
+     * Read the tokens fed so far and return the documents that are complete
+     */
+    private List<JsonNode> readAvailableDocs() throws IOException {
+
+        List<JsonNode> docs = new ArrayList<>();
+        JsonToken token = this.parser.nextToken();
+        while (token != null && token != JsonToken.NOT_AVAILABLE) {
+            if (this.document != null) {
+                this.document.copyCurrentEvent(this.parser);
+            }
+            if (token.isStructStart()) {
+                this.depth++;
+                if (this.inDocs && this.depth == DOCS_DEPTH + 1 && this.document == null) {
+                    this.document = new TokenBuffer(this.parser);
+                    this.document.copyCurrentEvent(this.parser);
+                } else if (this.depth == DOCS_DEPTH && token == JsonToken.START_ARRAY
+                        && DOCS_FIELD.equals(this.parser.currentName())) {
+                    this.inDocs = true;
+                }
+            } else if (token.isStructEnd()) {
+                this.depth--;
+                if (this.depth == DOCS_DEPTH && this.document != null) {
+                    docs.add(FIND_RESPONSE_MAPPER.readTree(this.document.asParser(FIND_RESPONSE_MAPPER)));
+                    this.document = null;
+                } else if (this.depth < DOCS_DEPTH) {
+                    this.inDocs = false;
+                }
+            }
+            token = this.parser.nextToken();
+        }
+        return docs;
+    }
+}
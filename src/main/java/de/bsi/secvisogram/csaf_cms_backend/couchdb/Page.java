@@ -0,0 +1,42 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.List;
+
+/**
+ * One page of the result of a _find query
+ *
+ * @param <T> type of the items in the page
+ */
+public class Page<T> {
+
+    private final List<T> items;
+    private final String bookmark;
+    private final int pageSize;
+
+    public Page(List<T> items, String bookmark, int pageSize) {
+        this.items = List.copyOf(items);
+        this.bookmark = bookmark;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * @return the items of the page
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return bookmark to request the following page, null if this is the last page
+     */
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    /**
+     * @return the requested size of the page
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+}
@@ -0,0 +1,55 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Request for one page of the result of a _find query.
+ * The following page is requested with the bookmark returned for the previous page.
+ */
+public class PageRequest {
+
+    private final int limit;
+    private final String bookmark;
+    private final List<DbField> sortFields;
+    private final boolean descending;
+
+    public PageRequest(int limit, String bookmark) {
+        this(limit, bookmark, Collections.emptyList(), false);
+    }
+
+    public PageRequest(int limit, String bookmark, List<DbField> sortFields, boolean descending) {
+        this.limit = limit;
+        this.bookmark = bookmark;
+        this.sortFields = List.copyOf(sortFields);
+        this.descending = descending;
+    }
+
+    /**
+     * @return maximum number of documents in the page
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return bookmark of the previous page, null for the first page
+     */
+    public String getBookmark() {
+        return bookmark;
+    }
+
+    /**
+     * @return fields to sort the result by, there must be an index with these fields in this order
+     */
+    public List<DbField> getSortFields() {
+        return sortFields;
+    }
+
+    /**
+     * @return true - sort all sort fields descending
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+}
@@ -0,0 +1,273 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService.ADVISORY_DOCUMENT_KEY;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService.COUNTER_PARTITION;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService.PARTITION_SEPARATOR;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ibm.cloud.cloudant.v1.Cloudant;
+import com.ibm.cloud.cloudant.v1.model.DatabaseInformation;
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import com.ibm.cloud.cloudant.v1.model.GetDatabaseInformationOptions;
+import com.ibm.cloud.cloudant.v1.model.GetLocalDocumentOptions;
+import com.ibm.cloud.cloudant.v1.model.PostAllDocsOptions;
+import com.ibm.cloud.cloudant.v1.model.PostBulkDocsOptions;
+import com.ibm.cloud.cloudant.v1.model.PutDatabaseOptions;
+import com.ibm.cloud.cloudant.v1.model.PutLocalDocumentOptions;
+import com.ibm.cloud.sdk.core.service.exception.NotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+/**
+ * Copies all documents of a not partitioned database into the partitioned database of the application.
+ * Every advisory gets its own partition, that also holds its versions, comments, answers and audit trails.
+ * Advisory x gets the id x:advisory, a document y that belongs to advisory x gets the id x:y,
+ * the references between the documents are changed accordingly.
+ * Documents that already exist in the target database are skipped, so an interrupted migration can be started again.
+ * A completed migration is recorded in a local document of the target database and not repeated.
+ */
+@Service
+public class PartitionedDatabaseMigration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedDatabaseMigration.class);
+    static final String MIGRATION_MARKER_ID = "csaf-partition-migration";
+    static final String UNASSIGNED_PARTITION = "unassigned";
+
+    @Value("${csaf.couchdb.dbname}")
+    private String dbName;
+
+    @Value("${csaf.couchdb.partitioned}")
+    private boolean partitioned;
+
+    @Value("${csaf.couchdb.migration.sourceDbname}")
+    private String sourceDbName;
+
+    @Value("${csaf.couchdb.migration.batchSize}")
+    private int batchSize;
+
+    @Autowired
+    @Lazy
+    private Cloudant client;
+
+    /**
+     * Migrate the documents of csaf.couchdb.migration.sourceDbname, if it is set and not yet migrated.
+     * The partitioned database is created, if it does not exist.
+     *
+     * @throws IllegalStateException the target database is not partitioned or a document could not be migrated
+     */
+    public void migrateIfConfigured() {
+
+        if (sourceDbName == null || sourceDbName.isBlank()) {
+            return;
+        }
+        if (!partitioned) {
+            LOG.warn("csaf.couchdb.migration.sourceDbname is ignored, csaf.couchdb.partitioned is not set");
+            return;
+        }
+
+        createPartitionedDatabase();
+        if (isMigrated()) {
+            LOG.info("Database {} is already migrated to {}", sourceDbName, dbName);
+            return;
+        }
+        try {
+            Map<String, String> commentAdvisories = new HashMap<>();
+            forEachSourceBatch(docs -> docs.stream()
+                    .filter(doc -> ObjectType.Comment.name().equals(doc.path(CouchDbField.TYPE_FIELD.getDbName()).asText()))
+                    .forEach(doc -> commentAdvisories.put(CouchDbField.ID_FIELD.stringVal(doc),
+                            doc.path(CommentField.ADVISORY_ID.getDbName()).asText())));
+
+            long[] migratedCount = {0};
+            forEachSourceBatch(docs -> migratedCount[0] += writeBatch(docs, commentAdvisories));
+            writeMigrationMarker(migratedCount[0]);
+            LOG.info("Migrated {} documents from {} to partitioned database {}", migratedCount[0], sourceDbName, dbName);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Migration of " + sourceDbName + " to partitioned database failed", ex);
+        }
+    }
+
+    /**
+     * Convert a document of the not partitioned database to a document of the partitioned database
+     *
+     * @param doc               the document to convert
+     * @param commentAdvisories advisory id of every comment id in the source database
+     * @return the converted document with new id and references and without revision
+     */
+    static ObjectNode toPartitionedDocument(JsonNode doc, Map<String, String> commentAdvisories) {
+
+        ObjectNode converted = (ObjectNode) doc.deepCopy();
+        converted.remove(CouchDbField.REVISION_FIELD.getDbName());
+        String id = CouchDbField.ID_FIELD.stringVal(doc);
+        String type = doc.path(CouchDbField.TYPE_FIELD.getDbName()).asText();
+        ObjectType objectType = Arrays.stream(ObjectType.values())
+                .filter(value -> value.name().equals(type))
+                .findFirst()
+                .orElse(null);
+
+        String newId;
+        if (objectType == null) {
+            newId = UNASSIGNED_PARTITION + PARTITION_SEPARATOR + id;
+        } else {
+            newId = switch (objectType) {
+                case Advisory -> advisoryId(id);
+                case AdvisoryVersion -> partitionedId(doc.path(AdvisoryField.ADVISORY_REFERENCE.getDbName()).asText(), id);
+                case Comment, AuditTrailDocument, AuditTrailWorkflow ->
+                        partitionedId(doc.path(CommentField.ADVISORY_ID.getDbName()).asText(), id);
+                case CommentAuditTrail -> {
+                    String commentId = doc.path(CommentAuditTrailField.COMMENT_ID.getDbName()).asText();
+                    yield partitionedId(commentAdvisories.getOrDefault(commentId, ""), id);
+                }
+                case Counter -> COUNTER_PARTITION + PARTITION_SEPARATOR + id;
+            };
+        }
+        converted.put(CouchDbField.ID_FIELD.getDbName(), newId);
+
+        replaceReference(converted, CommentField.ADVISORY_ID, PartitionedDatabaseMigration::advisoryId);
+        replaceReference(converted, AdvisoryField.ADVISORY_REFERENCE, PartitionedDatabaseMigration::advisoryId);
+        replaceReference(converted, CommentAuditTrailField.COMMENT_ID, commentId -> commentId(commentId, commentAdvisories));
+        replaceReference(converted, CommentField.ANSWER_TO, commentId -> commentId(commentId, commentAdvisories));
+        return converted;
+    }
+
+    private static String advisoryId(String oldAdvisoryId) {
+        return oldAdvisoryId + PARTITION_SEPARATOR + ADVISORY_DOCUMENT_KEY;
+    }
+
+    private static String commentId(String oldCommentId, Map<String, String> commentAdvisories) {
+        return partitionedId(commentAdvisories.getOrDefault(oldCommentId, ""), oldCommentId);
+    }
+
+    private static String partitionedId(String partitionKey, String oldId) {
+        return (partitionKey.isEmpty() ? UNASSIGNED_PARTITION : partitionKey) + PARTITION_SEPARATOR + oldId;
+    }
+
+    private static void replaceReference(ObjectNode doc, DbField field, UnaryOperator<String> newReference) {
+
+        JsonNode reference = doc.get(field.getDbName());
+        if (reference != null && reference.isTextual()) {
+            doc.put(field.getDbName(), newReference.apply(reference.asText()));
+        }
+    }
+
+    private void createPartitionedDatabase() {
+
+        try {
+            DatabaseInformation dbInformation = client
+                    .getDatabaseInformation(new GetDatabaseInformationOptions.Builder(dbName).build())
+                    .execute()
+                    .getResult();
+            if (dbInformation.getProps() == null || !Boolean.TRUE.equals(dbInformation.getProps().isPartitioned())) {
+                throw new IllegalStateException("Database " + dbName + " exists but is not partitioned");
+            }
+        } catch (NotFoundException nfEx) {
+            client.putDatabase(new PutDatabaseOptions.Builder(dbName).partitioned(Boolean.TRUE).build()).execute();
+            LOG.info("Created partitioned database {}", dbName);
+        }
+    }
+
+    private boolean isMigrated() {
+
+        try {
+            client.getLocalDocument(new GetLocalDocumentOptions.Builder(dbName, MIGRATION_MARKER_ID).build()).execute();
+            return true;
+        } catch (NotFoundException nfEx) {
+            return false;
+        }
+    }
+
+    private void writeMigrationMarker(long migratedCount) {
+
+        ObjectNode marker = new ObjectMapper().createObjectNode()
+                .put("source", sourceDbName)
+                .put("documents", migratedCount)
+                .put("migratedAt", Instant.now().toString());
+        client.putLocalDocument(new PutLocalDocumentOptions.Builder(dbName, MIGRATION_MARKER_ID)
+                        .contentType("application/json")
+                        .body(new ByteArrayInputStream(marker.toString().getBytes(StandardCharsets.UTF_8)))
+                        .build())
+                .execute();
+    }
+
+    /**
+     * Read all documents of the source database in batches of csaf.couchdb.migration.batchSize, design documents are skipped
+     */
+    private void forEachSourceBatch(BatchConsumer consumer) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        String lastId = null;
+        int rowCount;
+        do {
+            PostAllDocsOptions.Builder allDocsOptions = new PostAllDocsOptions.Builder(sourceDbName)
+                    .includeDocs(Boolean.TRUE)
+                    .limit(batchSize);
+            if (lastId != null) {
+                allDocsOptions.startKey(lastId).skip(1);
+            }
+            JsonNode rows;
+            try (InputStream allDocsStream = client.postAllDocsAsStream(allDocsOptions.build()).execute().getResult()) {
+                rows = mapper.readTree(allDocsStream).get("rows");
+            }
+            rowCount = rows.size();
+            List<JsonNode> docs = new ArrayList<>(rowCount);
+            for (JsonNode row : rows) {
+                lastId = row.get("id").asText();
+                if (!lastId.startsWith("_design/") && row.hasNonNull("doc")) {
+                    docs.add(row.get("doc"));
+                }
+            }
+            consumer.accept(docs);
+        } while (rowCount == batchSize);
+    }
+
+    private long writeBatch(List<JsonNode> docs, Map<String, String> commentAdvisories) {
+
+        if (docs.isEmpty()) {
+            return 0;
+        }
+        ObjectNode bulkRequest = new ObjectMapper().createObjectNode();
+        ArrayNode bulkDocs = bulkRequest.putArray("docs");
+        docs.forEach(doc -> bulkDocs.add(toPartitionedDocument(doc, commentAdvisories)));
+
+        List<DocumentResult> results = client.postBulkDocs(new PostBulkDocsOptions.Builder()
+                        .db(dbName)
+                        .body(new ByteArrayInputStream(bulkRequest.toString().getBytes(StandardCharsets.UTF_8)))
+                        .build())
+                .execute()
+                .getResult();
+        long written = 0;
+        for (DocumentResult result : results) {
+            if (Boolean.TRUE.equals(result.isOk())) {
+                written++;
+            } else if (!"conflict".equals(result.getError())) {
+                // a conflict is a document that was migrated by an interrupted migration
+                throw new IllegalStateException("Document " + result.getId() + " could not be migrated: "
+                                                + result.getError() + " " + result.getReason());
+            }
+        }
+        return written;
+    }
+
+    @FunctionalInterface
+    private interface BatchConsumer {
+        void accept(List<JsonNode> docs) throws IOException;
+    }
+}
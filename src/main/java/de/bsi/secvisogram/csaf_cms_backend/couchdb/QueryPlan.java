@@ -0,0 +1,73 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.Expression;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of the {@link QueryPlanner}: the normalized expression, the selector sent to CouchDB,
+ * the index to answer it from and the steps the planner applied
+ */
+public class QueryPlan {
+
+    private final Expression expression;
+    private final Map<String, Object> selector;
+    private final CouchDbIndex index;
+    private final List<String> steps;
+
+    public QueryPlan(Expression expression, Map<String, Object> selector, CouchDbIndex index, List<String> steps) {
+        this.expression = expression;
+        this.selector = selector;
+        this.index = index;
+        this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+    }
+
+    /**
+     * Get the expression after flattening, removing duplicates and ordering by selectivity
+     *
+     * @return the normalized expression
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Get the Cloudant selector of the normalized expression
+     *
+     * @return the selector
+     */
+    public Map<String, Object> getSelector() {
+        return selector;
+    }
+
+    /**
+     * Get the index that can answer the selector
+     *
+     * @return the index for the use_index parameter
+     */
+    public CouchDbIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Get a description of every rewrite and decision of the planner
+     *
+     * @return the steps in the order they were applied
+     */
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Combine the selector of this plan with a condition that is not part of the expression
+     *
+     * @param condition the additional condition, it has to be on fields the index was chosen for
+     * @return the plan with both conditions in an $and
+     */
+    public QueryPlan and(Map<String, Object> condition) {
+
+        return new QueryPlan(expression, Map.of("$and", List.of(condition, selector)), index, steps);
+    }
+}
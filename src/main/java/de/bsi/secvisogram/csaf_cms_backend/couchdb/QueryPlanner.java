@@ -0,0 +1,207 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.*;
+import java.util.*;
+
+/**
+ * Plans the CouchDB query of a filter expression before it is converted to a Cloudant selector.
+ * The planner flattens nested AND expressions, removes duplicate predicates and orders the predicates
+ * by their selectivity, so CouchDB evaluates the cheap and selective conditions first.
+ * Range conditions on the same field are merged into one field condition and a StartsWith is rewritten
+ * to a $gte/$lt range. Then the index is chosen that covers most of the predicates that can be answered
+ * from a JSON index: equal and range conditions on fields that are not inside an array.
+ * The planner does not change after its creation and can be shared between threads.
+ */
+public class QueryPlanner {
+
+    /**
+     * Operators from the most to the least selective
+     */
+    private static final List<TypeOfOperator> SELECTIVITY_ORDER = List.of(
+            TypeOfOperator.Equal,
+            TypeOfOperator.StartsWith,
+            TypeOfOperator.GreaterOrEqual,
+            TypeOfOperator.Greater,
+            TypeOfOperator.LessOrEqual,
+            TypeOfOperator.Less,
+            TypeOfOperator.NotEqual,
+            TypeOfOperator.ContainsIgnoreCase
+    );
+    private static final Set<TypeOfOperator> INDEXABLE_OPERATORS = EnumSet.of(
+            TypeOfOperator.Equal,
+            TypeOfOperator.StartsWith,
+            TypeOfOperator.GreaterOrEqual,
+            TypeOfOperator.Greater,
+            TypeOfOperator.LessOrEqual,
+            TypeOfOperator.Less
+    );
+
+    private final CouchDBFilterCreator filterCreator;
+    private final List<CouchDbIndex> candidateIndexes;
+
+    /**
+     * @param candidateIndexes    the indexes the planner may choose from, on equal coverage the first one is chosen
+     * @param arrayFieldSelectors Selectors that mark an array field in the JSON structure
+     */
+    public QueryPlanner(List<CouchDbIndex> candidateIndexes, String[]... arrayFieldSelectors) {
+
+        this.filterCreator = new CouchDBFilterCreator(Arrays.asList(arrayFieldSelectors));
+        this.candidateIndexes = List.copyOf(candidateIndexes);
+    }
+
+    /**
+     * Plan the query of the given expression
+     *
+     * @param expr              the expression to plan
+     * @param constrainedFields fields that are restricted by conditions outside the expression,
+     *                          they are considered when choosing the index
+     * @return the plan with the selector and the chosen index
+     */
+    public QueryPlan plan(Expression expr, Set<String> constrainedFields) {
+
+        List<String> steps = new ArrayList<>();
+
+        List<OperatorExpression> predicates = new ArrayList<>();
+        if (flatten(expr, predicates, 0)) {
+            steps.add("Flattened nested AND expressions");
+        }
+
+        Map<String, OperatorExpression> distinctPredicates = new LinkedHashMap<>();
+        for (OperatorExpression predicate : predicates) {
+            if (distinctPredicates.putIfAbsent(predicateKey(predicate), predicate) != null) {
+                steps.add("Removed duplicate predicate " + describe(predicate));
+            }
+        }
+
+        List<OperatorExpression> ordered = new ArrayList<>(distinctPredicates.values());
+        ordered.sort(Comparator.comparingInt(predicate -> SELECTIVITY_ORDER.indexOf(predicate.getOperatorType())));
+        if (!ordered.equals(new ArrayList<>(distinctPredicates.values()))) {
+            steps.add("Ordered predicates by selectivity");
+        }
+
+        Set<String> indexedFields = new HashSet<>(constrainedFields);
+        List<FieldCondition> conditions = new ArrayList<>();
+        Map<String, FieldCondition> rangeConditions = new HashMap<>();
+        for (OperatorExpression predicate : ordered) {
+            String path = String.join(".", predicate.getSelector());
+            Map<String, Object> condition = this.filterCreator.createOperatorCondition(predicate);
+            boolean indexable = INDEXABLE_OPERATORS.contains(predicate.getOperatorType())
+                    && !this.filterCreator.passesArrayField(predicate.getSelector());
+            if (predicate.getOperatorType() == TypeOfOperator.StartsWith) {
+                steps.add("Rewrote StartsWith on " + path + " into the range $gte/$lt");
+            }
+            if (indexable) {
+                indexedFields.add(path);
+                FieldCondition existing = rangeConditions.get(path);
+                if (existing != null && Collections.disjoint(existing.condition.keySet(), condition.keySet())) {
+                    existing.condition.putAll(condition);
+                    steps.add("Merged range predicates on " + path);
+                    continue;
+                }
+            }
+            FieldCondition fieldCondition = new FieldCondition(predicate.getSelector(), new LinkedHashMap<>(condition));
+            conditions.add(fieldCondition);
+            if (indexable && predicate.getOperatorType() != TypeOfOperator.Equal) {
+                rangeConditions.putIfAbsent(path, fieldCondition);
+            }
+        }
+
+        CouchDbIndex index = chooseIndex(indexedFields);
+        if (index != null) {
+            steps.add("Chose index " + index.getIndexName() + " on " + index.getFieldNames());
+        } else {
+            steps.add("No index covers the predicates, CouchDB chooses the index");
+        }
+
+        // the selector is immutable, so plans can be cached and shared between requests
+        List<Object> selectors = conditions.stream()
+                .map(condition -> (Object) this.filterCreator.createSelectorExpression(condition.selector,
+                        Collections.unmodifiableMap(condition.condition)))
+                .toList();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> selector = selectors.size() == 1
+                ? (Map<String, Object>) selectors.get(0)
+                : Map.of("$and", selectors);
+
+        Expression normalized = ordered.size() == 1
+                ? ordered.get(0)
+                : new AndExpression(ordered.toArray(new Expression[0]));
+        return new QueryPlan(normalized, selector, index, steps);
+    }
+
+    /**
+     * Choose the index with most fields that are all restricted by the query.
+     * Every document has an _id, so it is not required in the query.
+     *
+     * @param indexedFields the fields restricted by indexable conditions
+     * @return the chosen index, null if no candidate covers the query
+     */
+    private CouchDbIndex chooseIndex(Set<String> indexedFields) {
+
+        CouchDbIndex chosen = null;
+        long chosenFieldCount = -1;
+        for (CouchDbIndex candidate : this.candidateIndexes) {
+            List<String> requiredFields = candidate.getFieldNames().stream()
+                    .filter(field -> !CouchDbField.ID_FIELD.getDbName().equals(field))
+                    .toList();
+            if (indexedFields.containsAll(requiredFields) && requiredFields.size() > chosenFieldCount) {
+                chosen = candidate;
+                chosenFieldCount = requiredFields.size();
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Collect all operator expressions of the expression tree
+     *
+     * @param expr       the expression to collect from
+     * @param predicates the collected expressions
+     * @param depth      depth of the expression in the tree
+     * @return true - the tree contains nested AND expressions
+     */
+    private static boolean flatten(Expression expr, List<OperatorExpression> predicates, int depth) {
+
+        return expr.handleExpr(new ExpressionHandler<>() {
+            @Override
+            public Boolean and(AndExpression andExpr) {
+                boolean nested = depth > 0;
+                for (Expression child : andExpr.getExpressions()) {
+                    nested |= flatten(child, predicates, depth + 1);
+                }
+                return nested;
+            }
+
+            @Override
+            public Boolean operator(OperatorExpression opExpr) {
+                predicates.add(opExpr);
+                return false;
+            }
+        });
+    }
+
+    private static String predicateKey(OperatorExpression predicate) {
+
+        return String.join(".", predicate.getSelector()) + " " + predicate.getOperatorType()
+               + " " + predicate.getValueType() + " " + predicate.getValue();
+    }
+
+    private static String describe(OperatorExpression predicate) {
+
+        return String.join(".", predicate.getSelector()) + " " + predicate.getOperatorType() + " " + predicate.getValue();
+    }
+
+    /**
+     * Condition of the selector on one field, range conditions of the same field are merged into it
+     */
+    private static class FieldCondition {
+
+        private final String[] selector;
+        private final Map<String, Object> condition;
+
+        FieldCondition(String[] selector, Map<String, Object> condition) {
+            this.selector = selector;
+            this.condition = condition;
+        }
+    }
+}
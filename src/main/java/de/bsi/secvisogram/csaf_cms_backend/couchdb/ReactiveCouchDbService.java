@@ -0,0 +1,109 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService.partitionKey;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link CouchDbService} for the read path.
+ * The requests are sent with a {@link WebClient}, so no thread waits for the answer of the database.
+ */
+@Service
+public class ReactiveCouchDbService {
+
+    @Value("${csaf.couchdb.dbname}")
+    private String dbName;
+
+    @Value("${csaf.couchdb.partitioned}")
+    private boolean partitioned;
+
+    @Autowired
+    @Lazy
+    @Qualifier("couchDbWebClient")
+    private WebClient webClient;
+
+    /**
+     * Read a document from the database
+     *
+     * @param id id of the document to read
+     * @return the requested document, fails with {@link IdNotFoundException} if the document was not found
+     */
+    public Mono<ObjectNode> readDocument(String id) {
+
+        return webClient.get()
+                .uri("/{db}/{id}", this.dbName, id)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .onStatus(status -> status.value() == HttpStatus.NOT_FOUND.value(),
+                        response -> Mono.error(new IdNotFoundException("No element with such an ID")))
+                .bodyToMono(ObjectNode.class);
+    }
+
+    /**
+     * Read the information of the documents matching the selector
+     *
+     * @param selector the selector to search for
+     * @param fields   the fields of information to select
+     * @param index    the index CouchDB should use to answer the query, null to let CouchDB choose
+     * @return the matching documents, they are emitted while the response is received
+     */
+    public Flux<JsonNode> findDocuments(Map<String, Object> selector, Collection<DbField> fields, CouchDbIndex index) {
+
+        return find(webClient.post().uri("/{db}/_find", this.dbName), selector, fields, index);
+    }
+
+    /**
+     * Read the information of the documents matching the selector that belong to the same advisory
+     * as the related document. In a partitioned database only the partition of the advisory is queried.
+     *
+     * @param relatedId id of the advisory or comment the documents belong to
+     * @param selector  the selector to search for, it has to restrict the result to the related documents
+     * @param fields    the fields of information to select
+     * @param index     the index CouchDB should use to answer the query, null to let CouchDB choose
+     * @return the matching documents
+     * @see CouchDbService#findRelatedDocumentsAsStream(String, Map, Collection, CouchDbIndex)
+     */
+    public Flux<JsonNode> findRelatedDocuments(String relatedId, Map<String, Object> selector, Collection<DbField> fields,
+                                               CouchDbIndex index) {
+
+        if (!partitioned) {
+            return findDocuments(selector, fields, index);
+        }
+        return find(webClient.post().uri("/{db}/_partition/{partition}/_find", this.dbName, partitionKey(relatedId)),
+                selector, fields, index);
+    }
+
+    private Flux<JsonNode> find(WebClient.RequestBodySpec findRequest, Map<String, Object> selector,
+                                Collection<DbField> fields, CouchDbIndex index) {
+
+        Map<String, Object> findBody = new HashMap<>();
+        findBody.put("selector", selector);
+        findBody.put("fields", fields.stream().map(DbField::getDbName).collect(Collectors.toList()));
+        if (index != null) {
+            findBody.put("use_index", index.getUseIndex());
+        }
+        return findRequest
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(findBody)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .transform(FindResponseDecoder::decodeDocs);
+    }
+}
@@ -0,0 +1,55 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Response of a call of an {@link CouchDbUpdateHandler}
+ */
+public class UpdateHandlerResult {
+
+    private final int statusCode;
+    private final String newRevision;
+    private final JsonNode body;
+
+    public UpdateHandlerResult(int statusCode, String newRevision, JsonNode body) {
+        this.statusCode = statusCode;
+        this.newRevision = newRevision;
+        this.body = body;
+    }
+
+    /**
+     * Get the HTTP status the update handler answered with
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Check whether the handler changed the document
+     *
+     * @return true - the document was written
+     */
+    public boolean isOk() {
+        return statusCode >= 200 && statusCode < 300;
+    }
+
+    /**
+     * Get the revision of the changed document
+     *
+     * @return the new revision, null if the document was not changed
+     */
+    public String getNewRevision() {
+        return newRevision;
+    }
+
+    /**
+     * Get the JSON the update handler answered with
+     *
+     * @return the response body, an empty object node if the handler answered without JSON
+     */
+    public JsonNode getBody() {
+        return body;
+    }
+}
@@ -13,5 +13,11 @@ public enum CsafExceptionKey {
     ErrorAccessingValidationServer,
     SummaryInHistoryEmpty,
     ErrorCreatingTrackingIdCounter,
-    DuplicateImport;
+    DuplicateImport,
+    InvalidPageRequest,
+    ErrorWritingDocuments,
+    SearchIndexNotReady,
+    ExportJobNotFound,
+    ExportJobNotFinished,
+    ExportQueueFull;
 }
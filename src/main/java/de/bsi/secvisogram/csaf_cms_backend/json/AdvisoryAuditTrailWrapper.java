@@ -15,6 +15,11 @@ public class AdvisoryAuditTrailWrapper extends AuditTrailWrapper {
         return this.getAuditTrailNode().get(AdvisoryAuditTrailField.ADVISORY_ID.getDbName()).asText();
     }
 
+    @Override
+    public String getRelatedId() {
+        return getAdvisoryId();
+    }
+
     public String getDocVersion() {
 
         return this.getAuditTrailNode().get(AdvisoryAuditTrailField.DOC_VERSION.getDbName()).asText();
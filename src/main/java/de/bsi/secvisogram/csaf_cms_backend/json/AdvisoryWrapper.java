@@ -8,6 +8,9 @@ import static java.time.LocalDateTime.from;
 import static java.time.format.DateTimeFormatter.ISO_DATE_TIME;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -30,10 +33,12 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -61,7 +66,19 @@ public class AdvisoryWrapper {
     public static AdvisoryWrapper createFromCouchDb(InputStream advisoryStream) throws IOException, CsafException {
 
         final ObjectMapper jacksonMapper = new ObjectMapper();
-        AdvisoryWrapper advisoryFromDb = new AdvisoryWrapper(jacksonMapper.readValue(advisoryStream, ObjectNode.class));
+        return createFromCouchDb(jacksonMapper.readValue(advisoryStream, ObjectNode.class));
+    }
+
+    /**
+     * Convert a document read from the couch db to an AdvisoryWrapper
+     *
+     * @param advisoryNode the document
+     * @return the wrapper
+     * @throws CsafException the document is not an advisory
+     */
+    public static AdvisoryWrapper createFromCouchDb(ObjectNode advisoryNode) throws CsafException {
+
+        AdvisoryWrapper advisoryFromDb = new AdvisoryWrapper(advisoryNode);
         if (advisoryFromDb.getType() != ObjectType.Advisory) {
             throw new CsafException("Object for id is not of type Advisory", InvalidObjectType, BAD_REQUEST);
         }
@@ -782,6 +799,93 @@ public class AdvisoryWrapper {
         advisorySetter.accept(response, value);
     }
 
+    /**
+     * Read the documents of a couchDB _all_docs response with include_docs with a streaming parser.
+     * Only the tree of one row is held in memory, rows of missing or deleted documents are skipped.
+     *
+     * @param couchDbResult    the _all_docs response of couchDB
+     * @param documentConsumer receives each document when it is read
+     * @throws IOException error reading the response
+     */
+    public static void readAllDocsDocuments(InputStream couchDbResult, Consumer<ObjectNode> documentConsumer) throws IOException {
+
+        try (JsonParser parser = new ObjectMapper().createParser(couchDbResult)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid couchDB response, object expected");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String responseField = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("rows".equals(responseField) && valueToken == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        JsonNode row = parser.readValueAsTree();
+                        if (row.get("doc") instanceof ObjectNode document) {
+                            documentConsumer.accept(document);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the docs of a couchDB _find response with a streaming parser and convert each of them to advisory information.
+     * The info is created directly from the parser tokens, so neither the whole response
+     * nor the tree of a single document is held in memory.
+     *
+     * @param couchDbResult the _find response of couchDB
+     * @param infoFields    the fields to read and the setters to store them in the info
+     * @param infoConsumer  receives each advisory information when it is read
+     * @throws IOException error reading the response
+     */
+    public static void readAdvisoryInfos(InputStream couchDbResult,
+                                         Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields,
+                                         Consumer<AdvisoryInformationResponse> infoConsumer) throws IOException {
+
+        Map<String, DbField> fieldsByPath = new HashMap<>();
+        infoFields.keySet().forEach(field -> fieldsByPath.put(String.join("/", field.getFieldPath()), field));
+
+        try (JsonParser parser = new JsonFactory().createParser(couchDbResult)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid couchDB response, object expected");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String responseField = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if ("docs".equals(responseField) && valueToken == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Map<DbField, String> values = new HashMap<>();
+                        readDocumentValues(parser, "", fieldsByPath, values);
+                        AdvisoryInformationResponse response = new AdvisoryInformationResponse(values.get(ID_FIELD));
+                        // missing values are set as empty text, like JsonNode.asText() of a missing node
+                        infoFields.forEach((field, setter) -> setter.accept(response, values.getOrDefault(field, "")));
+                        infoConsumer.accept(response);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static void readDocumentValues(JsonParser parser, String pathPrefix, Map<String, DbField> fieldsByPath,
+                                           Map<DbField, String> values) throws IOException {
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String path = pathPrefix + parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if (valueToken == JsonToken.START_OBJECT) {
+                readDocumentValues(parser, path + "/", fieldsByPath, values);
+            } else if (valueToken == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            } else if (fieldsByPath.containsKey(path)) {
+                values.put(fieldsByPath.get(path), parser.getText());
+            }
+        }
+    }
+
     /**
      * This utility method checks if the current_release_date of the advisory is set and if it lies in the past
      * This is helpful for checking if the current_release_date must be updated or not
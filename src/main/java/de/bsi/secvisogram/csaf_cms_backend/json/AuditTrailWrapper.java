@@ -27,6 +27,13 @@ public abstract class AuditTrailWrapper {
         return this.auditTrailNode.toString();
     }
 
+    /**
+     * Get the id of the advisory or comment the audit trail belongs to
+     *
+     * @return id of the changed object
+     */
+    public abstract String getRelatedId();
+
     public String getType() {
 
         return this.auditTrailNode.get(CouchDbField.TYPE_FIELD.getDbName()).asText();
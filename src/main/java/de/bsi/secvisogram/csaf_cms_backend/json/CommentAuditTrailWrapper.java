@@ -17,6 +17,11 @@ public class CommentAuditTrailWrapper extends AuditTrailWrapper {
         return this.getAuditTrailNode().get(CommentAuditTrailField.COMMENT_ID.getDbName()).asText();
     }
 
+    @Override
+    public String getRelatedId() {
+        return getCommentId();
+    }
+
     public CommentAuditTrailWrapper setCommentId(String newValue) {
 
         this.getAuditTrailNode().put(CommentAuditTrailField.COMMENT_ID.getDbName(), newValue);
@@ -42,11 +47,23 @@ public class CommentAuditTrailWrapper extends AuditTrailWrapper {
      */
     public static CommentAuditTrailWrapper createNew(CommentWrapper comment) {
 
+        return createNew(comment.getCommentId(), comment.getText());
+    }
+
+    /**
+     * Create a new comment audit trail for the comment with the given id and text
+     *
+     * @param commentId   the id of the comment
+     * @param commentText the text of the comment
+     * @return the new wrapper
+     */
+    public static CommentAuditTrailWrapper createNew(String commentId, String commentText) {
+
         ObjectNode rootNode = new ObjectMapper().createObjectNode();
 
         CommentAuditTrailWrapper wrapper = new CommentAuditTrailWrapper(rootNode)
-                .setCommentId(comment.getCommentId())
-                .setCommentText(comment.getText());
+                .setCommentId(commentId)
+                .setCommentText(commentText);
         wrapper.setType(ObjectType.CommentAuditTrail)
                 .setChangeType(ChangeType.Create)
                 .setCreatedAtToNow();
@@ -38,7 +38,19 @@ public class CommentWrapper {
     public static CommentWrapper createFromCouchDb(InputStream commentStream) throws IOException, CsafException {
 
         final ObjectMapper jacksonMapper = new ObjectMapper();
-        CommentWrapper wrapperFomDb = new CommentWrapper(jacksonMapper.readValue(commentStream, ObjectNode.class));
+        return createFromCouchDb(jacksonMapper.readValue(commentStream, ObjectNode.class));
+    }
+
+    /**
+     * Convert a document read from the couch db to a CommentWrapper
+     *
+     * @param commentNode the document
+     * @return the wrapper
+     * @throws CsafException the document is not a comment
+     */
+    public static CommentWrapper createFromCouchDb(ObjectNode commentNode) throws CsafException {
+
+        CommentWrapper wrapperFomDb = new CommentWrapper(commentNode);
         if (wrapperFomDb.getType() != ObjectType.Comment) {
             throw new CsafException("Object for id is not of type Comment", InvalidObjectType, BAD_REQUEST);
         }
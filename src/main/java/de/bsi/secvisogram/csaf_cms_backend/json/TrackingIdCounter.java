@@ -54,6 +54,10 @@ public class TrackingIdCounter {
         this.count = this.count + 1;
     }
 
+    public void increaseCount(long amount) {
+        this.count = this.count + amount;
+    }
+
     public String getType() {
         return type;
     }
@@ -0,0 +1,8 @@
+package de.bsi.secvisogram.csaf_cms_backend.model;
+
+public enum ExportJobStatus {
+    Queued,
+    Running,
+    Finished,
+    Failed
+}
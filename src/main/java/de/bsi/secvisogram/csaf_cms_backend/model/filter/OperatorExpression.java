@@ -10,6 +10,11 @@ public class OperatorExpression implements Expression {
         return new OperatorExpression(path, TypeOfOperator.ContainsIgnoreCase, value, TypeOfValue.Text);
     }
 
+    public static OperatorExpression startsWith(String value, String ... path) {
+
+        return new OperatorExpression(path, TypeOfOperator.StartsWith, value, TypeOfValue.Text);
+    }
+
     public static OperatorExpression equal(String value, String ... path) {
 
         return new OperatorExpression(path, TypeOfOperator.Equal, value, TypeOfValue.Text);
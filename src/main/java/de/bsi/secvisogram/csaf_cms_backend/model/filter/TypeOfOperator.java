@@ -7,5 +7,6 @@ public enum TypeOfOperator {
     GreaterOrEqual,
     Less,
     LessOrEqual,
-    ContainsIgnoreCase
+    ContainsIgnoreCase,
+    StartsWith
 }
@@ -0,0 +1,306 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import static de.bsi.secvisogram.csaf_cms_backend.mustache.JavascriptValues.getProperty;
+import static de.bsi.secvisogram.csaf_cms_backend.mustache.JavascriptValues.isTruthy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Java port of the preview in DocumentEntity.mjs, which extends the parsed advisory with the data for the template:
+ * the names of the referenced products and groups, the maximum base score and
+ * the notes, remediations and threats grouped by category. It also adds the lambdas used by the template.
+ * The advisory is changed in place.
+ */
+final class DocumentPreview {
+
+    private static final List<String> NOTE_CATEGORIES = List.of("summary", "details", "general", "description",
+            "other", "faq", "legal_disclaimer");
+    private static final List<String> REMEDIATION_CATEGORIES = List.of("vendor_fix", "mitigation", "workaround",
+            "none_available", "no_fix_planned");
+    private static final List<String> THREAT_CATEGORIES = List.of("exploit_status", "impact", "target_set");
+    private static final List<String> PRODUCT_STATUS = List.of("known_affected", "first_affected", "last_affected",
+            "known_not_affected", "recommended", "fixed", "first_fixed", "under_investigation");
+
+    private static final MustacheLambda REMOVE_TRAILING_COMMA = (text, render) -> {
+        String textWithTrailingComma = render.apply(text);
+        int lastIndex = textWithTrailingComma.lastIndexOf(',');
+        return lastIndex > 0 ? textWithTrailingComma.substring(0, lastIndex) : textWithTrailingComma;
+    };
+    private static final MustacheLambda UPPER_CASE = (text, render) -> {
+        String renderedText = render.apply(text);
+        return renderedText.isEmpty() ? renderedText
+                : renderedText.substring(0, 1).toUpperCase(Locale.ROOT) + renderedText.substring(1);
+    };
+    private static final MustacheLambda REPLACE_UNDERSCORES = (text, render) -> render.apply(text).replace('_', ' ');
+
+    /**
+     * Sorts remediations and threats by their date, the latest first. Dates that can not be compared are equal.
+     */
+    private static final Comparator<Object> BY_DATE_DESCENDING = (remediation1, remediation2) -> {
+        double difference = dateTime(remediation2) - dateTime(remediation1);
+        return difference > 0 ? 1 : (difference < 0 ? -1 : 0);
+    };
+
+    private DocumentPreview() {
+        // Utility class
+    }
+
+    /**
+     * Extend the advisory with the data required for the template
+     *
+     * @param advisory the parsed advisory
+     */
+    static void preview(Map<String, Object> advisory) {
+
+        List<Map<String, Object>> productIds = collectProductIds(advisory);
+        List<Map<String, Object>> groupIds = collectGroupIds(advisory);
+
+        if (advisory.get("document") instanceof Map<?, ?> document) {
+            Map<String, Object> documentMap = asObject(document);
+            documentMap.put("max_base_score", retrieveMaxBaseScore(advisory.get("vulnerabilities")));
+            addNotesPreviewAttributes(documentMap);
+        }
+
+        if (advisory.get("product_tree") instanceof Map<?, ?> productTree) {
+            for (Object productGroup : elements(productTree.get("product_groups"))) {
+                if (productGroup instanceof Map<?, ?> productGroupMap) {
+                    extendProductIds(asObject(productGroupMap), "product_ids", productIds);
+                }
+            }
+        }
+
+        for (Object vulnerability : elements(advisory.get("vulnerabilities"))) {
+            if (vulnerability instanceof Map<?, ?> vulnerabilityMap) {
+                Map<String, Object> vulnerabilityObject = asObject(vulnerabilityMap);
+                addProductStatusPreviewAttributes(vulnerabilityObject, productIds);
+                addCategories(vulnerabilityObject, "remediations", REMEDIATION_CATEGORIES, productIds, groupIds);
+                addCategories(vulnerabilityObject, "threats", THREAT_CATEGORIES, productIds, groupIds);
+                addNotesPreviewAttributes(vulnerabilityObject);
+            }
+        }
+
+        advisory.put("removeTrailingComma", REMOVE_TRAILING_COMMA);
+        advisory.put("upperCase", UPPER_CASE);
+        advisory.put("replaceUnderscores", REPLACE_UNDERSCORES);
+    }
+
+    /**
+     * Collect the ids and names of the full product names, the relationships and the branches
+     */
+    private static List<Map<String, Object>> collectProductIds(Map<String, Object> advisory) {
+
+        List<Map<String, Object>> entries = new ArrayList<>();
+        Object productTree = advisory.get("product_tree");
+        for (Object fullProductName : elements(getProperty(productTree, "full_product_names"))) {
+            addProductId(fullProductName, entries);
+        }
+        for (Object relationship : elements(getProperty(productTree, "relationships"))) {
+            Object fullProductName = getProperty(relationship, "full_product_name");
+            if (isTruthy(fullProductName)) {
+                addProductId(fullProductName, entries);
+            }
+        }
+        traverseBranches(getProperty(productTree, "branches"), entries);
+        return entries;
+    }
+
+    private static void traverseBranches(Object branches, List<Map<String, Object>> entries) {
+
+        for (Object branch : elements(branches)) {
+            Object fullProductName = getProperty(branch, "product");
+            if (isTruthy(fullProductName)) {
+                addProductId(fullProductName, entries);
+            }
+            traverseBranches(getProperty(branch, "branches"), entries);
+        }
+    }
+
+    private static void addProductId(Object fullProductName, List<Map<String, Object>> entries) {
+
+        Object productId = getProperty(fullProductName, "product_id");
+        if (isTruthy(productId)) {
+            entries.add(createEntry(productId, getProperty(fullProductName, "name")));
+        }
+    }
+
+    private static List<Map<String, Object>> collectGroupIds(Map<String, Object> advisory) {
+
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (Object productGroup : elements(getProperty(advisory.get("product_tree"), "product_groups"))) {
+            Object groupId = getProperty(productGroup, "group_id");
+            if (isTruthy(groupId)) {
+                entries.add(createEntry(groupId, getProperty(productGroup, "summary")));
+            }
+        }
+        return entries;
+    }
+
+    private static Map<String, Object> createEntry(Object id, Object name) {
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", id);
+        entry.put("name", name != null ? name : "");
+        return entry;
+    }
+
+    /**
+     * The maximum CVSS v3 base score of all vulnerabilities as string
+     */
+    private static String retrieveMaxBaseScore(Object vulnerabilities) {
+
+        if (!isTruthy(vulnerabilities)) {
+            return "0";
+        }
+        double maxBaseScore = 0;
+        for (Object vulnerability : elements(vulnerabilities)) {
+            for (Object score : elements(getProperty(vulnerability, "scores"))) {
+                double baseScore = JavascriptValues.toNumber(getProperty(getProperty(score, "cvss_v3"), "baseScore"));
+                if (maxBaseScore < baseScore) {
+                    maxBaseScore = baseScore;
+                }
+            }
+        }
+        return JavascriptValues.formatNumber(maxBaseScore);
+    }
+
+    /**
+     * Group the notes of the document or vulnerability by category
+     */
+    private static void addNotesPreviewAttributes(Map<String, Object> documentOrVulnerability) {
+
+        Map<String, List<Object>> notesByCategory = groupByCategory(documentOrVulnerability.get("notes"),
+                NOTE_CATEGORIES);
+        notesByCategory.forEach((category, notes) -> documentOrVulnerability.put("notes_" + category, notes));
+    }
+
+    /**
+     * Replace the product ids in the product status by the product with its name,
+     * or with its name, vector string and base score if the product has a score
+     */
+    private static void addProductStatusPreviewAttributes(Map<String, Object> vulnerability,
+                                                          List<Map<String, Object>> productIds) {
+
+        List<Map<String, Object>> extendedScoreIds = new ArrayList<>();
+        for (Object score : elements(vulnerability.get("scores"))) {
+            Object cvssV3 = getProperty(score, "cvss_v3");
+            for (Object productId : elements(getProperty(score, "products"))) {
+                if (isTruthy(productId)) {
+                    Map<String, Object> entry = createEntry(productId, findName(productIds, productId));
+                    Object vectorString = getProperty(cvssV3, "vectorString");
+                    Object baseScore = getProperty(cvssV3, "baseScore");
+                    entry.put("vectorString", vectorString != null ? vectorString : "");
+                    entry.put("baseScore", baseScore != null ? baseScore : "");
+                    extendedScoreIds.add(entry);
+                }
+            }
+        }
+
+        if (vulnerability.get("product_status") instanceof Map<?, ?> productStatus) {
+            Map<String, Object> productStatusMap = asObject(productStatus);
+            for (String status : PRODUCT_STATUS) {
+                List<Object> extendedProductStatus = new ArrayList<>();
+                for (Object ref : elements(productStatusMap.get(status))) {
+                    if (isTruthy(ref)) {
+                        extendedProductStatus.add(extendedScoreIds.stream()
+                                .filter(entry -> JavascriptValues.strictEquals(entry.get("id"), ref))
+                                .findFirst()
+                                .orElseGet(() -> createEntry(ref, findName(productIds, ref))));
+                    }
+                }
+                productStatusMap.put(status, extendedProductStatus);
+            }
+        }
+    }
+
+    /**
+     * Extend the product and group ids of the remediations or threats with their names,
+     * group them by category and sort the groups by date
+     */
+    private static void addCategories(Map<String, Object> vulnerability, String key, List<String> categories,
+                                      List<Map<String, Object>> productIds, List<Map<String, Object>> groupIds) {
+
+        for (Object remediationOrThreat : elements(vulnerability.get(key))) {
+            if (remediationOrThreat instanceof Map<?, ?> remediationOrThreatMap) {
+                Map<String, Object> remediationOrThreatObject = asObject(remediationOrThreatMap);
+                extendProductIds(remediationOrThreatObject, "product_ids", productIds);
+                extendProductIds(remediationOrThreatObject, "group_ids", groupIds);
+            }
+        }
+        Map<String, List<Object>> byCategory = groupByCategory(vulnerability.get(key), categories);
+        byCategory.forEach((category, entries) -> {
+            entries.sort(BY_DATE_DESCENDING);
+            vulnerability.put(key + "_" + category, entries);
+        });
+    }
+
+    /**
+     * Replace the ids in the list by an object with the id and its name
+     */
+    private static void extendProductIds(Map<String, Object> target, String key, List<Map<String, Object>> names) {
+
+        List<Object> extendedIds = new ArrayList<>();
+        for (Object id : elements(target.get(key))) {
+            if (isTruthy(id)) {
+                extendedIds.add(createEntry(id, findName(names, id)));
+            }
+        }
+        target.put(key, extendedIds);
+    }
+
+    private static Object findName(List<Map<String, Object>> entries, Object id) {
+
+        for (Map<String, Object> entry : entries) {
+            if (JavascriptValues.strictEquals(entry.get("id"), id)) {
+                return entry.get("name");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Group the elements by their category, unknown categories are grouped as unknown
+     *
+     * @return the groups of all categories in the given order followed by unknown
+     */
+    private static Map<String, List<Object>> groupByCategory(Object elements, List<String> categories) {
+
+        Map<String, List<Object>> byCategory = new LinkedHashMap<>();
+        for (String category : categories) {
+            byCategory.put(category, new ArrayList<>());
+        }
+        byCategory.put("unknown", new ArrayList<>());
+        for (Object element : elements(elements)) {
+            Object category = getProperty(element, "category");
+            List<Object> group = category instanceof String ? byCategory.get(category) : null;
+            (group != null ? group : byCategory.get("unknown")).add(element);
+        }
+        return byCategory;
+    }
+
+    /**
+     * The time of the date of a remediation or threat, NaN if it has no date
+     */
+    private static double dateTime(Object remediationOrThreat) {
+
+        if (remediationOrThreat instanceof Map<?, ?> map && map.containsKey("date")) {
+            return JavascriptValues.toTime(map.get("date"));
+        }
+        return Double.NaN;
+    }
+
+    private static List<?> elements(Object value) {
+
+        return value instanceof List<?> list ? list : List.of();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asObject(Map<?, ?> map) {
+
+        return (Map<String, Object>) map;
+    }
+}
@@ -0,0 +1,95 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+
+/**
+ * The template, partials, scripts and company logo shared by the HTML exporters
+ */
+final class ExportResources {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExportResources.class);
+
+    static final String TEMPLATE = "Template.html";
+    static final String SCRIPT = "Script.mjs";
+
+    private static final String PARTIALS_DIRECTORY = "partials/";
+    private static final List<String> PARTIALS = List.of("product_status_header", "product_status_row", "remediation",
+            "threat", "vulnerability_note", "document_note", "acknowledgment", "reference");
+
+    private ExportResources() {
+        // Utility class
+    }
+
+    static String read(@Nonnull final String name) throws IOException {
+
+        try (final InputStream resource = ExportResources.class.getResourceAsStream(name)) {
+            if (resource == null) {
+                throw new IOException("Missing export resource " + name);
+            }
+            return new String(resource.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Read the partials of the template, both exporters pass them to the rendering
+     *
+     * @return the templates of the partials by their name
+     * @throws IOException if a partial is missing
+     */
+    static Map<String, String> readPartials() throws IOException {
+
+        final Map<String, String> partials = new LinkedHashMap<>();
+        for (final String partial : PARTIALS) {
+            partials.put(partial, read(PARTIALS_DIRECTORY + partial + ".mustache"));
+        }
+        return partials;
+    }
+
+    /**
+     * Read and encode the company logo
+     *
+     * @param companyLogoPath the path of the logo, may be empty
+     * @return the media type and the base64 encoded data of the logo or null if no logo is configured
+     * @throws IOException if the logo can not be read
+     */
+    static Map<String, String> readLogo(final String companyLogoPath) throws IOException {
+
+        if (companyLogoPath == null || "".equals(companyLogoPath)) {
+            LOG.info("The company logo path was not set, export result will not contain a logo.");
+            return null;
+        }
+        final Path logoPath = Path.of(companyLogoPath);
+        final MediaType logoMediaType = determineMediaTypeOfLogo(logoPath);
+        final byte[] encoded = Base64.encodeBase64(Files.readAllBytes(logoPath));
+        final Map<String, String> logo = new LinkedHashMap<>();
+        logo.put("mediaType", logoMediaType.toString());
+        logo.put("data", new String(encoded, StandardCharsets.US_ASCII));
+        return logo;
+    }
+
+    static MediaType determineMediaTypeOfLogo(@Nonnull final Path path) {
+        final Path filename = path.getFileName();
+        if (filename != null) {
+            final String fileName = filename.toString().toLowerCase();
+            if (fileName.endsWith(".png")) {
+                return MediaType.IMAGE_PNG;
+            } else if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
+                return MediaType.IMAGE_JPEG;
+            }
+            throw new IllegalArgumentException("Unknown company logo format: " + fileName);
+        }
+        throw new IllegalArgumentException("Got empty path");
+    }
+}
@@ -0,0 +1,19 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import java.io.IOException;
+import javax.annotation.Nonnull;
+
+/**
+ * Renders advisories with Template.html, the implementation is selected by csaf.document.templates.renderer
+ */
+public interface HtmlExporter {
+
+    /**
+     * Create an HTML export from the provided advisory document (as JSON)
+     *
+     * @param advisoryJson the advisory that should be exported (in JSON format)
+     * @return the HTML document as a String
+     * @throws IOException on any error regarding disk write/read
+     */
+    String createHtml(@Nonnull String advisoryJson) throws IOException;
+}
@@ -0,0 +1,68 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Create Html String from a mustache template file and Json Input File without a JavaScript engine.
+ * Template.html and its partials are compiled once into token trees,
+ * the view is prepared by the Java port of DocumentEntity.mjs ({@link DocumentPreview})
+ * and rendered by the mustache.js compatible {@link MustacheRenderer}, so the result is the same
+ * as the one of the {@link JavascriptExporter}.
+ */
+@Service
+@ConditionalOnProperty(name = "csaf.document.templates.renderer", havingValue = "java")
+public class JavaHtmlExporter implements HtmlExporter {
+
+    private final ObjectMapper jacksonMapper = new ObjectMapper();
+
+    @Value("${csaf.document.templates.companyLogoPath}")
+    private String companyLogoPath;
+
+    private MustacheTemplate template;
+    private MustacheRenderer renderer;
+    private volatile Map<String, String> logo;
+    private volatile boolean logoRead;
+
+    @PostConstruct
+    void init() throws IOException {
+
+        this.template = MustacheTemplate.compile(ExportResources.read(ExportResources.TEMPLATE));
+        this.renderer = new MustacheRenderer(ExportResources.readPartials());
+    }
+
+    @Override
+    public String createHtml(@Nonnull final String advisoryJson) throws IOException {
+
+        final Object advisory = jacksonMapper.readValue(advisoryJson, Object.class);
+        if (!(advisory instanceof Map<?, ?>)) {
+            throw new IOException("The advisory is no JSON object");
+        }
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> view = (Map<String, Object>) advisory;
+        final Map<String, String> companyLogo = getLogo();
+        if (companyLogo != null) {
+            view.put("logo", companyLogo);
+        }
+        DocumentPreview.preview(view);
+        return this.renderer.render(this.template, view);
+    }
+
+    /**
+     * Read and encode the company logo on the first export, it does not change while the application is running
+     */
+    private Map<String, String> getLogo() throws IOException {
+
+        if (!this.logoRead) {
+            this.logo = ExportResources.readLogo(this.companyLogoPath);
+            this.logoRead = true;
+        }
+        return this.logo;
+    }
+}
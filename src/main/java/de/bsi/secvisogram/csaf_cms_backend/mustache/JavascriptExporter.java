@@ -1,108 +1,175 @@
 package de.bsi.secvisogram.csaf_cms_backend.mustache;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
-import org.apache.commons.codec.binary.Base64;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.Source;
 import org.graalvm.polyglot.Value;
 import org.graalvm.polyglot.io.IOAccess;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.http.MediaType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 /**
- * Create Html String from a mustache template file and Json Input File
+ * Create Html String from a mustache template file and Json Input File.
+ * The template and its partials are the same resources the {@link JavaHtmlExporter} renders.
+ * The scripts are parsed once in a shared engine and evaluated in a bounded pool of contexts,
+ * so an export reuses a context with the render function already resolved and the code already compiled.
+ * DocumentEntity.mjs, which is imported by Script.mjs, is served from memory by a {@link ResourceFileSystem}.
  */
 @Service
-public class JavascriptExporter {
+@ConditionalOnProperty(name = "csaf.document.templates.renderer", havingValue = "javascript", matchIfMissing = true)
+public class JavascriptExporter implements HtmlExporter {
 
-    private static final Logger LOG = LoggerFactory.getLogger(JavascriptExporter.class);
+    private static final String DOCUMENT_ENTITY_SCRIPT = "DocumentEntity.mjs";
+    private static final long CONTEXT_WAIT_MILLIS = 100;
 
     @org.springframework.beans.factory.annotation.Value("${csaf.document.templates.companyLogoPath}")
     private String companyLogoPath;
 
-    /**
-     * Create an HTML export from the provided advisory document (as JSON)
-     *
-     * @param advisoryJson the advisory that should be exported (in JSON format)
-     * @return the HTML document as a String
-     * @throws IOException on any error regarding disk write/read
-     */
-    public String createHtml(@Nonnull final String advisoryJson) throws IOException {
+    @org.springframework.beans.factory.annotation.Value("${csaf.document.templates.contextPoolSize}")
+    private int contextPoolSize;
 
-        // DocumentEntity.mjs is imported from Script.mjs
-        // It has to bbe available in the Context WorkingDirectory
-        final String documentEntityScript = "DocumentEntity.mjs";
-        final Path tempDir = Files.createTempDirectory("mustache");
-        final Path tempDocFile = tempDir.resolve(documentEntityScript);
+    private Engine engine;
+    private Source mustacheSource;
+    private Source scriptSource;
+    private String template;
+    private String partialsJson;
+    private ResourceFileSystem fileSystem;
+    private BlockingQueue<RenderContext> idleContexts;
+    private final AtomicInteger contextCount = new AtomicInteger();
+    private volatile String logoJson;
+    private volatile boolean logoRead;
 
-        try (final InputStream in = JavascriptExporter.class.getResourceAsStream(documentEntityScript)) {
-            Files.write(tempDocFile, in.readAllBytes());
-        }
-        final var jsContext = Context.newBuilder("js")
-                .allowExperimentalOptions(true)
-                .allowIO(IOAccess.ALL)
-                .option("js.esm-eval-returns-exports", "true")
-                .currentWorkingDirectory(tempDir)
+    @PostConstruct
+    void init() throws IOException {
+
+        this.engine = Engine.newBuilder().build();
+        this.mustacheSource = Source.newBuilder("js", ExportResources.read("mustache.min.js"), "mustache.js").build();
+        this.scriptSource = Source.newBuilder("js", ExportResources.read(ExportResources.SCRIPT), ExportResources.SCRIPT)
+                .mimeType("application/javascript+module")
                 .build();
+        this.template = ExportResources.read(ExportResources.TEMPLATE);
+        this.partialsJson = new ObjectMapper().writeValueAsString(ExportResources.readPartials());
+        this.fileSystem = new ResourceFileSystem(Map.of(DOCUMENT_ENTITY_SCRIPT,
+                ExportResources.read(DOCUMENT_ENTITY_SCRIPT).getBytes(StandardCharsets.UTF_8)));
+        this.idleContexts = new ArrayBlockingQueue<>(contextPoolSize);
+    }
 
-        try (final InputStream templateResource = JavascriptExporter.class.getResourceAsStream("Template.html");
-             final InputStream mustacheResource = JavascriptExporter.class.getResourceAsStream("mustache.min.js");
-             final InputStream scriptResource = JavascriptExporter.class.getResourceAsStream("Script.mjs")) {
-            final var template = new String(templateResource.readAllBytes(), StandardCharsets.UTF_8);
-            final var mustacheSource = Source.newBuilder("js", this.createResourceReader(mustacheResource), "mustache.js")
-                    .build();
-            jsContext.eval(mustacheSource);
-            final var scriptSource = Source.newBuilder("js", createResourceReader(scriptResource), "Script.mjs")
-                    .mimeType("application/javascript+module")
-                    .build();
-            final Value scriptResult = jsContext.eval(scriptSource);
-            final Value renderFunction = scriptResult.getMember("renderWithMustache");
-            final Object result = renderFunction.execute(template, advisoryJson, createLogoJson());
-            return result.toString();
+    @PreDestroy
+    void close() {
+
+        RenderContext renderContext;
+        while ((renderContext = idleContexts.poll()) != null) {
+            renderContext.context.close();
         }
+        this.engine.close(true);
     }
 
-    private Reader createResourceReader(@Nonnull final InputStream input) {
-        return new InputStreamReader(input, StandardCharsets.UTF_8);
+    @Override
+    public String createHtml(@Nonnull final String advisoryJson) throws IOException {
+
+        final String logo = getLogoJson();
+        final RenderContext renderContext = borrowContext();
+        boolean reusable = false;
+        try {
+            final String html = renderContext.renderFunction.execute(this.template, advisoryJson, logo, this.partialsJson).asString();
+            reusable = true;
+            return html;
+        } finally {
+            if (reusable) {
+                this.idleContexts.offer(renderContext);
+            } else {
+                // the state of the context is unknown after an error
+                renderContext.context.close();
+                this.contextCount.decrementAndGet();
+            }
+        }
     }
 
-    private String createLogoJson() throws IOException {
-        if (this.companyLogoPath == null || "".equals(this.companyLogoPath)) {
-            LOG.info("The company logo path was not set, export result will not contain a logo.");
-            return null;
+    /**
+     * Take an idle context from the pool, create a new one while the pool is not full
+     * or wait until another export returns its context
+     */
+    private RenderContext borrowContext() throws IOException {
+
+        try {
+            while (true) {
+                RenderContext renderContext = this.idleContexts.poll();
+                if (renderContext != null) {
+                    return renderContext;
+                }
+                if (this.contextCount.incrementAndGet() <= this.contextPoolSize) {
+                    return createContext();
+                }
+                this.contextCount.decrementAndGet();
+                renderContext = this.idleContexts.poll(CONTEXT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                if (renderContext != null) {
+                    return renderContext;
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a JavaScript context", ex);
         }
-        final Path logoPath = Path.of(this.companyLogoPath);
-        final MediaType logoMediaType = determineMediaTypeOfLogo(logoPath);
-        final byte[] encoded = Base64.encodeBase64(Files.readAllBytes(logoPath));
-        final String data = new String(encoded, StandardCharsets.US_ASCII);
-        final ObjectNode node = new ObjectMapper().createObjectNode();
-        node.put("mediaType", logoMediaType.toString());
-        node.put("data", data);
-        return node.toString();
     }
 
-    static MediaType determineMediaTypeOfLogo(@Nonnull final Path path) {
-        final Path filename = path.getFileName();
-        if (filename != null) {
-            final String fileName = filename.toString().toLowerCase();
-            if (fileName.endsWith(".png")) {
-                return MediaType.IMAGE_PNG;
-            } else if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
-                return MediaType.IMAGE_JPEG;
+    private RenderContext createContext() {
+
+        Context context = null;
+        try {
+            context = Context.newBuilder("js")
+                    .engine(this.engine)
+                    .allowExperimentalOptions(true)
+                    .allowIO(IOAccess.newBuilder().fileSystem(this.fileSystem).build())
+                    .option("js.esm-eval-returns-exports", "true")
+                    .currentWorkingDirectory(ResourceFileSystem.ROOT)
+                    .build();
+            context.eval(this.mustacheSource);
+            final Value renderFunction = context.eval(this.scriptSource).getMember("renderWithMustache");
+            return new RenderContext(context, renderFunction);
+        } catch (RuntimeException ex) {
+            if (context != null) {
+                context.close();
             }
-            throw new IllegalArgumentException("Unknown company logo format: " + fileName);
+            this.contextCount.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Read and encode the company logo on the first export, it does not change while the application is running
+     */
+    private String getLogoJson() throws IOException {
+
+        if (!this.logoRead) {
+            final Map<String, String> logo = ExportResources.readLogo(this.companyLogoPath);
+            this.logoJson = logo != null ? new ObjectMapper().writeValueAsString(logo) : null;
+            this.logoRead = true;
+        }
+        return this.logoJson;
+    }
+
+    /**
+     * A context of the pool with the evaluated scripts, used by one export at a time
+     */
+    private static final class RenderContext {
+
+        private final Context context;
+        private final Value renderFunction;
+
+        RenderContext(Context context, Value renderFunction) {
+            this.context = context;
+            this.renderFunction = renderFunction;
         }
-        throw new IllegalArgumentException("Got empty path");
     }
 }
@@ -0,0 +1,306 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JavaScript semantics on parsed JSON values (maps, lists, strings, numbers, booleans and null),
+ * as far as they are needed to render the export templates in Java with the same result as in JavaScript.
+ * A missing property (undefined) and null are both represented by null.
+ */
+final class JavascriptValues {
+
+    private static final Pattern DECIMAL_NUMBER = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+    private static final Pattern ISO_DATE = Pattern.compile(
+            "([+-]\\d{6}|\\d{4})(?:-(\\d{2})(?:-(\\d{2}))?)?"
+            + "(?:T(\\d{2}):(\\d{2})(?::(\\d{2})(?:\\.(\\d+))?)?(Z|[+-]\\d{2}:\\d{2})?)?");
+    private static final double MAX_TIME = 8.64e15;
+
+    private JavascriptValues() {
+        // Utility class
+    }
+
+    /**
+     * JavaScript whitespace as matched by \s in regular expressions
+     */
+    static boolean isWhitespace(char c) {
+
+        return switch (c) {
+            case ' ', '\t', '\n', '\u000B', '\f', '\r', '\u00A0', '\u1680', '\u2028', '\u2029', '\u202F', '\u205F',
+                    '\u3000', '\uFEFF' -> true;
+            default -> c >= '\u2000' && c <= '\u200A';
+        };
+    }
+
+    /**
+     * false, 0, NaN, "", null and undefined are falsy, all other values are truthy
+     */
+    static boolean isTruthy(Object value) {
+
+        if (value == null) {
+            return false;
+        } else if (value instanceof Boolean bool) {
+            return bool;
+        } else if (value instanceof Number number) {
+            double doubleValue = number.doubleValue();
+            return doubleValue != 0 && !Double.isNaN(doubleValue);
+        } else if (value instanceof String string) {
+            return !string.isEmpty();
+        }
+        return true;
+    }
+
+    /**
+     * Strict equality (===) of two values, objects and arrays are only equal to themselves
+     */
+    static boolean strictEquals(Object value1, Object value2) {
+
+        if (value1 instanceof Number number1 && value2 instanceof Number number2) {
+            return number1.doubleValue() == number2.doubleValue();
+        } else if (value1 instanceof Map || value1 instanceof List) {
+            return value1 == value2;
+        }
+        return Objects.equals(value1, value2);
+    }
+
+    /**
+     * The value of the property of an object, the length and the elements of arrays and strings
+     *
+     * @return the value or null if the property is not defined
+     */
+    static Object getProperty(Object target, String name) {
+
+        if (target instanceof Map<?, ?> map) {
+            return map.get(name);
+        } else if (target instanceof List<?> list) {
+            if ("length".equals(name)) {
+                return list.size();
+            }
+            int index = toIndex(name);
+            return index >= 0 && index < list.size() ? list.get(index) : null;
+        } else if (target instanceof String string) {
+            if ("length".equals(name)) {
+                return string.length();
+            }
+            int index = toIndex(name);
+            return index >= 0 && index < string.length() ? String.valueOf(string.charAt(index)) : null;
+        }
+        return null;
+    }
+
+    /**
+     * Check whether the object or array has the property (the in operator)
+     */
+    static boolean hasProperty(Object target, String name) {
+
+        if (target instanceof Map<?, ?> map) {
+            return map.containsKey(name);
+        } else if (target instanceof List<?> list) {
+            int index = toIndex(name);
+            return "length".equals(name) || (index >= 0 && index < list.size());
+        }
+        return false;
+    }
+
+    /**
+     * Check whether a string has the property (hasOwnProperty on a primitive)
+     */
+    static boolean primitiveHasOwnProperty(Object target, String name) {
+
+        if (target instanceof String string) {
+            int index = toIndex(name);
+            return "length".equals(name) || (index >= 0 && index < string.length());
+        }
+        return false;
+    }
+
+    private static int toIndex(String name) {
+
+        if (name.isEmpty() || name.length() > 9 || (name.length() > 1 && name.charAt(0) == '0')) {
+            return -1;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(name);
+    }
+
+    /**
+     * Convert a value to a string like String(value)
+     */
+    static String toString(Object value) {
+
+        if (value instanceof String string) {
+            return string;
+        } else if (value instanceof Number number) {
+            return formatNumber(number.doubleValue());
+        } else if (value instanceof Map) {
+            return "[object Object]";
+        } else if (value instanceof List<?> list) {
+            StringBuilder joined = new StringBuilder();
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    joined.append(',');
+                }
+                if (list.get(i) != null) {
+                    joined.append(toString(list.get(i)));
+                }
+            }
+            return joined.toString();
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Format a number like Number.prototype.toString() with radix 10
+     */
+    static String formatNumber(double value) {
+
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "Infinity" : "-Infinity";
+        } else if (value == 0) {
+            return "0";
+        } else if (value < 0) {
+            return "-" + formatNumber(-value);
+        }
+        // the shortest digits that identify the value and the position of the decimal point
+        BigDecimal decimal = new BigDecimal(Double.toString(value)).stripTrailingZeros();
+        String digits = decimal.unscaledValue().toString();
+        int digitCount = digits.length();
+        int pointPosition = digitCount - decimal.scale();
+        if (digitCount <= pointPosition && pointPosition <= 21) {
+            return digits + "0".repeat(pointPosition - digitCount);
+        } else if (0 < pointPosition && pointPosition <= 21) {
+            return digits.substring(0, pointPosition) + "." + digits.substring(pointPosition);
+        } else if (-6 < pointPosition && pointPosition <= 0) {
+            return "0." + "0".repeat(-pointPosition) + digits;
+        }
+        int exponent = pointPosition - 1;
+        String mantissa = digitCount == 1 ? digits : digits.charAt(0) + "." + digits.substring(1);
+        return mantissa + "e" + (exponent < 0 ? "-" : "+") + Math.abs(exponent);
+    }
+
+    /**
+     * Convert a value to a number like Number(value)
+     */
+    static double toNumber(Object value) {
+
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number number) {
+            return number.doubleValue();
+        } else if (value instanceof Boolean bool) {
+            return bool ? 1 : 0;
+        } else if (value instanceof String || value instanceof List) {
+            return stringToNumber(toString(value));
+        }
+        return Double.NaN;
+    }
+
+    private static double stringToNumber(String string) {
+
+        String trimmed = trim(string);
+        if (trimmed.isEmpty()) {
+            return 0;
+        }
+        switch (trimmed) {
+            case "Infinity", "+Infinity":
+                return Double.POSITIVE_INFINITY;
+            case "-Infinity":
+                return Double.NEGATIVE_INFINITY;
+            default:
+                break;
+        }
+        if (DECIMAL_NUMBER.matcher(trimmed).matches()) {
+            return Double.parseDouble(trimmed);
+        }
+        if (trimmed.length() > 2 && trimmed.charAt(0) == '0') {
+            int radix = switch (trimmed.charAt(1)) {
+                case 'x', 'X' -> 16;
+                case 'o', 'O' -> 8;
+                case 'b', 'B' -> 2;
+                default -> 0;
+            };
+            if (radix > 0) {
+                try {
+                    return new BigInteger(trimmed.substring(2), radix).doubleValue();
+                } catch (NumberFormatException ex) {
+                    return Double.NaN;
+                }
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static String trim(String string) {
+
+        int start = 0;
+        int end = string.length();
+        while (start < end && isWhitespace(string.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(string.charAt(end - 1))) {
+            end--;
+        }
+        return string.substring(start, end);
+    }
+
+    /**
+     * The time in milliseconds of a date like new Date(value).getTime().
+     * Strings are parsed in the date time string format of ECMAScript,
+     * dates without time are UTC and date times without offset are in the local time zone.
+     *
+     * @return the time or NaN if the value is no valid date
+     */
+    static double toTime(Object value) {
+
+        if (value instanceof String || value instanceof List) {
+            return parseDate(toString(value));
+        } else if (value == null || value instanceof Number || value instanceof Boolean) {
+            double time = toNumber(value);
+            return Math.abs(time) <= MAX_TIME ? (double) (long) time : Double.NaN;
+        }
+        return Double.NaN;
+    }
+
+    private static double parseDate(String date) {
+
+        Matcher matcher = ISO_DATE.matcher(date);
+        if (!matcher.matches() || "-000000".equals(matcher.group(1))) {
+            return Double.NaN;
+        }
+        try {
+            LocalDate localDate = LocalDate.of(Integer.parseInt(matcher.group(1)),
+                    matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 1,
+                    matcher.group(3) != null ? Integer.parseInt(matcher.group(3)) : 1);
+            if (matcher.group(4) == null) {
+                return localDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+            }
+            String fraction = matcher.group(7) != null ? (matcher.group(7) + "00").substring(0, 3) : "0";
+            LocalTime localTime = LocalTime.of(Integer.parseInt(matcher.group(4)), Integer.parseInt(matcher.group(5)),
+                    matcher.group(6) != null ? Integer.parseInt(matcher.group(6)) : 0,
+                    Integer.parseInt(fraction) * 1_000_000);
+            LocalDateTime localDateTime = LocalDateTime.of(localDate, localTime);
+            ZoneId zone = matcher.group(8) != null ? ZoneOffset.of(matcher.group(8)) : ZoneId.systemDefault();
+            double time = localDateTime.atZone(zone).toInstant().toEpochMilli();
+            return Math.abs(time) <= MAX_TIME ? time : Double.NaN;
+        } catch (DateTimeException ex) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Function in the view of a template that is called for a section instead of rendering it
+ */
+@FunctionalInterface
+interface MustacheLambda {
+
+    /**
+     * @param text   the unrendered text of the section
+     * @param render renders a text with the current context
+     * @return the text that replaces the section, it is not escaped
+     */
+    String apply(String text, UnaryOperator<String> render);
+}
@@ -0,0 +1,201 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import de.bsi.secvisogram.csaf_cms_backend.mustache.MustacheTemplate.Token;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders compiled mustache templates with the rules of mustache.js 4.2.0 on a view of parsed JSON values.
+ * Names are looked up like in JavaScript (see {@link JavascriptValues}), sections are rendered for truthy values
+ * and once for every element of arrays, and {@link MustacheLambda} values are called for their sections.
+ * The texts of partials and lambdas are compiled on their first use, afterwards the renderer only walks token trees.
+ * The renderer is thread-safe.
+ */
+final class MustacheRenderer {
+
+    private final Map<String, String> partials;
+    private final Map<String, MustacheTemplate> compiledTexts = new ConcurrentHashMap<>();
+    private final Map<Token, MustacheTemplate> compiledPartials = new ConcurrentHashMap<>();
+
+    /**
+     * @param partials the templates of the partials by their name
+     */
+    MustacheRenderer(Map<String, String> partials) {
+        this.partials = Map.copyOf(partials);
+    }
+
+    /**
+     * Render the template with the view
+     *
+     * @param template the compiled template
+     * @param view     the root of the parsed JSON values
+     * @return the rendered text
+     */
+    String render(MustacheTemplate template, Object view) {
+
+        StringBuilder buffer = new StringBuilder(template.getText().length() * 2);
+        renderTokens(template.getTokens(), new Context(view, null), template.getText(), buffer);
+        return buffer.toString();
+    }
+
+    private void renderTokens(List<Token> tokens, Context context, String originalTemplate, StringBuilder buffer) {
+
+        for (Token token : tokens) {
+            switch (token.type) {
+                case SECTION -> renderSection(token, context, originalTemplate, buffer);
+                case INVERTED -> {
+                    Object value = context.lookup(token);
+                    if (!JavascriptValues.isTruthy(value) || (value instanceof List<?> list && list.isEmpty())) {
+                        renderTokens(token.children, context, originalTemplate, buffer);
+                    }
+                }
+                case PARTIAL -> renderPartial(token, context, buffer);
+                case UNESCAPED -> {
+                    Object value = context.lookup(token);
+                    if (value != null) {
+                        buffer.append(JavascriptValues.toString(value));
+                    }
+                }
+                case NAME -> {
+                    Object value = context.lookup(token);
+                    if (value instanceof Number number) {
+                        buffer.append(JavascriptValues.formatNumber(number.doubleValue()));
+                    } else if (value != null) {
+                        escapeHtml(JavascriptValues.toString(value), buffer);
+                    }
+                }
+                case TEXT -> buffer.append(token.value);
+                default -> {
+                    // comments and changes of the delimiters are not rendered
+                }
+            }
+        }
+    }
+
+    private void renderSection(Token token, Context context, String originalTemplate, StringBuilder buffer) {
+
+        Object value = context.lookup(token);
+        if (!JavascriptValues.isTruthy(value)) {
+            return;
+        }
+        if (value instanceof List<?> list) {
+            for (Object element : list) {
+                renderTokens(token.children, context.push(element), originalTemplate, buffer);
+            }
+        } else if (value instanceof Map || value instanceof String || value instanceof Number) {
+            renderTokens(token.children, context.push(value), originalTemplate, buffer);
+        } else if (value instanceof MustacheLambda lambda) {
+            String text = originalTemplate.substring(token.end, token.closingStart);
+            String result = lambda.apply(text, subTemplate -> {
+                MustacheTemplate template = compiledTexts.computeIfAbsent(subTemplate, MustacheTemplate::compile);
+                StringBuilder subBuffer = new StringBuilder();
+                renderTokens(template.getTokens(), context, template.getText(), subBuffer);
+                return subBuffer.toString();
+            });
+            if (result != null) {
+                buffer.append(result);
+            }
+        } else {
+            renderTokens(token.children, context, originalTemplate, buffer);
+        }
+    }
+
+    private void renderPartial(Token token, Context context, StringBuilder buffer) {
+
+        String partial = partials.get(token.value);
+        if (partial == null) {
+            return;
+        }
+        MustacheTemplate template = compiledPartials.computeIfAbsent(token, partialToken -> {
+            String indentedPartial = partial;
+            if (partialToken.tagIndex == 0 && !partialToken.indentation.isEmpty()) {
+                indentedPartial = indentPartial(partial, partialToken.indentation, partialToken.lineHasNonSpace);
+            }
+            return compiledTexts.computeIfAbsent(indentedPartial, MustacheTemplate::compile);
+        });
+        renderTokens(template.getTokens(), context, template.getText(), buffer);
+    }
+
+    /**
+     * Indent the lines of a standalone partial with the spaces and tabs in front of its tag
+     */
+    private static String indentPartial(String partial, String indentation, boolean lineHasNonSpace) {
+
+        String filteredIndentation = indentation.replaceAll("[^ \\t]", "");
+        String[] lines = partial.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            if (!lines[i].isEmpty() && (i > 0 || !lineHasNonSpace)) {
+                lines[i] = filteredIndentation + lines[i];
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    private static void escapeHtml(String text, StringBuilder buffer) {
+
+        for (int i = 0; i < text.length(); i++) {
+            char chr = text.charAt(i);
+            switch (chr) {
+                case '&' -> buffer.append("&amp;");
+                case '<' -> buffer.append("&lt;");
+                case '>' -> buffer.append("&gt;");
+                case '"' -> buffer.append("&quot;");
+                case '\'' -> buffer.append("&#39;");
+                case '/' -> buffer.append("&#x2F;");
+                case '`' -> buffer.append("&#x60;");
+                case '=' -> buffer.append("&#x3D;");
+                default -> buffer.append(chr);
+            }
+        }
+    }
+
+    /**
+     * The stack of views while rendering sections
+     */
+    private static final class Context {
+
+        private final Object view;
+        private final Context parent;
+
+        Context(Object view, Context parent) {
+            this.view = view;
+            this.parent = parent;
+        }
+
+        Context push(Object childView) {
+            return new Context(childView, this);
+        }
+
+        /**
+         * Look up the name of the token in the views from the innermost to the root.
+         * A view has the name if the property exists, even if its value is null.
+         * For dotted names only the last part has to exist, the walk stops at missing parents.
+         */
+        Object lookup(Token token) {
+
+            if (".".equals(token.value)) {
+                return view;
+            }
+            for (Context context = this; context != null; context = context.parent) {
+                if (token.names != null) {
+                    Object intermediateValue = context.view;
+                    boolean lookupHit = false;
+                    for (int index = 0; intermediateValue != null && index < token.names.length; index++) {
+                        if (index == token.names.length - 1) {
+                            lookupHit = JavascriptValues.hasProperty(intermediateValue, token.names[index])
+                                    || JavascriptValues.primitiveHasOwnProperty(intermediateValue, token.names[index]);
+                        }
+                        intermediateValue = JavascriptValues.getProperty(intermediateValue, token.names[index]);
+                    }
+                    if (lookupHit) {
+                        return intermediateValue;
+                    }
+                } else if (JavascriptValues.hasProperty(context.view, token.value)) {
+                    return JavascriptValues.getProperty(context.view, token.value);
+                }
+            }
+            return null;
+        }
+    }
+}
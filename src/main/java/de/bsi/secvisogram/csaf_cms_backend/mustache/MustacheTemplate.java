@@ -0,0 +1,343 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A mustache template compiled to a tree of tokens.
+ * The parser follows mustache.js 4.2.0, the version of mustache.min.js used by the {@link JavascriptExporter},
+ * including the removal of standalone tag lines and the indentation of standalone partials,
+ * so the {@link MustacheRenderer} produces the same output for the same view.
+ */
+final class MustacheTemplate {
+
+    private static final String DEFAULT_OPENING_TAG = "{{";
+    private static final String DEFAULT_CLOSING_TAG = "}}";
+
+    private final String text;
+    private final List<Token> tokens;
+
+    private MustacheTemplate(String text, List<Token> tokens) {
+        this.text = text;
+        this.tokens = tokens;
+    }
+
+    /**
+     * @return the source of the template, sections of lambdas are cut from it
+     */
+    String getText() {
+        return text;
+    }
+
+    List<Token> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Compile the template
+     *
+     * @param text the template
+     * @return the compiled template
+     * @throws IllegalArgumentException if a tag or section is not closed
+     */
+    static MustacheTemplate compile(String text) {
+
+        return new MustacheTemplate(text, nestTokens(squashTokens(new Parser(text).parse())));
+    }
+
+    /**
+     * Merge adjacent text tokens and drop the removed whitespace
+     */
+    private static List<Token> squashTokens(List<Token> tokens) {
+
+        List<Token> squashedTokens = new ArrayList<>();
+        Token lastToken = null;
+        StringBuilder text = null;
+        for (Token token : tokens) {
+            if (token == null) {
+                continue;
+            }
+            if (token.type == TokenType.TEXT && lastToken != null && lastToken.type == TokenType.TEXT) {
+                text.append(token.value);
+                lastToken.end = token.end;
+            } else {
+                if (text != null) {
+                    lastToken.value = text.toString();
+                    text = null;
+                }
+                squashedTokens.add(token);
+                lastToken = token;
+                if (token.type == TokenType.TEXT) {
+                    text = new StringBuilder(token.value);
+                }
+            }
+        }
+        if (text != null) {
+            lastToken.value = text.toString();
+        }
+        return squashedTokens;
+    }
+
+    /**
+     * Move the tokens between the opening and closing tags of sections to their children
+     */
+    private static List<Token> nestTokens(List<Token> tokens) {
+
+        List<Token> nestedTokens = new ArrayList<>();
+        List<Token> collector = nestedTokens;
+        Deque<Token> sections = new ArrayDeque<>();
+        for (Token token : tokens) {
+            switch (token.type) {
+                case SECTION, INVERTED -> {
+                    collector.add(token);
+                    sections.push(token);
+                    token.children = new ArrayList<>();
+                    collector = token.children;
+                }
+                case CLOSE -> {
+                    Token section = sections.pop();
+                    section.closingStart = token.start;
+                    collector = sections.isEmpty() ? nestedTokens : sections.peek().children;
+                }
+                default -> collector.add(token);
+            }
+        }
+        return nestedTokens;
+    }
+
+    enum TokenType {
+        TEXT, NAME, UNESCAPED, SECTION, INVERTED, CLOSE, PARTIAL, COMMENT, DELIMITERS
+    }
+
+    /**
+     * A text or tag of the template
+     */
+    static final class Token {
+
+        final TokenType type;
+        String value;
+        final int start;
+        int end;
+        /** the parts of a dotted name, null for other names */
+        String[] names;
+        /** the tokens of a section */
+        List<Token> children;
+        /** the start of the closing tag of a section */
+        int closingStart;
+        /** the whitespace before a partial, other characters are replaced by space */
+        String indentation;
+        /** the number of tags before a partial in its line */
+        int tagIndex;
+        boolean lineHasNonSpace;
+
+        Token(TokenType type, String value, int start, int end) {
+            this.type = type;
+            this.value = value;
+            this.start = start;
+            this.end = end;
+            if (type != TokenType.TEXT && value.indexOf('.') > 0) {
+                this.names = value.split("\\.", -1);
+            }
+        }
+    }
+
+    /**
+     * The parser of mustache.js, the regular expressions for the tags are replaced by string searches
+     */
+    private static final class Parser {
+
+        private final String template;
+        private int pos;
+        private String openingTag = DEFAULT_OPENING_TAG;
+        private String closingTag = DEFAULT_CLOSING_TAG;
+
+        private final List<Token> tokens = new ArrayList<>();
+        // the indexes of the whitespace tokens of the current line
+        private final List<Integer> spaces = new ArrayList<>();
+        private boolean hasTag;
+        private boolean nonSpace;
+        private StringBuilder indentation = new StringBuilder();
+        private int tagIndex;
+        private boolean lineHasNonSpace;
+
+        Parser(String template) {
+            this.template = template;
+        }
+
+        List<Token> parse() {
+
+            Deque<Token> sections = new ArrayDeque<>();
+            while (pos < template.length()) {
+                int start = pos;
+                String value = scanUntil(openingTag, false);
+                for (int i = 0; i < value.length(); i++) {
+                    char chr = value.charAt(i);
+                    if (JavascriptValues.isWhitespace(chr)) {
+                        spaces.add(tokens.size());
+                        indentation.append(chr);
+                    } else {
+                        nonSpace = true;
+                        lineHasNonSpace = true;
+                        indentation.append(' ');
+                    }
+                    tokens.add(new Token(TokenType.TEXT, String.valueOf(chr), start, start + 1));
+                    start += 1;
+                    if (chr == '\n') {
+                        stripSpace();
+                        indentation = new StringBuilder();
+                        tagIndex = 0;
+                        lineHasNonSpace = false;
+                    }
+                }
+
+                if (!template.startsWith(openingTag, pos)) {
+                    break;
+                }
+                pos += openingTag.length();
+                skipWhitespace();
+                hasTag = true;
+
+                TokenType type = TokenType.NAME;
+                if (pos < template.length()) {
+                    type = switch (template.charAt(pos)) {
+                        case '#' -> TokenType.SECTION;
+                        case '^' -> TokenType.INVERTED;
+                        case '/' -> TokenType.CLOSE;
+                        case '>' -> TokenType.PARTIAL;
+                        case '{', '&' -> TokenType.UNESCAPED;
+                        case '=' -> TokenType.DELIMITERS;
+                        case '!' -> TokenType.COMMENT;
+                        default -> TokenType.NAME;
+                    };
+                }
+                boolean tripleMustache = type == TokenType.UNESCAPED && template.charAt(pos) == '{';
+                if (type != TokenType.NAME) {
+                    pos++;
+                }
+                skipWhitespace();
+
+                if (type == TokenType.DELIMITERS) {
+                    value = scanUntil("=", true);
+                    scanWithLeadingWhitespace("=");
+                    scanUntil(closingTag, true);
+                } else if (tripleMustache) {
+                    value = scanUntil("}" + closingTag, true);
+                    scanWithLeadingWhitespace("}");
+                    scanUntil(closingTag, true);
+                } else {
+                    value = scanUntil(closingTag, true);
+                }
+                if (!scanWithLeadingWhitespace(closingTag)) {
+                    throw new IllegalArgumentException("Unclosed tag at " + pos);
+                }
+
+                Token token = new Token(type, value, start, pos);
+                if (type == TokenType.PARTIAL) {
+                    token.indentation = indentation.toString();
+                    token.tagIndex = tagIndex;
+                    token.lineHasNonSpace = lineHasNonSpace;
+                }
+                tagIndex++;
+                tokens.add(token);
+
+                switch (type) {
+                    case SECTION, INVERTED -> sections.push(token);
+                    case CLOSE -> {
+                        Token openSection = sections.poll();
+                        if (openSection == null) {
+                            throw new IllegalArgumentException("Unopened section \"" + value + "\" at " + start);
+                        }
+                        if (!openSection.value.equals(value)) {
+                            throw new IllegalArgumentException("Unclosed section \"" + openSection.value + "\" at " + start);
+                        }
+                    }
+                    case NAME, UNESCAPED -> nonSpace = true;
+                    case DELIMITERS -> changeTags(value);
+                    default -> {
+                        // comments and partials do not change the standalone state of the line
+                    }
+                }
+            }
+            stripSpace();
+
+            Token openSection = sections.poll();
+            if (openSection != null) {
+                throw new IllegalArgumentException("Unclosed section \"" + openSection.value + "\" at " + pos);
+            }
+            return tokens;
+        }
+
+        /**
+         * Remove the whitespace of a line that only contains tags and whitespace
+         */
+        private void stripSpace() {
+
+            if (hasTag && !nonSpace) {
+                for (int index : spaces) {
+                    tokens.set(index, null);
+                }
+            }
+            spaces.clear();
+            hasTag = false;
+            nonSpace = false;
+        }
+
+        private void changeTags(String value) {
+
+            String[] tags = value.split("[\\s\\u00A0\\u1680\\u2000-\\u200A\\u2028\\u2029\\u202F\\u205F\\u3000\\uFEFF]+", 3);
+            if (tags.length < 2) {
+                throw new IllegalArgumentException("Invalid tags: " + value);
+            }
+            this.openingTag = tags[0];
+            this.closingTag = tags[1];
+        }
+
+        private void skipWhitespace() {
+
+            while (pos < template.length() && JavascriptValues.isWhitespace(template.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        /**
+         * Scan until the next occurrence of the string or until the end
+         *
+         * @param leadingWhitespace true to stop before the whitespace in front of the string (\s*string)
+         * @return the scanned text
+         */
+        private String scanUntil(String string, boolean leadingWhitespace) {
+
+            int index = template.indexOf(string, pos);
+            if (index < 0) {
+                index = template.length();
+            } else if (leadingWhitespace) {
+                while (index > pos && JavascriptValues.isWhitespace(template.charAt(index - 1))) {
+                    index--;
+                }
+            }
+            String value = template.substring(pos, index);
+            pos = index;
+            return value;
+        }
+
+        /**
+         * Scan whitespace followed by the string if they are at the current position
+         *
+         * @return true if they were scanned
+         */
+        private boolean scanWithLeadingWhitespace(String string) {
+
+            int index = pos;
+            while (index < template.length() && JavascriptValues.isWhitespace(template.charAt(index))) {
+                index++;
+            }
+            if (!template.startsWith(string, index)) {
+                return false;
+            }
+            pos = index + string.length();
+            return true;
+        }
+    }
+}
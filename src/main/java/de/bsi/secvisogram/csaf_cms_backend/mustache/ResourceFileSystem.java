@@ -0,0 +1,202 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AccessMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.graalvm.polyglot.io.FileSystem;
+
+/**
+ * Read-only file system of the polyglot contexts that serves the scripts imported by modules from memory.
+ * All files are in one virtual directory, which is the working directory of the contexts,
+ * so nothing is written to or read from the disk.
+ * The files are not changed after the creation, so the file system can be shared between contexts.
+ */
+class ResourceFileSystem implements FileSystem {
+
+    static final Path ROOT = Path.of("/csaf-export").toAbsolutePath();
+
+    private static final FileTime CREATION_TIME = FileTime.fromMillis(System.currentTimeMillis());
+
+    private final Map<Path, byte[]> files = new HashMap<>();
+
+    /**
+     * @param files the content of the files by their name in the root directory
+     */
+    ResourceFileSystem(Map<String, byte[]> files) {
+
+        files.forEach((name, content) -> this.files.put(ROOT.resolve(name), content));
+    }
+
+    @Override
+    public Path parsePath(URI uri) {
+        return Path.of(uri);
+    }
+
+    @Override
+    public Path parsePath(String path) {
+        return Path.of(path);
+    }
+
+    @Override
+    public void checkAccess(Path path, Set<? extends AccessMode> modes, LinkOption... linkOptions) throws IOException {
+
+        Path absolutePath = toAbsolutePath(path).normalize();
+        if (!files.containsKey(absolutePath) && !ROOT.equals(absolutePath)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        if (modes.contains(AccessMode.WRITE) || modes.contains(AccessMode.EXECUTE)) {
+            throw new AccessDeniedException(path.toString());
+        }
+    }
+
+    @Override
+    public void createDirectory(Path dir, FileAttribute<?>... attrs) throws IOException {
+        throw new AccessDeniedException(dir.toString());
+    }
+
+    @Override
+    public void delete(Path path) throws IOException {
+        throw new AccessDeniedException(path.toString());
+    }
+
+    @Override
+    public SeekableByteChannel newByteChannel(Path path, Set<? extends OpenOption> options, FileAttribute<?>... attrs)
+            throws IOException {
+
+        if (options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND)) {
+            throw new AccessDeniedException(path.toString());
+        }
+        byte[] content = files.get(toAbsolutePath(path).normalize());
+        if (content == null) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return new ReadOnlyChannel(content);
+    }
+
+    @Override
+    public DirectoryStream<Path> newDirectoryStream(Path dir, DirectoryStream.Filter<? super Path> filter) throws IOException {
+        throw new NotDirectoryException(dir.toString());
+    }
+
+    @Override
+    public Path toAbsolutePath(Path path) {
+        return path.isAbsolute() ? path : ROOT.resolve(path);
+    }
+
+    @Override
+    public Path toRealPath(Path path, LinkOption... linkOptions) throws IOException {
+
+        Path realPath = toAbsolutePath(path).normalize();
+        if (!files.containsKey(realPath) && !ROOT.equals(realPath)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        return realPath;
+    }
+
+    @Override
+    public Map<String, Object> readAttributes(Path path, String attributes, LinkOption... options) throws IOException {
+
+        Path absolutePath = toAbsolutePath(path).normalize();
+        byte[] content = files.get(absolutePath);
+        if (content == null && !ROOT.equals(absolutePath)) {
+            throw new NoSuchFileException(path.toString());
+        }
+        Map<String, Object> basicAttributes = new HashMap<>();
+        basicAttributes.put("size", content != null ? (long) content.length : 0L);
+        basicAttributes.put("isRegularFile", content != null);
+        basicAttributes.put("isDirectory", content == null);
+        basicAttributes.put("isSymbolicLink", false);
+        basicAttributes.put("isOther", false);
+        basicAttributes.put("lastModifiedTime", CREATION_TIME);
+        basicAttributes.put("lastAccessTime", CREATION_TIME);
+        basicAttributes.put("creationTime", CREATION_TIME);
+        basicAttributes.put("fileKey", null);
+        return basicAttributes;
+    }
+
+    @Override
+    public void setCurrentWorkingDirectory(Path currentWorkingDirectory) {
+
+        if (!ROOT.equals(currentWorkingDirectory)) {
+            throw new IllegalArgumentException("The working directory has to be " + ROOT);
+        }
+    }
+
+    /**
+     * Channel to read the content of a file from memory
+     */
+    private static final class ReadOnlyChannel implements SeekableByteChannel {
+
+        private final byte[] content;
+        private int position;
+        private boolean open = true;
+
+        ReadOnlyChannel(byte[] content) {
+            this.content = content;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+
+            if (position >= content.length) {
+                return -1;
+            }
+            int length = Math.min(dst.remaining(), content.length - position);
+            dst.put(content, position, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) {
+            this.position = (int) Math.min(newPosition, content.length);
+            return this;
+        }
+
+        @Override
+        public long size() {
+            return content.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
+}
@@ -2,10 +2,15 @@
 package de.bsi.secvisogram.csaf_cms_backend.rest;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import de.bsi.secvisogram.csaf_cms_backend.SecvisogramApplication;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.Page;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
@@ -13,18 +18,30 @@ import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.model.template.DocumentTemplateService;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateAdvisoryRequest;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateCommentRequest;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryFacetsResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisorySearchHitResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryTemplateInfoResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AnswerInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.EntityCreateResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.EntityUpdateResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.ExportJobResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.QueryPlanResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryInformationStream;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryReference;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryExportStream;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryResponseStream;
 import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisorySortField;
+import de.bsi.secvisogram.csaf_cms_backend.service.ExportJob;
+import de.bsi.secvisogram.csaf_cms_backend.service.ExportJobService;
 import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.headers.Header;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -34,9 +51,8 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -47,7 +63,7 @@ import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -61,7 +77,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 /**
@@ -78,17 +96,33 @@ import org.springframework.web.server.ResponseStatusException;
 public class AdvisoryController {
 
     private static final Logger LOG = LoggerFactory.getLogger(AdvisoryController.class);
+    static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+    static final String BOOKMARK_HEADER = "X-Bookmark";
+    static final int MAX_BATCH_IDS = 1000;
 
     @Autowired
     private AdvisoryService advisoryService;
 
+    @Autowired
+    private ExportJobService exportJobService;
+
     @Autowired
     private DocumentTemplateService templateService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
-     * Read all advisories, optionally filtered by a search expression
+     * Read all advisories, optionally filtered by a search expression.
+     * When a limit is given, only one page of advisories is returned and the bookmark
+     * of the following page is returned in the header X-Bookmark.
+     * The list is not read again, when the ETag in If-None-Match is still current.
      *
      * @param expression optional search expression as json string
+     * @param limit      optional maximum number of advisories in the page
+     * @param bookmark   optional bookmark of the previous page
+     * @param sort       optional sort order as field[,asc|desc]
+     * @param request    the request with the optional If-None-Match header
      * @return response with list of advisories satisfying the search criteria
      */
     @GetMapping("")
@@ -102,6 +136,16 @@ public class AdvisoryController {
       @ApiResponse(
         responseCode = "200", 
         description = "List of all advisories that the user can access.",
+        headers = {
+          @Header(
+            name = BOOKMARK_HEADER,
+            description = "Bookmark to request the following page, only set in paged requests that are not on the last page"
+          ),
+          @Header(
+            name = HttpHeaders.ETAG,
+            description = "Version of the list for the logged in user, to be sent in If-None-Match"
+          )
+        },
         content = { 
           @Content(
             mediaType = MediaType.APPLICATION_JSON_VALUE,
@@ -111,9 +155,13 @@ public class AdvisoryController {
           )
         }
       ),
+      @ApiResponse(
+        responseCode = "304",
+        description = "The list did not change since the ETag in If-None-Match was returned."
+      ),
       @ApiResponse(
         responseCode = "400", 
-        description = "Invalid filter expression", 
+        description = "Invalid filter expression, sort order, limit or bookmark", 
         content = { 
           @Content(
             mediaType = MediaType.APPLICATION_JSON_VALUE,
@@ -142,17 +190,71 @@ public class AdvisoryController {
                               "value" : "title1",
                               "valueType" : "Text"
                             }.
-                             Possible operatorType's: 'Equal', 'NotEqual', 'Greater', 'GreaterOrEqual', 'Less', 'LessOrEqual', 'ContainsIgnoreCase'.
+                             Possible operatorType's: 'Equal', 'NotEqual', 'Greater', 'GreaterOrEqual', 'Less', 'LessOrEqual', 'ContainsIgnoreCase', 'StartsWith'.
                              Possible valueType's: 'Text', 'Decimal', 'Boolean'. You can search for all attributes in 'csaf/document""",
                     schema = @Schema(type = "string", format = "json",
                             description = "An optional expression in JSON to filter documents by.")
             )
-            String expression
+            String expression,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, name = "limit",
+                    description = "Maximum number of advisories in the returned page. Without a limit all advisories are returned.")
+            Integer limit,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, name = "bookmark",
+                    description = "The bookmark returned in the header X-Bookmark of the previous page. Requires a limit.")
+            String bookmark,
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, name = "sort",
+                    description = "Sort order of the page as field[,asc|desc]." +
+                                  " Possible fields: 'title', 'documentTrackingId', 'currentReleaseDate'. Requires a limit." +
+                                  " Advisories without the field are not in the sorted list.")
+            String sort,
+            WebRequest request
     ) {
 
         LOG.debug("findAdvisories");
         try {
-            return ResponseEntity.ok(advisoryService.getAdvisoryInformations(expression));
+            if (limit == null) {
+                if (bookmark != null || sort != null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                String eTag = advisoryService.getAdvisoryInformationsETag(expression, false);
+                if (eTag != null && request.checkNotModified(eTag)) {
+                    return null;
+                }
+                return okWithETag(eTag).body(advisoryService.getAdvisoryInformations(expression));
+            }
+            if (limit <= 0) {
+                return ResponseEntity.badRequest().build();
+            }
+            AdvisorySortField sortField = null;
+            boolean descending = false;
+            if (sort != null) {
+                String[] sortParts = sort.split(",", -1);
+                if (sortParts.length > 2 || (sortParts.length == 2 && !sortParts[1].matches("asc|desc"))) {
+                    return ResponseEntity.badRequest().build();
+                }
+                sortField = Arrays.stream(AdvisorySortField.values())
+                        .filter(field -> field.name().equals(sortParts[0]))
+                        .findFirst()
+                        .orElse(null);
+                if (sortField == null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                descending = sortParts.length == 2 && "desc".equals(sortParts[1]);
+            }
+            String eTag = advisoryService.getAdvisoryInformationsETag(expression, true);
+            if (eTag != null && request.checkNotModified(eTag)) {
+                return null;
+            }
+            Page<AdvisoryInformationResponse> page
+                    = advisoryService.getAdvisoryInformations(expression, limit, bookmark, sortField, descending);
+            ResponseEntity.BodyBuilder response = okWithETag(eTag);
+            if (page.getBookmark() != null) {
+                response.header(BOOKMARK_HEADER, page.getBookmark());
+            }
+            return response.body(page.getItems());
         } catch (IOException e) {
             LOG.info("Error reading Advisory");
             return ResponseEntity.internalServerError().build();
@@ -163,9 +265,83 @@ public class AdvisoryController {
 
 
     /**
-     * Get a single advisory
+     * Read all advisories as newline delimited JSON, optionally filtered by a search expression.
+     * The advisories are written while they are read from the database, so the list is never held in memory.
+     *
+     * @param expression optional search expression as json string
+     * @return response streaming one advisory information per line
+     */
+    @GetMapping(value = "/stream", produces = NDJSON_MEDIA_TYPE)
+    @Operation(
+      summary = "Stream all authorized advisories.",
+      tags = {"Advisory"},
+      description = "All CSAF documents for which the logged in user is authorized are returned as newline delimited JSON," +
+                    " one advisory information per line. Same result as the list of advisories, but the advisories" +
+                    " are written while they are read from the database."
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "All advisories that the user can access, one per line.",
+        content = {
+          @Content(
+            mediaType = NDJSON_MEDIA_TYPE,
+            schema = @Schema(implementation = AdvisoryInformationResponse.class)
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Invalid filter expression"
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      )
+    })
+    public ResponseEntity<StreamingResponseBody> streamCsafDocuments(
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, name = "expression",
+                    description = "The filter expression in JSON format, see the list of advisories.",
+                    schema = @Schema(type = "string", format = "json",
+                            description = "An optional expression in JSON to filter documents by.")
+            )
+            String expression
+    ) {
+
+        LOG.debug("streamAdvisories");
+        try {
+            AdvisoryInformationStream infoStream = advisoryService.streamAdvisoryInformations(expression);
+            ObjectWriter infoWriter = objectMapper.writerFor(AdvisoryInformationResponse.class)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            StreamingResponseBody body = outputStream -> {
+                try {
+                    infoStream.forEach(info -> {
+                        try {
+                            infoWriter.writeValue(outputStream, info);
+                            outputStream.write('\n');
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE))
+                    .body(body);
+        } catch (CsafException ex) {
+            return ResponseEntity.status(ex.getRecommendedHttpState()).build();
+        }
+    }
+
+    /**
+     * Get a single advisory.
+     * The advisory is not read, when the ETag in If-None-Match is still current.
      *
      * @param advisoryId ID of the CSAF document that should be read
+     * @param request    the request with the optional If-None-Match header
      * @return response with the requested CSAF document
      */
     @GetMapping("/{advisoryId}")
@@ -178,6 +354,12 @@ public class AdvisoryController {
       @ApiResponse(
         responseCode = "200", 
         description = "Single requested advisory", 
+        headers = {
+          @Header(
+            name = HttpHeaders.ETAG,
+            description = "Version of the advisory for the logged in user, to be sent in If-None-Match"
+          )
+        },
         content = { 
           @Content(
             mediaType = MediaType.APPLICATION_JSON_VALUE,
@@ -187,6 +369,10 @@ public class AdvisoryController {
           )
         }
       ),
+      @ApiResponse(
+        responseCode = "304",
+        description = "The advisory did not change since the ETag in If-None-Match was returned."
+      ),
       @ApiResponse(
         responseCode = "400", 
         description = "Invalid UUID" 
@@ -209,13 +395,19 @@ public class AdvisoryController {
             @Parameter(
                     in = ParameterIn.PATH,
                     description = "The ID of the advisory to read."
-            ) String advisoryId
+            ) String advisoryId,
+            WebRequest request
     ) {
 
         LOG.debug("readCsafDocument");
         checkValidUuid(advisoryId);
         try {
-            return ResponseEntity.ok(advisoryService.getAdvisory(advisoryId));
+            // the ETag is created without reading the advisory, so it is read only once for a changed advisory
+            String eTag = advisoryService.getAdvisoryETag(advisoryId);
+            if (eTag != null && request.checkNotModified(eTag)) {
+                return null;
+            }
+            return okWithETag(eTag).body(advisoryService.getAdvisory(advisoryId));
         } catch (IdNotFoundException idNfEx) {
             LOG.info("Advisory with given ID not found");
             return ResponseEntity.notFound().build();
@@ -229,6 +421,79 @@ public class AdvisoryController {
         }
     }
 
+    /**
+     * Get several advisories with one request as newline delimited JSON.
+     * The advisories are read with one database request and written while they are read.
+     *
+     * @param advisoryIds IDs of the advisories that should be read
+     * @return response streaming one advisory per line
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = NDJSON_MEDIA_TYPE)
+    @Operation(
+      summary = "Get several Advisories.",
+      description = "Get the advisory CSAF documents and some additional data for the given advisoryIds as newline" +
+                    " delimited JSON, one advisory per line in the order of the IDs. IDs of advisories that do not" +
+                    " exist or that the user is not authorized to view are skipped.",
+      tags = {"Advisory"},
+      requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+        description = "The IDs of the advisories to read.", required = true,
+        content = @Content(
+          mediaType = MediaType.APPLICATION_JSON_VALUE,
+          array = @ArraySchema(schema = @Schema(type = "string"))
+        )
+      )
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The requested advisories that the user can access, one per line.",
+        content = {
+          @Content(
+            mediaType = NDJSON_MEDIA_TYPE,
+            schema = @Schema(implementation = AdvisoryResponse.class)
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Invalid UUID, no IDs or more than " + MAX_BATCH_IDS + " IDs"
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      )
+    })
+    public ResponseEntity<StreamingResponseBody> readCsafDocuments(
+            @RequestBody List<String> advisoryIds
+    ) {
+
+        LOG.debug("readCsafDocuments");
+        if (advisoryIds.isEmpty() || advisoryIds.size() > MAX_BATCH_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+        advisoryIds.forEach(AdvisoryController::checkValidUuid);
+        AdvisoryResponseStream advisoryStream = advisoryService.streamAdvisories(advisoryIds);
+        ObjectWriter advisoryWriter = objectMapper.writerFor(AdvisoryResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        StreamingResponseBody body = outputStream -> {
+            try {
+                advisoryStream.forEach(advisory -> {
+                    try {
+                        advisoryWriter.writeValue(outputStream, advisory);
+                        outputStream.write('\n');
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE))
+                .body(body);
+    }
+
     /**
      * Create a new CSAF document
      *
@@ -549,6 +814,231 @@ public class AdvisoryController {
         } 
     }
 
+    /**
+     * Get the number of advisories per workflow state, tracking status, TLP label, owner and year
+     * of the initial release and the number of comments per advisory
+     *
+     * @return the counts per facet
+     */
+    @GetMapping("/facets")
+    @Operation(
+            summary = "Get advisory counts per facet.",
+            description = "Get the number of all advisories per workflow state, tracking status, TLP label, owner" +
+                          " and year of the initial release and the number of comments per advisory." +
+                          " The counts include all advisories, so they are only available to managers and auditors.",
+            tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The counts per facet.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = AdvisoryFacetsResponse.class)
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "403",
+        description = "The user is neither manager nor auditor."
+      )
+    })
+    public ResponseEntity<AdvisoryFacetsResponse> getAdvisoryFacets() {
+
+        LOG.debug("getAdvisoryFacets");
+        return ResponseEntity.ok(advisoryService.getAdvisoryFacets());
+    }
+
+    /**
+     * Find the advisories that mention a CVE, CWE, product id or product name
+     *
+     * @param reference the kind of the looked up value
+     * @param value     the looked up value
+     * @return information of the advisories mentioning the value
+     */
+    @GetMapping("/lookup/{reference}")
+    @Operation(
+            summary = "Find advisories mentioning a CVE, CWE or product.",
+            description = "Find the advisories that mention a CVE in the vulnerabilities, a CWE in the vulnerabilities" +
+                          " or a product id or product name in the product tree. CVEs and CWEs are compared" +
+                          " ignoring case, product names ignoring case and product ids exactly." +
+                          " The values are looked up in views of the database, no advisory is scanned." +
+                          " Only advisories the user can access are returned.",
+            tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The advisories mentioning the value.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+              schema = @Schema(implementation = AdvisoryInformationResponse.class)
+            )
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Unknown reference or empty value"
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "500",
+        description = "Error reading advisories"
+      )
+    })
+    public ResponseEntity<List<AdvisoryInformationResponse>> findAdvisoriesByReference(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The kind of the value: 'cve', 'cwe', 'productId' or 'productName'.",
+                    example = "cve")
+            String reference,
+            @RequestParam
+            @Parameter(in = ParameterIn.QUERY, name = "value", description = "The looked up value.", example = "CVE-2021-44228")
+            String value
+    ) {
+
+        LOG.debug("findAdvisoriesByReference");
+        AdvisoryReference advisoryReference = Arrays.stream(AdvisoryReference.values())
+                .filter(ref -> ref.name().equals(reference))
+                .findFirst()
+                .orElse(null);
+        if (advisoryReference == null || value.isBlank()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(advisoryService.findAdvisoriesByReference(advisoryReference, value));
+        } catch (IOException ex) {
+            LOG.error("Error reading advisories", ex);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Search the advisories by words in the full-text index
+     *
+     * @param text  the words to search for
+     * @param limit maximum number of returned advisories
+     * @return the found advisories the user can view, the best hit first
+     */
+    @GetMapping("/search")
+    @Operation(
+            summary = "Search advisories by text.",
+            description = "Search the words in the title, the texts of csaf/document, the vulnerabilities and the" +
+                          " product tree of all advisories. Only advisories containing all words are found, the last" +
+                          " word may also be the start of a word. The advisories are sorted by relevance and only" +
+                          " advisories the user can access are returned. Changes are found after they are indexed" +
+                          " from the changes feed of the database.",
+            tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The found advisories, the best hit first.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+              schema = @Schema(implementation = AdvisorySearchHitResponse.class)
+            )
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Invalid limit"
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "503",
+        description = "The search index is disabled or not yet caught up with the database."
+      )
+    })
+    public ResponseEntity<List<AdvisorySearchHitResponse>> searchAdvisories(
+            @RequestParam
+            @Parameter(in = ParameterIn.QUERY, name = "text", description = "The words to search for.", example = "log4j")
+            String text,
+            @RequestParam(defaultValue = "20")
+            @Parameter(in = ParameterIn.QUERY, name = "limit", description = "Maximum number of returned advisories.")
+            int limit
+    ) {
+
+        LOG.debug("searchAdvisories");
+        try {
+            return ResponseEntity.ok(advisoryService.searchAdvisories(text, limit));
+        } catch (IOException ex) {
+            LOG.error("Error reading the search index", ex);
+            return ResponseEntity.internalServerError().build();
+        } catch (CsafException ex) {
+            return ResponseEntity.status(ex.getRecommendedHttpState()).build();
+        }
+    }
+
+    /**
+     * Show how the query of a search expression is planned and which index CouchDB uses for it
+     *
+     * @param expression optional search expression
+     * @return the plan of the query
+     */
+    @GetMapping("/search/plan")
+    @Operation(
+            summary = "Explain the query of a filter expression.",
+            description = "Show the normalized filter expression, the selector sent to CouchDB, the index chosen by" +
+                          " the planner, the index CouchDB uses according to _explain and the steps of the planner." +
+                          " No advisory is read.",
+            tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "The plan of the query.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = QueryPlanResponse.class)
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Invalid filter expression"
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "403",
+        description = "The user is neither manager nor auditor."
+      )
+    })
+    public ResponseEntity<QueryPlanResponse> explainSearch(
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, name = "expression",
+                    description = "The filter expression in JSON format, as in the list of advisories.")
+            String expression
+    ) {
+
+        LOG.debug("explainSearch");
+        try {
+            return ResponseEntity.ok(advisoryService.explainAdvisoryQuery(expression));
+        } catch (CsafException ex) {
+            return ResponseEntity.status(ex.getRecommendedHttpState()).build();
+        }
+    }
+
     /**
      * Get a list of all templates in the system
      *
@@ -685,7 +1175,7 @@ public class AdvisoryController {
           description = "Error during export."
         )
       })
-    public ResponseEntity<InputStreamResource> exportAdvisory(
+    public ResponseEntity<StreamingResponseBody> exportAdvisory(
             @PathVariable
             @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to export.")
             String advisoryId,
@@ -695,30 +1185,26 @@ public class AdvisoryController {
     ) {
         LOG.debug("exportAdvisory");
         checkValidUuid(advisoryId);
-        Path filePath = null;
         try {
-            // export to local temporary file
-            filePath = advisoryService.exportAdvisory(advisoryId, format);
-
-            // return the export file through a stream (should be okay even with big files)
-            final InputStream inputStream = Files.newInputStream(filePath);
-            final InputStreamResource inputStreamResource = new InputStreamResource(inputStream);
+            // the export is created while it is written to the response
+            final AdvisoryExportStream export = advisoryService.exportAdvisory(advisoryId, format);
+            final StreamingResponseBody body = outputStream -> {
+                try {
+                    export.writeTo(outputStream);
+                } catch (CsafException ex) {
+                    // the status is already sent, the client gets an incomplete response
+                    LOG.error("Error happened when creating the export: ", ex);
+                    throw new IOException(ex.getMessage(), ex);
+                }
+            };
             return ResponseEntity.ok()
-                    .contentLength(Files.size(filePath))
                     .contentType(determineExportResponseContentType(format))
-                    .body(inputStreamResource);
+                    .body(body);
         } catch (IOException e) {
             LOG.error("Error happened when creating the export: ", e);
             return ResponseEntity.internalServerError().build();
         } catch (CsafException ex) {
             return ResponseEntity.status(ex.getRecommendedHttpState()).build();
-        } finally {
-            if (filePath != null) {
-                boolean result = filePath.toFile().delete();
-                if (!result) {
-                    LOG.error("Could not delete temporary file {} after exporting.", filePath);
-                }
-            }
         }
     }
 
@@ -736,6 +1222,204 @@ public class AdvisoryController {
         }
     }
 
+    /**
+     * Create a job that exports a CSAF document in the background
+     *
+     * @param advisoryId ID of the CSAF document that should be exported
+     * @param format     optional format of the result, defaults to JSON
+     * @return the queued job, or the queued or running job of the same export
+     */
+    @PostMapping("/{advisoryId}/exports")
+    @Operation(
+            summary = "Create an export job.",
+            description = "Export advisory csaf in the background, possible formats are: PDF, Markdown, HTML, JSON."
+                    + " The status of the returned job can be polled and the export downloaded when it is finished."
+                    + " An export of the same revision and format, that is queued or running, is not started again.",
+            tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "202",
+          description = "Export job queued.",
+          content = {
+              @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                      schema = @Schema(implementation = ExportJobResponse.class))
+          }
+        ),
+        @ApiResponse(
+            responseCode = "400",
+            description = "Bad format requested."
+          ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Advisory not found."
+        ),
+        @ApiResponse(
+          responseCode = "429",
+          description = "Too many export jobs are waiting."
+        )
+      })
+    public ResponseEntity<ExportJobResponse> createExportJob(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to export.")
+            String advisoryId,
+            @RequestParam(required = false)
+            @Parameter(description = "The format in which the document shall be exported.")
+            ExportFormat format
+    ) {
+        LOG.debug("createExportJob");
+        checkValidUuid(advisoryId);
+        try {
+            final ExportJob job = exportJobService.createJob(advisoryId, format);
+            final URI jobLocation = URI.create("advisories/" + advisoryId + "/exports/" + job.getJobId());
+            return ResponseEntity.accepted().location(jobLocation).body(convertToExportJobResponse(job));
+        } catch (IOException e) {
+            LOG.error("Error happened when creating the export job: ", e);
+            return ResponseEntity.internalServerError().build();
+        } catch (CsafException ex) {
+            return ResponseEntity.status(ex.getRecommendedHttpState()).build();
+        }
+    }
+
+    /**
+     * Read the status of an export job
+     *
+     * @param advisoryId ID of the exported CSAF document
+     * @param jobId      ID of the export job
+     * @return the job
+     */
+    @GetMapping("/{advisoryId}/exports/{jobId}")
+    @Operation(
+            summary = "Get the status of an export job.",
+            tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "Status of the export job.",
+          content = {
+              @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+                      schema = @Schema(implementation = ExportJobResponse.class))
+          }
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Export job not found or expired."
+        )
+      })
+    public ResponseEntity<ExportJobResponse> readExportJob(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the exported advisory.")
+            String advisoryId,
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the export job.")
+            String jobId
+    ) {
+        LOG.debug("readExportJob");
+        checkValidUuid(advisoryId);
+        checkValidUuid(jobId);
+        try {
+            return ResponseEntity.ok(convertToExportJobResponse(exportJobService.getJob(advisoryId, jobId)));
+        } catch (CsafException ex) {
+            return ResponseEntity.status(ex.getRecommendedHttpState()).build();
+        }
+    }
+
+    /**
+     * Download the result of a finished export job
+     *
+     * @param advisoryId ID of the exported CSAF document
+     * @param jobId      ID of the export job
+     * @return the converted advisory
+     */
+    @GetMapping(
+            value = "/{advisoryId}/exports/{jobId}/download",
+            produces = {
+                    MediaType.APPLICATION_JSON_VALUE,
+                    MediaType.TEXT_HTML_VALUE,
+                    MediaType.TEXT_MARKDOWN_VALUE,
+                    MediaType.APPLICATION_PDF_VALUE
+            })
+    @Operation(
+            summary = "Download the result of an export job.",
+            tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "The exported advisory.",
+          content = {
+              @Content(mediaType = MediaType.APPLICATION_PDF_VALUE),
+              @Content(mediaType = MediaType.APPLICATION_XHTML_XML_VALUE),
+              @Content(mediaType = MediaType.APPLICATION_JSON_VALUE),
+              @Content(mediaType = MediaType.TEXT_MARKDOWN_VALUE)
+          }
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Export job not found or expired."
+        ),
+        @ApiResponse(
+          responseCode = "409",
+          description = "Export job not finished or failed."
+        ),
+        @ApiResponse(
+          responseCode = "500",
+          description = "Error reading the export."
+        )
+      })
+    public ResponseEntity<StreamingResponseBody> downloadExport(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the exported advisory.")
+            String advisoryId,
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the export job.")
+            String jobId
+    ) {
+        LOG.debug("downloadExport");
+        checkValidUuid(advisoryId);
+        checkValidUuid(jobId);
+        try {
+            final ExportJob job = exportJobService.getJob(advisoryId, jobId);
+            final InputStream export = exportJobService.openResult(advisoryId, jobId);
+            final StreamingResponseBody body = outputStream -> {
+                try (export) {
+                    export.transferTo(outputStream);
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(determineExportResponseContentType(job.getFormat()))
+                    .body(body);
+        } catch (IOException e) {
+            LOG.error("Error happened when reading the export: ", e);
+            return ResponseEntity.internalServerError().build();
+        } catch (CsafException ex) {
+            return ResponseEntity.status(ex.getRecommendedHttpState()).build();
+        }
+    }
+
+    private static ExportJobResponse convertToExportJobResponse(ExportJob job) {
+
+        return new ExportJobResponse()
+                .setJobId(job.getJobId())
+                .setAdvisoryId(job.getAdvisoryId())
+                .setFormat(job.getFormat())
+                .setStatus(job.getStatus())
+                .setError(job.getError());
+    }
+
     /**
      * Change workflow state of a CSAF document to Draft
      *
@@ -1425,6 +2109,17 @@ public class AdvisoryController {
         }
     }
 
+    /**
+     * Create an OK response with the ETag, without ETag if it is not known
+     *
+     * @param eTag the quoted ETag or null
+     * @return the builder of the response
+     */
+    private static ResponseEntity.BodyBuilder okWithETag(@Nullable String eTag) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        return eTag != null ? response.eTag(eTag) : response;
+    }
+
     /**
      * Sanitize request parameter
      */
@@ -1433,13 +2128,18 @@ public class AdvisoryController {
     }
 
     /**
-     * Check whether the given id is a valid uuid
+     * Check whether the given id is a valid uuid. In a partitioned database the id is prefixed by the uuid
+     * of its partition, the key of an advisory in its partition is no uuid.
      *
      * @param uuidString the string to check
      */
-    private static void checkValidUuid(String uuidString) {
+    static void checkValidUuid(String uuidString) {
         try {
-            UUID.fromString(uuidString);
+            String[] idParts = uuidString.split(CouchDbService.PARTITION_SEPARATOR, 2);
+            UUID.fromString(idParts[0]);
+            if (idParts.length == 2 && !CouchDbService.ADVISORY_DOCUMENT_KEY.equals(idParts[1])) {
+                UUID.fromString(idParts[1]);
+            }
         } catch (IllegalArgumentException iaEx) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Not a valid UUID!", iaEx);
         }
@@ -0,0 +1,307 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest;
+
+import static de.bsi.secvisogram.csaf_cms_backend.rest.AdvisoryController.checkValidUuid;
+
+import de.bsi.secvisogram.csaf_cms_backend.SecvisogramApplication;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AnswerInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.function.client.WebClientException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variants of the read endpoints of {@link AdvisoryController}.
+ * The request thread is released while the database is queried, the response is written when the result arrives.
+ */
+@RestController
+@RequestMapping(SecvisogramApplication.BASE_ROUTE + "reactive/advisories")
+@Tag(
+        name = "Advisory",
+        description = "API for Creating, Retrieving, Updating and Deleting of CSAF documents," +
+                      " including their Versions, Comments and Workflow States."
+)
+public class ReactiveAdvisoryController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReactiveAdvisoryController.class);
+
+    @Autowired
+    private AdvisoryService advisoryService;
+
+    /**
+     * Read all advisories, optionally filtered by a search expression, without blocking the request thread
+     *
+     * @param expression optional search expression as json string
+     * @return response with list of advisories satisfying the search criteria
+     */
+    @GetMapping("")
+    @Operation(
+      summary = "Get all authorized advisories without blocking.",
+      tags = {"Advisory"},
+      description = "Same result as the list of advisories, but the request thread is not blocked while the" +
+                    " advisories are read from the database."
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "List of all advisories that the user can access.",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            array = @ArraySchema(
+              schema = @Schema(implementation = AdvisoryInformationResponse.class)
+            )
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Invalid filter expression"
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "500",
+        description = "Error reading advisories"
+      )
+    })
+    public Mono<ResponseEntity<List<AdvisoryInformationResponse>>> listCsafDocuments(
+            @RequestParam(required = false)
+            @Parameter(in = ParameterIn.QUERY, name = "expression",
+                    description = "The filter expression in JSON format, see the list of advisories.",
+                    schema = @Schema(type = "string", format = "json",
+                            description = "An optional expression in JSON to filter documents by.")
+            )
+            String expression
+    ) {
+
+        LOG.debug("findAdvisoriesReactive");
+        try {
+            return advisoryService.getAdvisoryInformationsAsFlux(expression)
+                    .collectList()
+                    .map(ResponseEntity::ok)
+                    .onErrorResume(ReactiveAdvisoryController::errorResponse);
+        } catch (CsafException ex) {
+            return Mono.just(ResponseEntity.status(ex.getRecommendedHttpState()).build());
+        } catch (AccessDeniedException adEx) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+    }
+
+    /**
+     * Get a single advisory without blocking the request thread
+     *
+     * @param advisoryId ID of the CSAF document that should be read
+     * @return response with the requested CSAF document
+     */
+    @GetMapping("/{advisoryId}")
+    @Operation(
+      summary = "Get a single Advisory without blocking.",
+      description = "Same result as the single advisory, but the request thread is not blocked while the" +
+                    " advisory is read from the database.",
+      tags = {"Advisory"}
+    )
+    @ApiResponses(value = {
+      @ApiResponse(
+        responseCode = "200",
+        description = "Single requested advisory",
+        content = {
+          @Content(
+            mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(
+                implementation = AdvisoryResponse.class
+            )
+          )
+        }
+      ),
+      @ApiResponse(
+        responseCode = "400",
+        description = "Invalid UUID"
+      ),
+      @ApiResponse(
+        responseCode = "401",
+        description = "Unauthorized access."
+      ),
+      @ApiResponse(
+        responseCode = "404",
+        description = "Requested advisory not found."
+      ),
+      @ApiResponse(
+        responseCode = "500",
+        description = "Error reading advisory."
+      )
+    })
+    public Mono<ResponseEntity<AdvisoryResponse>> readCsafDocument(
+            @PathVariable
+            @Parameter(
+                    in = ParameterIn.PATH,
+                    description = "The ID of the advisory to read."
+            ) String advisoryId
+    ) {
+
+        LOG.debug("readCsafDocumentReactive");
+        checkValidUuid(advisoryId);
+        return advisoryService.getAdvisoryAsMono(advisoryId)
+                .map(ResponseEntity::ok)
+                .onErrorResume(ReactiveAdvisoryController::errorResponse);
+    }
+
+    /**
+     * Get a list of all comments of an advisory without blocking the request thread
+     *
+     * @param advisoryId ID of the advisory to get the comments of
+     * @return list of comments
+     */
+    @GetMapping("/{advisoryId}/comments")
+    @Operation(
+            summary = "Show comments of an advisory without blocking.", tags = {"Advisory"},
+            description = "Same result as the comments of an advisory, but the request thread is not blocked while the" +
+                          " comments are read from the database.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "List of all comments for an advisory.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              array = @ArraySchema(
+                schema = @Schema(implementation = CommentInformationResponse.class)
+              )
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "400",
+          description = "Invalid advisory id."
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Advisory not found."
+        )
+      })
+    public Mono<ResponseEntity<List<CommentInformationResponse>>> listComments(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to get the comments of.")
+            String advisoryId
+    ) {
+
+        LOG.debug("listCommentsReactive");
+        checkValidUuid(advisoryId);
+        // defer to answer a denied access of the service like an error of the result
+        return Flux.defer(() -> advisoryService.getCommentsAsFlux(advisoryId))
+                .collectList()
+                .map(ResponseEntity::ok)
+                .onErrorResume(ReactiveAdvisoryController::errorResponse);
+    }
+
+    /**
+     * Get a list of all answers of a comment without blocking the request thread
+     *
+     * @param advisoryId ID of the advisory, the comment for which to get answers for belongs to
+     * @param commentId  ID of the comment to get answers for
+     * @return list of answers
+     */
+    @GetMapping("/{advisoryId}/comments/{commentId}/answers")
+    @Operation(
+            summary = "Show answers of a comment without blocking.", tags = {"Advisory"},
+            description = "Same result as the answers of a comment, but the request thread is not blocked while the" +
+                          " answers are read from the database.")
+    @ApiResponses(value = {
+        @ApiResponse(
+          responseCode = "200",
+          description = "List of all answers for a comment.",
+          content = {
+            @Content(
+              mediaType = MediaType.APPLICATION_JSON_VALUE,
+              array = @ArraySchema(
+                schema = @Schema(implementation = AnswerInformationResponse.class)
+              )
+            )
+          }
+        ),
+        @ApiResponse(
+          responseCode = "400",
+          description = "Invalid advisory id or comment id."
+        ),
+        @ApiResponse(
+          responseCode = "401",
+          description = "Unauthorized access."
+        ),
+        @ApiResponse(
+          responseCode = "404",
+          description = "Advisory or comment not found."
+        )
+      })
+    public Mono<ResponseEntity<List<AnswerInformationResponse>>> listAnswers(
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the advisory to the comment belongs to.")
+            String advisoryId,
+            @PathVariable
+            @Parameter(in = ParameterIn.PATH, description = "The ID of the comment to get answers of.")
+            String commentId
+    ) {
+
+        LOG.debug("listAnswersReactive");
+        checkValidUuid(advisoryId);
+        checkValidUuid(commentId);
+        return Flux.defer(() -> advisoryService.getAnswersAsFlux(advisoryId, commentId))
+                .collectList()
+                .map(ResponseEntity::ok)
+                .onErrorResume(ReactiveAdvisoryController::errorResponse);
+    }
+
+    /**
+     * Map an error of the reactive pipeline to the same response as in the blocking endpoints
+     *
+     * @param error the error
+     * @return the response for the error
+     */
+    private static <T> Mono<ResponseEntity<T>> errorResponse(Throwable error) {
+
+        if (error instanceof IdNotFoundException) {
+            LOG.info("Advisory with given ID not found");
+            return Mono.just(ResponseEntity.notFound().build());
+        } else if (error instanceof CsafException csafEx) {
+            return Mono.just(ResponseEntity.status(csafEx.getRecommendedHttpState()).build());
+        } else if (error instanceof AccessDeniedException) {
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        } else if (error instanceof DatabaseException || error instanceof WebClientException) {
+            LOG.error("Error reading from database", error);
+            return Mono.just(ResponseEntity.internalServerError().build());
+        }
+        return Mono.error(error);
+    }
+}
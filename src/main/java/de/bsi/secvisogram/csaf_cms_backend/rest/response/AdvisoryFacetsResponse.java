@@ -0,0 +1,80 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.Map;
+
+/**
+ * Number of advisories per value of the facet fields
+ */
+@Schema(name = "AdvisoryFacets")
+public class AdvisoryFacetsResponse {
+
+    private Map<String, Long> workflowState;
+    private Map<String, Long> documentTrackingStatus;
+    private Map<String, Long> tlpLabel;
+    private Map<String, Long> owner;
+    private Map<String, Long> initialReleaseYear;
+    private Map<String, Long> commentsPerAdvisory;
+
+    @Schema(description = "Number of advisories per workflow state.", example = "{\"Draft\": 12, \"Published\": 3}")
+    public Map<String, Long> getWorkflowState() {
+        return workflowState;
+    }
+
+    public AdvisoryFacetsResponse setWorkflowState(Map<String, Long> workflowState) {
+        this.workflowState = workflowState;
+        return this;
+    }
+
+    @Schema(description = "Number of advisories per /document/tracking/status.", example = "{\"draft\": 12, \"final\": 3}")
+    public Map<String, Long> getDocumentTrackingStatus() {
+        return documentTrackingStatus;
+    }
+
+    public AdvisoryFacetsResponse setDocumentTrackingStatus(Map<String, Long> documentTrackingStatus) {
+        this.documentTrackingStatus = documentTrackingStatus;
+        return this;
+    }
+
+    @Schema(description = "Number of advisories per /document/distribution/tlp/label.", example = "{\"WHITE\": 10, \"AMBER\": 5}")
+    public Map<String, Long> getTlpLabel() {
+        return tlpLabel;
+    }
+
+    public AdvisoryFacetsResponse setTlpLabel(Map<String, Long> tlpLabel) {
+        this.tlpLabel = tlpLabel;
+        return this;
+    }
+
+    @Schema(description = "Number of advisories per owner.", example = "{\"Mustermann\": 15}")
+    public Map<String, Long> getOwner() {
+        return owner;
+    }
+
+    public AdvisoryFacetsResponse setOwner(Map<String, Long> owner) {
+        this.owner = owner;
+        return this;
+    }
+
+    @Schema(description = "Number of advisories per year of /document/tracking/initial_release_date.",
+            example = "{\"2022\": 7, \"2023\": 8}")
+    public Map<String, Long> getInitialReleaseYear() {
+        return initialReleaseYear;
+    }
+
+    public AdvisoryFacetsResponse setInitialReleaseYear(Map<String, Long> initialReleaseYear) {
+        this.initialReleaseYear = initialReleaseYear;
+        return this;
+    }
+
+    @Schema(description = "Number of comments and answers per advisory id, advisories without comments are missing.",
+            example = "{\"7a9b4e2c-1b3d-4c5e-8f6a-0b1c2d3e4f5a\": 4}")
+    public Map<String, Long> getCommentsPerAdvisory() {
+        return commentsPerAdvisory;
+    }
+
+    public AdvisoryFacetsResponse setCommentsPerAdvisory(Map<String, Long> commentsPerAdvisory) {
+        this.commentsPerAdvisory = commentsPerAdvisory;
+        return this;
+    }
+}
@@ -0,0 +1,55 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * An advisory found by the full-text search
+ */
+@Schema(name = "AdvisorySearchHit")
+public class AdvisorySearchHitResponse {
+
+    private String advisoryId;
+    private float score;
+    private String title;
+    private String documentTrackingId;
+
+    @Schema(description = "The ID of the advisory.", example = "2a0f4e2e-c0a5-4c8a-8ab5-2e7b6f3e1f1d")
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public AdvisorySearchHitResponse setAdvisoryId(String advisoryId) {
+        this.advisoryId = advisoryId;
+        return this;
+    }
+
+    @Schema(description = "The relevance of the advisory for the search text, the hits are sorted by it.", example = "3.14")
+    public float getScore() {
+        return score;
+    }
+
+    public AdvisorySearchHitResponse setScore(float score) {
+        this.score = score;
+        return this;
+    }
+
+    @Schema(description = "The title of the advisory.", example = "Log4j vulnerability in product XY")
+    public String getTitle() {
+        return title;
+    }
+
+    public AdvisorySearchHitResponse setTitle(String title) {
+        this.title = title;
+        return this;
+    }
+
+    @Schema(description = "The tracking ID of the advisory.", example = "Example Company - 2019-YH3234")
+    public String getDocumentTrackingId() {
+        return documentTrackingId;
+    }
+
+    public AdvisorySearchHitResponse setDocumentTrackingId(String documentTrackingId) {
+        this.documentTrackingId = documentTrackingId;
+        return this;
+    }
+}
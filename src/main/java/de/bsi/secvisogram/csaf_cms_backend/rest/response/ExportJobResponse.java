@@ -0,0 +1,69 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportJobStatus;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * An export of an advisory that is created in the background
+ */
+@Schema(name = "ExportJob")
+public class ExportJobResponse {
+
+    private String jobId;
+    private String advisoryId;
+    private ExportFormat format;
+    private ExportJobStatus status;
+    private String error;
+
+    @Schema(description = "The ID of the export job.", example = "0b5f8e7c-7b0f-4d57-9f3c-2a4e6b1d8c90")
+    public String getJobId() {
+        return jobId;
+    }
+
+    public ExportJobResponse setJobId(String jobId) {
+        this.jobId = jobId;
+        return this;
+    }
+
+    @Schema(description = "The ID of the exported advisory.", example = "2a0f4e2e-c0a5-4c8a-8ab5-2e7b6f3e1f1d")
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public ExportJobResponse setAdvisoryId(String advisoryId) {
+        this.advisoryId = advisoryId;
+        return this;
+    }
+
+    @Schema(description = "The format of the export.", example = "PDF")
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    public ExportJobResponse setFormat(ExportFormat format) {
+        this.format = format;
+        return this;
+    }
+
+    @Schema(description = "The status of the export job, the export can be downloaded when it is finished.",
+            example = "Running")
+    public ExportJobStatus getStatus() {
+        return status;
+    }
+
+    public ExportJobResponse setStatus(ExportJobStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    @Schema(description = "The reason of a failed export job.", example = "The cli tool returned with exit code 1")
+    public String getError() {
+        return error;
+    }
+
+    public ExportJobResponse setError(String error) {
+        this.error = error;
+        return this;
+    }
+}
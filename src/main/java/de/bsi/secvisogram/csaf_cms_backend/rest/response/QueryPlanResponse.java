@@ -0,0 +1,72 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest.response;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.Expression;
+import io.swagger.v3.oas.annotations.media.Schema;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plan of the CouchDB query for a search expression
+ */
+@Schema(name = "QueryPlan")
+public class QueryPlanResponse {
+
+    private Expression expression;
+    private Map<String, Object> selector;
+    private String index;
+    private String usedIndex;
+    private List<String> steps;
+
+    @Schema(description = "The search expression after flattening, removing duplicates and ordering by selectivity.")
+    public Expression getExpression() {
+        return expression;
+    }
+
+    public QueryPlanResponse setExpression(Expression expression) {
+        this.expression = expression;
+        return this;
+    }
+
+    @Schema(description = "The selector sent to the _find endpoint of CouchDB.",
+            example = "{\"$and\": [{\"type\": {\"$eq\": \"Advisory\"}}, {\"csaf\": {\"document\": {\"title\": {\"$gte\": \"Log\", \"$lt\": \"Log\\ufff0\"}}}}]}")
+    public Map<String, Object> getSelector() {
+        return selector;
+    }
+
+    public QueryPlanResponse setSelector(Map<String, Object> selector) {
+        this.selector = selector;
+        return this;
+    }
+
+    @Schema(description = "The index chosen by the planner, missing if no index covers the query.",
+            example = "csaf-title-type-index")
+    public String getIndex() {
+        return index;
+    }
+
+    public QueryPlanResponse setIndex(String index) {
+        this.index = index;
+        return this;
+    }
+
+    @Schema(description = "The index CouchDB uses according to _explain, _all_docs for a full scan.",
+            example = "csaf-title-type-index")
+    public String getUsedIndex() {
+        return usedIndex;
+    }
+
+    public QueryPlanResponse setUsedIndex(String usedIndex) {
+        this.usedIndex = usedIndex;
+        return this;
+    }
+
+    @Schema(description = "The rewrites and decisions of the planner in the order they were applied.")
+    public List<String> getSteps() {
+        return steps;
+    }
+
+    public QueryPlanResponse setSteps(List<String> steps) {
+        this.steps = steps;
+        return this;
+    }
+}
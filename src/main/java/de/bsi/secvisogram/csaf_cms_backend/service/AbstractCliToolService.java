@@ -3,13 +3,20 @@ package de.bsi.secvisogram.csaf_cms_backend.service;
 import com.oracle.truffle.js.runtime.SuppressFBWarnings;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.slf4j.Logger;
@@ -21,6 +28,8 @@ import org.springframework.http.HttpStatus;
  */
 public abstract class AbstractCliToolService {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractCliToolService.class);
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_ERROR_OUTPUT = 8192;
     private Integer processTimeoutSeconds = 60;
     private final String baseCommand;
 
@@ -86,6 +95,108 @@ public abstract class AbstractCliToolService {
         }
     }
 
+    /**
+     * Call the cli tool with the given args, write the input to its standard input and copy its standard output
+     * to the output while the tool writes it. Input, output and error output pass through bounded buffers,
+     * the tool is killed when it takes longer than the process timeout.
+     *
+     * @param input  the text written to the standard input of the cli tool (in UTF-8)
+     * @param output receives the standard output of the cli tool, it is not closed
+     * @param args   the arguments to call the cli tool with
+     * @throws IOException on any error with the call of the cli tool or writing the output
+     * @throws CsafException if the cli tool took too long
+     */
+    @SuppressFBWarnings(value = "COMMAND_INJECTION", justification = "We have to call a process here")
+    public void pipe(@Nonnull final String input, @Nonnull final OutputStream output, final String... args)
+        throws IOException, CsafException {
+        final List<String> command = new ArrayList<>(args.length + 1);
+        command.add(this.baseCommand);
+        command.addAll(Arrays.asList(args));
+
+        LOG.debug("Piping through the following command: " + String.join(" ", command));
+        final Process process = new ProcessBuilder(command).start();
+        final CompletableFuture<Process> exit = process.onExit().orTimeout(this.processTimeoutSeconds, TimeUnit.SECONDS);
+        exit.whenComplete((exitedProcess, ex) -> {
+            if (ex != null) {
+                process.destroyForcibly();
+            }
+        });
+        final ByteArrayOutputStream errorOutput = new ByteArrayOutputStream();
+        final Thread inputWriter = startPipeThread("input", () -> writeInput(process, input));
+        final Thread errorReader = startPipeThread("error", () -> readErrorOutput(process, errorOutput));
+        try (InputStream processOutput = process.getInputStream()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = processOutput.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+            }
+            exit.join();
+            inputWriter.join();
+            errorReader.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof TimeoutException) {
+                throw new CsafException(
+                        "The call of the cli tool took too longer than " + this.processTimeoutSeconds + " seconds to process",
+                        CsafExceptionKey.ExportTimeout,
+                        HttpStatus.INTERNAL_SERVER_ERROR
+                );
+            }
+            throw new IOException("The cli tool could not be called", ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the cli tool", ex);
+        } finally {
+            if (process.isAlive()) {
+                // the output could not be written, e.g. the client closed the connection
+                process.destroyForcibly();
+            }
+        }
+        if (process.exitValue() != 0) {
+            final String errorMessage;
+            synchronized (errorOutput) {
+                errorMessage = errorOutput.toString(StandardCharsets.UTF_8);
+            }
+            throw new IOException("The cli tool returned with exit code " + process.exitValue() + " "
+                    + "and output: " + errorMessage);
+        }
+    }
+
+    private Thread startPipeThread(final String stream, final Runnable pipe) {
+
+        final Thread thread = new Thread(pipe, this.baseCommand + "-" + stream);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void writeInput(final Process process, final String input) {
+
+        try (Writer processInput = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+            processInput.write(input);
+        } catch (IOException ex) {
+            // the tool stopped reading, its exit code reports the reason
+            LOG.debug("Could not write the input of the cli tool", ex);
+        }
+    }
+
+    /**
+     * Read the error output until the tool exits, only the start is kept for the error message
+     */
+    private static void readErrorOutput(final Process process, final ByteArrayOutputStream errorOutput) {
+
+        try (InputStream processError = process.getErrorStream()) {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = processError.read(buffer)) >= 0) {
+                synchronized (errorOutput) {
+                    errorOutput.write(buffer, 0, Math.max(0, Math.min(read, MAX_ERROR_OUTPUT - errorOutput.size())));
+                }
+            }
+        } catch (IOException ex) {
+            LOG.debug("Could not read the error output of the cli tool", ex);
+        }
+    }
+
     private static String processInputStreamToString(@Nonnull final InputStream inputStream) throws IOException {
         return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
     }
@@ -0,0 +1,33 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An export of an advisory that is created while it is written.
+ * An export that is not written has to be closed.
+ */
+@FunctionalInterface
+public interface AdvisoryExportStream extends Closeable {
+
+    /**
+     * Create the export and write it to the output
+     *
+     * @param outputStream receives the export, it is not closed
+     * @throws IOException   error creating or writing the export
+     * @throws CsafException if the export took too long
+     */
+    void writeTo(OutputStream outputStream) throws IOException, CsafException;
+
+    /**
+     * Release the resources of the export without writing it, an export of a new rendering has none
+     *
+     * @throws IOException error releasing the resources
+     */
+    @Override
+    default void close() throws IOException {
+        // nothing to release
+    }
+}
@@ -0,0 +1,20 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Information on advisories that is read from the database while it is consumed
+ */
+@FunctionalInterface
+public interface AdvisoryInformationStream {
+
+    /**
+     * Read the advisory information and pass each one to the consumer
+     *
+     * @param infoConsumer receives each advisory information when it is read
+     * @throws IOException error reading from the database
+     */
+    void forEach(Consumer<AdvisoryInformationResponse> infoConsumer) throws IOException;
+}
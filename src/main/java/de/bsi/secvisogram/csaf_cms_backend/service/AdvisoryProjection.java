@@ -0,0 +1,414 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.ID_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.REVISION_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.BulkWriteDocument;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DbField;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-memory projection of the summary fields of all advisories and advisory versions.
+ * A background thread follows the _changes feed of the database and reads the summary fields of changed documents.
+ * Documents written by this application are applied directly after the write, so users read their own changes.
+ * The projection and the sequence of the last processed change are saved to a snapshot file,
+ * on the next start only the changes since this sequence are read.
+ * Until the feed is caught up, {@link #isReady()} is false and the callers have to query the database.
+ */
+@Service
+public class AdvisoryProjection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisoryProjection.class);
+    private static final long ERROR_DELAY_MILLIS = 5000;
+
+    @Value("${csaf.projection.enabled}")
+    private boolean enabled;
+
+    @Value("${csaf.projection.snapshotFile}")
+    private String snapshotFile;
+
+    @Value("${csaf.projection.changesLimit}")
+    private long changesLimit;
+
+    @Value("${csaf.projection.pollTimeoutMillis}")
+    private long pollTimeoutMillis;
+
+    @Value("${csaf.projection.snapshotIntervalSeconds}")
+    private long snapshotIntervalSeconds;
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    private final Map<String, AdvisorySummary> summaries = new ConcurrentHashMap<>();
+    // distinguishes the versions of different application instances and restarts
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong modificationCount = new AtomicLong();
+    private volatile String lastSequence = "0";
+    private volatile boolean ready;
+    private volatile boolean running;
+    private Thread feedThread;
+
+    @PostConstruct
+    void start() {
+
+        if (!enabled) {
+            return;
+        }
+        loadSnapshot();
+        this.running = true;
+        this.feedThread = new Thread(this::followChanges, "advisory-projection");
+        this.feedThread.setDaemon(true);
+        this.feedThread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+
+        if (!enabled) {
+            return;
+        }
+        this.running = false;
+        this.feedThread.interrupt();
+        this.feedThread.join(pollTimeoutMillis);
+        saveSnapshot();
+    }
+
+    /**
+     * @return true - the projection is caught up with the database and can answer queries
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Get the version of the projection, it changes with every change of a summary
+     *
+     * @return the version of the projection
+     */
+    public String getVersion() {
+        return instanceId + "-" + modificationCount.get();
+    }
+
+    /**
+     * Get the summaries of all objects of the given type
+     *
+     * @param objectType Advisory or AdvisoryVersion
+     * @return new information objects for all summaries of the type
+     */
+    public List<AdvisoryInformationResponse> getAdvisoryInformations(ObjectType objectType) {
+
+        Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+        return summaries.values().stream()
+                .filter(summary -> objectType == summary.type)
+                .map(summary -> summary.toInformationResponse(infoFields))
+                .toList();
+    }
+
+    /**
+     * Get the summary of an advisory
+     *
+     * @param advisoryId the id of the advisory
+     * @return a new information object, null if there is no advisory with this id
+     */
+    public AdvisoryInformationResponse getAdvisoryInformation(String advisoryId) {
+
+        AdvisorySummary summary = summaries.get(advisoryId);
+        return summary != null && summary.type == ObjectType.Advisory
+                ? summary.toInformationResponse(AdvisoryWorkflowUtil.advisoryReadFields())
+                : null;
+    }
+
+    /**
+     * Apply documents written by this application, so they are visible before they arrive in the _changes feed.
+     * Only a change that was written completely is applied, a partly written change may be rolled back.
+     *
+     * @param documents the written documents
+     * @param results   the results of the write in the order of the documents
+     */
+    public void documentsWritten(List<BulkWriteDocument> documents, List<DocumentResult> results) {
+
+        if (!enabled || !results.stream().allMatch(result -> Boolean.TRUE.equals(result.isOk()))) {
+            return;
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < results.size(); i++) {
+            DocumentResult result = results.get(i);
+            try {
+                ObjectNode doc = (ObjectNode) mapper.readTree(documents.get(i).getJson());
+                doc.put(ID_FIELD.getDbName(), result.getId());
+                doc.put(REVISION_FIELD.getDbName(), result.getRev());
+                applyDocument(doc);
+            } catch (IOException | ClassCastException ex) {
+                LOG.warn("Written document could not be applied to the projection", ex);
+            }
+        }
+    }
+
+    /**
+     * Apply a document changed by an update handler, so the change is visible before it arrives in the _changes feed.
+     * The changed fields are only applied to the summary of the revision the handler changed, a summary that
+     * missed an earlier change is updated from the _changes feed instead.
+     *
+     * @param id            id of the changed document
+     * @param newRevision   the revision written by the update handler
+     * @param changedValues the new values of the changed summary fields
+     */
+    public void documentUpdated(String id, String newRevision, Map<DbField, String> changedValues) {
+
+        if (!enabled || newRevision == null) {
+            return;
+        }
+        int generation = revisionGeneration(newRevision);
+        AdvisorySummary existing = summaries.get(id);
+        if (existing != null && existing.type != null && existing.generation == generation - 1
+                && summaries.replace(id, existing, existing.updated(generation, newRevision, changedValues))) {
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Remove a deleted document from the projection, it is kept as tombstone until the deletion is read
+     * from the _changes feed
+     *
+     * @param id              id of the deleted document
+     * @param deletedRevision the revision of the document before it was deleted
+     */
+    public void documentDeleted(String id, String deletedRevision) {
+
+        if (enabled) {
+            putIfNewer(id, AdvisorySummary.deleted(revisionGeneration(deletedRevision) + 1));
+        }
+    }
+
+    private void followChanges() {
+
+        Instant lastSnapshot = Instant.now();
+        while (running) {
+            try {
+                int changeCount = readChanges(ready);
+                if (changeCount < changesLimit && !ready) {
+                    LOG.info("Advisory projection is caught up with {} advisories", summaries.size());
+                    ready = true;
+                }
+                if (Instant.now().isAfter(lastSnapshot.plusSeconds(snapshotIntervalSeconds))) {
+                    saveSnapshot();
+                    lastSnapshot = Instant.now();
+                }
+            } catch (RuntimeException | IOException ex) {
+                if (running) {
+                    LOG.warn("Error reading the changes feed, retry in {} ms", ERROR_DELAY_MILLIS, ex);
+                    try {
+                        Thread.sleep(ERROR_DELAY_MILLIS);
+                    } catch (InterruptedException iex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read one batch of changes and the summaries of the changed documents
+     *
+     * @param longpoll true - wait for changes if there are none
+     * @return number of read changes
+     */
+    int readChanges(boolean longpoll) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode changesResult;
+        try (InputStream changesStream = couchDbService.readChangesAsStream(lastSequence, changesLimit, longpoll, pollTimeoutMillis)) {
+            changesResult = mapper.readTree(changesStream);
+        }
+        ArrayNode changes = (ArrayNode) changesResult.get("results");
+        List<String> changedIds = new ArrayList<>();
+        for (JsonNode change : changes) {
+            String id = change.get("id").asText();
+            if (change.path("deleted").asBoolean(false)) {
+                removeDeleted(id, revisionGeneration(change.at("/changes/0/rev").asText()));
+            } else if (!id.startsWith("_design/")) {
+                changedIds.add(id);
+            }
+        }
+        if (!changedIds.isEmpty()) {
+            List<DbField> fields = new ArrayList<>(AdvisoryWorkflowUtil.advisoryReadFields().keySet());
+            fields.add(TYPE_FIELD);
+            Map<String, Object> selector = Map.of(
+                    ID_FIELD.getDbName(), Map.of("$in", changedIds),
+                    TYPE_FIELD.getDbName(), Map.of("$in", List.of(ObjectType.Advisory.name(), ObjectType.AdvisoryVersion.name())));
+            for (JsonNode doc : AdvisoryWorkflowUtil.findDocuments(couchDbService, selector, fields)) {
+                applyDocument(doc);
+            }
+        }
+        lastSequence = changesResult.get("last_seq").asText();
+        return changes.size();
+    }
+
+    private void applyDocument(JsonNode doc) {
+
+        String type = doc.path(TYPE_FIELD.getDbName()).asText();
+        if (ObjectType.Advisory.name().equals(type) || ObjectType.AdvisoryVersion.name().equals(type)) {
+            AdvisorySummary summary = AdvisorySummary.fromDocument(doc, ObjectType.valueOf(type));
+            putIfNewer(ID_FIELD.stringVal(doc), summary);
+        }
+    }
+
+    private void putIfNewer(String id, AdvisorySummary summary) {
+
+        summaries.merge(id, summary, (existing, changed) -> changed.generation > existing.generation ? changed : existing);
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Remove a document whose deletion was read from the _changes feed, together with its tombstone.
+     * Older changes of the document are not read from the feed again, so the tombstone is no longer needed.
+     */
+    private void removeDeleted(String id, int deletedGeneration) {
+
+        summaries.computeIfPresent(id, (key, existing) -> existing.generation <= deletedGeneration ? null : existing);
+        modificationCount.incrementAndGet();
+    }
+
+    private static int revisionGeneration(String revision) {
+
+        int separator = revision.indexOf('-');
+        return separator > 0 ? Integer.parseInt(revision.substring(0, separator)) : 0;
+    }
+
+    private void loadSnapshot() {
+
+        Path snapshotPath = Path.of(snapshotFile);
+        if (!Files.exists(snapshotPath)) {
+            return;
+        }
+        try (InputStream snapshotStream = Files.newInputStream(snapshotPath)) {
+            JsonNode snapshot = new ObjectMapper().readTree(snapshotStream);
+            for (JsonNode doc : snapshot.get("advisories")) {
+                applyDocument(doc);
+            }
+            lastSequence = snapshot.get("sequence").asText();
+            LOG.info("Advisory projection loaded {} advisories from snapshot", summaries.size());
+        } catch (IOException | RuntimeException ex) {
+            LOG.warn("Snapshot of the advisory projection could not be read, the projection is rebuilt", ex);
+            summaries.clear();
+            lastSequence = "0";
+        }
+    }
+
+    void saveSnapshot() {
+
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode snapshot = mapper.createObjectNode();
+        // read the sequence first: changes applied later are read again on the next start
+        snapshot.put("sequence", lastSequence);
+        ArrayNode advisories = snapshot.putArray("advisories");
+        summaries.forEach((id, summary) -> {
+            if (summary.type != null) {
+                advisories.add(summary.toDocument(mapper, id));
+            }
+        });
+        try {
+            Path snapshotPath = Path.of(snapshotFile).toAbsolutePath();
+            Files.createDirectories(snapshotPath.getParent());
+            Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            mapper.writeValue(tempPath.toFile(), snapshot);
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOG.warn("Snapshot of the advisory projection could not be written", ex);
+        }
+    }
+
+    /**
+     * The summary fields of one advisory or advisory version.
+     * A document deleted by this application is kept without type until its deletion is read from the _changes feed,
+     * so an older change of it that is applied late is not applied again.
+     */
+    private static final class AdvisorySummary {
+
+        private final ObjectType type;
+        private final int generation;
+        private final Map<String, String> values;
+
+        private AdvisorySummary(ObjectType type, int generation, Map<String, String> values) {
+            this.type = type;
+            this.generation = generation;
+            this.values = values;
+        }
+
+        static AdvisorySummary deleted(int generation) {
+            return new AdvisorySummary(null, generation, Map.of());
+        }
+
+        static AdvisorySummary fromDocument(JsonNode doc, ObjectType type) {
+
+            Map<String, String> values = new HashMap<>();
+            for (DbField field : AdvisoryWorkflowUtil.advisoryReadFields().keySet()) {
+                JsonNode value = doc.has(field.getDbName())
+                        ? doc.get(field.getDbName())
+                        : doc.at("/" + String.join("/", field.getFieldPath()));
+                if (!value.isMissingNode()) {
+                    values.put(field.getDbName(), value.asText());
+                }
+            }
+            return new AdvisorySummary(type, revisionGeneration(values.getOrDefault(REVISION_FIELD.getDbName(), "")),
+                    values);
+        }
+
+        AdvisorySummary updated(int newGeneration, String newRevision, Map<DbField, String> changedValues) {
+
+            Map<String, String> newValues = new HashMap<>(values);
+            changedValues.forEach((field, value) -> newValues.put(field.getDbName(), value));
+            newValues.put(REVISION_FIELD.getDbName(), newRevision);
+            return new AdvisorySummary(type, newGeneration, newValues);
+        }
+
+        AdvisoryInformationResponse toInformationResponse(Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields) {
+
+            AdvisoryInformationResponse response = new AdvisoryInformationResponse(values.get(ID_FIELD.getDbName()));
+            infoFields.forEach((field, setter) -> setter.accept(response, values.getOrDefault(field.getDbName(), "")));
+            return response;
+        }
+
+        /**
+         * Convert to a flat document that is read again by {@link #fromDocument(JsonNode, ObjectType)}
+         */
+        ObjectNode toDocument(ObjectMapper mapper, String id) {
+
+            ObjectNode doc = mapper.createObjectNode();
+            values.forEach(doc::put);
+            doc.put(ID_FIELD.getDbName(), id);
+            doc.put(TYPE_FIELD.getDbName(), type.name());
+            return doc;
+        }
+    }
+}
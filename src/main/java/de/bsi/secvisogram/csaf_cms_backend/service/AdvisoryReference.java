@@ -0,0 +1,38 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbView;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+
+/**
+ * Values mentioned in advisories that can be looked up, together with the view that maps them to the advisories
+ */
+public enum AdvisoryReference {
+
+    cve(CouchDbView.ADVISORIES_BY_CVE, value -> value.toUpperCase(Locale.ROOT)),
+    cwe(CouchDbView.ADVISORIES_BY_CWE, value -> value.toUpperCase(Locale.ROOT)),
+    productId(CouchDbView.ADVISORIES_BY_PRODUCT_ID, UnaryOperator.identity()),
+    productName(CouchDbView.ADVISORIES_BY_PRODUCT_NAME, value -> value.toLowerCase(Locale.ROOT));
+
+    private final CouchDbView view;
+    private final UnaryOperator<String> keyNormalizer;
+
+    AdvisoryReference(CouchDbView view, UnaryOperator<String> keyNormalizer) {
+        this.view = view;
+        this.keyNormalizer = keyNormalizer;
+    }
+
+    public CouchDbView getView() {
+        return view;
+    }
+
+    /**
+     * Convert a value to the key the view emits for it
+     *
+     * @param value the looked up value
+     * @return the key in the view
+     */
+    public String toViewKey(String value) {
+        return keyNormalizer.apply(value.trim());
+    }
+}
@@ -0,0 +1,20 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryResponse;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Advisories that are read from the database while they are consumed
+ */
+@FunctionalInterface
+public interface AdvisoryResponseStream {
+
+    /**
+     * Read the advisories and pass each one to the consumer
+     *
+     * @param advisoryConsumer receives each advisory when it is read
+     * @throws IOException error reading from the database
+     */
+    void forEach(Consumer<AdvisoryResponse> advisoryConsumer) throws IOException;
+}
@@ -0,0 +1,395 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.ID_FIELD;
+import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DbField;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Full-text index of the advisories in a Lucene index on the local disk.
+ * The title, all texts of csaf.document, of the vulnerabilities and of the product tree are indexed.
+ * A background thread follows the _changes feed of the database and indexes the changed advisories,
+ * so a change is found after it arrived in the feed.
+ * The sequence of the last processed change is committed with the index, on the next start
+ * only the changes since this sequence are read.
+ * Until the feed is caught up, {@link #isReady()} is false and searches are rejected.
+ */
+@Service
+public class AdvisorySearchIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdvisorySearchIndex.class);
+    private static final long ERROR_DELAY_MILLIS = 5000;
+    private static final String SEQUENCE_KEY = "sequence";
+    private static final int SEARCH_BATCH_SIZE = 100;
+    // readers are immutable and thread safe, unlike a configurable ObjectMapper
+    private static final ObjectReader CHANGES_READER = new ObjectMapper().reader();
+
+    static final String ID = "id";
+    static final String TITLE = "title";
+    static final String DOCUMENT = "document";
+    static final String VULNERABILITIES = "vulnerabilities";
+    static final String PRODUCTS = "products";
+
+    /**
+     * The searched index fields and their boost, a match in the title ranks highest
+     */
+    private static final Map<String, Float> SEARCH_FIELDS = Map.of(
+            TITLE, 4.0f,
+            DOCUMENT, 1.0f,
+            VULNERABILITIES, 1.0f,
+            PRODUCTS, 1.0f
+    );
+
+    @Value("${csaf.search.enabled}")
+    private boolean enabled;
+
+    @Value("${csaf.search.indexDirectory}")
+    private String indexDirectory;
+
+    @Value("${csaf.search.commitIntervalSeconds}")
+    private long commitIntervalSeconds;
+
+    @Value("${csaf.search.changesLimit}")
+    private long changesLimit;
+
+    @Value("${csaf.search.pollTimeoutMillis}")
+    private long pollTimeoutMillis;
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private Directory directory;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+    private volatile String lastSequence = "0";
+    private volatile boolean ready;
+    private volatile boolean running;
+    private Thread feedThread;
+
+    @PostConstruct
+    void start() throws IOException {
+
+        if (!enabled) {
+            return;
+        }
+        openIndex();
+        this.running = true;
+        this.feedThread = new Thread(this::followChanges, "advisory-search-index");
+        this.feedThread.setDaemon(true);
+        this.feedThread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+
+        if (!enabled) {
+            return;
+        }
+        this.running = false;
+        this.feedThread.interrupt();
+        // the interrupt does not cancel a longpoll, it returns after the poll timeout at the latest
+        this.feedThread.join();
+        closeIndex();
+    }
+
+    /**
+     * @return true - the index is caught up with the database and can answer searches
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Search the advisories that contain all words of the text, the last word may also be the start of a word.
+     * The index is read in batches in the order of the ranking until enough hits are accepted.
+     *
+     * @param text   the words to search for
+     * @param limit  the maximum number of returned hits
+     * @param accept decides whether a found advisory id is returned, e.g. if the user can view it
+     * @return the accepted hits, the best hit first
+     * @throws IOException error reading the index
+     */
+    public List<SearchHit> search(String text, int limit, Predicate<String> accept) throws IOException {
+
+        Query query = createQuery(text);
+        List<SearchHit> hits = new ArrayList<>();
+        if (query == null) {
+            return hits;
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            ScoreDoc after = null;
+            while (hits.size() < limit) {
+                TopDocs topDocs = searcher.searchAfter(after, query, SEARCH_BATCH_SIZE);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    String advisoryId = searcher.storedFields().document(scoreDoc.doc).get(ID);
+                    if (hits.size() < limit && accept.test(advisoryId)) {
+                        hits.add(new SearchHit(advisoryId, scoreDoc.score));
+                    }
+                    after = scoreDoc;
+                }
+                if (topDocs.scoreDocs.length < SEARCH_BATCH_SIZE) {
+                    break;
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return hits;
+    }
+
+    /**
+     * Create the query for the words of the text: every word has to match in one of the search fields.
+     *
+     * @param text the words to search for
+     * @return the query, null if the text contains no word
+     */
+    Query createQuery(String text) throws IOException {
+
+        List<String> words = analyzeWords(text == null ? "" : text);
+        if (words.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (int i = 0; i < words.size(); i++) {
+            boolean lastWord = i == words.size() - 1;
+            BooleanQuery.Builder wordQuery = new BooleanQuery.Builder();
+            for (Map.Entry<String, Float> searchField : SEARCH_FIELDS.entrySet()) {
+                Term term = new Term(searchField.getKey(), words.get(i));
+                Query fieldQuery = lastWord
+                        ? new BooleanQuery.Builder()
+                            .add(new TermQuery(term), BooleanClause.Occur.SHOULD)
+                            .add(new PrefixQuery(term), BooleanClause.Occur.SHOULD)
+                            .build()
+                        : new TermQuery(term);
+                wordQuery.add(new BoostQuery(fieldQuery, searchField.getValue()), BooleanClause.Occur.SHOULD);
+            }
+            query.add(wordQuery.build(), BooleanClause.Occur.MUST);
+        }
+        return query.build();
+    }
+
+    private List<String> analyzeWords(String text) throws IOException {
+
+        List<String> words = new ArrayList<>();
+        try (TokenStream tokens = analyzer.tokenStream(DOCUMENT, text)) {
+            CharTermAttribute termAttribute = tokens.addAttribute(CharTermAttribute.class);
+            tokens.reset();
+            while (tokens.incrementToken()) {
+                words.add(termAttribute.toString());
+            }
+            tokens.end();
+        }
+        return words;
+    }
+
+    void openIndex() throws IOException {
+
+        this.directory = FSDirectory.open(Path.of(indexDirectory));
+        IndexWriterConfig config = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        this.indexWriter = new IndexWriter(directory, config);
+        this.searcherManager = new SearcherManager(indexWriter, null);
+        Iterable<Map.Entry<String, String>> commitData = indexWriter.getLiveCommitData();
+        if (commitData != null) {
+            for (Map.Entry<String, String> entry : commitData) {
+                if (SEQUENCE_KEY.equals(entry.getKey())) {
+                    this.lastSequence = entry.getValue();
+                }
+            }
+        }
+        LOG.info("Advisory search index opened with {} advisories", indexWriter.getDocStats().numDocs);
+    }
+
+    void closeIndex() throws IOException {
+
+        commit();
+        this.searcherManager.close();
+        this.indexWriter.close();
+        this.directory.close();
+    }
+
+    void commit() throws IOException {
+
+        // the sequence is read before the commit: changes indexed later are read again on the next start
+        indexWriter.setLiveCommitData(Map.of(SEQUENCE_KEY, lastSequence).entrySet());
+        indexWriter.commit();
+    }
+
+    private void followChanges() {
+
+        Instant lastCommit = Instant.now();
+        while (running) {
+            try {
+                int changeCount = readChanges(ready);
+                if (changeCount < changesLimit && !ready) {
+                    LOG.info("Advisory search index is caught up with {} advisories", indexWriter.getDocStats().numDocs);
+                    ready = true;
+                }
+                if (Instant.now().isAfter(lastCommit.plusSeconds(commitIntervalSeconds))) {
+                    commit();
+                    lastCommit = Instant.now();
+                }
+            } catch (RuntimeException | IOException ex) {
+                if (running) {
+                    LOG.warn("Error indexing the changes feed, retry in {} ms", ERROR_DELAY_MILLIS, ex);
+                    try {
+                        Thread.sleep(ERROR_DELAY_MILLIS);
+                    } catch (InterruptedException iex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Read one batch of changes and index the changed advisories
+     *
+     * @param longpoll true - wait for changes if there are none
+     * @return number of read changes
+     */
+    int readChanges(boolean longpoll) throws IOException {
+
+        JsonNode changesResult;
+        try (InputStream changesStream = couchDbService.readChangesAsStream(lastSequence, changesLimit, longpoll, pollTimeoutMillis)) {
+            changesResult = CHANGES_READER.readTree(changesStream);
+        }
+        ArrayNode changes = (ArrayNode) changesResult.get("results");
+        List<String> changedIds = new ArrayList<>();
+        for (JsonNode change : changes) {
+            String id = change.get("id").asText();
+            if (change.path("deleted").asBoolean(false)) {
+                indexWriter.deleteDocuments(new Term(ID, id));
+            } else if (!id.startsWith("_design/")) {
+                changedIds.add(id);
+            }
+        }
+        if (!changedIds.isEmpty()) {
+            Map<String, Object> selector = Map.of(
+                    ID_FIELD.getDbName(), Map.of("$in", changedIds),
+                    TYPE_FIELD.getDbName(), Map.of("$eq", ObjectType.Advisory.name()));
+            List<DbField> fields = List.of(ID_FIELD, AdvisoryField.CSAF);
+            for (JsonNode doc : AdvisoryWorkflowUtil.findDocuments(couchDbService, selector, fields)) {
+                String id = ID_FIELD.stringVal(doc);
+                indexWriter.updateDocument(new Term(ID, id), createIndexDocument(id, doc.path(AdvisoryField.CSAF.getDbName())));
+            }
+        }
+        if (!changes.isEmpty()) {
+            searcherManager.maybeRefresh();
+        }
+        lastSequence = changesResult.get("last_seq").asText();
+        return changes.size();
+    }
+
+    /**
+     * Create the index document of an advisory
+     *
+     * @param advisoryId the id of the advisory
+     * @param csaf       the CSAF document of the advisory
+     * @return the document with the texts of the search fields
+     */
+    static Document createIndexDocument(String advisoryId, JsonNode csaf) {
+
+        Document document = new Document();
+        document.add(new StringField(ID, advisoryId, Field.Store.YES));
+        document.add(new TextField(TITLE, csaf.at("/document/title").asText(""), Field.Store.NO));
+        document.add(new TextField(DOCUMENT, collectTexts(csaf.path("document")), Field.Store.NO));
+        document.add(new TextField(VULNERABILITIES, collectTexts(csaf.path("vulnerabilities")), Field.Store.NO));
+        document.add(new TextField(PRODUCTS, collectTexts(csaf.path("product_tree")), Field.Store.NO));
+        return document;
+    }
+
+    /**
+     * Join all texts in the JSON tree, separated by a line break
+     */
+    private static String collectTexts(JsonNode node) {
+
+        StringBuilder texts = new StringBuilder();
+        collectTexts(node, texts);
+        return texts.toString();
+    }
+
+    private static void collectTexts(JsonNode node, StringBuilder texts) {
+
+        if (node.isTextual()) {
+            texts.append(node.textValue()).append('\n');
+        } else if (node.isContainerNode()) {
+            for (JsonNode child : node) {
+                collectTexts(child, texts);
+            }
+        }
+    }
+
+    /**
+     * An advisory found by a search
+     */
+    public static final class SearchHit {
+
+        private final String advisoryId;
+        private final float score;
+
+        SearchHit(String advisoryId, float score) {
+            this.advisoryId = advisoryId;
+            this.score = score;
+        }
+
+        public String getAdvisoryId() {
+            return advisoryId;
+        }
+
+        /**
+         * @return the relevance of the advisory for the search, higher is better
+         */
+        public float getScore() {
+            return score;
+        }
+    }
+}
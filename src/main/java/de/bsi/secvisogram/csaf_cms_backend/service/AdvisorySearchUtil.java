@@ -1,20 +1,26 @@
 package de.bsi.secvisogram.csaf_cms_backend.service;
 
-import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDBFilterCreator.expr2CouchDBFilter;
 import static de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbField.TYPE_FIELD;
 import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.equal;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbIndex;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.QueryPlan;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.QueryPlanner;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
 import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.AndExpression;
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.Expression;
-import de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -22,7 +28,7 @@ import org.springframework.http.HttpStatus;
 public class AdvisorySearchUtil {
 
     private static final Logger LOG = LoggerFactory.getLogger(AdvisorySearchUtil.class);
-    private static final OperatorExpression typeExpr = equal(ObjectType.Advisory.name(), TYPE_FIELD.getDbName());
+    private static final int PLAN_CACHE_SIZE = 500;
     private static final String[] selectDocAcknowledgments = {"csaf", "document", "acknowledgments"};
     private static final String[] selectDocAcknowledgmentsNames = {"csaf", "document", "acknowledgments", "names"};
     private static final String[] selectDocAcknowledgmentsUrls = {"csaf", "document", "acknowledgments", "urls"};
@@ -35,31 +41,101 @@ public class AdvisorySearchUtil {
     private static final String[] selectProductTreeBranches = {"csaf", "product_tree", "branches"};
 
 
+    /**
+     * Indexes the planner may choose for searches in advisories and advisory versions
+     */
+    private static final List<CouchDbIndex> SEARCH_INDEXES = List.of(
+            CouchDbIndex.TYPE,
+            CouchDbIndex.TRACKING_ID_TYPE,
+            CouchDbIndex.TITLE_TYPE,
+            CouchDbIndex.CURRENT_RELEASE_DATE_TYPE
+    );
+    /**
+     * Plans of recently searched expressions by object types and compacted expression.
+     * Repeated searches, like the ones of a dashboard, skip parsing and planning.
+     */
+    private static final Cache<String, QueryPlan> PLAN_CACHE = Caffeine.newBuilder()
+            .maximumSize(PLAN_CACHE_SIZE)
+            .build();
+    // readers and writers are immutable and thread safe, unlike a configurable ObjectMapper
+    private static final ObjectReader EXPRESSION_READER = new ObjectMapper().readerFor(Expression.class);
+    private static final ObjectWriter EXPRESSION_WRITER = new ObjectMapper().writer(new DefaultPrettyPrinter());
+    private static final QueryPlanner PLANNER = new QueryPlanner(SEARCH_INDEXES,
+            selectDocAcknowledgments,
+            selectDocAcknowledgmentsNames,
+            selectDocAcknowledgmentsUrls,
+            selectDocNotes,
+            selectDocReferences,
+            selectDocTrackingRev,
+            selectDocTrackingAliases,
+            selectVulnerabilities,
+            selectProductTreeFullProductNames,
+            selectProductTreeBranches);
+
     public static Map<String, Object> buildAdvisoryExpression(String expression, ObjectType objectType) throws CsafException {
 
+        return buildAdvisoryExpression(expression, List.of(objectType));
+    }
+
+    /**
+     * Build the selector for objects of the given types that match the search expression
+     *
+     * @param expression  optional search expression as json string
+     * @param objectTypes the types of the objects to select
+     * @return the selector
+     * @throws CsafException the expression is invalid
+     */
+    public static Map<String, Object> buildAdvisoryExpression(String expression, List<ObjectType> objectTypes) throws CsafException {
+
+        return planAdvisoryQuery(expression, objectTypes).getSelector();
+    }
+
+    /**
+     * Plan the query for objects of the given types that match the search expression
+     *
+     * @param expression  optional search expression as json string
+     * @param objectTypes the types of the objects to select
+     * @return the plan with the selector and the index to answer it from
+     * @throws CsafException the expression is invalid
+     */
+    public static QueryPlan planAdvisoryQuery(String expression, List<ObjectType> objectTypes) throws CsafException {
+
+        String cacheKey = objectTypes + compactJson(expression);
+        QueryPlan plan = PLAN_CACHE.getIfPresent(cacheKey);
+        if (plan == null) {
+            plan = createAdvisoryQueryPlan(expression, objectTypes);
+            PLAN_CACHE.put(cacheKey, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Parse and plan the search expression without the plan cache
+     *
+     * @param expression  optional search expression as json string
+     * @param objectTypes the types of the objects to select
+     * @return the plan with the selector and the index to answer it from
+     * @throws CsafException the expression is invalid
+     */
+    static QueryPlan createAdvisoryQueryPlan(String expression, List<ObjectType> objectTypes) throws CsafException {
+
         try {
-            final Map<String, Object> selector;
-            if (expression != null && !expression.isBlank()) {
-                Expression searchExpression = json2Expression(expression);
-
-
-                AndExpression wholeExpr = new AndExpression(typeExpr, searchExpression);
-                selector = expr2CouchDBFilter(wholeExpr,
-                        selectDocAcknowledgments,
-                        selectDocAcknowledgmentsNames,
-                        selectDocAcknowledgmentsUrls,
-                        selectDocNotes,
-                        selectDocReferences,
-                        selectDocTrackingRev,
-                        selectDocTrackingAliases,
-                        selectVulnerabilities,
-                        selectProductTreeFullProductNames,
-                        selectProductTreeBranches);
-            } else {
-                selector = expr2CouchDBFilter(equal(objectType.name(), TYPE_FIELD.getDbName()));
+            Expression searchExpression = expression != null && !expression.isBlank()
+                    ? json2Expression(expression)
+                    : null;
+
+            if (objectTypes.size() == 1) {
+                Expression typeExpression = equal(objectTypes.get(0).name(), TYPE_FIELD.getDbName());
+                return PLANNER.plan(searchExpression != null ? new AndExpression(typeExpression, searchExpression) : typeExpression,
+                        Set.of());
             }
 
-            return selector;
+            List<String> typeNames = objectTypes.stream().map(ObjectType::name).toList();
+            Map<String, Object> typeSelector = Map.of(TYPE_FIELD.getDbName(), Map.of("$in", typeNames));
+            if (searchExpression == null) {
+                return new QueryPlan(null, typeSelector, CouchDbIndex.TYPE, List.of("Selected the types " + typeNames));
+            }
+            return PLANNER.plan(searchExpression, Set.of(TYPE_FIELD.getDbName())).and(typeSelector);
         } catch (JsonProcessingException ex) {
             LOG.debug("Invalid expression", ex);
             throw new CsafException("Invalid filter expression", CsafExceptionKey.InvalidFilterExpression,
@@ -68,6 +144,41 @@ public class AdvisorySearchUtil {
     }
 
 
+    /**
+     * Remove the whitespace outside of strings, so expressions that differ only in formatting share one cache entry
+     *
+     * @param json the JSON to compact, may be null
+     * @return the compacted JSON, an empty string for null
+     */
+    static String compactJson(String json) {
+
+        if (json == null) {
+            return "";
+        }
+        StringBuilder compacted = new StringBuilder(json.length());
+        boolean inString = false;
+        boolean escaped = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                compacted.append(c);
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+                compacted.append(c);
+            } else if (!Character.isWhitespace(c)) {
+                compacted.append(c);
+            }
+        }
+        return compacted.toString();
+    }
+
     /**
      * Convert Search Expression to JSON String
      *
@@ -77,10 +188,7 @@ public class AdvisorySearchUtil {
      */
     public static String expression2Json(Expression expression2Convert) throws JsonProcessingException {
 
-        final ObjectMapper jacksonMapper = new ObjectMapper();
-        ObjectWriter writer = jacksonMapper.writer(new DefaultPrettyPrinter());
-
-        return writer.writeValueAsString(expression2Convert);
+        return EXPRESSION_WRITER.writeValueAsString(expression2Convert);
     }
 
     /**
@@ -92,8 +200,7 @@ public class AdvisorySearchUtil {
      */
     public static Expression json2Expression(String jsonString) throws JsonProcessingException {
 
-        final ObjectMapper jacksonMapper = new ObjectMapper();
-        return jacksonMapper.readValue(jsonString, Expression.class);
+        return EXPRESSION_READER.readValue(jsonString);
 
     }
 }
@@ -15,11 +15,15 @@ import static de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil.*
 import static java.util.Collections.emptyList;
 import static org.springframework.http.HttpStatus.*;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
 import com.ibm.cloud.sdk.core.service.exception.BadRequestException;
+import com.ibm.cloud.sdk.core.service.exception.ConflictException;
 import com.ibm.cloud.sdk.core.service.exception.NotFoundException;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafConfiguration;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
@@ -32,15 +36,19 @@ import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.model.filter.AndExpression;
-import de.bsi.secvisogram.csaf_cms_backend.mustache.JavascriptExporter;
+import de.bsi.secvisogram.csaf_cms_backend.mustache.HtmlExporter;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateAdvisoryRequest;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateCommentRequest;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.*;
 import de.bsi.secvisogram.csaf_cms_backend.validator.ValidatorServiceClient;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -57,18 +65,49 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @Service
 public class AdvisoryService {
 
     private static final Logger LOG = LoggerFactory.getLogger(AdvisoryService.class);
+    private static final List<DbField> COMMENT_INFO_FIELDS = List.of(
+            CouchDbField.ID_FIELD,
+            CouchDbField.REVISION_FIELD,
+            CommentField.ADVISORY_ID,
+            CommentField.CSAF_NODE_ID,
+            CommentField.OWNER,
+            CommentField.ANSWER_TO
+    );
+    private static final List<DbField> ANSWER_INFO_FIELDS = List.of(
+            CouchDbField.ID_FIELD, CouchDbField.REVISION_FIELD, CommentField.ANSWER_TO, CommentField.OWNER);
+    // writes JSON exports in chunks of its buffer, the output of the export is not closed
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final int AUDIT_TRAIL_WRITE_ATTEMPTS = 3;
+    private static final ObjectWriter EXPORT_JSON_WRITER = new ObjectMapper().writer()
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
     @Autowired
     private CouchDbService couchDbService;
 
     @Autowired
-    private JavascriptExporter javascriptExporter;
+    private ReactiveCouchDbService reactiveCouchDbService;
+
+    @Autowired
+    private AuditTrailWriter auditTrailWriter;
+
+    @Autowired
+    private AdvisoryProjection advisoryProjection;
+
+    @Autowired
+    private AdvisorySearchIndex advisorySearchIndex;
+
+    @Autowired
+    private HtmlExporter htmlExporter;
 
     @Autowired
     private PandocService pandocService;
@@ -76,9 +115,15 @@ public class AdvisoryService {
     @Autowired
     private WeasyprintService weasyprintService;
 
+    @Autowired
+    private ExportCache exportCache;
+
     @Value("${csaf.document.versioning}")
     private String versioningStrategy;
 
+    @Value("${csaf.search.maxLimit}")
+    private int searchMaxLimit;
+
     @Value("${csaf.validation.baseurl}")
     private String validationBaseUrl;
 
@@ -94,6 +139,9 @@ public class AdvisoryService {
     @Autowired
     private CsafConfiguration configuration;
 
+    @Autowired
+    private TrackingIdAllocator trackingIdAllocator;
+
     @Autowired
     private BuildProperties buildProperties;
 
@@ -106,6 +154,136 @@ public class AdvisoryService {
         return couchDbService.getDocumentCount();
     }
 
+    /**
+     * Count the advisories per value of the facet fields and the comments per advisory.
+     * The counts are read from the reduce values of the views, no advisory is read.
+     * They include all advisories, so only roles that can see all advisories get them.
+     *
+     * @return the counts per facet
+     */
+    @Secured({CsafRoles.ROLE_MANAGER, CsafRoles.ROLE_AUDITOR})
+    public AdvisoryFacetsResponse getAdvisoryFacets() {
+
+        return new AdvisoryFacetsResponse()
+                .setWorkflowState(couchDbService.readViewCounts(CouchDbView.WORKFLOW_STATE, 1))
+                .setDocumentTrackingStatus(couchDbService.readViewCounts(CouchDbView.TRACKING_STATUS, 1))
+                .setTlpLabel(couchDbService.readViewCounts(CouchDbView.TLP_LABEL, 1))
+                .setOwner(couchDbService.readViewCounts(CouchDbView.OWNER, 1))
+                .setInitialReleaseYear(couchDbService.readViewCounts(CouchDbView.INITIAL_RELEASE_DATE, 1))
+                .setCommentsPerAdvisory(couchDbService.readViewCounts(CouchDbView.COMMENTS_BY_ADVISORY, 1));
+    }
+
+    /**
+     * Plan the query of a search expression and let CouchDB explain which index it uses for it.
+     * Nothing is read from the advisories, so the plan is the same for all users.
+     *
+     * @param expression optional search expression
+     * @return the normalized expression, the selector, the chosen and the used index and the planner steps
+     * @throws CsafException the expression is invalid
+     */
+    @Secured({CsafRoles.ROLE_MANAGER, CsafRoles.ROLE_AUDITOR})
+    public QueryPlanResponse explainAdvisoryQuery(String expression) throws CsafException {
+
+        QueryPlan plan = AdvisorySearchUtil.planAdvisoryQuery(expression, List.of(ObjectType.Advisory));
+        return new QueryPlanResponse()
+                .setExpression(plan.getExpression())
+                .setSelector(plan.getSelector())
+                .setIndex(plan.getIndex() != null ? plan.getIndex().getIndexName() : null)
+                .setUsedIndex(this.couchDbService.explainIndexUsage(plan.getSelector(), plan.getIndex()))
+                .setSteps(plan.getSteps());
+    }
+
+    /**
+     * Find the advisories that mention a CVE, CWE, product id or product name.
+     * The ids of the advisories are read from the view of the reference, the information
+     * of the advisories from the projection if it is ready, otherwise with one query.
+     *
+     * @param reference the kind of the looked up value
+     * @param value     the looked up value
+     * @return information of the advisories mentioning the value that the user can view
+     * @throws IOException error reading the advisories
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public List<AdvisoryInformationResponse> findAdvisoriesByReference(AdvisoryReference reference, String value)
+            throws IOException {
+
+        Authentication credentials = getAuthentication();
+        List<String> advisoryIds = this.couchDbService.readViewDocumentIds(reference.getView(), reference.toViewKey(value));
+        List<AdvisoryInformationResponse> advisories = new ArrayList<>();
+        if (advisoryIds.isEmpty()) {
+            return advisories;
+        }
+        if (this.advisoryProjection.isReady()) {
+            for (String advisoryId : advisoryIds) {
+                AdvisoryInformationResponse advisoryInfo = this.advisoryProjection.getAdvisoryInformation(advisoryId);
+                if (advisoryInfo != null) {
+                    advisories.add(advisoryInfo);
+                }
+            }
+        } else {
+            Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+            Map<String, Object> selector = Map.of(
+                    ID_FIELD.getDbName(), Map.of("$in", advisoryIds),
+                    TYPE_FIELD.getDbName(), Map.of("$eq", ObjectType.Advisory.name()));
+            for (JsonNode couchDbDoc : AdvisoryWorkflowUtil.findDocuments(couchDbService, selector, infoFields.keySet())) {
+                advisories.add(AdvisoryWrapper.convertToAdvisoryInfo(couchDbDoc, infoFields));
+            }
+        }
+        List<AdvisoryInformationResponse> visibleAdvisories = new ArrayList<>();
+        for (AdvisoryInformationResponse response : advisories) {
+            if (canViewAdvisory(response, credentials)) {
+                response.setDeletable(canDeleteAdvisory(response, credentials));
+                response.setChangeable(canChangeAdvisory(response, credentials));
+                response.setAllowedStateChanges(getAllowedStates(response, credentials));
+                response.setCanCreateVersion(canCreateNewVersion(response, credentials));
+                visibleAdvisories.add(response);
+            }
+        }
+        return visibleAdvisories;
+    }
+
+    /**
+     * Search the advisories in the full-text index.
+     * The hits are checked for view permission in the order of their ranking until the limit is reached.
+     *
+     * @param text  the words to search for in the title, the document, the vulnerabilities and the product tree
+     * @param limit the maximum number of returned hits
+     * @return the hits the user can view, the best hit first
+     * @throws CsafException the limit is invalid or the index is not ready
+     * @throws IOException   error reading the index
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public List<AdvisorySearchHitResponse> searchAdvisories(String text, int limit) throws CsafException, IOException {
+
+        if (limit <= 0 || limit > searchMaxLimit) {
+            throw new CsafException("The limit has to be between 1 and " + searchMaxLimit, InvalidPageRequest, BAD_REQUEST);
+        }
+        if (!this.advisorySearchIndex.isReady()) {
+            throw new CsafException("The search index is not ready", SearchIndexNotReady, SERVICE_UNAVAILABLE);
+        }
+        Authentication credentials = getAuthentication();
+        Map<String, AdvisoryInformationResponse> visibleAdvisories = new HashMap<>();
+        List<AdvisorySearchIndex.SearchHit> hits = this.advisorySearchIndex.search(text, limit, advisoryId -> {
+            try {
+                AdvisoryInformationResponse advisoryInfo = readAdvisoryInformation(advisoryId);
+                if (canViewAdvisory(advisoryInfo, credentials)) {
+                    visibleAdvisories.put(advisoryId, advisoryInfo);
+                    return true;
+                }
+            } catch (CsafException ex) {
+                LOG.debug("Skipped search hit of a deleted advisory");
+            }
+            return false;
+        });
+        return hits.stream()
+                .map(hit -> new AdvisorySearchHitResponse()
+                        .setAdvisoryId(hit.getAdvisoryId())
+                        .setScore(hit.getScore())
+                        .setTitle(visibleAdvisories.get(hit.getAdvisoryId()).getTitle())
+                        .setDocumentTrackingId(visibleAdvisories.get(hit.getAdvisoryId()).getDocumentTrackingId()))
+                .toList();
+    }
+
     /**
      * get information on all advisories
      *
@@ -142,16 +320,222 @@ public class AdvisoryService {
         return allResponses;
     }
 
+    /**
+     * get information on all advisories without blocking the calling thread
+     *
+     * @param expression optional search expression
+     * @return the information objects, emitted while they are read from the database
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public Flux<AdvisoryInformationResponse> getAdvisoryInformationsAsFlux(String expression) throws CsafException {
+
+        Authentication credentials = getAuthentication();
+        Flux<AdvisoryInformationResponse> advisories = readAllAdvisoriesAsFlux(expression, ObjectType.Advisory)
+                .filter(response -> canViewAdvisory(response, credentials))
+                .doOnNext(response -> {
+                    response.setDeletable(canDeleteAdvisory(response, credentials));
+                    response.setChangeable(canChangeAdvisory(response, credentials));
+                    response.setAllowedStateChanges(getAllowedStates(response, credentials));
+                    response.setCanCreateVersion(canCreateNewVersion(response, credentials));
+                });
+
+        if (hasRole(AUDITOR, credentials)) {
+            Flux<AdvisoryInformationResponse> advisoryVersions = readAllAdvisoriesAsFlux(expression, ObjectType.AdvisoryVersion)
+                    .doOnNext(response -> {
+                        response.setDeletable(false);
+                        response.setChangeable(false);
+                        response.setAllowedStateChanges(emptyList());
+                        response.setCanCreateVersion(false);
+                    });
+            advisories = advisories.concatWith(advisoryVersions);
+        }
+        return advisories;
+    }
+
+    /**
+     * get information on all advisories as stream. The advisories are read from the database
+     * and checked for permissions while the stream is consumed, so they are never held in memory together.
+     *
+     * @param expression optional search expression
+     * @return stream of the information objects
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public AdvisoryInformationStream streamAdvisoryInformations(String expression) throws CsafException {
+
+        // evaluate credentials and expression now, the stream may be consumed in another thread
+        Authentication credentials = getAuthentication();
+        QueryPlan advisoryPlan = AdvisorySearchUtil.planAdvisoryQuery(expression, List.of(ObjectType.Advisory));
+        QueryPlan versionPlan = hasRole(AUDITOR, credentials)
+                ? AdvisorySearchUtil.planAdvisoryQuery(expression, List.of(ObjectType.AdvisoryVersion))
+                : null;
+        Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+        List<DbField> fields = new ArrayList<>(infoFields.keySet());
+
+        return infoConsumer -> {
+            InputStream advisoryStream = this.couchDbService.findDocumentsAsStream(advisoryPlan.getSelector(), fields, advisoryPlan.getIndex());
+            AdvisoryWrapper.readAdvisoryInfos(advisoryStream, infoFields, response -> {
+                if (canViewAdvisory(response, credentials)) {
+                    response.setDeletable(canDeleteAdvisory(response, credentials));
+                    response.setChangeable(canChangeAdvisory(response, credentials));
+                    response.setAllowedStateChanges(getAllowedStates(response, credentials));
+                    response.setCanCreateVersion(canCreateNewVersion(response, credentials));
+                    infoConsumer.accept(response);
+                }
+            });
+            if (versionPlan != null) {
+                InputStream versionStream = this.couchDbService.findDocumentsAsStream(versionPlan.getSelector(), fields, versionPlan.getIndex());
+                AdvisoryWrapper.readAdvisoryInfos(versionStream, infoFields, response -> {
+                    response.setDeletable(false);
+                    response.setChangeable(false);
+                    response.setAllowedStateChanges(emptyList());
+                    response.setCanCreateVersion(false);
+                    infoConsumer.accept(response);
+                });
+            }
+        };
+    }
+
+    /**
+     * get information on one page of advisories. The page is filled with advisories the user can view,
+     * further documents are read until the page is full or all documents are read.
+     * Sorted pages only contain advisories with the sort field, CSAF requires all sort fields in every advisory.
+     *
+     * @param expression optional search expression
+     * @param limit      maximum number of advisories in the page
+     * @param bookmark   bookmark of the previous page, null for the first page
+     * @param sortField  optional field to sort the advisories by
+     * @param descending true - sort in descending order
+     * @return the information objects of the page and the bookmark of the following page
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public Page<AdvisoryInformationResponse> getAdvisoryInformations(String expression, int limit, String bookmark,
+                                                                     AdvisorySortField sortField, boolean descending)
+            throws IOException, CsafException {
+
+        Authentication credentials = getAuthentication();
+        // advisory versions are only visible for auditors, they are read in the same query to get one consistent page
+        List<ObjectType> types = hasRole(AUDITOR, credentials)
+                ? List.of(ObjectType.Advisory, ObjectType.AdvisoryVersion)
+                : List.of(ObjectType.Advisory);
+        Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+        List<DbField> fields = new ArrayList<>(infoFields.keySet());
+        fields.add(TYPE_FIELD);
+        QueryPlan plan = AdvisorySearchUtil.planAdvisoryQuery(expression, types);
+
+        final Map<String, Object> selector;
+        final List<DbField> sortFields;
+        final CouchDbIndex index;
+        if (sortField != null) {
+            // CouchDB can only sort by the fields of the index and the index only contains documents with all its fields,
+            // the sort field is selected explicitly so the index is chosen and its documents are the result
+            selector = Map.of("$and", List.of(plan.getSelector(),
+                    Map.of(sortField.getField().getDbName(), Map.of("$exists", true))));
+            sortFields = List.of(sortField.getField());
+            index = sortField.getIndex();
+        } else {
+            selector = plan.getSelector();
+            sortFields = emptyList();
+            index = plan.getIndex();
+        }
+
+        try {
+            List<AdvisoryInformationResponse> responses = new ArrayList<>();
+            String nextBookmark = bookmark;
+            do {
+                // request only the missing advisories, so the bookmark points behind the last advisory of the page
+                PageRequest pageRequest = new PageRequest(limit - responses.size(), nextBookmark, sortFields, descending);
+                Page<JsonNode> docPage
+                        = AdvisoryWorkflowUtil.findDocumentPage(this.couchDbService, selector, fields, index, pageRequest);
+                for (JsonNode couchDbDoc : docPage.getItems()) {
+                    AdvisoryInformationResponse response = AdvisoryWrapper.convertToAdvisoryInfo(couchDbDoc, infoFields);
+                    if (ObjectType.AdvisoryVersion.name().equals(couchDbDoc.path(TYPE_FIELD.getDbName()).asText())) {
+                        response.setDeletable(false);
+                        response.setChangeable(false);
+                        response.setAllowedStateChanges(emptyList());
+                        response.setCanCreateVersion(false);
+                        responses.add(response);
+                    } else if (canViewAdvisory(response, credentials)) {
+                        response.setDeletable(canDeleteAdvisory(response, credentials));
+                        response.setChangeable(canChangeAdvisory(response, credentials));
+                        response.setAllowedStateChanges(getAllowedStates(response, credentials));
+                        response.setCanCreateVersion(canCreateNewVersion(response, credentials));
+                        responses.add(response);
+                    }
+                }
+                nextBookmark = docPage.getBookmark();
+            } while (nextBookmark != null && responses.size() < limit);
+            return new Page<>(responses, nextBookmark, limit);
+        } catch (DatabaseException ex) {
+            throw new CsafException(ex.getMessage(), InvalidPageRequest, BAD_REQUEST);
+        }
+    }
+
     private List<AdvisoryInformationResponse> readAllAdvisories(String expression, ObjectType objectType) throws CsafException, IOException {
 
+        if ((expression == null || expression.isBlank()) && this.advisoryProjection.isReady()) {
+            return this.advisoryProjection.getAdvisoryInformations(objectType);
+        }
         Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
-        Map<String, Object> selector = AdvisorySearchUtil.buildAdvisoryExpression(expression, objectType);
-        List<JsonNode> docList = this.findDocuments(selector, new ArrayList<>(infoFields.keySet()));
+        QueryPlan plan = AdvisorySearchUtil.planAdvisoryQuery(expression, List.of(objectType));
+        List<JsonNode> docList = this.findDocuments(plan.getSelector(), new ArrayList<>(infoFields.keySet()), plan.getIndex());
         return docList.stream()
                 .map(couchDbDoc -> AdvisoryWrapper.convertToAdvisoryInfo(couchDbDoc, infoFields))
                 .toList();
     }
 
+    private Flux<AdvisoryInformationResponse> readAllAdvisoriesAsFlux(String expression, ObjectType objectType) throws CsafException {
+
+        if ((expression == null || expression.isBlank()) && this.advisoryProjection.isReady()) {
+            return Flux.fromIterable(this.advisoryProjection.getAdvisoryInformations(objectType));
+        }
+        Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+        QueryPlan plan = AdvisorySearchUtil.planAdvisoryQuery(expression, List.of(objectType));
+        return this.reactiveCouchDbService.findDocuments(plan.getSelector(), new ArrayList<>(infoFields.keySet()), plan.getIndex())
+                .map(couchDbDoc -> AdvisoryWrapper.convertToAdvisoryInfo(couchDbDoc, infoFields));
+    }
+
+    /**
+     * Read the information of an advisory, from the projection if it is ready
+     *
+     * @param advisoryId the id of the advisory
+     * @return the information of the advisory
+     * @throws CsafException there is no advisory with the id
+     */
+    private AdvisoryInformationResponse readAdvisoryInformation(String advisoryId) throws CsafException {
+
+        if (this.advisoryProjection.isReady()) {
+            AdvisoryInformationResponse advisoryInfo = this.advisoryProjection.getAdvisoryInformation(advisoryId);
+            if (advisoryInfo != null) {
+                return advisoryInfo;
+            }
+        }
+        return getAdvisoryForId(advisoryId, this.couchDbService);
+    }
+
+    /**
+     * Read the information of an advisory without blocking the calling thread, from the projection if it is ready
+     *
+     * @param advisoryId the id of the advisory
+     * @return the information of the advisory, fails with {@link CsafException} if there is no advisory with the id
+     */
+    private Mono<AdvisoryInformationResponse> readAdvisoryInformationAsMono(String advisoryId) {
+
+        if (this.advisoryProjection.isReady()) {
+            AdvisoryInformationResponse advisoryInfo = this.advisoryProjection.getAdvisoryInformation(advisoryId);
+            if (advisoryInfo != null) {
+                return Mono.just(advisoryInfo);
+            }
+        }
+        Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+        return this.reactiveCouchDbService.findDocuments(AdvisoryWorkflowUtil.advisoryForIdSelector(advisoryId),
+                        new ArrayList<>(infoFields.keySet()), CouchDbIndex.TYPE)
+                .map(couchDbDoc -> AdvisoryWrapper.convertToAdvisoryInfo(couchDbDoc, infoFields))
+                .collectList()
+                .flatMap(advisoryInfos -> advisoryInfos.size() == 1
+                        ? Mono.just(advisoryInfos.get(0))
+                        : Mono.error(new CsafException("Advisory not found", AdvisoryNotFound, NOT_FOUND)));
+    }
+
     private List<WorkflowState> getAllowedStates(AdvisoryInformationResponse response, Authentication credentials) {
 
         return Arrays.stream(WorkflowState.values())
@@ -171,6 +555,36 @@ public class AdvisoryService {
         return AdvisoryWorkflowUtil.findDocuments(this.couchDbService, selector, fields);
     }
 
+    /**
+     * read from {@link CouchDbService#findDocumentsAsStream(Map, Collection, CouchDbIndex)} and convert it to a list of JsonNode
+     *
+     * @param selector the selector to search for
+     * @param fields   the fields of information to select
+     * @param index    the index to answer the query
+     * @return the result nodes of the search
+     */
+    List<JsonNode> findDocuments(Map<String, Object> selector, Collection<DbField> fields, CouchDbIndex index) throws IOException {
+
+        return AdvisoryWorkflowUtil.findDocuments(this.couchDbService, selector, fields, index);
+    }
+
+    /**
+     * read from {@link CouchDbService#findRelatedDocumentsAsStream(String, Map, Collection, CouchDbIndex)}
+     * and convert it to a list of JsonNode
+     *
+     * @param relatedId id of the advisory or comment the documents belong to
+     * @param selector  the selector to search for
+     * @param fields    the fields of information to select
+     * @param index     the index to answer the query
+     * @return the result nodes of the search
+     */
+    List<JsonNode> findRelatedDocuments(String relatedId, Map<String, Object> selector, Collection<DbField> fields,
+                                        CouchDbIndex index) throws IOException {
+
+        return AdvisoryWorkflowUtil.readDocuments(
+                this.couchDbService.findRelatedDocumentsAsStream(relatedId, selector, fields, index));
+    }
+
     /**
      * Adds an advisory to the system
      *
@@ -194,14 +608,14 @@ public class AdvisoryService {
             throw new CsafException("Summary must not be empty", SummaryInHistoryEmpty, BAD_REQUEST);
         }
 
-        UUID advisoryId = UUID.randomUUID();
+        String advisoryId = this.couchDbService.newAdvisoryId();
         AdvisoryWrapper emptyAdvisory = AdvisoryWrapper.createInitialEmptyAdvisoryForUser(credentials.getName());
         AdvisoryWrapper newAdvisoryNode = AdvisoryWrapper.createNewFromCsaf(newCsafJson, credentials.getName(),
                 this.versioningStrategy);
         newAdvisoryNode.setDocumentTrackingGeneratorEngineName(buildProperties.getName());
         newAdvisoryNode.setDocumentTrackingGeneratorEngineVersion(buildProperties.getVersion());
         AuditTrailWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(emptyAdvisory, newAdvisoryNode)
-                .setAdvisoryId(advisoryId.toString())
+                .setAdvisoryId(advisoryId)
                 .setChangeType(ChangeType.Create)
                 .setUser(credentials.getName());
 
@@ -214,10 +628,11 @@ public class AdvisoryService {
 
         addTemporaryTrackingId(newAdvisoryNode);
 
-        String revision = couchDbService.writeDocument(advisoryId, newAdvisoryNode.advisoryAsString());
-        this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+        String revision = writeNewDocumentsWithAuditTrail(
+                auditTrail,
+                BulkWriteDocument.newDocument(advisoryId, newAdvisoryNode.advisoryAsString())).get(0);
 
-        return new IdAndRevision(advisoryId.toString(), revision);
+        return new IdAndRevision(advisoryId, revision);
     }
 
     /**
@@ -257,7 +672,7 @@ public class AdvisoryService {
 
     IdAndRevision importAdvisoryForUser(JsonNode nodeToImport, String userName) throws IOException, CsafException {
 
-        UUID advisoryId = UUID.randomUUID();
+        String advisoryId = this.couchDbService.newAdvisoryId();
         if (!ValidatorServiceClient.isCsafValid(this.validationBaseUrl, nodeToImport)) {
             throw new CsafException("Advisory is no valid CSAF document",
                     CsafExceptionKey.AdvisoryValidationError, HttpStatus.UNPROCESSABLE_ENTITY);
@@ -273,21 +688,238 @@ public class AdvisoryService {
         }
 
         Map<String, Object> selector = expr2CouchDBFilter(equal(newAdvisoryNode.getDocumentTrackingId(), DOCUMENT_TRACKING_ID.getDbName()));
-        List<JsonNode> docList = findDocuments(selector, List.of(ID_FIELD));
+        List<JsonNode> docList = findDocuments(selector, List.of(ID_FIELD), CouchDbIndex.TRACKING_ID);
         if (!docList.isEmpty()) {
             throw new CsafException("Trying to import a duplicate advisory (identical tracking ID)", DuplicateImport, UNPROCESSABLE_ENTITY);
         }
 
         AuditTrailWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(emptyAdvisory, newAdvisoryNode)
-                .setAdvisoryId(advisoryId.toString())
+                .setAdvisoryId(advisoryId)
                 .setChangeType(ChangeType.Create)
                 .setUser(userName);
 
+        String revision = writeNewDocumentsWithAuditTrail(
+                auditTrail,
+                BulkWriteDocument.newDocument(advisoryId, newAdvisoryNode.advisoryAsString())).get(0);
+
+        return new IdAndRevision(advisoryId, revision);
+    }
+
+    /**
+     * Write the documents of one change with a single bulk request.
+     * If a document could not be written, the documents created by the same request are deleted again,
+     * so no audit trail remains without its change.
+     *
+     * @param documents the documents of the change, the changed or main document first
+     * @return the new revisions in the order of the given documents
+     * @throws IdNotFoundException a changed document does not exist or its revision is outdated
+     * @throws DatabaseException   error writing the documents
+     */
+    private List<String> writeDocumentsTogether(BulkWriteDocument... documents) throws DatabaseException {
+
+        return checkWrittenTogether(documents, this.couchDbService.writeDocuments(List.of(documents)));
+    }
+
+    /**
+     * Check the result of each document of a bulk request, see {@link #writeDocumentsTogether(BulkWriteDocument...)}
+     *
+     * @param documents the written documents
+     * @param results   the results of the bulk request in the order of the documents
+     * @return the new revisions in the order of the given documents
+     * @throws IdNotFoundException a changed document does not exist or its revision is outdated
+     * @throws DatabaseException   error writing the documents
+     */
+    private List<String> checkWrittenTogether(BulkWriteDocument[] documents, List<DocumentResult> results)
+            throws DatabaseException {
+
+        List<IdAndRevision> createdDocuments = new ArrayList<>();
+        List<String> revisions = new ArrayList<>();
+        DocumentResult failedResult = null;
+        for (int i = 0; i < results.size(); i++) {
+            DocumentResult result = results.get(i);
+            if (Boolean.TRUE.equals(result.isOk())) {
+                revisions.add(result.getRev());
+                if (documents[i].isNew()) {
+                    createdDocuments.add(new IdAndRevision(result.getId(), result.getRev()));
+                }
+            } else if (failedResult == null) {
+                failedResult = result;
+            }
+        }
+
+        if (failedResult != null) {
+            if (!createdDocuments.isEmpty()) {
+                this.couchDbService.bulkDeleteDocuments(createdDocuments);
+            }
+            if ("conflict".equals(failedResult.getError()) || "not_found".equals(failedResult.getError())) {
+                throw new IdNotFoundException("No element with given ID");
+            }
+            throw new DatabaseException(failedResult.getError() + ": " + failedResult.getReason());
+        }
+        // only a change that is kept is applied to the projection
+        this.advisoryProjection.documentsWritten(List.of(documents), results);
+        return revisions;
+    }
+
+    /**
+     * Write the documents of one change and its audit trail. The audit trail is either handed to the
+     * asynchronous {@link AuditTrailWriter} after the documents are written, or written in the same bulk request.
+     *
+     * @param auditTrail the audit trail of the change
+     * @param documents  the documents of the change, the changed or main document first
+     * @return the new revisions of the documents in the order of the given documents
+     * @throws IdNotFoundException a changed document does not exist or its revision is outdated
+     * @throws DatabaseException   error writing the documents
+     */
+    private List<String> writeDocumentsWithAuditTrail(AuditTrailWrapper auditTrail, BulkWriteDocument... documents)
+            throws DatabaseException {
+
+        String auditTrailId = this.couchDbService.newDocumentId(auditTrail.getRelatedId());
+        if (this.auditTrailWriter.isAsync()) {
+            List<String> revisions = writeDocumentsTogether(documents);
+            this.auditTrailWriter.write(auditTrailId, auditTrail.auditTrailAsString());
+            return revisions;
+        }
+        BulkWriteDocument auditTrailDocument = BulkWriteDocument.newDocument(auditTrailId, auditTrail.auditTrailAsString());
+        BulkWriteDocument[] allDocuments = Arrays.copyOf(documents, documents.length + 1);
+        allDocuments[documents.length] = auditTrailDocument;
+        List<DocumentResult> results = this.couchDbService.writeDocuments(List.of(allDocuments));
+
+        // _bulk_docs is not atomic, the change may be written while its audit trail failed
+        List<DocumentResult> changeResults = results.subList(0, documents.length);
+        DocumentResult auditTrailResult = results.get(documents.length);
+        boolean changeWritten = changeResults.stream().allMatch(result -> Boolean.TRUE.equals(result.isOk()));
+        if (!changeWritten || Boolean.TRUE.equals(auditTrailResult.isOk())) {
+            return checkWrittenTogether(allDocuments, results);
+        }
+        LOG.warn("Audit trail {} was not written with its change: {}", auditTrailId, auditTrailResult.getError());
+        if (!retryAuditTrail(auditTrailDocument)) {
+            rollBackChange(documents, changeResults);
+            throw new DatabaseException("The audit trail could not be written, the change is rolled back: "
+                    + auditTrailResult.getError() + ": " + auditTrailResult.getReason());
+        }
+        return checkWrittenTogether(documents, changeResults);
+    }
+
+    /**
+     * Write an audit trail whose change is already written
+     *
+     * @param auditTrailDocument the audit trail
+     * @return true - the audit trail is written
+     */
+    private boolean retryAuditTrail(BulkWriteDocument auditTrailDocument) {
+
+        for (int attempt = 1; attempt <= AUDIT_TRAIL_WRITE_ATTEMPTS; attempt++) {
+            try {
+                this.couchDbService.writeDocument(auditTrailDocument.getId(), auditTrailDocument.getJson());
+                return true;
+            } catch (ConflictException ex) {
+                // the audit trail exists, the bulk response was lost
+                return true;
+            } catch (RuntimeException ex) {
+                LOG.warn("Audit trail {} could not be written, attempt {} of {}",
+                        auditTrailDocument.getId(), attempt, AUDIT_TRAIL_WRITE_ATTEMPTS, ex);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Undo a change whose audit trail could not be written. New documents are deleted, changed documents
+     * get the content of their previous revision with the revision written by the change.
+     *
+     * @param documents the documents of the change
+     * @param results   the results of writing the documents, all of them ok
+     */
+    private void rollBackChange(BulkWriteDocument[] documents, List<DocumentResult> results) {
+
+        List<IdAndRevision> createdDocuments = new ArrayList<>();
+        for (int i = 0; i < documents.length; i++) {
+            DocumentResult result = results.get(i);
+            if (documents[i].isNew()) {
+                createdDocuments.add(new IdAndRevision(result.getId(), result.getRev()));
+                continue;
+            }
+            try {
+                String previousRevision = CouchDbField.REVISION_FIELD.stringVal(JSON_MAPPER.readTree(documents[i].getJson()));
+                ObjectNode previousDocument = this.couchDbService.readDocument(result.getId(), previousRevision);
+                previousDocument.put(CouchDbField.REVISION_FIELD.getDbName(), result.getRev());
+                this.couchDbService.updateDocument(previousDocument.toString());
+            } catch (IOException | DatabaseException | RuntimeException ex) {
+                LOG.error("Change of document {} could not be rolled back, it has no audit trail", result.getId(), ex);
+            }
+        }
+        try {
+            if (!createdDocuments.isEmpty()) {
+                this.couchDbService.bulkDeleteDocuments(createdDocuments);
+            }
+        } catch (DatabaseException | RuntimeException ex) {
+            LOG.error("Created documents could not be rolled back, they have no audit trail", ex);
+        }
+    }
+
+    /**
+     * Apply a change with an update handler and write its audit trail. The audit trail is either handed to the
+     * asynchronous {@link AuditTrailWriter} after the handler applied the change, or written first and deleted again
+     * when the handler does not apply the change, so no change remains without its audit trail.
+     *
+     * @param auditTrail    the audit trail of the change
+     * @param handler       the update handler that applies the change
+     * @param docId         id of the changed document
+     * @param change        JSON request body of the handler
+     * @param changedValues the summary fields changed by the handler, applied to the projection
+     * @return the result of the update handler
+     * @throws DatabaseException error writing the audit trail or calling the handler
+     */
+    private UpdateHandlerResult callUpdateHandlerWithAuditTrail(AuditTrailWrapper auditTrail, CouchDbUpdateHandler handler,
+                                                                String docId, String change,
+                                                                Map<DbField, String> changedValues) throws DatabaseException {
+
+        String auditTrailId = this.couchDbService.newDocumentId(auditTrail.getRelatedId());
+        if (this.auditTrailWriter.isAsync()) {
+            UpdateHandlerResult result = this.couchDbService.callUpdateHandler(handler, docId, Map.of(), change);
+            if (result.isOk()) {
+                this.auditTrailWriter.write(auditTrailId, auditTrail.auditTrailAsString());
+                this.advisoryProjection.documentUpdated(docId, result.getNewRevision(), changedValues);
+            }
+            return result;
+        }
+        String auditTrailRevision = this.couchDbService.writeDocument(auditTrailId, auditTrail.auditTrailAsString());
+        UpdateHandlerResult result = null;
+        try {
+            result = this.couchDbService.callUpdateHandler(handler, docId, Map.of(), change);
+            if (result.isOk()) {
+                this.advisoryProjection.documentUpdated(docId, result.getNewRevision(), changedValues);
+            }
+            return result;
+        } finally {
+            if (result == null || !result.isOk()) {
+                try {
+                    this.couchDbService.deleteDocument(auditTrailId, auditTrailRevision);
+                } catch (DatabaseException | RuntimeException ex) {
+                    LOG.error("Audit trail {} of a change that was not applied could not be deleted", auditTrailId, ex);
+                }
+            }
+        }
+    }
 
-        String revision = couchDbService.writeDocument(advisoryId, newAdvisoryNode.advisoryAsString());
-        this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+    /**
+     * Write new documents of one change and its audit trail, see {@link #writeDocumentsWithAuditTrail(AuditTrailWrapper, BulkWriteDocument...)}
+     *
+     * @param auditTrail the audit trail of the change
+     * @param documents  the new documents, the main document first
+     * @return the revisions in the order of the given documents
+     * @throws CsafException error writing the documents
+     */
+    private List<String> writeNewDocumentsWithAuditTrail(AuditTrailWrapper auditTrail, BulkWriteDocument... documents)
+            throws CsafException {
 
-        return new IdAndRevision(advisoryId.toString(), revision);
+        try {
+            return writeDocumentsWithAuditTrail(auditTrail, documents);
+        } catch (DatabaseException ex) {
+            LOG.error("Error writing new documents", ex);
+            throw new CsafException("Error writing new documents", ErrorWritingDocuments, INTERNAL_SERVER_ERROR);
+        }
     }
 
     /**
@@ -303,35 +935,73 @@ public class AdvisoryService {
     }
 
     /**
-     * Get the next unique tracking id from the db for the given counterId
+     * Get the next unique tracking id for the given counter
      *
-     * @param counterId id of the counter
+     * @param counterName name of the counter
      * @return next id
      * @throws CsafException error creating counter
      */
-    long getNewTrackingIdCounter(String counterId) throws CsafException {
+    long getNewTrackingIdCounter(String counterName) throws CsafException {
 
-        Map<String, Object> selector = expr2CouchDBFilter(equal(counterId, ID_FIELD.getDbName()));
-        try {
-            List<JsonNode> docList = findDocuments(selector, List.of(ID_FIELD));
-            if (docList.isEmpty()) {
-                final TrackingIdCounter counter = TrackingIdCounter.createInitialCounter(counterId);
-                final String result = new ObjectMapper().writeValueAsString(counter);
-                this.couchDbService.writeDocument(counterId, result);
-            }
-        } catch (IOException e) {
-            throw new CsafException("Error create new counter for tracking Id", ErrorCreatingTrackingIdCounter, INTERNAL_SERVER_ERROR);
+        return this.trackingIdAllocator.nextNumber(counterName);
+    }
+
+    /**
+     * Get the strong ETag of an advisory for the authenticated user.
+     * It is derived from the revision of the advisory, which is read without reading the advisory.
+     * The permission of the user is checked with the summary of the advisory before the ETag is created,
+     * so a user without permission never gets a Not Modified response.
+     * The user and the roles are part of the ETag, because the response contains their permissions.
+     *
+     * @param advisoryId the ID of the advisory
+     * @return the quoted ETag, null if the advisory has no revision
+     * @throws IdNotFoundException if there is no advisory with given ID
+     * @throws CsafException       if the user has no permission to view the advisory
+     */
+    public String getAdvisoryETag(String advisoryId) throws DatabaseException, CsafException {
+
+        Authentication credentials = getAuthentication();
+        String revision = this.couchDbService.readRevision(advisoryId);
+        if (!canViewAdvisory(readAdvisoryInformation(advisoryId), credentials)) {
+            throw new CsafException("The user has no permission to view this advisory",
+                    NoPermissionForAdvisory, UNAUTHORIZED);
         }
+        return createETag(revision, credentials);
+    }
 
-        try (InputStream counterStream = couchDbService.readDocumentAsStream(counterId)) {
-            MappingIterator<TrackingIdCounter> counterIter = new ObjectMapper().readerFor(TrackingIdCounter.class).readValues(counterStream);
-            TrackingIdCounter counter = counterIter.next();
-            counter.increaseCount();
-            final String result = new ObjectMapper().writeValueAsString(counter);
-            this.couchDbService.updateDocument(result);
-            return counter.getCount();
-        } catch (IOException | DatabaseException ex) {
-            throw new CsafException("Error create new counter for tracking Id", ErrorCreatingTrackingIdCounter, INTERNAL_SERVER_ERROR);
+    /**
+     * Get the strong ETag of the advisory list for the authenticated user.
+     * It is derived from the version of the projection, when the list is read from the projection,
+     * otherwise from the update sequence of the database.
+     * The user and the roles are part of the ETag, because they filter the list and its permissions.
+     *
+     * @param expression optional search expression of the list
+     * @param paged      true - the list is read in pages, pages are always read from the database
+     * @return the quoted ETag, null if the version is not known
+     */
+    public String getAdvisoryInformationsETag(String expression, boolean paged) {
+
+        String version = !paged && (expression == null || expression.isBlank()) && this.advisoryProjection.isReady()
+                ? this.advisoryProjection.getVersion()
+                : this.couchDbService.getUpdateSequence();
+        return createETag(version, getAuthentication());
+    }
+
+    private static String createETag(String version, Authentication credentials) {
+
+        if (version == null) {
+            return null;
+        }
+        StringBuilder eTagSource = new StringBuilder(version).append('\n').append(credentials.getName());
+        credentials.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .sorted()
+                .forEach(role -> eTagSource.append('\n').append(role));
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(eTagSource.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash) + "\"";
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
         }
     }
 
@@ -344,32 +1014,83 @@ public class AdvisoryService {
      */
     public AdvisoryResponse getAdvisory(String advisoryId) throws DatabaseException, CsafException {
 
-        try (InputStream advisoryStream = couchDbService.readDocumentAsStream(advisoryId)) {
-
-            AdvisoryWrapper advisory = AdvisoryWrapper.createFromCouchDb(advisoryStream);
-            if (canViewAdvisory(advisory, getAuthentication())) {
-
-                Authentication credentials = getAuthentication();
-                boolean isVersion = advisory.getType() == ObjectType.AdvisoryVersion;
-
-                AdvisoryResponse response = new AdvisoryResponse(advisoryId, advisory.getWorkflowState(), advisory.getCsaf());
-                response.setTitle(advisory.getDocumentTitle());
-                response.setCurrentReleaseDate(advisory.getDocumentTrackingCurrentReleaseDate());
-                response.setDocumentTrackingId(advisory.getDocumentTrackingId());
-                response.setOwner(advisory.getOwner());
-                response.setDeletable(!isVersion && canDeleteAdvisory(response, credentials));
-                response.setChangeable(!isVersion && canChangeAdvisory(response, credentials));
-                response.setCanCreateVersion(!isVersion && canCreateNewVersion(response, credentials));
-                List<WorkflowState> allowedStateChanges = (!isVersion) ? getAllowedStates(response, credentials) : emptyList();
-                response.setAllowedStateChanges(allowedStateChanges);
-                response.setRevision(advisory.getRevision());
-                return response;
-            } else {
-                throw new CsafException("The user has no permission to view this advisory",
-                        NoPermissionForAdvisory, UNAUTHORIZED);
-            }
-        } catch (IOException e) {
-            throw new DatabaseException(e);
+        AdvisoryWrapper advisory = AdvisoryWrapper.createFromCouchDb(couchDbService.readDocument(advisoryId));
+        return createAdvisoryResponse(advisoryId, advisory, getAuthentication());
+    }
+
+    /**
+     * get several advisories with one database request.
+     * The advisories are read and checked for permissions while the stream is consumed.
+     * Ids of missing documents, of documents that are no advisories and of advisories
+     * the user is not allowed to view are skipped.
+     *
+     * @param advisoryIds the IDs of the advisories to get
+     * @return stream of the advisories in the order of the IDs
+     */
+    public AdvisoryResponseStream streamAdvisories(Collection<String> advisoryIds) {
+
+        // evaluate credentials now, the stream may be consumed in another thread
+        Authentication credentials = getAuthentication();
+        List<String> ids = List.copyOf(advisoryIds);
+
+        return advisoryConsumer -> {
+            InputStream allDocsStream = this.couchDbService.readDocumentsAsStream(ids);
+            AdvisoryWrapper.readAllDocsDocuments(allDocsStream, document -> {
+                try {
+                    AdvisoryWrapper advisory = AdvisoryWrapper.createFromCouchDb(document);
+                    if (canViewAdvisory(advisory, credentials)) {
+                        advisoryConsumer.accept(createAdvisoryResponse(advisory.getAdvisoryId(), advisory, credentials));
+                    }
+                } catch (CsafException ex) {
+                    LOG.debug("Skipped document that is no advisory");
+                }
+            });
+        };
+    }
+
+    /**
+     * get a specific advisory without blocking the calling thread
+     *
+     * @param advisoryId the ID of the advisory to get
+     * @return the requested advisory, fails with {@link IdNotFoundException} if there is no advisory with given ID
+     */
+    public Mono<AdvisoryResponse> getAdvisoryAsMono(String advisoryId) {
+
+        // the security context is bound to the calling thread, the response is created in another thread
+        Authentication credentials = getAuthentication();
+        return reactiveCouchDbService.readDocument(advisoryId)
+                .handle((advisoryNode, sink) -> {
+                    try {
+                        AdvisoryWrapper advisory = AdvisoryWrapper.createFromCouchDb(advisoryNode);
+                        sink.next(createAdvisoryResponse(advisoryId, advisory, credentials));
+                    } catch (CsafException ex) {
+                        sink.error(ex);
+                    }
+                });
+    }
+
+    private AdvisoryResponse createAdvisoryResponse(String advisoryId, AdvisoryWrapper advisory, Authentication credentials)
+            throws CsafException {
+
+        if (canViewAdvisory(advisory, credentials)) {
+
+            boolean isVersion = advisory.getType() == ObjectType.AdvisoryVersion;
+
+            AdvisoryResponse response = new AdvisoryResponse(advisoryId, advisory.getWorkflowState(), advisory.getCsaf());
+            response.setTitle(advisory.getDocumentTitle());
+            response.setCurrentReleaseDate(advisory.getDocumentTrackingCurrentReleaseDate());
+            response.setDocumentTrackingId(advisory.getDocumentTrackingId());
+            response.setOwner(advisory.getOwner());
+            response.setDeletable(!isVersion && canDeleteAdvisory(response, credentials));
+            response.setChangeable(!isVersion && canChangeAdvisory(response, credentials));
+            response.setCanCreateVersion(!isVersion && canCreateNewVersion(response, credentials));
+            List<WorkflowState> allowedStateChanges = (!isVersion) ? getAllowedStates(response, credentials) : emptyList();
+            response.setAllowedStateChanges(allowedStateChanges);
+            response.setRevision(advisory.getRevision());
+            return response;
+        } else {
+            throw new CsafException("The user has no permission to view this advisory",
+                    NoPermissionForAdvisory, UNAUTHORIZED);
         }
     }
 
@@ -385,32 +1106,62 @@ public class AdvisoryService {
     public void deleteAdvisory(String advisoryId, String revision) throws DatabaseException, IOException, CsafException {
 
         LOG.debug("deleteAdvisory");
-        InputStream advisoryStream = couchDbService.readDocumentAsStream(advisoryId);
-        AdvisoryWrapper advisory = AdvisoryWrapper.createFromCouchDb(advisoryStream);
+        AdvisoryWrapper advisory = AdvisoryWrapper.createFromCouchDb(couchDbService.readDocument(advisoryId));
         if (canDeleteAdvisory(advisory, getAuthentication())) {
 
             this.couchDbService.deleteDocument(advisoryId, revision);
-            deleteAllAuditTrailDocumentsFromDbFor(advisoryId, ADVISORY_ID.getDbName());
-            deleteAllCommentsFromDbForAdvisory(advisoryId);
+            this.advisoryProjection.documentDeleted(advisoryId, revision);
+            deleteDependentDocuments(advisoryId, true);
         } else {
             throw new AccessDeniedException("User has not the permission to delete the advisory");
         }
     }
 
-    private void deleteAllCommentsFromDbForAdvisory(String advisoryId) throws IOException, DatabaseException {
-        AndExpression searchExpr = new AndExpression(equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
-                equal(advisoryId, CommentField.ADVISORY_ID.getDbName()));
-
-        Collection<DbField> fields = Arrays.asList(CouchDbField.ID_FIELD, CouchDbField.REVISION_FIELD);
-
-        Map<String, Object> selector = expr2CouchDBFilter(searchExpr);
-        List<JsonNode> commentsToDelete = this.findDocuments(selector, fields);
+    /**
+     * Delete all comments and answers of an advisory together with their audit trails
+     * and optionally the audit trails of the advisory. The documents to delete are collected
+     * with two index backed queries and deleted in chunked bulk requests.
+     *
+     * @param advisoryId                  the ID of the advisory
+     * @param includeAdvisoryAuditTrails true - delete the audit trails of the advisory as well
+     * @throws IOException       error reading the documents to delete
+     * @throws DatabaseException error deleting the documents
+     */
+    private void deleteDependentDocuments(String advisoryId, boolean includeAdvisoryAuditTrails)
+            throws IOException, DatabaseException {
+
+        Collection<DbField> fields = Arrays.asList(CouchDbField.ID_FIELD, CouchDbField.REVISION_FIELD, TYPE_FIELD);
+        List<String> advisoryTypes = includeAdvisoryAuditTrails
+                ? List.of(ObjectType.Comment.name(), ObjectType.AuditTrailDocument.name(), ObjectType.AuditTrailWorkflow.name())
+                : List.of(ObjectType.Comment.name());
+        Map<String, Object> advisorySelector = Map.of(
+                CommentField.ADVISORY_ID.getDbName(), Map.of("$eq", advisoryId),
+                TYPE_FIELD.getDbName(), Map.of("$in", advisoryTypes));
+        List<JsonNode> advisoryDocs = this.findRelatedDocuments(advisoryId, advisorySelector, fields, CouchDbIndex.ADVISORY_ID);
+
+        List<IdAndRevision> bulkDeletes = new ArrayList<>();
+        List<String> commentIds = new ArrayList<>();
+        for (JsonNode doc : advisoryDocs) {
+            String id = CouchDbField.ID_FIELD.stringVal(doc);
+            bulkDeletes.add(new IdAndRevision(id, CouchDbField.REVISION_FIELD.stringVal(doc)));
+            if (ObjectType.Comment.name().equals(TYPE_FIELD.stringVal(doc))) {
+                commentIds.add(id);
+            }
+        }
 
-        Collection<IdAndRevision> bulkDeletes = new ArrayList<>(commentsToDelete.size());
-        for (JsonNode doc : commentsToDelete) {
-            String commentId = CouchDbField.ID_FIELD.stringVal(doc);
-            String commentRev = CouchDbField.REVISION_FIELD.stringVal(doc);
-            deleteComment(commentId, commentRev);
+        if (!commentIds.isEmpty()) {
+            // $in can not be answered from an index, the range of the comment ids makes the query index backed
+            Map<String, Object> commentIdCondition = Map.of(
+                    "$gte", Collections.min(commentIds),
+                    "$lte", Collections.max(commentIds),
+                    "$in", commentIds);
+            Map<String, Object> auditTrailSelector = Map.of(
+                    CommentAuditTrailField.COMMENT_ID.getDbName(), commentIdCondition,
+                    TYPE_FIELD.getDbName(), Map.of("$eq", ObjectType.CommentAuditTrail.name()));
+            for (JsonNode doc : this.findRelatedDocuments(advisoryId, auditTrailSelector, fields, CouchDbIndex.COMMENT_ID)) {
+                bulkDeletes.add(new IdAndRevision(CouchDbField.ID_FIELD.stringVal(doc),
+                        CouchDbField.REVISION_FIELD.stringVal(doc)));
+            }
         }
         this.couchDbService.bulkDeleteDocuments(bulkDeletes);
     }
@@ -422,7 +1173,8 @@ public class AdvisoryService {
         AndExpression searchExpr = new AndExpression(containsIgnoreCase("AuditTrail", TYPE_FIELD.getDbName()),
                 equal(itemId, idKey));
         Map<String, Object> selector = expr2CouchDBFilter(searchExpr);
-        var auditTrailDocs = this.findDocuments(selector, fields);
+        CouchDbIndex index = ADVISORY_ID.getDbName().equals(idKey) ? CouchDbIndex.ADVISORY_ID : CouchDbIndex.COMMENT_ID;
+        var auditTrailDocs = this.findRelatedDocuments(itemId, selector, fields, index);
 
         Collection<IdAndRevision> bulkDeletes = new ArrayList<>(auditTrailDocs.size());
         for (JsonNode doc : auditTrailDocs) {
@@ -444,105 +1196,171 @@ public class AdvisoryService {
     public String updateAdvisory(String advisoryId, String revision, CreateAdvisoryRequest changedCsafJson) throws IOException, DatabaseException, CsafException {
 
         LOG.debug("updateAdvisory");
-        try (InputStream existingAdvisoryStream = this.couchDbService.readDocumentAsStream(advisoryId)) {
+        AdvisoryWrapper oldAdvisoryNode = AdvisoryWrapper.createFromCouchDb(this.couchDbService.readDocument(advisoryId));
+        Authentication credentials = getAuthentication();
+        if (canChangeAdvisory(oldAdvisoryNode, credentials)) {
 
-            if (existingAdvisoryStream == null) {
-                throw new DatabaseException("Invalid advisory ID!");
+            if (changedCsafJson.getSummary() == null || changedCsafJson.getSummary().isBlank()) {
+                throw new CsafException("Summary must not be empty", SummaryInHistoryEmpty, UNPROCESSABLE_ENTITY);
             }
-            AdvisoryWrapper oldAdvisoryNode = AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream);
-            Authentication credentials = getAuthentication();
-            if (canChangeAdvisory(oldAdvisoryNode, credentials)) {
-
-                if (changedCsafJson.getSummary() == null || changedCsafJson.getSummary().isBlank()) {
-                    throw new CsafException("Summary must not be empty", SummaryInHistoryEmpty, UNPROCESSABLE_ENTITY);
-                }
-
-                AdvisoryWrapper newAdvisoryNode = AdvisoryWrapper.updateFromExisting(oldAdvisoryNode, changedCsafJson);
-                newAdvisoryNode.setRevision(revision);
-                newAdvisoryNode.setDocumentTrackingGeneratorEngineName(buildProperties.getName());
-                newAdvisoryNode.setDocumentTrackingGeneratorEngineVersion(buildProperties.getVersion());
-                PatchType changeType = AdvisoryWorkflowUtil.getChangeType(oldAdvisoryNode, newAdvisoryNode, configuration.getVersioning().getLevenshtein());
-                String nextVersion = oldAdvisoryNode.getVersioningStrategy().getNextVersion(changeType, oldAdvisoryNode.getDocumentTrackingVersion(), oldAdvisoryNode.getLastVersion());
-                newAdvisoryNode.setDocumentTrackingVersion(nextVersion);
-                String timestampNow = getCurrentTimestamp();
-                if (newAdvisoryNode.currentReleaseDateIsNotSetOrInPast(timestampNow)) {
-                    newAdvisoryNode.setDocumentTrackingCurrentReleaseDate(timestampNow);
-                }
-                if (oldAdvisoryNode.usesSemanticVersioning()
-                    && newAdvisoryNode.versionIsUntilIncludingInitialPublication()
-                    && !oldAdvisoryNode.getDocumentTrackingVersion().equals(nextVersion)) {
-                    newAdvisoryNode.addRevisionHistoryElement(changedCsafJson, timestampNow);
-                } else {
-                    newAdvisoryNode.editLastRevisionHistoryElement(changedCsafJson, timestampNow);
-                }
 
-                String result = this.couchDbService.updateDocument(newAdvisoryNode.advisoryAsString());
-
-                AuditTrailWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(oldAdvisoryNode, newAdvisoryNode)
-                        .setAdvisoryId(advisoryId)
-                        .setChangeType(ChangeType.Update)
-                        .setUser(credentials.getName());
-                this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
-                return result;
+            AdvisoryWrapper newAdvisoryNode = AdvisoryWrapper.updateFromExisting(oldAdvisoryNode, changedCsafJson);
+            newAdvisoryNode.setRevision(revision);
+            newAdvisoryNode.setDocumentTrackingGeneratorEngineName(buildProperties.getName());
+            newAdvisoryNode.setDocumentTrackingGeneratorEngineVersion(buildProperties.getVersion());
+            PatchType changeType = AdvisoryWorkflowUtil.getChangeType(oldAdvisoryNode, newAdvisoryNode, configuration.getVersioning().getLevenshtein());
+            String nextVersion = oldAdvisoryNode.getVersioningStrategy().getNextVersion(changeType, oldAdvisoryNode.getDocumentTrackingVersion(), oldAdvisoryNode.getLastVersion());
+            newAdvisoryNode.setDocumentTrackingVersion(nextVersion);
+            String timestampNow = getCurrentTimestamp();
+            if (newAdvisoryNode.currentReleaseDateIsNotSetOrInPast(timestampNow)) {
+                newAdvisoryNode.setDocumentTrackingCurrentReleaseDate(timestampNow);
+            }
+            if (oldAdvisoryNode.usesSemanticVersioning()
+                && newAdvisoryNode.versionIsUntilIncludingInitialPublication()
+                && !oldAdvisoryNode.getDocumentTrackingVersion().equals(nextVersion)) {
+                newAdvisoryNode.addRevisionHistoryElement(changedCsafJson, timestampNow);
             } else {
-                throw new CsafException("User has no permission to edit the advisory", NoPermissionForAdvisory, UNAUTHORIZED);
+                newAdvisoryNode.editLastRevisionHistoryElement(changedCsafJson, timestampNow);
             }
+
+            AuditTrailWrapper auditTrail = AdvisoryAuditTrailDiffWrapper.createNewFromAdvisories(oldAdvisoryNode, newAdvisoryNode)
+                    .setAdvisoryId(advisoryId)
+                    .setChangeType(ChangeType.Update)
+                    .setUser(credentials.getName());
+            return writeDocumentsWithAuditTrail(
+                    auditTrail,
+                    BulkWriteDocument.changedDocument(newAdvisoryNode.advisoryAsString())).get(0);
+        } else {
+            throw new CsafException("User has no permission to edit the advisory", NoPermissionForAdvisory, UNAUTHORIZED);
         }
     }
 
     /**
-     * Export the Advisory with the given advisoryId in the given format. The export will be written to a
-     * temporary file and the path to the file will be returned.
+     * Export the Advisory with the given advisoryId in the given format. The advisory is read and checked now,
+     * the export is created while it is written to the returned stream, an export of the current revision
+     * is read from the export cache.
      *
      * @param advisoryId the id of the advisory that should be exported
      * @param format     the format in which the export should be written (default JSON on null)
-     * @return the path to the temporary file that contains the export
-     * @throws CsafException        if the advisory with the given id does not exist or the export format is unknown
-     * @throws IOException          on any error regarding writing/reading from disk
-     * @throws InterruptedException if the export did take too long and thus timed out
+     * @return the export that is created while it is written
+     * @throws CsafException if the advisory with the given id does not exist or the export format is unknown
+     * @throws IOException   on any error reading the advisory or the cached export
      */
     @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
-    public Path exportAdvisory(
+    public AdvisoryExportStream exportAdvisory(
             @Nonnull final String advisoryId,
             @Nullable final ExportFormat format)
             throws IOException, CsafException {
-        // read the advisory form the database
+
+        final ExportFormat exportFormat = checkExportFormat(format);
         try {
-            final InputStream existingAdvisoryStream = this.couchDbService.readDocumentAsStream(advisoryId);
-            final AdvisoryWrapper advisoryNode = AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream);
-            final JsonNode csaf = advisoryNode.getCsaf();
-            RemoveIdHelper.removeCommentIds(csaf);
-            final String csafDocument = csaf.toString();
-
-            // if format is JSON - write it to temporary file and return the path
-            if (format == ExportFormat.JSON || format == null) {
-                final Path jsonFile = Files.createTempFile("advisory__", ".json");
-                Files.writeString(jsonFile, csafDocument);
-                return jsonFile;
-            } else {
-                // other formats have to start with an HTML export first
-                final String htmlExport = javascriptExporter.createHtml(csafDocument);
-                final Path htmlFile = Files.createTempFile("advisory__", ".html");
-                Files.writeString(htmlFile, htmlExport);
-                if (format == ExportFormat.HTML) {
-                    // we already have an HTML file - done!
-                    return htmlFile;
-                } else if (format == ExportFormat.Markdown && pandocService.isReady()) {
-                    final Path markdownFile = Files.createTempFile("advisory__", ".md");
-                    pandocService.convert(htmlFile, markdownFile);
-                    Files.delete(htmlFile);
-                    return markdownFile;
-                } else if (format == ExportFormat.PDF && weasyprintService.isReady()) {
-                    final Path pdfFile = Files.createTempFile("advisory__", ".pdf");
-                    weasyprintService.convert(htmlFile, pdfFile);
-                    Files.delete(htmlFile);
-                    return pdfFile;
-                }
-                throw new CsafException("Unknown export format: " + format, CsafExceptionKey.UnknownExportFormat, BAD_REQUEST);
-            }
+            final String revision = this.exportCache.isEnabled() ? this.couchDbService.readRevision(advisoryId) : null;
+            return createExport(advisoryId, revision, exportFormat);
         } catch (IdNotFoundException e) {
             throw new CsafException("Can not find advisory with ID " + advisoryId,
                     CsafExceptionKey.AdvisoryNotFound, HttpStatus.NOT_FOUND);
+        } catch (DatabaseException e) {
+            throw new IOException("Can not read advisory with ID " + advisoryId, e);
+        }
+    }
+
+    /**
+     * Export the given revision of an advisory, see {@link #exportAdvisory(String, ExportFormat)}
+     *
+     * @param advisoryId the id of the advisory that should be exported
+     * @param revision   the revision of the advisory that should be exported
+     * @param format     the format in which the export should be written (default JSON on null)
+     * @return the export that is created while it is written
+     * @throws CsafException if the revision of the advisory does not exist or the export format is unknown
+     * @throws IOException   on any error reading the advisory or the cached export
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public AdvisoryExportStream exportAdvisoryRevision(
+            @Nonnull final String advisoryId,
+            @Nonnull final String revision,
+            @Nullable final ExportFormat format)
+            throws IOException, CsafException {
+
+        final ExportFormat exportFormat = checkExportFormat(format);
+        try {
+            return createExport(advisoryId, revision, exportFormat);
+        } catch (IdNotFoundException e) {
+            throw new CsafException("Can not find advisory with ID " + advisoryId + " and revision " + revision,
+                    CsafExceptionKey.AdvisoryNotFound, HttpStatus.NOT_FOUND);
+        } catch (DatabaseException e) {
+            throw new IOException("Can not read advisory with ID " + advisoryId, e);
+        }
+    }
+
+    private ExportFormat checkExportFormat(@Nullable final ExportFormat format) throws IOException, CsafException {
+
+        final ExportFormat exportFormat = format != null ? format : ExportFormat.JSON;
+        if ((exportFormat == ExportFormat.Markdown && !pandocService.isReady())
+                || (exportFormat == ExportFormat.PDF && !weasyprintService.isReady())) {
+            throw new CsafException("Unknown export format: " + format, CsafExceptionKey.UnknownExportFormat, BAD_REQUEST);
+        }
+        return exportFormat;
+    }
+
+    /**
+     * @param revision the revision to export, null for the current revision
+     */
+    private AdvisoryExportStream createExport(final String advisoryId, @Nullable final String revision,
+                                              final ExportFormat exportFormat)
+            throws IOException, DatabaseException, CsafException {
+
+        final InputStream cachedExport = revision != null && this.exportCache.isEnabled()
+                ? this.exportCache.get(advisoryId, revision, exportFormat) : null;
+        if (cachedExport != null) {
+            return new AdvisoryExportStream() {
+                @Override
+                public void writeTo(OutputStream outputStream) throws IOException {
+                    try (cachedExport) {
+                        cachedExport.transferTo(outputStream);
+                    }
+                }
+
+                @Override
+                public void close() throws IOException {
+                    cachedExport.close();
+                }
+            };
+        }
+        // read the advisory form the database
+        ObjectNode advisoryDocument = this.couchDbService.readDocument(advisoryId);
+        if (revision != null && !revision.equals(CouchDbField.REVISION_FIELD.stringVal(advisoryDocument))) {
+            advisoryDocument = this.couchDbService.readDocument(advisoryId, revision);
+        }
+        final AdvisoryWrapper advisoryNode = AdvisoryWrapper.createFromCouchDb(advisoryDocument);
+        final JsonNode csaf = advisoryNode.getCsaf();
+        RemoveIdHelper.removeCommentIds(csaf);
+        final String exportedRevision = advisoryNode.getRevision();
+        return outputStream -> {
+            try (ExportCache.CachingOutputStream cachingOutput =
+                         this.exportCache.cacheWhileWriting(advisoryId, exportedRevision, exportFormat, outputStream)) {
+                writeExport(csaf, exportFormat, cachingOutput);
+                cachingOutput.commit();
+            }
+        };
+    }
+
+    private void writeExport(final JsonNode csaf, final ExportFormat format, final OutputStream output)
+            throws IOException, CsafException {
+
+        if (format == ExportFormat.JSON) {
+            EXPORT_JSON_WRITER.writeValue(output, csaf);
+            return;
+        }
+        // other formats have to start with an HTML export first
+        final String htmlExport = htmlExporter.createHtml(csaf.toString());
+        if (format == ExportFormat.HTML) {
+            final Writer htmlOutput = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            htmlOutput.write(htmlExport);
+            htmlOutput.flush();
+        } else if (format == ExportFormat.Markdown) {
+            pandocService.convert(htmlExport, output);
+        } else {
+            weasyprintService.convert(htmlExport, output);
         }
     }
 
@@ -560,11 +1378,7 @@ public class AdvisoryService {
             throws IOException, DatabaseException, CsafException {
 
         Authentication credentials = getAuthentication();
-        InputStream existingAdvisoryStream = couchDbService.readDocumentAsStream(advisoryId);
-        if (existingAdvisoryStream == null) {
-            throw new DatabaseException("Invalid advisory ID!");
-        }
-        AdvisoryWrapper existingAdvisoryNode = AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream);
+        AdvisoryWrapper existingAdvisoryNode = AdvisoryWrapper.createFromCouchDb(couchDbService.readDocument(advisoryId));
 
         if (canChangeWorkflow(existingAdvisoryNode, newWorkflowState, credentials)) {
 
@@ -628,16 +1442,53 @@ public class AdvisoryService {
                     .setDocVersion(existingAdvisoryNode.getDocumentTrackingVersion())
                     .setAdvisoryId(advisoryId)
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
 
+            if (this.couchDbService.isUpdateHandlersEnabled()
+                    && (newWorkflowState == WorkflowState.Review || newWorkflowState == WorkflowState.RfPublication)) {
+                // only the workflow state and the tracking status change, so the advisory is not written as a whole
+                return setWorkflowStateWithUpdateHandler(auditTrail, advisoryId, revision, newWorkflowState,
+                        documentTrackingStatus);
+            }
             existingAdvisoryNode.setRevision(revision);
-            return this.couchDbService.updateDocument(existingAdvisoryNode.advisoryAsString());
+            return writeDocumentsWithAuditTrail(
+                    auditTrail,
+                    BulkWriteDocument.changedDocument(existingAdvisoryNode.advisoryAsString())).get(0);
         } else {
             throw new CsafException("User has not the permission to change the workflow state of the advisory",
                     NoPermissionForAdvisory, UNAUTHORIZED);
         }
     }
 
+    /**
+     * Set the workflow state and the tracking status of an advisory with one request,
+     * CouchDB checks the revision of the advisory
+     *
+     * @param auditTrail             the audit trail of the change
+     * @param advisoryId             the ID of the advisory
+     * @param revision               the revision for concurrent control
+     * @param newWorkflowState       the new workflow state
+     * @param documentTrackingStatus the new tracking status, null to keep the status
+     * @return the new revision of the advisory
+     * @throws IdNotFoundException the advisory does not exist or its revision is outdated
+     */
+    private String setWorkflowStateWithUpdateHandler(AuditTrailWrapper auditTrail, String advisoryId, String revision,
+                                                     WorkflowState newWorkflowState,
+                                                     DocumentTrackingStatus documentTrackingStatus) throws DatabaseException {
+
+        ObjectNode change = JSON_MAPPER.createObjectNode()
+                .put("revision", revision)
+                .put("workflowState", newWorkflowState.name());
+        if (documentTrackingStatus != null) {
+            change.put("trackingStatus", documentTrackingStatus.getCsafValue());
+        }
+        UpdateHandlerResult result = callUpdateHandlerWithAuditTrail(auditTrail, CouchDbUpdateHandler.SET_WORKFLOW_STATE,
+                advisoryId, change.toString(), Map.of(AdvisoryField.WORKFLOW_STATE, newWorkflowState.name()));
+        if (!result.isOk()) {
+            throw new IdNotFoundException("No element with given ID");
+        }
+        return result.getNewRevision();
+    }
+
     /**
      * Set the final tracking id in the advisory and a DocumentReferencesNode with the url of the tracking id
      *
@@ -709,11 +1560,7 @@ public class AdvisoryService {
 
         LOG.debug("createNewCsafDocumentVersion");
         Authentication credentials = getAuthentication();
-        InputStream existingAdvisoryStream = couchDbService.readDocumentAsStream(advisoryId);
-        if (existingAdvisoryStream == null) {
-            throw new DatabaseException("Invalid advisory ID!");
-        }
-        AdvisoryWrapper existingAdvisoryNode = AdvisoryWrapper.createFromCouchDb(existingAdvisoryStream);
+        AdvisoryWrapper existingAdvisoryNode = AdvisoryWrapper.createFromCouchDb(couchDbService.readDocument(advisoryId));
 
         if (canCreateNewVersion(existingAdvisoryNode, credentials)) {
 
@@ -735,10 +1582,12 @@ public class AdvisoryService {
                     .setOldDocVersion(existingAdvisoryNode.getDocumentTrackingVersion())
                     .setAdvisoryId(advisoryId)
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
-            this.deleteAllCommentsFromDbForAdvisory(existingAdvisoryNode.getAdvisoryId());
-            this.couchDbService.writeDocument(UUID.randomUUID(), advisoryVersionBackup.advisoryAsString());
-            return this.couchDbService.updateDocument(existingAdvisoryNode.advisoryAsString());
+            this.deleteDependentDocuments(existingAdvisoryNode.getAdvisoryId(), false);
+            String backupId = this.couchDbService.newDocumentId(advisoryId);
+            return writeDocumentsWithAuditTrail(
+                    auditTrail,
+                    BulkWriteDocument.changedDocument(existingAdvisoryNode.advisoryAsString()),
+                    BulkWriteDocument.newDocument(backupId, advisoryVersionBackup.advisoryAsString())).get(0);
         } else {
             throw new CsafException("User has not the permission to create a new Version in this state",
                     NoPermissionForAdvisory, UNAUTHORIZED);
@@ -759,21 +1608,22 @@ public class AdvisoryService {
     public IdAndRevision addComment(String advisoryId, CreateCommentRequest comment) throws DatabaseException, CsafException {
 
         LOG.debug("addComment");
-        UUID commentId = UUID.randomUUID();
+        String commentId = this.couchDbService.newDocumentId(advisoryId);
         Authentication credentials = getAuthentication();
-        AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(advisoryId, this.couchDbService);
+        AdvisoryInformationResponse advisoryInfo = readAdvisoryInformation(advisoryId);
 
         if (AdvisoryWorkflowUtil.canAddAndReplyCommentToAdvisory(advisoryInfo, credentials)) {
 
             CommentWrapper newComment = CommentWrapper.createNew(advisoryId, comment);
             newComment.setOwner(credentials.getName());
-            String commentRevision = this.couchDbService.writeDocument(commentId, newComment.commentAsString());
 
             AuditTrailWrapper auditTrail = CommentAuditTrailWrapper.createNew(newComment)
-                    .setCommentId(commentId.toString())
+                    .setCommentId(commentId)
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
-            return new IdAndRevision(commentId.toString(), commentRevision);
+            String commentRevision = writeDocumentsWithAuditTrail(
+                    auditTrail,
+                    BulkWriteDocument.newDocument(commentId, newComment.commentAsString())).get(0);
+            return new IdAndRevision(commentId, commentRevision);
         } else {
             throw new AccessDeniedException("User has not the permission to add a comment to the advisory");
         }
@@ -789,30 +1639,24 @@ public class AdvisoryService {
     @Secured({CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_AUDITOR})
     public CommentResponse getComment(String commentId) throws DatabaseException, CsafException {
 
+        CommentWrapper comment = CommentWrapper.createFromCouchDb(couchDbService.readDocument(commentId));
 
-        try (InputStream commentStream = couchDbService.readDocumentAsStream(commentId)) {
-            CommentWrapper comment = CommentWrapper.createFromCouchDb(commentStream);
-
-            Authentication credentials = getAuthentication();
-            AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(comment.getAdvisoryId(), this.couchDbService);
-            if (AdvisoryWorkflowUtil.canViewComment(advisoryInfo, credentials)) {
-                return new CommentResponse(
-                        commentId,
-                        comment.getRevision(),
-                        comment.getAdvisoryId(),
-                        comment.getOwner(),
-                        comment.getText(),
-                        comment.getCsafNodeId(),
-                        comment.getFieldName(),
-                        comment.getAnswerTo()
-                );
-            } else {
-                throw new CsafException("User has not the permission to view comment from the advisory",
-                        NoPermissionForAdvisory, UNAUTHORIZED);
-            }
-
-        } catch (IOException e) {
-            throw new DatabaseException(e);
+        Authentication credentials = getAuthentication();
+        AdvisoryInformationResponse advisoryInfo = readAdvisoryInformation(comment.getAdvisoryId());
+        if (AdvisoryWorkflowUtil.canViewComment(advisoryInfo, credentials)) {
+            return new CommentResponse(
+                    commentId,
+                    comment.getRevision(),
+                    comment.getAdvisoryId(),
+                    comment.getOwner(),
+                    comment.getText(),
+                    comment.getCsafNodeId(),
+                    comment.getFieldName(),
+                    comment.getAnswerTo()
+            );
+        } else {
+            throw new CsafException("User has not the permission to view comment from the advisory",
+                    NoPermissionForAdvisory, UNAUTHORIZED);
         }
     }
 
@@ -827,24 +1671,11 @@ public class AdvisoryService {
     public List<CommentInformationResponse> getComments(String advisoryId) throws IOException, CsafException {
 
         Authentication credentials = getAuthentication();
-        AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(advisoryId, this.couchDbService);
+        AdvisoryInformationResponse advisoryInfo = readAdvisoryInformation(advisoryId);
         if (AdvisoryWorkflowUtil.canViewComment(advisoryInfo, credentials)) {
 
-            List<DbField> fields = Arrays.asList(
-                    CouchDbField.ID_FIELD,
-                    CouchDbField.REVISION_FIELD,
-                    CommentField.ADVISORY_ID,
-                    CommentField.CSAF_NODE_ID,
-                    CommentField.OWNER,
-                    CommentField.ANSWER_TO
-            );
-
-            AndExpression searchExpr = new AndExpression(
-                    equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
-                    equal(advisoryId, CommentField.ADVISORY_ID.getDbName())
-            );
-            Map<String, Object> selector = expr2CouchDBFilter(searchExpr);
-            List<JsonNode> commentInfosJson = this.findDocuments(selector, fields);
+            List<JsonNode> commentInfosJson = this.findRelatedDocuments(advisoryId, commentsSelector(advisoryId),
+                    COMMENT_INFO_FIELDS, CouchDbIndex.ADVISORY_ID);
 
             return commentInfosJson.stream().map(CommentWrapper::convertToCommentInfo).toList();
         } else {
@@ -852,6 +1683,36 @@ public class AdvisoryService {
         }
     }
 
+    /**
+     * Retrieves all comments for a given advisory without blocking the calling thread
+     *
+     * @param advisoryId the ID of the advisory to get comments of
+     * @return information on all comments for the requested advisory
+     */
+    @Secured({CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_AUDITOR})
+    public Flux<CommentInformationResponse> getCommentsAsFlux(String advisoryId) {
+
+        Authentication credentials = getAuthentication();
+        return readAdvisoryInformationAsMono(advisoryId)
+                .flatMapMany(advisoryInfo -> {
+                    if (!AdvisoryWorkflowUtil.canViewComment(advisoryInfo, credentials)) {
+                        return Flux.error(new AccessDeniedException("User has not the permission to view comments of the advisory"));
+                    }
+                    return this.reactiveCouchDbService.findRelatedDocuments(advisoryId, commentsSelector(advisoryId),
+                            COMMENT_INFO_FIELDS, CouchDbIndex.ADVISORY_ID);
+                })
+                .map(CommentWrapper::convertToCommentInfo);
+    }
+
+    private static Map<String, Object> commentsSelector(String advisoryId) {
+
+        AndExpression searchExpr = new AndExpression(
+                equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
+                equal(advisoryId, CommentField.ADVISORY_ID.getDbName())
+        );
+        return expr2CouchDBFilter(searchExpr);
+    }
+
     /**
      * Deletes a comment without its answers from the database
      *
@@ -878,11 +1739,10 @@ public class AdvisoryService {
     public String updateComment(String advisoryId, String commentId, String revision, String newText) throws IOException, DatabaseException, CsafException {
 
         Authentication credentials = getAuthentication();
-        InputStream existingCommentStream = this.couchDbService.readDocumentAsStream(commentId);
-        if (existingCommentStream == null) {
-            throw new DatabaseException("Invalid comment ID!");
+        if (this.couchDbService.isUpdateHandlersEnabled()) {
+            return updateCommentWithUpdateHandler(commentId, revision, newText, credentials);
         }
-        CommentWrapper comment = CommentWrapper.createFromCouchDb(existingCommentStream);
+        CommentWrapper comment = CommentWrapper.createFromCouchDb(this.couchDbService.readDocument(commentId));
         final String commentOwner = comment.getOwner();
         if (commentOwner == null || !commentOwner.equals(credentials.getName())) {
             throw new AccessDeniedException("User has not the permission to change the comment");
@@ -895,11 +1755,42 @@ public class AdvisoryService {
                 .setCommentText(newText)
                 .setCreatedAtToNow()
                 .setChangeType(ChangeType.Update)
-                .setUser("Mustermann");
+                .setUser(credentials.getName());
+
+        return writeDocumentsWithAuditTrail(
+                auditTrail,
+                BulkWriteDocument.changedDocument(comment.commentAsString())).get(0);
+    }
+
+    /**
+     * Updates the text of a comment with one request, CouchDB checks the owner and the revision of the comment
+     *
+     * @param commentId   the ID of the comment to update
+     * @param revision    the revision for concurrent control
+     * @param newText     the updated text of the comment
+     * @param credentials the user changing the comment
+     * @return the new revision of the updated comment
+     */
+    private String updateCommentWithUpdateHandler(String commentId, String revision, String newText,
+                                                  Authentication credentials) throws DatabaseException {
 
-        String newRevision = this.couchDbService.updateDocument(comment.commentAsString());
-        this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
-        return newRevision;
+        AuditTrailWrapper auditTrail = CommentAuditTrailWrapper.createNew(commentId, newText)
+                .setChangeType(ChangeType.Update)
+                .setUser(credentials.getName());
+        ObjectNode change = JSON_MAPPER.createObjectNode()
+                .put("revision", revision)
+                .put("owner", credentials.getName())
+                .put("commentText", newText);
+        // comments have no summary in the projection
+        UpdateHandlerResult result = callUpdateHandlerWithAuditTrail(auditTrail, CouchDbUpdateHandler.SET_COMMENT_TEXT,
+                commentId, change.toString(), Map.of());
+        if (result.getStatusCode() == FORBIDDEN.value()) {
+            throw new AccessDeniedException("User has not the permission to change the comment");
+        }
+        if (!result.isOk()) {
+            throw new IdNotFoundException("No element with given ID");
+        }
+        return result.getNewRevision();
     }
 
     /**
@@ -915,22 +1806,23 @@ public class AdvisoryService {
     public IdAndRevision addAnswer(String advisoryId, String commentId, String commentText) throws DatabaseException, CsafException {
 
         Authentication credentials = getAuthentication();
-        AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(advisoryId, this.couchDbService);
+        AdvisoryInformationResponse advisoryInfo = readAdvisoryInformation(advisoryId);
         if (AdvisoryWorkflowUtil.canAddAndReplyCommentToAdvisory(advisoryInfo, credentials)) {
 
-            UUID answerId = UUID.randomUUID();
+            String answerId = this.couchDbService.newDocumentId(advisoryId);
 
             CommentWrapper newAnswer = CommentWrapper.createNewAnswerFromJson(advisoryId, commentId, commentText);
             newAnswer.setOwner(credentials.getName());
-            String commentRevision = this.couchDbService.writeDocument(answerId, newAnswer.commentAsString());
 
             AuditTrailWrapper auditTrail = CommentAuditTrailWrapper.createNew(newAnswer)
-                    .setCommentId(answerId.toString())
+                    .setCommentId(answerId)
                     .setChangeType(ChangeType.Create)
                     .setUser(credentials.getName());
-            this.couchDbService.writeDocument(UUID.randomUUID(), auditTrail.auditTrailAsString());
+            String commentRevision = writeDocumentsWithAuditTrail(
+                    auditTrail,
+                    BulkWriteDocument.newDocument(answerId, newAnswer.commentAsString())).get(0);
 
-            return new IdAndRevision(answerId.toString(), commentRevision);
+            return new IdAndRevision(answerId, commentRevision);
         } else {
             throw new AccessDeniedException("User has not the permission to add a comment to the advisory");
         }
@@ -947,17 +1839,10 @@ public class AdvisoryService {
     public List<AnswerInformationResponse> getAnswers(String advisoryId, String commentId) throws IOException, CsafException {
 
         Authentication credentials = getAuthentication();
-        AdvisoryInformationResponse advisoryInfo = getAdvisoryForId(advisoryId, this.couchDbService);
+        AdvisoryInformationResponse advisoryInfo = readAdvisoryInformation(advisoryId);
         if (AdvisoryWorkflowUtil.canViewComment(advisoryInfo, credentials)) {
-            List<DbField> fields = Arrays.asList(
-                    CouchDbField.ID_FIELD, CouchDbField.REVISION_FIELD, CommentField.ANSWER_TO, CommentField.OWNER);
-
-            AndExpression searchExpr = new AndExpression(
-                    equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
-                    equal(commentId, CommentField.ANSWER_TO.getDbName())
-            );
-            Map<String, Object> selector = expr2CouchDBFilter(searchExpr);
-            List<JsonNode> answerInfosJson = this.findDocuments(selector, fields);
+            List<JsonNode> answerInfosJson = this.findRelatedDocuments(commentId, answersSelector(commentId),
+                    ANSWER_INFO_FIELDS, CouchDbIndex.ANSWER_TO);
 
             return answerInfosJson.stream().map(CommentWrapper::convertToAnswerInfo).toList();
         } else {
@@ -965,6 +1850,36 @@ public class AdvisoryService {
         }
     }
 
+    /**
+     * Retrieves all answers for a given comment without blocking the calling thread
+     *
+     * @param commentId the ID of the comment to get answers of
+     * @return information on all answers for the requested comment
+     */
+    @Secured({CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_REVIEWER, CsafRoles.ROLE_AUDITOR})
+    public Flux<AnswerInformationResponse> getAnswersAsFlux(String advisoryId, String commentId) {
+
+        Authentication credentials = getAuthentication();
+        return readAdvisoryInformationAsMono(advisoryId)
+                .flatMapMany(advisoryInfo -> {
+                    if (!AdvisoryWorkflowUtil.canViewComment(advisoryInfo, credentials)) {
+                        return Flux.error(new AccessDeniedException("User has not the permission to view comments of the advisory"));
+                    }
+                    return this.reactiveCouchDbService.findRelatedDocuments(commentId, answersSelector(commentId),
+                            ANSWER_INFO_FIELDS, CouchDbIndex.ANSWER_TO);
+                })
+                .map(CommentWrapper::convertToAnswerInfo);
+    }
+
+    private static Map<String, Object> answersSelector(String commentId) {
+
+        AndExpression searchExpr = new AndExpression(
+                equal(ObjectType.Comment.name(), TYPE_FIELD.getDbName()),
+                equal(commentId, CommentField.ANSWER_TO.getDbName())
+        );
+        return expr2CouchDBFilter(searchExpr);
+    }
+
     /**
      * Deletes an answer from the database
      *
@@ -0,0 +1,31 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisorySearchField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbIndex;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DbField;
+
+/**
+ * Fields the list of advisories can be sorted by, together with the index that provides the order
+ */
+public enum AdvisorySortField {
+
+    title(AdvisorySearchField.DOCUMENT_TITLE, CouchDbIndex.TITLE_TYPE),
+    documentTrackingId(AdvisorySearchField.DOCUMENT_TRACKING_ID, CouchDbIndex.TRACKING_ID_TYPE),
+    currentReleaseDate(AdvisorySearchField.DOCUMENT_TRACKING_CURRENT_RELEASE_DATE, CouchDbIndex.CURRENT_RELEASE_DATE_TYPE);
+
+    private final DbField field;
+    private final CouchDbIndex index;
+
+    AdvisorySortField(DbField field, CouchDbIndex index) {
+        this.field = field;
+        this.index = index;
+    }
+
+    public DbField getField() {
+        return field;
+    }
+
+    public CouchDbIndex getIndex() {
+        return index;
+    }
+}
@@ -390,11 +390,10 @@ public class AdvisoryWorkflowUtil {
     public static AdvisoryInformationResponse getAdvisoryForId(String advisoryId, CouchDbService couchDbService) throws CsafException {
 
         Map<DbField, BiConsumer<AdvisoryInformationResponse, String>> infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
-        OperatorExpression typeIsAdvisory = equal(ObjectType.Advisory.name(), TYPE_FIELD.getDbName());
-        OperatorExpression advisoryIdIsEqual = equal(advisoryId, ID_FIELD.getDbName());
-        Map<String, Object> selector = expr2CouchDBFilter(new AndExpression(typeIsAdvisory, advisoryIdIsEqual));
+        Map<String, Object> selector = advisoryForIdSelector(advisoryId);
         try {
-            List<JsonNode> docList = findDocuments(couchDbService, selector, new ArrayList<>(infoFields.keySet()));
+            List<JsonNode> docList = findDocuments(couchDbService, selector, new ArrayList<>(infoFields.keySet()),
+                    CouchDbIndex.TYPE);
             List<AdvisoryInformationResponse> allResposes =  docList.stream()
                     .map(couchDbDoc -> AdvisoryWrapper.convertToAdvisoryInfo(couchDbDoc, infoFields))
                     .toList();
@@ -409,6 +408,19 @@ public class AdvisoryWorkflowUtil {
         }
     }
 
+    /**
+     * Create the selector to find the advisory with the given id
+     *
+     * @param advisoryId the id of the advisory
+     * @return the selector
+     */
+    public static Map<String, Object> advisoryForIdSelector(String advisoryId) {
+
+        OperatorExpression typeIsAdvisory = equal(ObjectType.Advisory.name(), TYPE_FIELD.getDbName());
+        OperatorExpression advisoryIdIsEqual = equal(advisoryId, ID_FIELD.getDbName());
+        return expr2CouchDBFilter(new AndExpression(typeIsAdvisory, advisoryIdIsEqual));
+    }
+
     /**
      * read from {@link CouchDbService#findDocumentsAsStream(Map, Collection)} and convert it to a list of JsonNode
      *
@@ -419,7 +431,31 @@ public class AdvisoryWorkflowUtil {
     public static List<JsonNode> findDocuments(CouchDbService couchDbService, Map<String, Object> selector, Collection<DbField> fields)
             throws IOException {
 
-        InputStream inputStream = couchDbService.findDocumentsAsStream(selector, fields);
+        return findDocuments(couchDbService, selector, fields, null);
+    }
+
+    /**
+     * read from {@link CouchDbService#findDocumentsAsStream(Map, Collection, CouchDbIndex)} and convert it to a list of JsonNode
+     *
+     * @param selector the selector to search for
+     * @param fields   the fields of information to select
+     * @param index    the index to answer the query, null to let CouchDB choose
+     * @return the result nodes of the search
+     */
+    public static List<JsonNode> findDocuments(CouchDbService couchDbService, Map<String, Object> selector, Collection<DbField> fields,
+                                               CouchDbIndex index) throws IOException {
+
+        return readDocuments(couchDbService.findDocumentsAsStream(selector, fields, index));
+    }
+
+    /**
+     * convert the result of a _find request to a list of JsonNode
+     *
+     * @param inputStream the _find result
+     * @return the result nodes of the search
+     */
+    public static List<JsonNode> readDocuments(InputStream inputStream) throws IOException {
+
         ObjectMapper mapper = new ObjectMapper();
         JsonNode couchDbResultNode = mapper.readValue(inputStream, JsonNode.class);
         ArrayNode couchDbDocs = (ArrayNode) couchDbResultNode.get("docs");
@@ -428,6 +464,31 @@ public class AdvisoryWorkflowUtil {
         return docNodes;
     }
 
+    /**
+     * read one page from {@link CouchDbService#findDocumentsAsStream(Map, Collection, CouchDbIndex, PageRequest)}
+     * and convert it to a list of JsonNode
+     *
+     * @param selector    the selector to search for
+     * @param fields      the fields of information to select
+     * @param index       the index to answer the query
+     * @param pageRequest limit, bookmark and sort order of the page
+     * @return the result nodes of the page and the bookmark of the following page
+     */
+    public static Page<JsonNode> findDocumentPage(CouchDbService couchDbService, Map<String, Object> selector,
+                                                  Collection<DbField> fields, CouchDbIndex index, PageRequest pageRequest)
+            throws IOException, DatabaseException {
+
+        InputStream inputStream = couchDbService.findDocumentsAsStream(selector, fields, index, pageRequest);
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode couchDbResultNode = mapper.readValue(inputStream, JsonNode.class);
+        ArrayNode couchDbDocs = (ArrayNode) couchDbResultNode.get("docs");
+        List<JsonNode> docNodes = new ArrayList<>();
+        couchDbDocs.forEach(docNodes::add);
+        // a page with less documents than requested is the last one
+        String bookmark = docNodes.size() < pageRequest.getLimit() ? null : couchDbResultNode.path("bookmark").asText(null);
+        return new Page<>(docNodes, bookmark, pageRequest.getLimit());
+    }
+
     public static PatchType getChangeType(AdvisoryWrapper oldAdvisoryNode, AdvisoryWrapper newAdvisory, int maxLevenshteinDistance) {
 
         PatchType result = PatchType.PATCH;
@@ -0,0 +1,359 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import com.ibm.cloud.sdk.core.service.exception.ConflictException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.BulkWriteDocument;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes audit trail documents asynchronously.
+ * The entries are appended to a local spool file, queued and written with _bulk_docs by a background thread,
+ * either when a batch is full or after the flush interval. Entries that are not yet written are replayed
+ * from the spool file on the next start. Every entry gets its id before it is spooled, so the replay of an
+ * entry that was already written is detected as conflict and not written twice.
+ * Written entries are removed from the spool file: it is truncated when no entry is pending and rewritten
+ * with the pending entries when most of its lines are written, so it does not grow under steady load.
+ * When the queue is full, the caller waits for free space and finally writes the entry itself.
+ * A spooled entry whose synchronous write fails is retried by the flush thread.
+ */
+@Service
+public class AuditTrailWriter implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuditTrailWriter.class);
+    private static final String METRIC_PREFIX = "csaf.audittrail.";
+
+    @Value("${csaf.audittrail.async.enabled}")
+    private boolean asyncEnabled;
+
+    @Value("${csaf.audittrail.async.batchSize}")
+    private int batchSize;
+
+    @Value("${csaf.audittrail.async.flushIntervalMillis}")
+    private long flushIntervalMillis;
+
+    @Value("${csaf.audittrail.async.queueCapacity}")
+    private int queueCapacity;
+
+    @Value("${csaf.audittrail.async.enqueueTimeoutMillis}")
+    private long enqueueTimeoutMillis;
+
+    @Value("${csaf.audittrail.async.spoolFile}")
+    private String spoolFile;
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    private BlockingQueue<BulkWriteDocument> queue;
+    // entries of failed flushes, only accessed by the flush thread
+    private final List<BulkWriteDocument> retryEntries = new ArrayList<>();
+    private ScheduledExecutorService flushExecutor;
+    private Path spoolPath;
+    private FileChannel spoolChannel;
+    private final Object spoolLock = new Object();
+    // spooled entries that are not yet written to the database by id, guarded by spoolLock
+    private final Map<String, BulkWriteDocument> pendingById = new LinkedHashMap<>();
+    // lines in the spool file whose entries are already written, guarded by spoolLock
+    private int writtenSpoolLines;
+    // size of pendingById for the metrics and the shutdown
+    private final AtomicInteger pendingEntries = new AtomicInteger();
+    private final AtomicLong writtenEntries = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong synchronousWrites = new AtomicLong();
+
+    @PostConstruct
+    void start() throws IOException {
+
+        if (!asyncEnabled) {
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.spoolPath = Path.of(spoolFile).toAbsolutePath();
+        Files.createDirectories(spoolPath.getParent());
+        synchronized (spoolLock) {
+            if (Files.exists(spoolPath)) {
+                readSpool();
+            }
+            // drops an incomplete last line and the entries that are already written
+            rewriteSpool();
+        }
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-trail-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+
+        if (!asyncEnabled) {
+            return;
+        }
+        this.flushExecutor.shutdown();
+        this.flushExecutor.awaitTermination(flushIntervalMillis * 2, TimeUnit.MILLISECONDS);
+        // write what is left, entries that still fail remain in the spool file
+        int pendingBefore;
+        do {
+            pendingBefore = pendingEntries.get();
+            flush();
+        } while (pendingEntries.get() > 0 && pendingEntries.get() < pendingBefore);
+        this.spoolChannel.close();
+    }
+
+    /**
+     * @return true - audit trails are written asynchronously with {@link #write(String, String)},
+     *      false - the caller writes them together with the changed document
+     */
+    public boolean isAsync() {
+        return asyncEnabled;
+    }
+
+    /**
+     * Write an audit trail entry. In asynchronous mode the entry is spooled and queued,
+     * otherwise it is written immediately.
+     *
+     * @param auditTrailId   the id of the new audit trail document
+     * @param auditTrailJson the audit trail as JSON string
+     */
+    public void write(String auditTrailId, String auditTrailJson) {
+
+        BulkWriteDocument entry = BulkWriteDocument.newDocument(auditTrailId, auditTrailJson);
+        if (asyncEnabled) {
+            boolean spooled = false;
+            try {
+                spool(entry);
+                spooled = true;
+                if (queue.offer(entry, enqueueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    if (queue.size() >= batchSize) {
+                        flushExecutor.execute(this::flush);
+                    }
+                    return;
+                }
+                LOG.warn("Audit trail queue is full, entry is written synchronously");
+            } catch (IOException ex) {
+                LOG.error("Audit trail could not be spooled, entry is written synchronously", ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            synchronousWrites.incrementAndGet();
+            if (spooled) {
+                writeSpooledEntry(entry);
+            } else {
+                // nothing else holds the entry, so the caller gets the failure
+                this.couchDbService.writeDocument(entry.getId(), entry.getJson());
+            }
+        } else {
+            this.couchDbService.writeDocument(entry.getId(), entry.getJson());
+        }
+    }
+
+    /**
+     * Write the queued entries to the database
+     */
+    void flush() {
+
+        List<BulkWriteDocument> batch;
+        do {
+            batch = new ArrayList<>(retryEntries);
+            retryEntries.clear();
+            queue.drainTo(batch, Math.max(0, batchSize - batch.size()));
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                List<DocumentResult> results = this.couchDbService.writeDocuments(batch);
+                for (int i = 0; i < results.size(); i++) {
+                    DocumentResult result = results.get(i);
+                    // a conflict means the entry was already written before a restart
+                    if (Boolean.TRUE.equals(result.isOk()) || "conflict".equals(result.getError())) {
+                        writtenEntries.incrementAndGet();
+                        entryWritten(batch.get(i).getId());
+                    } else {
+                        retryEntries.add(batch.get(i));
+                    }
+                }
+            } catch (DatabaseException | RuntimeException ex) {
+                LOG.warn("Audit trail entries could not be written, retry with next flush", ex);
+                failedFlushes.incrementAndGet();
+                retryEntries.addAll(batch);
+                return;
+            }
+        } while (retryEntries.isEmpty() && queue.size() >= batchSize);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        if (!asyncEnabled) {
+            return;
+        }
+        Gauge.builder(METRIC_PREFIX + "queue.size", this, writer -> writer.queue.size())
+                .description("Audit trail entries waiting in the queue")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "pending", pendingEntries, AtomicInteger::get)
+                .description("Spooled audit trail entries not yet written to the database")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "written", writtenEntries, AtomicLong::get)
+                .description("Audit trail entries written in batches")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "flush.failures", failedFlushes, AtomicLong::get)
+                .description("Batches of audit trail entries that could not be written")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "synchronous", synchronousWrites, AtomicLong::get)
+                .description("Audit trail entries written synchronously because the queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Write a spooled entry in the calling thread. When it fails, the entry stays in the spool file
+     * and is handed to the flush thread, which retries it with the next flush.
+     */
+    private void writeSpooledEntry(BulkWriteDocument entry) {
+
+        boolean written = false;
+        try {
+            this.couchDbService.writeDocument(entry.getId(), entry.getJson());
+            written = true;
+        } catch (ConflictException ex) {
+            // the entry was already written
+            written = true;
+        } catch (RuntimeException ex) {
+            LOG.error("Audit trail entry {} could not be written synchronously, retry with next flush",
+                    entry.getId(), ex);
+        } finally {
+            if (written) {
+                entryWritten(entry.getId());
+            } else {
+                retryInFlushThread(entry);
+            }
+        }
+    }
+
+    private void retryInFlushThread(BulkWriteDocument entry) {
+
+        try {
+            flushExecutor.execute(() -> retryEntries.add(entry));
+        } catch (RejectedExecutionException ex) {
+            LOG.warn("Audit trail entry {} is written after the next start", entry.getId());
+        }
+    }
+
+    private void spool(BulkWriteDocument entry) throws IOException {
+
+        synchronized (spoolLock) {
+            this.spoolChannel.write(ByteBuffer.wrap(spoolLine(entry).getBytes(StandardCharsets.UTF_8)));
+            this.spoolChannel.force(false);
+            pendingById.put(entry.getId(), entry);
+            pendingEntries.set(pendingById.size());
+        }
+    }
+
+    private void entryWritten(String auditTrailId) {
+
+        synchronized (spoolLock) {
+            if (pendingById.remove(auditTrailId) == null) {
+                return;
+            }
+            pendingEntries.set(pendingById.size());
+            writtenSpoolLines++;
+            try {
+                if (pendingById.isEmpty()) {
+                    this.spoolChannel.truncate(0);
+                    writtenSpoolLines = 0;
+                } else if (writtenSpoolLines >= Math.max(batchSize, pendingById.size())) {
+                    // at least half of the lines are written, the rewrite costs at most as much as they did
+                    rewriteSpool();
+                }
+            } catch (IOException ex) {
+                LOG.warn("Audit trail spool file could not be compacted", ex);
+            }
+        }
+    }
+
+    /**
+     * Replace the spool file by a file with only the pending entries. The new file is written
+     * next to it and moved over it, so a crash leaves either the old or the new file.
+     * Must be called with the spoolLock held.
+     */
+    private void rewriteSpool() throws IOException {
+
+        Path compactedPath = spoolPath.resolveSibling(spoolPath.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(compactedPath, StandardCharsets.UTF_8)) {
+            for (BulkWriteDocument entry : pendingById.values()) {
+                writer.write(spoolLine(entry));
+            }
+        }
+        try (FileChannel compactedChannel = FileChannel.open(compactedPath, StandardOpenOption.WRITE)) {
+            compactedChannel.force(true);
+        }
+        if (this.spoolChannel != null) {
+            this.spoolChannel.close();
+        }
+        Files.move(compactedPath, spoolPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.spoolChannel = FileChannel.open(spoolPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writtenSpoolLines = 0;
+    }
+
+    private static String spoolLine(BulkWriteDocument entry) {
+        return entry.getId() + " " + entry.getJson() + "\n";
+    }
+
+    /**
+     * Must be called with the spoolLock held.
+     */
+    private void readSpool() throws IOException {
+
+        try (BufferedReader reader = Files.newBufferedReader(spoolPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(' ');
+                // an incomplete last line is left from a crash while spooling
+                if (separator > 0 && line.endsWith("}")) {
+                    BulkWriteDocument entry = BulkWriteDocument.newDocument(line.substring(0, separator),
+                            line.substring(separator + 1));
+                    pendingById.put(entry.getId(), entry);
+                }
+            }
+        }
+        retryEntries.addAll(pendingById.values());
+        pendingEntries.set(pendingById.size());
+        if (!retryEntries.isEmpty()) {
+            LOG.info("Replay {} audit trail entries from spool file", retryEntries.size());
+        }
+    }
+}
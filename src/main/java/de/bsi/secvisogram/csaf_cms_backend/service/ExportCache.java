@@ -0,0 +1,552 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of rendered exports, keyed by advisory id, revision, export format and company logo.
+ * Small exports are kept in a heap tier, all exports in an on-disk tier whose least recently used
+ * files are deleted when it is full. Every advisory and format has at most one entry: it is only used
+ * while its revision is the current revision of the advisory, an entry of an outdated revision is removed
+ * on the next read. The files of the disk tier outlive a restart, their names contain the hash of
+ * the key without revision and the revision itself, the hash includes the company logo, so exports
+ * with a replaced logo are not found again. Exports are cached while they are written to the client.
+ */
+@Component
+public class ExportCache implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExportCache.class);
+    private static final String METRIC_PREFIX = "csaf.export.cache.";
+    private static final String EXPORT_SUFFIX = ".export";
+    private static final Pattern REVISION = Pattern.compile("\\d+-[0-9a-f]+");
+    private static final Pattern EXPORT_FILE = Pattern.compile("([0-9a-f]{64})_(\\d+-[0-9a-f]+)\\.export");
+    private static final String NO_LOGO = "-";
+
+    @Value("${csaf.export.cache.maxHeapBytes}")
+    private long maxHeapBytes;
+
+    @Value("${csaf.export.cache.maxHeapEntryBytes}")
+    private long maxHeapEntryBytes;
+
+    @Value("${csaf.export.cache.directory}")
+    private String directory;
+
+    @Value("${csaf.export.cache.maxDiskBytes}")
+    private long maxDiskBytes;
+
+    @Value("${csaf.document.templates.companyLogoPath}")
+    private String companyLogoPath;
+
+    private Cache<String, HeapEntry> heap;
+    private Path diskDirectory;
+    private String logoHash;
+    // access ordered, the least recently used entry first, guarded by this
+    private final Map<String, DiskEntry> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private final AtomicLong heapHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    @PostConstruct
+    void open() throws IOException {
+
+        if (this.maxHeapBytes > 0) {
+            this.heap = Caffeine.newBuilder()
+                    .maximumWeight(this.maxHeapBytes)
+                    .weigher((String key, HeapEntry entry) -> entry.export.length)
+                    .recordStats()
+                    .build();
+        }
+        if (this.maxDiskBytes > 0 && this.directory != null && !this.directory.isBlank()) {
+            this.diskDirectory = Path.of(this.directory);
+            Files.createDirectories(this.diskDirectory);
+            readDiskEntries();
+        }
+        this.logoHash = hashLogo(this.companyLogoPath);
+    }
+
+    /**
+     * @return true - at least one tier of the cache is configured
+     */
+    public boolean isEnabled() {
+        return this.heap != null || this.diskDirectory != null;
+    }
+
+    /**
+     * Open the cached export of the revision of an advisory
+     *
+     * @param advisoryId the id of the advisory
+     * @param revision   the current revision of the advisory
+     * @param format     the format of the export
+     * @return the cached export or null, if the revision is not cached in this format
+     */
+    public InputStream get(@Nonnull String advisoryId, @Nonnull String revision, @Nonnull ExportFormat format) {
+
+        if (!isEnabled()) {
+            return null;
+        }
+        final String key = key(advisoryId, format);
+        boolean stale = false;
+        if (this.heap != null) {
+            final HeapEntry heapEntry = this.heap.getIfPresent(key);
+            if (heapEntry != null) {
+                if (heapEntry.revision.equals(revision)) {
+                    this.heapHits.incrementAndGet();
+                    return new ByteArrayInputStream(heapEntry.export);
+                }
+                this.heap.asMap().remove(key, heapEntry);
+                stale = true;
+            }
+        }
+        if (this.diskDirectory != null) {
+            final DiskEntry diskEntry;
+            synchronized (this) {
+                diskEntry = this.diskEntries.get(key);
+            }
+            if (diskEntry != null) {
+                if (diskEntry.revision.equals(revision)) {
+                    final InputStream export = openDiskEntry(key, diskEntry);
+                    if (export != null) {
+                        this.diskHits.incrementAndGet();
+                        return export;
+                    }
+                } else {
+                    removeDiskEntry(key, diskEntry);
+                    stale = true;
+                }
+            }
+        }
+        if (stale) {
+            this.staleHits.incrementAndGet();
+        } else {
+            this.misses.incrementAndGet();
+        }
+        return null;
+    }
+
+    /**
+     * Cache the export of a revision of an advisory while it is written, it replaces the export of older revisions.
+     * The export is only cached when it is committed after it was written completely.
+     * Errors writing the disk tier are logged, the export itself is not affected.
+     *
+     * @param advisoryId the id of the advisory
+     * @param revision   the revision of the exported advisory
+     * @param format     the format of the export
+     * @param output     receives the export, it is not closed
+     * @return the stream to write the export to
+     */
+    public CachingOutputStream cacheWhileWriting(@Nonnull String advisoryId, @Nonnull String revision,
+                                                 @Nonnull ExportFormat format, @Nonnull OutputStream output) {
+
+        final CachingOutputStream cachingOutput = new CachingOutputStream(key(advisoryId, format), revision, output);
+        if (this.heap != null) {
+            cachingOutput.heapBuffer = new ByteArrayOutputStream();
+        }
+        if (this.diskDirectory != null && REVISION.matcher(revision).matches()) {
+            try {
+                cachingOutput.tempFile = Files.createTempFile(this.diskDirectory, cachingOutput.key, ".tmp");
+                cachingOutput.fileOutput = Files.newOutputStream(cachingOutput.tempFile);
+            } catch (IOException ex) {
+                LOG.warn("Could not cache the {} export of advisory {}", format, advisoryId, ex);
+                cachingOutput.discardFile();
+            }
+        }
+        return cachingOutput;
+    }
+
+    private InputStream openDiskEntry(String key, DiskEntry diskEntry) {
+
+        try {
+            if (this.heap != null && diskEntry.size <= this.maxHeapEntryBytes) {
+                // promote small exports back into the heap tier
+                final byte[] export = Files.readAllBytes(diskEntry.file);
+                this.heap.put(key, new HeapEntry(diskEntry.revision, export));
+                touch(diskEntry.file);
+                return new ByteArrayInputStream(export);
+            }
+            final InputStream export = Files.newInputStream(diskEntry.file);
+            touch(diskEntry.file);
+            return export;
+        } catch (NoSuchFileException ex) {
+            removeDiskEntry(key, diskEntry);
+        } catch (IOException ex) {
+            LOG.warn("Could not read cached export {}", diskEntry.file, ex);
+            removeDiskEntry(key, diskEntry);
+        }
+        return null;
+    }
+
+    private void addDiskEntry(String key, DiskEntry diskEntry) {
+
+        final List<Path> obsoleteFiles = new ArrayList<>();
+        synchronized (this) {
+            final DiskEntry replaced = this.diskEntries.put(key, diskEntry);
+            if (replaced != null) {
+                this.diskBytes -= replaced.size;
+                if (!replaced.file.equals(diskEntry.file)) {
+                    obsoleteFiles.add(replaced.file);
+                }
+            }
+            this.diskBytes += diskEntry.size;
+            evictDiskEntries(obsoleteFiles);
+        }
+        deleteFiles(obsoleteFiles);
+    }
+
+    private void removeDiskEntry(String key, DiskEntry diskEntry) {
+
+        synchronized (this) {
+            if (!this.diskEntries.remove(key, diskEntry)) {
+                return;
+            }
+            this.diskBytes -= diskEntry.size;
+        }
+        deleteFiles(List.of(diskEntry.file));
+    }
+
+    /**
+     * Remove the least recently used entries until the disk tier is no longer full, the caller holds the lock
+     */
+    private void evictDiskEntries(List<Path> obsoleteFiles) {
+
+        final Iterator<DiskEntry> leastRecentlyUsed = this.diskEntries.values().iterator();
+        while (this.diskBytes > this.maxDiskBytes && leastRecentlyUsed.hasNext()) {
+            final DiskEntry evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            this.diskBytes -= evicted.size;
+            obsoleteFiles.add(evicted.file);
+            this.diskEvictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Rebuild the index of the disk tier from the files of the last run, the least recently used file first.
+     * Left over temporary files and older revisions of the same key are deleted.
+     */
+    private void readDiskEntries() throws IOException {
+
+        final List<Path> files = new ArrayList<>();
+        final List<Path> obsoleteFiles = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(this.diskDirectory)) {
+            for (Path file : directoryStream) {
+                if (EXPORT_FILE.matcher(file.getFileName().toString()).matches()) {
+                    files.add(file);
+                } else if (file.getFileName().toString().endsWith(".tmp")) {
+                    obsoleteFiles.add(file);
+                }
+            }
+        }
+        final Map<Path, FileTime> lastModified = new LinkedHashMap<>();
+        for (Path file : files) {
+            lastModified.put(file, Files.getLastModifiedTime(file));
+        }
+        files.sort(Comparator.comparing(lastModified::get));
+        synchronized (this) {
+            for (Path file : files) {
+                final Matcher matcher = EXPORT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    final DiskEntry diskEntry = new DiskEntry(matcher.group(2), file, Files.size(file));
+                    final DiskEntry replaced = this.diskEntries.put(matcher.group(1), diskEntry);
+                    if (replaced != null) {
+                        this.diskBytes -= replaced.size;
+                        obsoleteFiles.add(replaced.file);
+                    }
+                    this.diskBytes += diskEntry.size;
+                }
+            }
+            evictDiskEntries(obsoleteFiles);
+            LOG.info("Export cache contains {} exports with {} bytes", this.diskEntries.size(), this.diskBytes);
+        }
+        deleteFiles(obsoleteFiles);
+    }
+
+    private static void touch(Path file) {
+
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ex) {
+            // only the order of the eviction after a restart is affected
+            LOG.debug("Could not touch cached export {}", file, ex);
+        }
+    }
+
+    private static void deleteFiles(List<Path> files) {
+
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                LOG.warn("Could not delete cached export {}", file, ex);
+            }
+        }
+    }
+
+    /**
+     * The key of an export without its revision, it is also used as file name
+     */
+    private String key(String advisoryId, ExportFormat format) {
+
+        // JSON exports contain no logo
+        final String logo = format == ExportFormat.JSON ? NO_LOGO : this.logoHash;
+        return sha256(advisoryId + "\n" + format.name() + "\n" + logo);
+    }
+
+    private static String hashLogo(String companyLogoPath) throws IOException {
+
+        if (companyLogoPath == null || companyLogoPath.isBlank()) {
+            return NO_LOGO;
+        }
+        final Path logoPath = Path.of(companyLogoPath);
+        return Files.exists(logoPath) ? sha256(Files.readAllBytes(logoPath)) : NO_LOGO;
+    }
+
+    private static String sha256(String text) {
+        return sha256(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String sha256(byte[] data) {
+
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not supported", ex);
+        }
+    }
+
+    /**
+     * @return part of the reads answered from one of the tiers, NaN if nothing was read yet
+     */
+    public double hitRatio() {
+
+        final long hits = this.heapHits.get() + this.diskHits.get();
+        final long requests = hits + this.staleHits.get() + this.misses.get();
+        return requests == 0 ? Double.NaN : (double) hits / requests;
+    }
+
+    /**
+     * @return the bytes of the exports in the disk tier
+     */
+    public synchronized long diskBytes() {
+        return this.diskBytes;
+    }
+
+    private long heapBytes() {
+        return this.heap.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        if (!isEnabled()) {
+            return;
+        }
+        FunctionCounter.builder(METRIC_PREFIX + "reads", this.heapHits, AtomicLong::get)
+                .tags("result", "hit", "tier", "heap")
+                .description("Exports answered from the heap tier")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "reads", this.diskHits, AtomicLong::get)
+                .tags("result", "hit", "tier", "disk")
+                .description("Exports answered from the disk tier")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "reads", this.staleHits, AtomicLong::get)
+                .tags("result", "stale", "tier", "none")
+                .description("Exports of an advisory whose cached export has an outdated revision")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "reads", this.misses, AtomicLong::get)
+                .tags("result", "miss", "tier", "none")
+                .description("Exports that were not cached")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "hit.ratio", this, ExportCache::hitRatio)
+                .description("Part of the exports answered from the cache")
+                .register(registry);
+        if (this.heap != null) {
+            Gauge.builder(METRIC_PREFIX + "size", this, ExportCache::heapBytes)
+                    .tag("tier", "heap")
+                    .baseUnit("bytes")
+                    .description("Bytes of the cached exports")
+                    .register(registry);
+            FunctionCounter.builder(METRIC_PREFIX + "evictions", this.heap, cache -> cache.stats().evictionCount())
+                    .tag("tier", "heap")
+                    .description("Exports evicted from the cache because it was full")
+                    .register(registry);
+        }
+        if (this.diskDirectory != null) {
+            Gauge.builder(METRIC_PREFIX + "size", this, ExportCache::diskBytes)
+                    .tag("tier", "disk")
+                    .baseUnit("bytes")
+                    .description("Bytes of the cached exports")
+                    .register(registry);
+            FunctionCounter.builder(METRIC_PREFIX + "evictions", this.diskEvictions, AtomicLong::get)
+                    .tag("tier", "disk")
+                    .description("Exports evicted from the cache because it was full")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Writes an export to the client and keeps a copy for the cache: in memory until it is too large
+     * for the heap tier and in a temporary file of the disk tier
+     */
+    public final class CachingOutputStream extends OutputStream {
+
+        private final String key;
+        private final String revision;
+        private final OutputStream output;
+        private ByteArrayOutputStream heapBuffer;
+        private Path tempFile;
+        private OutputStream fileOutput;
+        private long size;
+
+        private CachingOutputStream(String key, String revision, OutputStream output) {
+            this.key = key;
+            this.revision = revision;
+            this.output = output;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+
+            this.output.write(b, off, len);
+            this.size += len;
+            if (this.heapBuffer != null) {
+                if (this.size <= maxHeapEntryBytes) {
+                    this.heapBuffer.write(b, off, len);
+                } else {
+                    this.heapBuffer = null;
+                }
+            }
+            if (this.fileOutput != null) {
+                try {
+                    if (this.size <= maxDiskBytes) {
+                        this.fileOutput.write(b, off, len);
+                    } else {
+                        discardFile();
+                    }
+                } catch (IOException ex) {
+                    LOG.warn("Could not cache export {}", this.tempFile, ex);
+                    discardFile();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.output.flush();
+        }
+
+        /**
+         * Cache the completely written export
+         */
+        public void commit() {
+
+            if (this.heapBuffer != null) {
+                heap.put(this.key, new HeapEntry(this.revision, this.heapBuffer.toByteArray()));
+                this.heapBuffer = null;
+            }
+            if (this.fileOutput != null) {
+                try {
+                    this.fileOutput.close();
+                    this.fileOutput = null;
+                    final Path file = diskDirectory.resolve(this.key + "_" + this.revision + EXPORT_SUFFIX);
+                    Files.move(this.tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    this.tempFile = null;
+                    addDiskEntry(this.key, new DiskEntry(this.revision, file, this.size));
+                } catch (IOException ex) {
+                    LOG.warn("Could not cache export {}", this.tempFile, ex);
+                }
+            }
+        }
+
+        /**
+         * Discard an export that was not committed, the output is not closed
+         */
+        @Override
+        public void close() {
+
+            this.heapBuffer = null;
+            discardFile();
+        }
+
+        private void discardFile() {
+
+            if (this.fileOutput != null) {
+                try {
+                    this.fileOutput.close();
+                } catch (IOException ex) {
+                    LOG.debug("Could not close cached export {}", this.tempFile, ex);
+                }
+                this.fileOutput = null;
+            }
+            if (this.tempFile != null) {
+                deleteFiles(List.of(this.tempFile));
+                this.tempFile = null;
+            }
+        }
+    }
+
+    private static final class HeapEntry {
+
+        private final String revision;
+        private final byte[] export;
+
+        private HeapEntry(String revision, byte[] export) {
+            this.revision = revision;
+            this.export = export;
+        }
+    }
+
+    private static final class DiskEntry {
+
+        private final String revision;
+        private final Path file;
+        private final long size;
+
+        private DiskEntry(String revision, Path file, long size) {
+            this.revision = revision;
+            this.file = file;
+            this.size = size;
+        }
+    }
+}
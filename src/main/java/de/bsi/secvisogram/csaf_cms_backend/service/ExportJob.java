@@ -0,0 +1,96 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportJobStatus;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * An export of an advisory that is created in the background, the result can be downloaded after it is finished
+ */
+public final class ExportJob {
+
+    private final String jobId;
+    private final String advisoryId;
+    private final ExportFormat format;
+    private final Instant createdAt = Instant.now();
+    private final long createdNanos = System.nanoTime();
+    private volatile ExportJobStatus status = ExportJobStatus.Queued;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile Path resultFile;
+    private volatile String error;
+
+    ExportJob(String jobId, String advisoryId, ExportFormat format) {
+        this.jobId = jobId;
+        this.advisoryId = advisoryId;
+        this.format = format;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getAdvisoryId() {
+        return advisoryId;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public ExportJobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the reason of a failed export, null otherwise
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return true - the job is finished or failed
+     */
+    public boolean isDone() {
+        return status == ExportJobStatus.Finished || status == ExportJobStatus.Failed;
+    }
+
+    Path getResultFile() {
+        return resultFile;
+    }
+
+    long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    long getStartedNanos() {
+        return startedNanos;
+    }
+
+    long getFinishedNanos() {
+        return finishedNanos;
+    }
+
+    void started() {
+        this.startedNanos = System.nanoTime();
+        this.status = ExportJobStatus.Running;
+    }
+
+    void finished(Path resultFile) {
+        this.resultFile = resultFile;
+        this.finishedNanos = System.nanoTime();
+        this.status = ExportJobStatus.Finished;
+    }
+
+    void failed(String error) {
+        this.error = error;
+        this.finishedNanos = System.nanoTime();
+        this.status = ExportJobStatus.Failed;
+    }
+}
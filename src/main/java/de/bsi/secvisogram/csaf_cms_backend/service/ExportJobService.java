@@ -0,0 +1,321 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.stereotype.Service;
+
+/**
+ * Creates exports of advisories in the background, so long running PDF and Markdown conversions
+ * do not block the request threads. The jobs run on a fixed number of worker threads, further jobs wait
+ * in a bounded queue and are rejected when it is full. A job for the same revision and format as a queued
+ * or running job is not created again, the running job is returned instead.
+ * The results are kept in temporary files until they expire.
+ */
+@Service
+public class ExportJobService implements MeterBinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExportJobService.class);
+    private static final String METRIC_PREFIX = "csaf.export.jobs.";
+
+    @Value("${csaf.export.jobs.poolSize}")
+    private int poolSize;
+
+    @Value("${csaf.export.jobs.queueCapacity}")
+    private int queueCapacity;
+
+    @Value("${csaf.export.jobs.resultTtlSeconds}")
+    private long resultTtlSeconds;
+
+    @Autowired
+    private AdvisoryService advisoryService;
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    private ThreadPoolExecutor executor;
+    // a slot is taken by each queued or running job
+    private Semaphore jobSlots;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    // queued and running jobs by advisory id, revision and format
+    private final Map<String, ExportJob> inFlightJobs = new ConcurrentHashMap<>();
+    private final AtomicLong deduplicatedJobs = new AtomicLong();
+    private final AtomicLong rejectedJobs = new AtomicLong();
+    private volatile MeterRegistry meterRegistry;
+
+    @PostConstruct
+    void start() {
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.jobSlots = new Semaphore(poolSize + queueCapacity);
+        // the queue is bounded by the job slots
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "export-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    void stop() {
+
+        this.executor.shutdownNow();
+        this.jobs.values().forEach(job -> deleteResult(job.getResultFile()));
+        this.jobs.clear();
+    }
+
+    /**
+     * Create a job that exports the current revision of an advisory in the given format.
+     * The advisory and the format are checked before the job is queued.
+     *
+     * @param advisoryId the id of the advisory that should be exported
+     * @param format     the format in which the export should be written (default JSON on null)
+     * @return the new job or the queued or running job of the same export
+     * @throws CsafException if the advisory does not exist, the export format is unknown or the queue is full
+     * @throws IOException   on any error reading the advisory
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public ExportJob createJob(@Nonnull final String advisoryId, @Nullable final ExportFormat format)
+            throws IOException, CsafException {
+
+        removeExpiredJobs();
+        final ExportFormat exportFormat = format != null ? format : ExportFormat.JSON;
+        final String revision;
+        try {
+            revision = this.couchDbService.readRevision(advisoryId);
+        } catch (IdNotFoundException e) {
+            throw new CsafException("Can not find advisory with ID " + advisoryId,
+                    CsafExceptionKey.AdvisoryNotFound, HttpStatus.NOT_FOUND);
+        }
+        // without a revision the export can not be compared with the jobs in flight
+        final String exportKey = revision != null ? advisoryId + "/" + revision + "/" + exportFormat : null;
+        final ExportJob inFlightJob = exportKey != null ? this.inFlightJobs.get(exportKey) : null;
+        if (inFlightJob != null) {
+            this.deduplicatedJobs.incrementAndGet();
+            return inFlightJob;
+        }
+        if (!this.jobSlots.tryAcquire()) {
+            this.rejectedJobs.incrementAndGet();
+            throw new CsafException("Too many export jobs are waiting", CsafExceptionKey.ExportQueueFull,
+                    HttpStatus.TOO_MANY_REQUESTS);
+        }
+        final ExportJob job = new ExportJob(UUID.randomUUID().toString(), advisoryId, exportFormat);
+        if (exportKey != null) {
+            final ExportJob concurrentJob = this.inFlightJobs.putIfAbsent(exportKey, job);
+            if (concurrentJob != null) {
+                this.jobSlots.release();
+                this.deduplicatedJobs.incrementAndGet();
+                return concurrentJob;
+            }
+        }
+        final AdvisoryExportStream export;
+        try {
+            // export the revision the job is registered with
+            export = revision != null
+                    ? this.advisoryService.exportAdvisoryRevision(advisoryId, revision, exportFormat)
+                    : this.advisoryService.exportAdvisory(advisoryId, exportFormat);
+        } catch (IOException | CsafException | RuntimeException ex) {
+            removeInFlightJob(exportKey, job);
+            this.jobSlots.release();
+            throw ex;
+        }
+        this.jobs.put(job.getJobId(), job);
+        try {
+            this.executor.execute(() -> runJob(job, exportKey, export));
+        } catch (RejectedExecutionException ex) {
+            closeExport(job, export);
+            removeInFlightJob(exportKey, job);
+            this.jobs.remove(job.getJobId());
+            this.jobSlots.release();
+            this.rejectedJobs.incrementAndGet();
+            throw new CsafException("Too many export jobs are waiting", CsafExceptionKey.ExportQueueFull,
+                    HttpStatus.TOO_MANY_REQUESTS);
+        }
+        return job;
+    }
+
+    /**
+     * Get a job of an advisory
+     *
+     * @param advisoryId the id of the exported advisory
+     * @param jobId      the id of the job
+     * @return the job
+     * @throws CsafException if there is no such job of the advisory or its result expired
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public ExportJob getJob(@Nonnull final String advisoryId, @Nonnull final String jobId) throws CsafException {
+
+        removeExpiredJobs();
+        final ExportJob job = this.jobs.get(jobId);
+        if (job == null || !job.getAdvisoryId().equals(advisoryId)) {
+            throw new CsafException("Can not find export job with ID " + jobId,
+                    CsafExceptionKey.ExportJobNotFound, HttpStatus.NOT_FOUND);
+        }
+        return job;
+    }
+
+    /**
+     * Open the result of a finished job
+     *
+     * @param advisoryId the id of the exported advisory
+     * @param jobId      the id of the job
+     * @return the export, the caller closes it
+     * @throws CsafException if there is no such job or it is not finished
+     * @throws IOException   error reading the result
+     */
+    @Secured({CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUDITOR})
+    public InputStream openResult(@Nonnull final String advisoryId, @Nonnull final String jobId)
+            throws CsafException, IOException {
+
+        final ExportJob job = getJob(advisoryId, jobId);
+        final Path resultFile = job.getResultFile();
+        if (resultFile == null) {
+            throw new CsafException("The export job " + jobId + " is " + job.getStatus(),
+                    CsafExceptionKey.ExportJobNotFinished, HttpStatus.CONFLICT);
+        }
+        return Files.newInputStream(resultFile);
+    }
+
+    private void runJob(final ExportJob job, final String exportKey, final AdvisoryExportStream export) {
+
+        job.started();
+        recordDuration(Timer.builder(METRIC_PREFIX + "wait")
+                .tag("format", job.getFormat().name())
+                .description("Time export jobs wait in the queue"), job.getStartedNanos() - job.getCreatedNanos());
+        Path resultFile = null;
+        boolean written = false;
+        String error = null;
+        try {
+            resultFile = Files.createTempFile("advisory__", ".export");
+            try (OutputStream output = Files.newOutputStream(resultFile)) {
+                export.writeTo(output);
+            }
+            written = true;
+        } catch (IOException | CsafException | RuntimeException ex) {
+            LOG.error("Export job {} of advisory {} failed", job.getJobId(), job.getAdvisoryId(), ex);
+            deleteResult(resultFile);
+            error = ex.getMessage();
+        } finally {
+            // the slot is free before the job is done, a client polling the job can create the next one
+            removeInFlightJob(exportKey, job);
+            this.jobSlots.release();
+        }
+        if (written) {
+            job.finished(resultFile);
+        } else {
+            job.failed(error);
+        }
+        recordDuration(Timer.builder(METRIC_PREFIX + "duration")
+                .tags("format", job.getFormat().name(), "status", job.getStatus().name())
+                .description("Time export jobs run until they are finished or failed"),
+                job.getFinishedNanos() - job.getStartedNanos());
+    }
+
+    private void removeInFlightJob(@Nullable final String exportKey, final ExportJob job) {
+
+        if (exportKey != null) {
+            this.inFlightJobs.remove(exportKey, job);
+        }
+    }
+
+    private static void closeExport(final ExportJob job, final AdvisoryExportStream export) {
+
+        try {
+            export.close();
+        } catch (IOException ex) {
+            LOG.error("Could not close the export of the rejected job {}.", job.getJobId(), ex);
+        }
+    }
+
+    /**
+     * Remove the jobs whose result was kept long enough
+     */
+    private void removeExpiredJobs() {
+
+        final long expiredBefore = System.nanoTime() - TimeUnit.SECONDS.toNanos(this.resultTtlSeconds);
+        final Iterator<ExportJob> jobIterator = this.jobs.values().iterator();
+        while (jobIterator.hasNext()) {
+            final ExportJob job = jobIterator.next();
+            if (job.isDone() && job.getFinishedNanos() - expiredBefore < 0) {
+                jobIterator.remove();
+                deleteResult(job.getResultFile());
+            }
+        }
+    }
+
+    private static void deleteResult(final Path resultFile) {
+
+        if (resultFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(resultFile);
+        } catch (IOException ex) {
+            LOG.error("Could not delete temporary file {} of an export job.", resultFile, ex);
+        }
+    }
+
+    private void recordDuration(final Timer.Builder timer, final long nanos) {
+
+        final MeterRegistry registry = this.meterRegistry;
+        if (registry != null) {
+            timer.register(registry).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+
+        this.meterRegistry = registry;
+        Gauge.builder(METRIC_PREFIX + "queue.depth", this, service -> service.executor.getQueue().size())
+                .description("Export jobs waiting for a worker thread")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "active", this, service -> service.executor.getActiveCount())
+                .description("Export jobs that are running")
+                .register(registry);
+        Gauge.builder(METRIC_PREFIX + "size", this.jobs, Map::size)
+                .description("Export jobs whose status or result can be read")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "deduplicated", this.deduplicatedJobs, AtomicLong::get)
+                .description("Export requests answered with the job of the same queued or running export")
+                .register(registry);
+        FunctionCounter.builder(METRIC_PREFIX + "rejected", this.rejectedJobs, AtomicLong::get)
+                .description("Export requests rejected because the queue was full")
+                .register(registry);
+    }
+}
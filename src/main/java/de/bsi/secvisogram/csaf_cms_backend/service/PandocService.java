@@ -3,7 +3,7 @@ package de.bsi.secvisogram.csaf_cms_backend.service;
 
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.io.OutputStream;
 import javax.annotation.Nonnull;
 import org.springframework.stereotype.Service;
 
@@ -28,19 +28,17 @@ public class PandocService extends AbstractCliToolService {
     }
 
     /**
-     * Convert the input file into a new file format given by the extension of the output file.
+     * Convert an HTML document into Markdown, the Markdown is written while pandoc creates it.
      *
-     * @param input  the input file; only existing files are valid
-     * @param output the output file; the extension defines in what format the file will be converted
+     * @param html   the HTML document
+     * @param output receives the Markdown document, it is not closed
      * @throws IOException on any error regarding the pandoc cli tool
      * @throws CsafException for other errors (see details in the exception for information of what happened)
      */
     public void convert(
-            @Nonnull final Path input,
-            @Nonnull final Path output)
+            @Nonnull final String html,
+            @Nonnull final OutputStream output)
             throws IOException, CsafException {
-        final String inputFilePath = input.toAbsolutePath().toString();
-        final String outputFilePath = output.toAbsolutePath().toString();
-        call(inputFilePath, "-o", outputFilePath);
+        pipe(html, output, "--from", "html", "--to", "markdown");
     }
 }
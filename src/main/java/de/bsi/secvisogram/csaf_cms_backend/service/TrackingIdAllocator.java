@@ -0,0 +1,158 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey.ErrorCreatingTrackingIdCounter;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ibm.cloud.sdk.core.service.exception.ConflictException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbUpdateHandler;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.UpdateHandlerResult;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.json.TrackingIdCounter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+/**
+ * Allocates the sequential numbers of the tracking ids with a hi/lo algorithm.
+ * A block of numbers is leased from the counter document in the database with one optimistic update,
+ * which is retried when another instance changed the counter concurrently. With update handlers enabled,
+ * the counter is increased by CouchDB in a single request without reading it first. The numbers of the block
+ * are handed out from memory without locking. Numbers of a block that are not handed out before
+ * the application stops are lost, so the final counter can be configured to lease single numbers
+ * to keep the final tracking ids free of gaps.
+ */
+@Service
+public class TrackingIdAllocator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrackingIdAllocator.class);
+
+    @Value("${csaf.trackingid.leaseSize}")
+    private long leaseSize;
+
+    @Value("${csaf.trackingid.finalGapFree}")
+    private boolean finalGapFree;
+
+    @Value("${csaf.trackingid.maxLeaseAttempts}")
+    private int maxLeaseAttempts;
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    private final Map<String, LeaseHolder> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Get the next number of the given counter
+     *
+     * @param counterName name of the counter
+     * @return next number
+     * @throws CsafException error leasing numbers from the counter document
+     */
+    public long nextNumber(String counterName) throws CsafException {
+
+        LeaseHolder holder = leases.computeIfAbsent(counterName, name -> new LeaseHolder());
+        while (true) {
+            Lease lease = holder.lease;
+            if (lease != null) {
+                long number = lease.next.getAndIncrement();
+                if (number <= lease.last) {
+                    return number;
+                }
+            }
+            synchronized (holder) {
+                // another thread may have leased a new block in the meantime
+                if (holder.lease == lease) {
+                    holder.lease = leaseBlock(counterName, blockSize(counterName));
+                }
+            }
+        }
+    }
+
+    private long blockSize(String counterName) {
+
+        return finalGapFree && TrackingIdCounter.FINAL_OBJECT_ID.equals(counterName) ? 1 : Math.max(1, leaseSize);
+    }
+
+    /**
+     * Reserve the next numbers in the counter document
+     *
+     * @param counterName name of the counter
+     * @param size        number of numbers to reserve
+     * @return the reserved numbers
+     * @throws CsafException the counter document could not be changed
+     */
+    private Lease leaseBlock(String counterName, long size) throws CsafException {
+
+        String counterId = this.couchDbService.counterId(counterName);
+        ObjectMapper mapper = new ObjectMapper();
+        for (int attempt = 1; attempt <= maxLeaseAttempts; attempt++) {
+            try {
+                if (this.couchDbService.isUpdateHandlersEnabled()) {
+                    // CouchDB increases the counter in one request, it only fails on a concurrent change
+                    UpdateHandlerResult result = this.couchDbService.callUpdateHandler(CouchDbUpdateHandler.INCREMENT_COUNTER,
+                            counterId, Map.of("amount", String.valueOf(size)), null);
+                    if (result.isOk()) {
+                        long last = result.getBody().path("count").asLong();
+                        return new Lease(last - size + 1, last);
+                    }
+                    if (result.getStatusCode() != HttpStatus.CONFLICT.value()) {
+                        LOG.error("Counter {} could not be increased: {}", counterName, result.getBody());
+                        throw new CsafException("Error create new counter for tracking Id", ErrorCreatingTrackingIdCounter, INTERNAL_SERVER_ERROR);
+                    }
+                    LOG.debug("Counter {} was changed concurrently, attempt {}", counterName, attempt);
+                    continue;
+                }
+                TrackingIdCounter counter;
+                try (InputStream counterStream = this.couchDbService.readDocumentAsStream(counterId)) {
+                    counter = mapper.readValue(counterStream, TrackingIdCounter.class);
+                } catch (IdNotFoundException ex) {
+                    counter = TrackingIdCounter.createInitialCounter(counterId);
+                }
+                long first = counter.getCount() + 1;
+                counter.increaseCount(size);
+                // the revision of the counter makes the write fail, when the counter was changed concurrently
+                this.couchDbService.writeDocument(counterId, mapper.writeValueAsString(counter));
+                return new Lease(first, counter.getCount());
+            } catch (ConflictException ex) {
+                LOG.debug("Counter {} was changed concurrently, attempt {}", counterName, attempt);
+            } catch (IOException | DatabaseException ex) {
+                throw new CsafException("Error create new counter for tracking Id", ErrorCreatingTrackingIdCounter, INTERNAL_SERVER_ERROR);
+            }
+        }
+        LOG.error("Counter {} could not be changed in {} attempts", counterName, maxLeaseAttempts);
+        throw new CsafException("Error create new counter for tracking Id", ErrorCreatingTrackingIdCounter, INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * Current lease of a counter, a new lease is only set while holding the monitor of the holder
+     */
+    private static class LeaseHolder {
+
+        private volatile Lease lease;
+    }
+
+    /**
+     * Block of leased numbers, the next number may grow beyond the last number
+     */
+    private static class Lease {
+
+        private final AtomicLong next;
+        private final long last;
+
+        Lease(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+}
@@ -3,7 +3,7 @@ package de.bsi.secvisogram.csaf_cms_backend.service;
 
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.io.OutputStream;
 import javax.annotation.Nonnull;
 import org.springframework.stereotype.Service;
 
@@ -26,19 +26,16 @@ public class WeasyprintService extends AbstractCliToolService {
     }
 
     /**
-     * Convert the input HTML file into a PDF using weasyprint.
+     * Convert an HTML document into a PDF using weasyprint, the PDF is written while weasyprint creates it.
      *
-     * @param input  the input file; only existing files are valid
-     * @param output the output file; the output will always be a PDF file
-     *               (although with wrong extension if you specify another one)
+     * @param html   the HTML document
+     * @param output receives the PDF document, it is not closed
      * @throws IOException on any error regarding the weasyprint cli tool
      */
     public void convert(
-            @Nonnull final Path input,
-            @Nonnull final Path output)
+            @Nonnull final String html,
+            @Nonnull final OutputStream output)
             throws IOException, CsafException {
-        final String inputFilePath = input.toAbsolutePath().toString();
-        final String outputFilePath = output.toAbsolutePath().toString();
-        call(inputFilePath, outputFilePath);
+        pipe(html, output, "-", "-");
     }
 }
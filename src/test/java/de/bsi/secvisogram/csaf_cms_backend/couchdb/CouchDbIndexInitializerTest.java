@@ -0,0 +1,52 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class CouchDbIndexInitializerTest {
+
+    private final CouchDbService couchDbService = mock(CouchDbService.class);
+
+    @Test
+    public void createOrVerifyIndexesTest_failOnError() {
+
+        CouchDbIndexInitializer initializer = createInitializer(true);
+        when(couchDbService.createIndex(any())).thenThrow(new IllegalStateException("Database not available"));
+
+        assertThrows(IllegalStateException.class, initializer::createOrVerifyIndexes);
+    }
+
+    @Test
+    public void createOrVerifyIndexesTest_notReadyUntilCreated() {
+
+        CouchDbIndexInitializer initializer = createInitializer(false);
+        CouchDbIndexHealthIndicator healthIndicator = new CouchDbIndexHealthIndicator();
+        ReflectionTestUtils.setField(healthIndicator, "couchDbIndexInitializer", initializer);
+        when(couchDbService.createIndex(any())).thenThrow(new IllegalStateException("Database not available"));
+
+        initializer.createOrVerifyIndexes();
+        assertEquals(Status.OUT_OF_SERVICE, healthIndicator.health().getStatus());
+
+        // the next health check creates the indexes again
+        doReturn("created").when(couchDbService).createIndex(any());
+        when(couchDbService.explainIndexUsage(any(), any()))
+                .thenAnswer(invocation -> ((CouchDbIndex) invocation.getArgument(1)).getIndexName());
+        assertEquals(Status.UP, healthIndicator.health().getStatus());
+    }
+
+    private CouchDbIndexInitializer createInitializer(boolean failOnError) {
+
+        CouchDbIndexInitializer initializer = new CouchDbIndexInitializer();
+        ReflectionTestUtils.setField(initializer, "couchDbService", couchDbService);
+        ReflectionTestUtils.setField(initializer, "failOnError", failOnError);
+        return initializer;
+    }
+}
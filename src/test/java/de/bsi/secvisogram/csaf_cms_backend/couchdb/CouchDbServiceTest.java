@@ -10,6 +10,7 @@ import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -20,6 +21,7 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.gson.internal.LazilyParsedNumber;
 import com.ibm.cloud.cloudant.v1.model.Document;
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
 import de.bsi.secvisogram.csaf_cms_backend.CouchDBExtension;
 import de.bsi.secvisogram.csaf_cms_backend.fixture.TestModelField;
 import de.bsi.secvisogram.csaf_cms_backend.fixture.TestModelRoot;
@@ -35,8 +37,13 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
 
 /**
  * Test for the CouchDB service. The required CouchDB container is started in the CouchDBExtension.
@@ -54,6 +61,13 @@ public class CouchDbServiceTest {
     @Autowired
     private CouchDbService couchDbService;
 
+    @Autowired
+    private ReactiveCouchDbService reactiveCouchDbService;
+
+    @Autowired
+    @Qualifier("couchDbWebClient")
+    private WebClient couchDbWebClient;
+
     @Test
     public void getServerVersionTest() {
 
@@ -179,6 +193,14 @@ public class CouchDbServiceTest {
         Assertions.assertEquals(countBefore, this.couchDbService.getDocumentCount());
     }
 
+    @Test
+    public void checkConfigurationTest_invalidBulkDeleteChunkSize() {
+
+        CouchDbService invalidConfigService = new CouchDbService();
+        ReflectionTestUtils.setField(invalidConfigService, "bulkDeleteChunkSize", 0);
+        assertThrows(IllegalArgumentException.class, invalidConfigService::checkConfiguration);
+    }
+
     @Test
     @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "document should not change")
     public void bulkDeleteDocumentsTest_invalidRevision() throws IOException {
@@ -199,6 +221,96 @@ public class CouchDbServiceTest {
         Assertions.assertEquals(countBefore + 2, this.couchDbService.getDocumentCount());
     }
 
+    @Test
+    public void readDocumentTest() throws IOException, DatabaseException {
+
+        final UUID uuid = UUID.randomUUID();
+        String revision = insertTestDocument(uuid);
+
+        ObjectNode firstRead = this.couchDbService.readDocument(uuid.toString());
+        Assertions.assertEquals(revision, firstRead.get("_rev").asText());
+        // the caller may change the document without changing the cached copy
+        firstRead.put("owner", "Musterfrau");
+        ObjectNode secondRead = this.couchDbService.readDocument(uuid.toString());
+        Assertions.assertEquals(revision, secondRead.get("_rev").asText());
+        Assertions.assertNotEquals("Musterfrau", secondRead.get("owner").asText());
+
+        String newRevision = this.couchDbService.writeDocuments(List.of(
+                BulkWriteDocument.changedDocument(firstRead.toString()))).get(0).getRev();
+        ObjectNode changedRead = this.couchDbService.readDocument(uuid.toString());
+        Assertions.assertEquals(newRevision, changedRead.get("_rev").asText());
+        Assertions.assertEquals("Musterfrau", changedRead.get("owner").asText());
+
+        this.couchDbService.deleteDocument(uuid.toString(), newRevision);
+        assertThrows(IdNotFoundException.class, () -> this.couchDbService.readDocument(uuid.toString()));
+    }
+
+    @Test
+    public void readRevisionTest() throws IOException, IdNotFoundException {
+
+        String sequenceBefore = this.couchDbService.getUpdateSequence();
+        final UUID uuid = UUID.randomUUID();
+        String revision = insertTestDocument(uuid);
+
+        Assertions.assertEquals(revision, this.couchDbService.readRevision(uuid.toString()));
+        Assertions.assertNotEquals(sequenceBefore, this.couchDbService.getUpdateSequence());
+        assertThrows(IdNotFoundException.class, () -> this.couchDbService.readRevision("idDoesNotExist"));
+    }
+
+    @Test
+    @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "document should not change")
+    public void writeDocumentsTest() throws IOException, DatabaseException {
+
+        long countBefore = this.couchDbService.getDocumentCount();
+        final UUID uuid1 = UUID.randomUUID();
+        String revision1 = insertTestDocument(uuid1);
+
+        ObjectNode changedDoc = (ObjectNode) new ObjectMapper().readTree(this.couchDbService.readDocumentAsStream(uuid1.toString()));
+        changedDoc.put("owner", "Musterfrau");
+        final UUID uuid2 = UUID.randomUUID();
+        List<DocumentResult> results = this.couchDbService.writeDocuments(List.of(
+                BulkWriteDocument.changedDocument(changedDoc.toString()),
+                BulkWriteDocument.newDocument(uuid2.toString(), "{\"type\": \"Test\"}")));
+
+        Assertions.assertEquals(2, results.size());
+        Assertions.assertTrue(results.get(0).isOk());
+        Assertions.assertEquals(uuid1.toString(), results.get(0).getId());
+        Assertions.assertNotEquals(revision1, results.get(0).getRev());
+        Assertions.assertTrue(results.get(1).isOk());
+        Assertions.assertEquals(uuid2.toString(), results.get(1).getId());
+        Assertions.assertEquals(countBefore + 2, this.couchDbService.getDocumentCount());
+    }
+
+    @Test
+    public void writeDocumentsTest_conflict() throws IOException, DatabaseException {
+
+        final UUID uuid1 = UUID.randomUUID();
+        insertTestDocument(uuid1);
+        String outdatedDoc = String.format("{\"_id\": \"%s\", \"_rev\": \"1-abc\"}", uuid1);
+
+        List<DocumentResult> results = this.couchDbService.writeDocuments(List.of(
+                BulkWriteDocument.changedDocument(outdatedDoc),
+                BulkWriteDocument.newDocument("{\"type\": \"Test\"}")));
+
+        Assertions.assertEquals("conflict", results.get(0).getError());
+        Assertions.assertTrue(results.get(1).isOk());
+    }
+
+    @Test
+    public void readChangesAsStreamTest() throws IOException {
+
+        final UUID uuid = UUID.randomUUID();
+        insertTestDocument(uuid);
+
+        try (InputStream changesStream = this.couchDbService.readChangesAsStream("0", 10, false, 1000)) {
+            JsonNode changes = new ObjectMapper().readTree(changesStream);
+            List<String> changedIds = new ArrayList<>();
+            changes.get("results").forEach(change -> changedIds.add(change.get("id").asText()));
+            Assertions.assertTrue(changedIds.contains(uuid.toString()));
+            Assertions.assertTrue(changes.has("last_seq"));
+        }
+    }
+
     @Test
     public void readAllDocumentsTest() throws IOException {
 
@@ -371,6 +483,204 @@ public class CouchDbServiceTest {
         assertThat(mapAttribute(foundDocs, FIRST_STRING), containsInAnyOrder("AAA", "CCC"));
     }
 
+    @Test
+    public void createIndexTest() {
+
+        assertThat(this.couchDbService.createIndex(CouchDbIndex.ADVISORY_ID), equalTo("created"));
+        assertThat(this.couchDbService.createIndex(CouchDbIndex.ADVISORY_ID), equalTo("exists"));
+    }
+
+    @Test
+    public void explainIndexUsageTest() {
+
+        Map<String, Object> selector = CouchDbIndex.TRACKING_ID.createProbeSelector();
+        assertThat(this.couchDbService.explainIndexUsage(selector, CouchDbIndex.TRACKING_ID), equalTo("_all_docs"));
+
+        this.couchDbService.createIndex(CouchDbIndex.TRACKING_ID);
+        assertThat(this.couchDbService.explainIndexUsage(selector, CouchDbIndex.TRACKING_ID),
+                equalTo(CouchDbIndex.TRACKING_ID.getIndexName()));
+    }
+
+    @Test
+    public void createOrUpdateViewsTest() {
+
+        assertThat(this.couchDbService.createOrUpdateViews(), equalTo("created"));
+        assertThat(this.couchDbService.createOrUpdateViews(), equalTo("exists"));
+    }
+
+    @Test
+    public void readViewCountsTest() {
+
+        String advisoryJson = """
+                { "type": "Advisory", "workflowState": "%s", "owner": "Mustermann",
+                  "csaf": { "document": { "tracking": { "initial_release_date": "%s" } } } }""";
+        this.couchDbService.writeDocument(UUID.randomUUID(), String.format(advisoryJson, "Draft", "2022-03-01T10:00:00.000Z"));
+        this.couchDbService.writeDocument(UUID.randomUUID(), String.format(advisoryJson, "Draft", "2022-05-01T10:00:00.000Z"));
+        this.couchDbService.writeDocument(UUID.randomUUID(), String.format(advisoryJson, "Review", "2023-01-01T10:00:00.000Z"));
+        this.couchDbService.writeDocument(UUID.randomUUID(), "{\"type\": \"Comment\", \"advisoryId\": \"advisory1\"}");
+        this.couchDbService.createOrUpdateViews();
+
+        assertThat(this.couchDbService.readViewCounts(CouchDbView.WORKFLOW_STATE, 1),
+                equalTo(Map.of("Draft", 2L, "Review", 1L)));
+        assertThat(this.couchDbService.readViewCounts(CouchDbView.OWNER, 1), equalTo(Map.of("Mustermann", 3L)));
+        assertThat(this.couchDbService.readViewCounts(CouchDbView.INITIAL_RELEASE_DATE, 1),
+                equalTo(Map.of("2022", 2L, "2023", 1L)));
+        assertThat(this.couchDbService.readViewCounts(CouchDbView.INITIAL_RELEASE_DATE, 2),
+                equalTo(Map.of("2022-03", 1L, "2022-05", 1L, "2023-01", 1L)));
+        assertThat(this.couchDbService.readViewCounts(CouchDbView.COMMENTS_BY_ADVISORY, 1),
+                equalTo(Map.of("advisory1", 1L)));
+    }
+
+    @Test
+    public void readViewDocumentIdsTest() {
+
+        String advisoryJson = """
+                { "type": "Advisory",
+                  "csaf": {
+                    "vulnerabilities": [ { "cve": "%s", "cwe": { "id": "CWE-79", "name": "Cross-site Scripting" } },
+                                         { "cve": "%s" } ],
+                    "product_tree": {
+                      "branches": [ { "category": "vendor", "name": "Example",
+                                      "branches": [ { "category": "product_name", "name": "Product",
+                                                      "product": { "product_id": "%s", "name": "Example Product" } } ] } ],
+                      "relationships": [ { "full_product_name": { "product_id": "CSAFPID-9", "name": "Product on Linux" } } ]
+                    } } }""";
+        this.couchDbService.writeDocument("advisory1",
+                String.format(advisoryJson, "CVE-2021-44228", "cve-2021-44228", "CSAFPID-1"));
+        this.couchDbService.writeDocument("advisory2",
+                String.format(advisoryJson, "CVE-2021-44228", "CVE-2021-45046", "CSAFPID-2"));
+        this.couchDbService.writeDocument("comment1", "{\"type\": \"Comment\", \"cve\": \"CVE-2021-44228\"}");
+        this.couchDbService.createOrUpdateViews();
+
+        assertThat(this.couchDbService.readViewDocumentIds(CouchDbView.ADVISORIES_BY_CVE, "CVE-2021-44228"),
+                equalTo(List.of("advisory1", "advisory2")));
+        assertThat(this.couchDbService.readViewDocumentIds(CouchDbView.ADVISORIES_BY_CVE, "CVE-2021-45046"),
+                equalTo(List.of("advisory2")));
+        assertThat(this.couchDbService.readViewDocumentIds(CouchDbView.ADVISORIES_BY_CWE, "CWE-79"),
+                equalTo(List.of("advisory1", "advisory2")));
+        assertThat(this.couchDbService.readViewDocumentIds(CouchDbView.ADVISORIES_BY_PRODUCT_ID, "CSAFPID-1"),
+                equalTo(List.of("advisory1")));
+        assertThat(this.couchDbService.readViewDocumentIds(CouchDbView.ADVISORIES_BY_PRODUCT_ID, "CSAFPID-9"),
+                equalTo(List.of("advisory1", "advisory2")));
+        assertThat(this.couchDbService.readViewDocumentIds(CouchDbView.ADVISORIES_BY_PRODUCT_NAME, "example product"),
+                equalTo(List.of("advisory1", "advisory2")));
+        assertThat(this.couchDbService.readViewDocumentIds(CouchDbView.ADVISORIES_BY_CVE, "CVE-2000-0001"),
+                equalTo(List.of()));
+    }
+
+    @Test
+    public void createOrUpdateUpdateHandlersTest() {
+
+        assertThat(this.couchDbService.createOrUpdateUpdateHandlers(), equalTo("created"));
+        assertThat(this.couchDbService.createOrUpdateUpdateHandlers(), equalTo("exists"));
+    }
+
+    @Test
+    public void callUpdateHandlerTest_incrementCounter() throws DatabaseException {
+
+        // the handlers are installed on the first call
+        UpdateHandlerResult created = this.couchDbService.callUpdateHandler(CouchDbUpdateHandler.INCREMENT_COUNTER,
+                "counter1", Map.of("amount", "5"), null);
+        assertThat(created.isOk(), equalTo(true));
+        assertThat(created.getBody().get("count").asLong(), equalTo(5L));
+
+        UpdateHandlerResult increased = this.couchDbService.callUpdateHandler(CouchDbUpdateHandler.INCREMENT_COUNTER,
+                "counter1", Map.of("amount", "2"), null);
+        assertThat(increased.getBody().get("count").asLong(), equalTo(7L));
+        assertThat(this.couchDbService.readRevision("counter1"), equalTo(increased.getNewRevision()));
+    }
+
+    @Test
+    public void callUpdateHandlerTest_setCommentText() throws DatabaseException {
+
+        String commentId = UUID.randomUUID().toString();
+        String revision = this.couchDbService.writeDocument(commentId,
+                "{\"type\": \"Comment\", \"owner\": \"Mustermann\", \"commentText\": \"old\"}");
+
+        String wrongOwner = "{\"revision\": \"" + revision + "\", \"owner\": \"Musterfrau\", \"commentText\": \"new\"}";
+        assertThat(this.couchDbService.callUpdateHandler(CouchDbUpdateHandler.SET_COMMENT_TEXT, commentId, Map.of(), wrongOwner)
+                .getStatusCode(), equalTo(403));
+
+        String change = "{\"revision\": \"" + revision + "\", \"owner\": \"Mustermann\", \"commentText\": \"new\"}";
+        UpdateHandlerResult result = this.couchDbService.callUpdateHandler(CouchDbUpdateHandler.SET_COMMENT_TEXT,
+                commentId, Map.of(), change);
+        assertThat(result.isOk(), equalTo(true));
+        assertThat(this.couchDbService.readDocument(commentId).get("commentText").asText(), equalTo("new"));
+
+        // the revision is outdated now
+        assertThat(this.couchDbService.callUpdateHandler(CouchDbUpdateHandler.SET_COMMENT_TEXT, commentId, Map.of(), change)
+                .getStatusCode(), equalTo(409));
+        assertThat(this.couchDbService.callUpdateHandler(CouchDbUpdateHandler.SET_COMMENT_TEXT, "missing", Map.of(), change)
+                .getStatusCode(), equalTo(404));
+    }
+
+    @Test
+    public void findDocumentsTest_withIndex() throws IOException {
+
+        UUID advisoryId = UUID.randomUUID();
+        insertTestDocument(advisoryId);
+        this.couchDbService.createIndex(CouchDbIndex.TYPE);
+
+        Map<String, Object> filter = expr2CouchDBFilter(equal(ObjectType.Advisory.name(), CouchDbField.TYPE_FIELD.getDbName()));
+        List<Document> foundDocs = this.couchDbService.findDocuments(filter, List.of(CouchDbField.ID_FIELD), CouchDbIndex.TYPE);
+        assertThat(foundDocs.size(), equalTo(1));
+        assertThat(foundDocs.get(0).getId(), equalTo(advisoryId.toString()));
+    }
+
+    @Test
+    public void reactiveReadDocumentTest() throws IOException {
+
+        UUID advisoryId = UUID.randomUUID();
+        insertTestDocument(advisoryId);
+
+        ObjectNode doc = this.reactiveCouchDbService.readDocument(advisoryId.toString()).block();
+        assertThat(doc.get("_id").asText(), equalTo(advisoryId.toString()));
+
+        Mono<ObjectNode> notExisting = this.reactiveCouchDbService.readDocument(UUID.randomUUID().toString());
+        RuntimeException blockException = assertThrows(RuntimeException.class, notExisting::block);
+        assertInstanceOf(IdNotFoundException.class, Exceptions.unwrap(blockException));
+    }
+
+    @Test
+    public void reactiveFindDocumentsTest() throws IOException {
+
+        this.writeToDb(new TestModelRoot().setFirstString("Reactive").setSecondString("Flux"));
+        this.writeToDb(new TestModelRoot().setFirstString("Reactive").setSecondString("Mono"));
+
+        List<JsonNode> foundDocs = this.reactiveCouchDbService
+                .findDocuments(Map.of(FIRST_STRING, "Reactive"), ROOT_PRIMITIVE_FIELDS, null)
+                .collectList()
+                .block();
+        assertThat(foundDocs.size(), equalTo(2));
+        assertThat(foundDocs.get(0).get(FIRST_STRING).asText(), equalTo("Reactive"));
+    }
+
+    @Test
+    public void reactiveFindDocumentsTest_responseLargerThanBufferLimit() throws IOException {
+
+        final int bufferLimit = 16 * 1024;
+        final int docCount = 40;
+        String largeValue = "x".repeat(1024);
+        for (int i = 0; i < docCount; i++) {
+            this.writeToDb(new TestModelRoot().setFirstString("ReactiveLarge").setSecondString(largeValue + i));
+        }
+
+        WebClient smallBufferWebClient = this.couchDbWebClient.mutate()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(bufferLimit))
+                .build();
+        ReflectionTestUtils.setField(this.reactiveCouchDbService, "webClient", smallBufferWebClient);
+        try {
+            List<JsonNode> foundDocs = this.reactiveCouchDbService
+                    .findDocuments(Map.of(FIRST_STRING, "ReactiveLarge"), ROOT_PRIMITIVE_FIELDS, null)
+                    .collectList()
+                    .block();
+            assertThat(foundDocs.size(), equalTo(docCount));
+            assertThat(foundDocs.stream().mapToInt(doc -> doc.toString().length()).sum() > bufferLimit, equalTo(true));
+            assertThat(foundDocs.stream().map(doc -> doc.get(SECOND_STRING).asText()).distinct().count(), equalTo((long) docCount));
+        } finally {
+            ReflectionTestUtils.setField(this.reactiveCouchDbService, "webClient", this.couchDbWebClient);
+        }
+    }
 
     private List<Object> mapAttribute(Collection<Document> foundDocs, String attributeName) {
         return foundDocs.stream()
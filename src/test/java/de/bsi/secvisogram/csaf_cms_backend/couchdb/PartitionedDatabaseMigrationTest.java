@@ -0,0 +1,93 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class PartitionedDatabaseMigrationTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void toPartitionedDocument_advisory() {
+
+        ObjectNode advisory = MAPPER.createObjectNode()
+                .put("_id", "adv1")
+                .put("_rev", "1-abc")
+                .put("type", "Advisory");
+
+        ObjectNode converted = PartitionedDatabaseMigration.toPartitionedDocument(advisory, Map.of());
+        assertThat(converted.get("_id").asText(), equalTo("adv1:advisory"));
+        assertThat(converted.has("_rev"), is(false));
+        assertThat(advisory.get("_rev").asText(), equalTo("1-abc"));
+    }
+
+    @Test
+    public void toPartitionedDocument_advisoryVersion() {
+
+        ObjectNode version = MAPPER.createObjectNode()
+                .put("_id", "version1")
+                .put("type", "AdvisoryVersion")
+                .put("advisoryReference", "adv1");
+
+        ObjectNode converted = PartitionedDatabaseMigration.toPartitionedDocument(version, Map.of());
+        assertThat(converted.get("_id").asText(), equalTo("adv1:version1"));
+        assertThat(converted.get("advisoryReference").asText(), equalTo("adv1:advisory"));
+    }
+
+    @Test
+    public void toPartitionedDocument_answer() {
+
+        ObjectNode answer = MAPPER.createObjectNode()
+                .put("_id", "answer1")
+                .put("type", "Comment")
+                .put("advisoryId", "adv1")
+                .put("answerTo", "comment1");
+
+        ObjectNode converted = PartitionedDatabaseMigration.toPartitionedDocument(answer, Map.of("comment1", "adv1"));
+        assertThat(converted.get("_id").asText(), equalTo("adv1:answer1"));
+        assertThat(converted.get("advisoryId").asText(), equalTo("adv1:advisory"));
+        assertThat(converted.get("answerTo").asText(), equalTo("adv1:comment1"));
+    }
+
+    @Test
+    public void toPartitionedDocument_commentAuditTrail() {
+
+        ObjectNode auditTrail = MAPPER.createObjectNode()
+                .put("_id", "trail1")
+                .put("type", "CommentAuditTrail")
+                .put("commentId", "comment1");
+
+        ObjectNode converted = PartitionedDatabaseMigration.toPartitionedDocument(auditTrail, Map.of("comment1", "adv1"));
+        assertThat(converted.get("_id").asText(), equalTo("adv1:trail1"));
+        assertThat(converted.get("commentId").asText(), equalTo("adv1:comment1"));
+    }
+
+    @Test
+    public void toPartitionedDocument_counterAndUnknownType() {
+
+        ObjectNode counter = MAPPER.createObjectNode()
+                .put("_id", "finalCounter")
+                .put("type", "Counter");
+        ObjectNode unknown = MAPPER.createObjectNode()
+                .put("_id", "other");
+
+        assertThat(PartitionedDatabaseMigration.toPartitionedDocument(counter, Map.of()).get("_id").asText(),
+                equalTo("counter:finalCounter"));
+        assertThat(PartitionedDatabaseMigration.toPartitionedDocument(unknown, Map.of()).get("_id").asText(),
+                equalTo("unassigned:other"));
+    }
+
+    @Test
+    public void partitionKey() {
+
+        assertThat(CouchDbService.partitionKey("adv1:advisory"), equalTo("adv1"));
+        assertThat(CouchDbService.partitionKey("adv1:comment1"), equalTo("adv1"));
+        assertThat(CouchDbService.partitionKey("adv1"), equalTo("adv1"));
+    }
+}
@@ -0,0 +1,84 @@
+package de.bsi.secvisogram.csaf_cms_backend.couchdb;
+
+import static de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.nullValue;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.AndExpression;
+import de.bsi.secvisogram.csaf_cms_backend.model.filter.OperatorExpression;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class QueryPlannerTest {
+
+    private static final String[] VULNERABILITIES = {"csaf", "vulnerabilities"};
+
+    private final QueryPlanner planner = new QueryPlanner(
+            List.of(CouchDbIndex.TYPE, CouchDbIndex.TRACKING_ID_TYPE, CouchDbIndex.TITLE_TYPE),
+            VULNERABILITIES);
+
+    @Test
+    public void planTest_flattenAndOrderBySelectivity() {
+
+        OperatorExpression contains = containsIgnoreCase("log4j", "csaf", "document", "title");
+        OperatorExpression type = equal("Advisory", "type");
+        OperatorExpression notEqual = notEqual("final", "csaf", "document", "tracking", "status");
+        QueryPlan plan = planner.plan(new AndExpression(contains, new AndExpression(notEqual, type)), Set.of());
+
+        assertThat(((AndExpression) plan.getExpression()).getExpressions(), equalTo(List.of(type, notEqual, contains)));
+        assertThat(plan.getSteps(), hasItem("Flattened nested AND expressions"));
+        assertThat(plan.getSteps(), hasItem("Ordered predicates by selectivity"));
+        // the regex on the title can not be answered from the title index
+        assertThat(plan.getIndex(), equalTo(CouchDbIndex.TYPE));
+    }
+
+    @Test
+    public void planTest_removeDuplicates() {
+
+        QueryPlan plan = planner.plan(new AndExpression(equal("Advisory", "type"), equal("Advisory", "type")), Set.of());
+
+        assertThat(plan.getSelector(), equalTo(Map.of("type", Map.of("$eq", "Advisory"))));
+        assertThat(plan.getSteps(), hasItem("Removed duplicate predicate type Equal Advisory"));
+    }
+
+    @Test
+    public void planTest_startsWithAsRange() {
+
+        QueryPlan plan = planner.plan(new AndExpression(
+                equal("Advisory", "type"),
+                startsWith("Log4", "csaf", "document", "title")), Set.of());
+
+        Map<String, Object> titleCondition = Map.of("$gte", "Log4", "$lt", "Log4" + CouchDBFilterCreator.PREFIX_RANGE_END);
+        assertThat(plan.getSelector(), equalTo(Map.of("$and", List.of(
+                Map.of("type", Map.of("$eq", "Advisory")),
+                Map.of("csaf", Map.of("document", Map.of("title", titleCondition)))))));
+        assertThat(plan.getIndex(), equalTo(CouchDbIndex.TITLE_TYPE));
+    }
+
+    @Test
+    public void planTest_mergeRanges() {
+
+        QueryPlan plan = planner.plan(new AndExpression(
+                greaterOrEqual("CSAF-2022", "csaf", "document", "tracking", "id"),
+                less("CSAF-2023", "csaf", "document", "tracking", "id")), Set.of("type"));
+
+        assertThat(plan.getSelector(), equalTo(Map.of("csaf", Map.of("document", Map.of("tracking", Map.of("id",
+                Map.of("$gte", "CSAF-2022", "$lt", "CSAF-2023")))))));
+        assertThat(plan.getSteps(), hasItem("Merged range predicates on csaf.document.tracking.id"));
+        assertThat(plan.getIndex(), equalTo(CouchDbIndex.TRACKING_ID_TYPE));
+    }
+
+    @Test
+    public void planTest_arrayFieldNotIndexed() {
+
+        QueryPlan plan = planner.plan(equal("CVE-2021-44228", "csaf", "vulnerabilities", "cve"), Set.of());
+
+        assertThat(plan.getSelector(), equalTo(Map.of("csaf", Map.of("vulnerabilities",
+                Map.of("$elemMatch", Map.of("cve", Map.of("$eq", "CVE-2021-44228")))))));
+        assertThat(plan.getIndex(), nullValue());
+    }
+}
@@ -20,6 +20,8 @@ import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateAdvisoryRequest;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryWorkflowUtil;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -606,4 +608,41 @@ public class AdvisoryWrapperTest {
         assertEquals("tempExamle-TEMP-0000123", advisory.getTempTrackingIdInFromMeta());
     }
 
+
+    @Test
+    public void readAdvisoryInfosTest() throws IOException {
+
+        var findResponse = """
+                { "docs": [
+                    { "_id": "id1", "_rev": "rev1", "owner": "Mustermann", "workflowState": "Draft",
+                      "csaf": { "document": { "title": "title1", "notes": [{"title": "ignored"}],
+                                              "tracking": { "id": "tracking1", "current_release_date": null } } } },
+                    { "_id": "id2", "_rev": "rev2", "workflowState": "Review" }
+                  ],
+                  "bookmark": "nil",
+                  "warning": "no matching index found"
+                }""";
+        var infoFields = AdvisoryWorkflowUtil.advisoryReadFields();
+
+        List<AdvisoryInformationResponse> streamedInfos = new ArrayList<>();
+        AdvisoryWrapper.readAdvisoryInfos(new ByteArrayInputStream(findResponse.getBytes(StandardCharsets.UTF_8)),
+                infoFields, streamedInfos::add);
+
+        List<AdvisoryInformationResponse> expectedInfos = new ArrayList<>();
+        new ObjectMapper().readTree(findResponse).get("docs")
+                .forEach(doc -> expectedInfos.add(AdvisoryWrapper.convertToAdvisoryInfo(doc, infoFields)));
+        assertThat(streamedInfos.size(), equalTo(2));
+        for (int i = 0; i < expectedInfos.size(); i++) {
+            AdvisoryInformationResponse streamed = streamedInfos.get(i);
+            AdvisoryInformationResponse expected = expectedInfos.get(i);
+            assertThat(streamed.getAdvisoryId(), equalTo(expected.getAdvisoryId()));
+            assertThat(streamed.getRevision(), equalTo(expected.getRevision()));
+            assertThat(streamed.getOwner(), equalTo(expected.getOwner()));
+            assertThat(streamed.getWorkflowState(), equalTo(expected.getWorkflowState()));
+            assertThat(streamed.getTitle(), equalTo(expected.getTitle()));
+            assertThat(streamed.getDocumentTrackingId(), equalTo(expected.getDocumentTrackingId()));
+            assertThat(streamed.getCurrentReleaseDate(), equalTo(expected.getCurrentReleaseDate()));
+        }
+        assertThat(streamedInfos.get(0).getTitle(), equalTo("title1"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Golden file tests: the Java renderer has to create exactly the same HTML as the JavaScript renderer
+ */
+@SpringBootTest(properties = "csaf.document.templates.companyLogoPath=./src/test/resources/eXXcellent_solutions.png")
+@ExtendWith(SpringExtension.class)
+class JavaHtmlExporterTest {
+
+    @Autowired
+    private JavascriptExporter javascriptExporter;
+
+    private JavaHtmlExporter javaHtmlExporter;
+
+    @BeforeEach
+    void createJavaHtmlExporter() throws IOException {
+
+        javaHtmlExporter = new JavaHtmlExporter();
+        ReflectionTestUtils.setField(javaHtmlExporter, "companyLogoPath", "./src/test/resources/eXXcellent_solutions.png");
+        javaHtmlExporter.init();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "golden-advisory-full.json",
+        "golden-advisory-minimal.json",
+        "/de/bsi/secvisogram/csaf_cms_backend/couchdb/exxcellent-2021AB123.json",
+        "/de/bsi/secvisogram/csaf_cms_backend/couchdb/exxcellent-2022CC.json"
+    })
+    void createHtml_sameAsJavascript(String advisoryFile) throws IOException {
+
+        String advisoryJson = readAdvisory(advisoryFile);
+        assertThat(javaHtmlExporter.createHtml(advisoryJson), equalTo(javascriptExporter.createHtml(advisoryJson)));
+    }
+
+    @Test
+    void createHtml_repeatedWithCompiledTemplate() throws IOException {
+
+        String advisoryJson = readAdvisory("golden-advisory-full.json");
+        String firstHtml = javaHtmlExporter.createHtml(advisoryJson);
+        assertThat(javaHtmlExporter.createHtml(advisoryJson), equalTo(firstHtml));
+    }
+
+    @Test
+    void createHtml_noObject() {
+
+        assertThrows(IOException.class, () -> javaHtmlExporter.createHtml("[]"));
+    }
+
+    private static String readAdvisory(String advisoryFile) throws IOException {
+
+        try (InputStream advisoryStream = JavaHtmlExporterTest.class.getResourceAsStream(advisoryFile)) {
+            if (advisoryStream == null) {
+                throw new IOException("Missing golden file " + advisoryFile);
+            }
+            return new String(advisoryStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
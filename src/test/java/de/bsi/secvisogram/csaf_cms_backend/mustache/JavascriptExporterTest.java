@@ -1,6 +1,6 @@
 package de.bsi.secvisogram.csaf_cms_backend.mustache;
 
-import static de.bsi.secvisogram.csaf_cms_backend.mustache.JavascriptExporter.determineMediaTypeOfLogo;
+import static de.bsi.secvisogram.csaf_cms_backend.mustache.ExportResources.determineMediaTypeOfLogo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.equalToCompressingWhiteSpace;
@@ -9,6 +9,11 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -238,6 +243,23 @@ class JavascriptExporterTest {
 
     }
 
+    @Test
+    void createHtml_concurrentWithPooledContexts() throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> exports = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                exports.add(executor.submit(() -> this.javascriptExporter.createHtml(json)));
+            }
+            for (Future<String> export : exports) {
+                assertThat(export.get(), equalToCompressingWhiteSpace(resultHtml));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     void determineMediaTypeOfLogoTest() {
 
@@ -0,0 +1,82 @@
+package de.bsi.secvisogram.csaf_cms_backend.mustache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * The expected results were rendered with mustache.js 4.2.0
+ */
+public class MustacheRendererTest {
+
+    private static String render(String template, String viewJson, Map<String, String> partials) throws IOException {
+
+        Object view = new ObjectMapper().readValue(viewJson, Object.class);
+        return new MustacheRenderer(partials).render(MustacheTemplate.compile(template), view);
+    }
+
+    @Test
+    public void renderTest_escapingAndDelimiters() throws IOException {
+
+        assertThat(render("a {{=<% %>=}} <% x %> <%={{ }}=%> {{x}}", "{\"x\": \"<&>\"}", Map.of()),
+                equalTo("a  &lt;&amp;&gt;  &lt;&amp;&gt;"));
+        assertThat(render("{{{x}}} {{& x}} {{! comment }}|", "{\"x\": \"<&>\\\"'/`=\"}", Map.of()),
+                equalTo("<&>\"'/`= <&>\"'/`= |"));
+    }
+
+    @Test
+    public void renderTest_standaloneLines() throws IOException {
+
+        assertThat(render("  {{#s}}\n  in\n  {{/s}}\n  {{^s}}\nno\n{{/s}}\nend", "{\"s\": true}", Map.of()),
+                equalTo("  in\nend"));
+    }
+
+    @Test
+    public void renderTest_indentedPartials() throws IOException {
+
+        assertThat(render("\t{{>p}}\nx {{>p}}\n  {{>p}} y", "{\"n\": 1}", Map.of("p", "line1\n{{n}}\n\nline3\n")),
+                equalTo("\tline1\n\t1\n\n\tline3\nx line1\n  1\n\n  line3\n\n    line1\n  1\n\n  line3\n y"));
+        assertThat(render("  {{#a}}\n    {{>p}}\n  {{/a}}\n", "{\"a\": [{\"n\": 1}, {\"n\": 2}]}",
+                        Map.of("p", "<li>{{n}}</li>\n  {{#n}}\n  sub\n  {{/n}}\n")),
+                equalTo("    <li>1</li>\n      sub\n    <li>2</li>\n      sub\n"));
+    }
+
+    @Test
+    public void renderTest_javascriptValues() throws IOException {
+
+        assertThat(render("{{n1}} {{n2}} {{n3}} {{n4}} {{n5}} {{n6}} {{n7}} {{n8}}",
+                        "{\"n1\": 1e21, \"n2\": 1e20, \"n3\": 0.000001, \"n4\": 1.5e-7, \"n5\": -0.0,"
+                        + " \"n6\": 123.456, \"n7\": -2.5e30, \"n8\": 0.1}", Map.of()),
+                equalTo("1e+21 100000000000000000000 0.000001 1.5e-7 0 123.456 -2.5e+30 0.1"));
+        assertThat(render("{{s.length}} {{a.length}} {{a.1}} {{s.0}} {{#s}}{{length}}{{/s}} {{o.missing.x}} {{o.n}}|"
+                                + "{{#o.n}}x{{/o.n}}|{{^o.n}}null{{/o.n}}",
+                        "{\"s\": \"abc\", \"a\": [1, [2, 3], {\"x\": 1}], \"o\": {\"n\": null}}", Map.of()),
+                equalTo("3 3 2,3 a   ||null"));
+        assertThat(render("{{a}}|{{#a}}[{{.}}]{{/a}}|{{b}}|{{#b}}t{{/b}}|{{#e}}x{{/e}}{{^e}}empty{{/e}}|"
+                                + "{{#z}}z{{/z}}{{^z}}zero{{/z}}|{{#es}}x{{/es}}{{^es}}es{{/es}}",
+                        "{\"a\": [1, null, \"x\", {\"k\": 1}, [4, 5]], \"b\": true, \"e\": [], \"z\": 0, \"es\": \"\"}",
+                        Map.of()),
+                equalTo("1,,x,[object Object],4,5|[1][][x][[object Object]][4,5]|true|t|empty|zero|es"));
+    }
+
+    @Test
+    public void renderTest_contextStack() throws IOException {
+
+        assertThat(render("{{#o}}{{#i}}{{x}}-{{y}}{{/i}}{{/o}}",
+                        "{\"o\": {\"x\": \"ox\", \"i\": {\"y\": \"iy\"}}, \"x\": \"root\"}", Map.of()),
+                equalTo("ox-iy"));
+    }
+
+    @Test
+    public void compileTest_unclosed() {
+
+        assertThrows(IllegalArgumentException.class, () -> MustacheTemplate.compile("{{#a}}text"));
+        assertThrows(IllegalArgumentException.class, () -> MustacheTemplate.compile("{{#a}}{{/b}}"));
+        assertThrows(IllegalArgumentException.class, () -> MustacheTemplate.compile("{{name"));
+    }
+}
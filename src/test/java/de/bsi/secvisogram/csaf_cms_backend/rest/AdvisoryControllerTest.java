@@ -5,14 +5,20 @@ import static de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus.D
 import static de.bsi.secvisogram.csaf_cms_backend.rest.AdvisoryController.determineExportResponseContentType;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
-import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -23,29 +29,37 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.Page;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
 import de.bsi.secvisogram.csaf_cms_backend.fixture.CsafDocumentJsonCreator;
 import de.bsi.secvisogram.csaf_cms_backend.model.DocumentTrackingStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportJobStatus;
 import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
 import de.bsi.secvisogram.csaf_cms_backend.model.template.DocumentTemplateDescription;
 import de.bsi.secvisogram.csaf_cms_backend.model.template.DocumentTemplateService;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateCommentRequest;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryFacetsResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisorySearchHitResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AnswerInformationResponse;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.QueryPlanResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryReference;
 import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisorySortField;
+import de.bsi.secvisogram.csaf_cms_backend.service.ExportJob;
+import de.bsi.secvisogram.csaf_cms_backend.service.ExportJobService;
 import de.bsi.secvisogram.csaf_cms_backend.service.IdAndRevision;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import org.junit.jupiter.api.Assertions;
@@ -53,11 +67,13 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(AdvisoryController.class)
 @SuppressFBWarnings(value = "VA_FORMAT_STRING_USES_NEWLINE", justification = "False positives on multiline format strings")
@@ -69,6 +85,9 @@ public class AdvisoryControllerTest {
     @MockBean
     private AdvisoryService advisoryService;
 
+    @MockBean
+    private ExportJobService exportJobService;
+
     @MockBean
     private DocumentTemplateService templateService;
 
@@ -141,6 +160,147 @@ public class AdvisoryControllerTest {
 
     }
 
+    @Test
+    @WithMockUser()
+    void listCsafDocumentsTest_eTag() throws Exception {
+
+        when(advisoryService.getAdvisoryInformationsETag(null, false)).thenReturn("\"etag-1\"");
+
+        this.mockMvc.perform(get(advisoryRoute).header(HttpHeaders.IF_NONE_MATCH, "\"etag-1\""))
+                .andExpect(status().isNotModified());
+        verify(advisoryService, never()).getAdvisoryInformations(any());
+
+        when(advisoryService.getAdvisoryInformationsETag(null, false)).thenReturn("\"etag-2\"");
+        when(advisoryService.getAdvisoryInformations(null)).thenReturn(Collections.emptyList());
+
+        this.mockMvc.perform(get(advisoryRoute).header(HttpHeaders.IF_NONE_MATCH, "\"etag-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"etag-2\""))
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    @WithMockUser()
+    void listCsafDocumentsTest_paged() throws Exception {
+
+        AdvisoryInformationResponse info = new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft);
+        when(advisoryService.getAdvisoryInformations(null, 1, "prevBookmark", AdvisorySortField.title, true))
+                .thenReturn(new Page<>(List.of(info), "nextBookmark", 1));
+
+        this.mockMvc.perform(get(advisoryRoute)
+                        .param("limit", "1")
+                        .param("bookmark", "prevBookmark")
+                        .param("sort", "title,desc"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Bookmark", "nextBookmark"))
+                .andExpect(content()
+                        .json(String.format("[{\"advisoryId\": \"%s\"}]", advisoryId))
+                );
+    }
+
+    @Test
+    @WithMockUser()
+    void listCsafDocumentsTest_pagedLastPage() throws Exception {
+
+        when(advisoryService.getAdvisoryInformations(null, 10, null, null, false))
+                .thenReturn(new Page<>(Collections.emptyList(), null, 10));
+
+        this.mockMvc.perform(get(advisoryRoute).param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Bookmark"))
+                .andExpect(content().json("[]"));
+    }
+
+    @Test
+    @WithMockUser()
+    void listCsafDocumentsTest_invalidPageRequest() throws Exception {
+
+        this.mockMvc.perform(get(advisoryRoute).param("limit", "10").param("sort", "owner"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get(advisoryRoute).param("limit", "10").param("sort", "title,up"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get(advisoryRoute).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get(advisoryRoute).param("bookmark", "prevBookmark"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void streamCsafDocumentsTest() throws Exception {
+
+        AdvisoryInformationResponse info1 = new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft);
+        AdvisoryInformationResponse info2 = new AdvisoryInformationResponse("id2", WorkflowState.Review);
+        when(advisoryService.streamAdvisoryInformations(null)).thenReturn(infoConsumer -> {
+            infoConsumer.accept(info1);
+            infoConsumer.accept(info2);
+        });
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertThat(new ObjectMapper().readTree(lines[0]).get("advisoryId").asText(), equalTo(advisoryId));
+        assertThat(new ObjectMapper().readTree(lines[1]).get("workflowState").asText(), equalTo("Review"));
+    }
+
+    @Test
+    @WithMockUser()
+    void readCsafDocumentsTest() throws Exception {
+
+        JsonNode node = jacksonMapper.readTree(csafJsonString);
+        String secondId = UUID.randomUUID().toString();
+        List<String> ids = List.of(advisoryId, secondId);
+        when(advisoryService.streamAdvisories(ids)).thenReturn(advisoryConsumer -> {
+            advisoryConsumer.accept(new AdvisoryResponse(advisoryId, WorkflowState.Draft, node));
+            advisoryConsumer.accept(new AdvisoryResponse(secondId, WorkflowState.Review, node));
+        });
+
+        MvcResult result = this.mockMvc.perform(post(advisoryRoute + "/batch")
+                        .content(jacksonMapper.writeValueAsString(ids))
+                        .contentType(MediaType.APPLICATION_JSON).with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertThat(new ObjectMapper().readTree(lines[0]).get("advisoryId").asText(), equalTo(advisoryId));
+        assertThat(new ObjectMapper().readTree(lines[1]).get("workflowState").asText(), equalTo("Review"));
+    }
+
+    @Test
+    @WithMockUser()
+    void readCsafDocumentsTest_invalidIds() throws Exception {
+
+        this.mockMvc.perform(post(advisoryRoute + "/batch").content("[]")
+                        .contentType(MediaType.APPLICATION_JSON).with(csrf()))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(post(advisoryRoute + "/batch").content("[\"no uuid\"]")
+                        .contentType(MediaType.APPLICATION_JSON).with(csrf()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void streamCsafDocumentsTest_csafException() throws Exception {
+
+        CsafException csafExcp = new CsafException("Test", CsafExceptionKey.InvalidFilterExpression, HttpStatus.BAD_REQUEST);
+        when(advisoryService.streamAdvisoryInformations("invalid")).thenThrow(csafExcp);
+
+        this.mockMvc.perform(get(advisoryRoute + "/stream").param("expression", "invalid"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser()
     void listCsafDocumentsTest_csafException() throws Exception {
@@ -223,6 +383,53 @@ public class AdvisoryControllerTest {
                 .andExpect(content().json(String.format("{\"advisoryId\":  \"%s\", \"workflowState\": Draft}", advisoryId)));
     }
 
+    @Test
+    @WithMockUser()
+    void readCsafDocumentTest_eTag() throws Exception {
+
+        JsonNode node = jacksonMapper.readTree(csafJsonString);
+        final AdvisoryResponse advisoryResponse = new AdvisoryResponse(advisoryId, WorkflowState.Draft, node);
+        when(advisoryService.getAdvisoryETag(advisoryId)).thenReturn("\"etag-1\"");
+        when(advisoryService.getAdvisory(advisoryId)).thenReturn(advisoryResponse);
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"etag-1\""));
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId).header(HttpHeaders.IF_NONE_MATCH, "\"etag-1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"etag-1\""))
+                .andExpect(content().string(""));
+        verify(advisoryService, times(1)).getAdvisory(advisoryId);
+    }
+
+    @Test
+    @WithMockUser()
+    void readCsafDocumentTest_eTagNoPermission() throws Exception {
+
+        CsafException csafExcp = new CsafException("Test", CsafExceptionKey.NoPermissionForAdvisory, HttpStatus.UNAUTHORIZED);
+        when(advisoryService.getAdvisoryETag(advisoryId)).thenThrow(csafExcp);
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId).header(HttpHeaders.IF_NONE_MATCH, "\"etag-1\""))
+                .andExpect(status().isUnauthorized())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+        verify(advisoryService, times(0)).getAdvisory(advisoryId);
+    }
+
+    @Test
+    @WithMockUser()
+    void readCsafDocumentTest_eTagUnknown() throws Exception {
+
+        JsonNode node = jacksonMapper.readTree(csafJsonString);
+        final AdvisoryResponse advisoryResponse = new AdvisoryResponse(advisoryId, WorkflowState.Draft, node);
+        when(advisoryService.getAdvisoryETag(advisoryId)).thenReturn(null);
+        when(advisoryService.getAdvisory(advisoryId)).thenReturn(advisoryResponse);
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId).header(HttpHeaders.IF_NONE_MATCH, "\"etag-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
     @Test
     @WithMockUser()
     void createCsafDocumentTest_invalidCsaf() throws Exception {
@@ -465,6 +672,113 @@ public class AdvisoryControllerTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    @WithMockUser()
+    void getAdvisoryFacetsTest() throws Exception {
+
+        when(this.advisoryService.getAdvisoryFacets())
+                .thenReturn(new AdvisoryFacetsResponse()
+                        .setWorkflowState(Map.of("Draft", 2L))
+                        .setInitialReleaseYear(Map.of("2022", 1L)));
+
+        this.mockMvc.perform(get(advisoryRoute + "/facets"))
+                .andExpect(status().isOk())
+                .andExpect(content()
+                        .json("""
+                                {"workflowState": {"Draft": 2}, "initialReleaseYear": {"2022": 1}}
+                                """
+                        ));
+    }
+
+    @Test
+    @WithMockUser()
+    void findAdvisoriesByReferenceTest() throws Exception {
+
+        AdvisoryInformationResponse info = new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft);
+        when(this.advisoryService.findAdvisoriesByReference(AdvisoryReference.cve, "CVE-2021-44228"))
+                .thenReturn(List.of(info));
+
+        this.mockMvc.perform(get(advisoryRoute + "/lookup/cve").param("value", "CVE-2021-44228"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format("[{\"advisoryId\": \"%s\", \"workflowState\": \"Draft\"}]", advisoryId)));
+    }
+
+    @Test
+    @WithMockUser()
+    void findAdvisoriesByReferenceTest_invalidReference() throws Exception {
+
+        this.mockMvc.perform(get(advisoryRoute + "/lookup/vendor").param("value", "Example"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(get(advisoryRoute + "/lookup/productId").param("value", " "))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void searchAdvisoriesTest() throws Exception {
+
+        when(this.advisoryService.searchAdvisories("log4j", 20))
+                .thenReturn(List.of(new AdvisorySearchHitResponse()
+                        .setAdvisoryId(advisoryId)
+                        .setScore(2.5f)
+                        .setTitle("Log4j remote code execution")
+                        .setDocumentTrackingId("exxcellent-2021AB123")));
+
+        this.mockMvc.perform(get(advisoryRoute + "/search").param("text", "log4j"))
+                .andExpect(status().isOk())
+                .andExpect(content()
+                        .json(String.format("""
+                                [{"advisoryId": "%s", "score": 2.5, "title": "Log4j remote code execution",
+                                  "documentTrackingId": "exxcellent-2021AB123"}]
+                                """, advisoryId)
+                        ));
+    }
+
+    @Test
+    @WithMockUser()
+    void searchAdvisoriesTest_notReady() throws Exception {
+
+        when(this.advisoryService.searchAdvisories("log4j", 5))
+                .thenThrow(new CsafException("The search index is not ready", CsafExceptionKey.SearchIndexNotReady,
+                        HttpStatus.SERVICE_UNAVAILABLE));
+
+        this.mockMvc.perform(get(advisoryRoute + "/search").param("text", "log4j").param("limit", "5"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    @WithMockUser()
+    void explainSearchTest() throws Exception {
+
+        String expression = "{\"type\": \"Operator\"}";
+        when(this.advisoryService.explainAdvisoryQuery(expression))
+                .thenReturn(new QueryPlanResponse()
+                        .setIndex("csaf-title-type-index")
+                        .setUsedIndex("csaf-title-type-index")
+                        .setSteps(List.of("Chose index csaf-title-type-index")));
+
+        this.mockMvc.perform(get(advisoryRoute + "/search/plan").param("expression", expression))
+                .andExpect(status().isOk())
+                .andExpect(content()
+                        .json("""
+                                {"index": "csaf-title-type-index", "usedIndex": "csaf-title-type-index",
+                                 "steps": ["Chose index csaf-title-type-index"]}
+                                """
+                        ));
+    }
+
+    @Test
+    @WithMockUser()
+    void explainSearchTest_invalidExpression() throws Exception {
+
+        when(this.advisoryService.explainAdvisoryQuery("invalid"))
+                .thenThrow(new CsafException("Invalid filter expression", CsafExceptionKey.InvalidFilterExpression,
+                        HttpStatus.BAD_REQUEST));
+
+        this.mockMvc.perform(get(advisoryRoute + "/search/plan").param("expression", "invalid"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @WithMockUser()
     void listAllTemplatesTest() throws Exception {
@@ -675,42 +989,39 @@ public class AdvisoryControllerTest {
     void exportAdvisoryTest_HTML() throws Exception {
 
         UUID advisoryId = UUID.randomUUID();
-        Path tempPath = Files.createTempFile("", ".tmp");
-        try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
-            writer.write("<html></html>");
-        }
-        when(advisoryService.exportAdvisory(advisoryId.toString(), ExportFormat.HTML)).thenReturn(tempPath);
+        when(advisoryService.exportAdvisory(advisoryId.toString(), ExportFormat.HTML))
+                .thenReturn(outputStream -> outputStream.write("<html></html>".getBytes(StandardCharsets.UTF_8)));
 
-        this.mockMvc.perform(
+        MvcResult result = this.mockMvc.perform(
                         get(advisoryRoute + "/" + advisoryId + "/csaf")
                                 .with(csrf()).content(csafJsonString).contentType(MediaType.TEXT_HTML)
                                 .param("format", ExportFormat.HTML.name()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.TEXT_HTML))
                 .andExpect(content().string("<html></html>"));
     }
 
     @Test
     @WithMockUser(username = "editor", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
-    void deleteFileAfterExportAdvisoryTest() throws Exception {
-
-        IdAndRevision fakeIdRev = new IdAndRevision(advisoryId, revision);
-        when(advisoryService.addAdvisory(any())).thenReturn(fakeIdRev);
+    void exportAdvisoryTest_JSON() throws Exception {
 
         UUID advisoryId = UUID.randomUUID();
-        Path tempPath = Files.createTempFile("", ".tmp");
-        try (BufferedWriter writer = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
-            writer.write(csafJsonString);
-        }
-        when(advisoryService.exportAdvisory(advisoryId.toString(), ExportFormat.JSON)).thenReturn(tempPath);
+        when(advisoryService.exportAdvisory(advisoryId.toString(), ExportFormat.JSON))
+                .thenReturn(outputStream -> outputStream.write(csafJsonString.getBytes(StandardCharsets.UTF_8)));
 
-        this.mockMvc.perform(
+        MvcResult result = this.mockMvc.perform(
                         get(advisoryRoute + "/" + advisoryId + "/csaf")
                                 .with(csrf()).content(csafJsonString).contentType(MediaType.APPLICATION_JSON)
                                 .param("format", ExportFormat.JSON.name()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(content().string(csafJsonString));
-
-        assertFalse(tempPath.toFile().exists());
     }
 
     @Test
@@ -742,6 +1053,104 @@ public class AdvisoryControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @WithMockUser()
+    void createExportJobTest() throws Exception {
+
+        UUID advisoryId = UUID.randomUUID();
+        ExportJob job = mockExportJob(advisoryId.toString(), ExportFormat.PDF, ExportJobStatus.Queued);
+        when(exportJobService.createJob(advisoryId.toString(), ExportFormat.PDF)).thenReturn(job);
+
+        this.mockMvc.perform(
+                        post(advisoryRoute + "/" + advisoryId + "/exports").with(csrf())
+                                .param("format", ExportFormat.PDF.name()))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "advisories/" + advisoryId + "/exports/" + job.getJobId()))
+                .andExpect(content().json(String.format("""
+                        {"jobId": "%s", "advisoryId": "%s", "format": "PDF", "status": "Queued", "error": null}
+                        """, job.getJobId(), advisoryId)));
+    }
+
+    @Test
+    @WithMockUser()
+    void createExportJobTest_queueFull() throws Exception {
+
+        UUID advisoryId = UUID.randomUUID();
+        when(exportJobService.createJob(advisoryId.toString(), ExportFormat.PDF))
+                .thenThrow(new CsafException("queue full", CsafExceptionKey.ExportQueueFull, HttpStatus.TOO_MANY_REQUESTS));
+
+        this.mockMvc.perform(
+                        post(advisoryRoute + "/" + advisoryId + "/exports").with(csrf())
+                                .param("format", ExportFormat.PDF.name()))
+                .andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    @WithMockUser()
+    void readExportJobTest() throws Exception {
+
+        UUID advisoryId = UUID.randomUUID();
+        ExportJob job = mockExportJob(advisoryId.toString(), ExportFormat.Markdown, ExportJobStatus.Failed);
+        when(job.getError()).thenReturn("conversion failed");
+        when(exportJobService.getJob(advisoryId.toString(), job.getJobId())).thenReturn(job);
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/exports/" + job.getJobId()))
+                .andExpect(status().isOk())
+                .andExpect(content().json("""
+                        {"format": "Markdown", "status": "Failed", "error": "conversion failed"}
+                        """));
+
+        String unknownJobId = UUID.randomUUID().toString();
+        when(exportJobService.getJob(advisoryId.toString(), unknownJobId))
+                .thenThrow(new CsafException("not found", CsafExceptionKey.ExportJobNotFound, HttpStatus.NOT_FOUND));
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/exports/" + unknownJobId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser()
+    void downloadExportTest() throws Exception {
+
+        UUID advisoryId = UUID.randomUUID();
+        ExportJob job = mockExportJob(advisoryId.toString(), ExportFormat.HTML, ExportJobStatus.Finished);
+        when(exportJobService.getJob(advisoryId.toString(), job.getJobId())).thenReturn(job);
+        when(exportJobService.openResult(advisoryId.toString(), job.getJobId()))
+                .thenReturn(new ByteArrayInputStream("<html></html>".getBytes(StandardCharsets.UTF_8)));
+
+        MvcResult result = this.mockMvc.perform(
+                        get(advisoryRoute + "/" + advisoryId + "/exports/" + job.getJobId() + "/download"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.TEXT_HTML))
+                .andExpect(content().string("<html></html>"));
+    }
+
+    @Test
+    @WithMockUser()
+    void downloadExportTest_notFinished() throws Exception {
+
+        UUID advisoryId = UUID.randomUUID();
+        ExportJob job = mockExportJob(advisoryId.toString(), ExportFormat.PDF, ExportJobStatus.Running);
+        when(exportJobService.getJob(advisoryId.toString(), job.getJobId())).thenReturn(job);
+        when(exportJobService.openResult(advisoryId.toString(), job.getJobId()))
+                .thenThrow(new CsafException("running", CsafExceptionKey.ExportJobNotFinished, HttpStatus.CONFLICT));
+
+        this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/exports/" + job.getJobId() + "/download"))
+                .andExpect(status().isConflict());
+    }
+
+    private static ExportJob mockExportJob(String advisoryId, ExportFormat format, ExportJobStatus status) {
+
+        ExportJob job = mock(ExportJob.class);
+        when(job.getJobId()).thenReturn(UUID.randomUUID().toString());
+        when(job.getAdvisoryId()).thenReturn(advisoryId);
+        when(job.getFormat()).thenReturn(format);
+        when(job.getStatus()).thenReturn(status);
+        return job;
+    }
+
     @Test
     @WithMockUser()
     void determineExportResponseContentTypeTest() {
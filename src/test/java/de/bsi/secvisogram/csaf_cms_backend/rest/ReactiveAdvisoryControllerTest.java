@@ -0,0 +1,154 @@
+package de.bsi.secvisogram.csaf_cms_backend.rest;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryResponse;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.CommentInformationResponse;
+import de.bsi.secvisogram.csaf_cms_backend.service.AdvisoryService;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@WebMvcTest(ReactiveAdvisoryController.class)
+public class ReactiveAdvisoryControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AdvisoryService advisoryService;
+
+    private static final String advisoryRoute = "/api/v1/reactive/advisories";
+
+    private static final String advisoryId = UUID.randomUUID().toString();
+
+    @Test
+    @WithMockUser()
+    void listCsafDocumentsTest() throws Exception {
+
+        AdvisoryInformationResponse info1 = new AdvisoryInformationResponse(advisoryId, WorkflowState.Draft);
+        AdvisoryInformationResponse info2 = new AdvisoryInformationResponse("id2", WorkflowState.Review);
+        when(advisoryService.getAdvisoryInformationsAsFlux(null)).thenReturn(Flux.just(info1, info2));
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format(
+                        "[{\"advisoryId\": \"%s\", \"workflowState\": \"Draft\"}, {\"advisoryId\": \"id2\", \"workflowState\": \"Review\"}]",
+                        advisoryId)));
+    }
+
+    @Test
+    @WithMockUser()
+    void listCsafDocumentsTest_csafException() throws Exception {
+
+        CsafException csafExcp = new CsafException("Test", CsafExceptionKey.InvalidFilterExpression, HttpStatus.BAD_REQUEST);
+        when(advisoryService.getAdvisoryInformationsAsFlux("invalid")).thenThrow(csafExcp);
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute).param("expression", "invalid"))
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void readCsafDocumentTest() throws Exception {
+
+        JsonNode node = new ObjectMapper().readTree("{\"document\": {\"category\": \"CSAF_BASE\"}}");
+        AdvisoryResponse advisoryResponse = new AdvisoryResponse(advisoryId, WorkflowState.Draft, node);
+        when(advisoryService.getAdvisoryAsMono(advisoryId)).thenReturn(Mono.just(advisoryResponse));
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json(String.format("{\"advisoryId\": \"%s\", \"workflowState\": \"Draft\"}", advisoryId)));
+    }
+
+    @Test
+    @WithMockUser()
+    void readCsafDocumentTest_notExisting() throws Exception {
+
+        when(advisoryService.getAdvisoryAsMono(advisoryId)).thenReturn(Mono.error(new IdNotFoundException("Test")));
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId))
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @WithMockUser()
+    void readCsafDocumentTest_invalidId() throws Exception {
+
+        this.mockMvc.perform(get(advisoryRoute + "/no-uuid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser()
+    void listCommentsTest() throws Exception {
+
+        CommentInformationResponse comment = new CommentInformationResponse("comment1", advisoryId, "node1", "Mustermann");
+        when(advisoryService.getCommentsAsFlux(advisoryId)).thenReturn(Flux.just(comment));
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/comments"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"commentId\": \"comment1\", \"owner\": \"Mustermann\"}]"));
+    }
+
+    @Test
+    @WithMockUser()
+    void listCommentsTest_accessDenied() throws Exception {
+
+        when(advisoryService.getCommentsAsFlux(any())).thenThrow(new AccessDeniedException("Test"));
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/comments"))
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    @WithMockUser()
+    void listAnswersTest_csafException() throws Exception {
+
+        CsafException csafExcp = new CsafException("Test", CsafExceptionKey.AdvisoryNotFound, HttpStatus.NOT_FOUND);
+        String commentId = UUID.randomUUID().toString();
+        when(advisoryService.getAnswersAsFlux(advisoryId, commentId)).thenReturn(Flux.error(csafExcp));
+
+        MvcResult result = this.mockMvc.perform(get(advisoryRoute + "/" + advisoryId + "/comments/" + commentId + "/answers"))
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,199 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.AdvisoryField;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.BulkWriteDocument;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
+import de.bsi.secvisogram.csaf_cms_backend.model.WorkflowState;
+import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class AdvisoryProjectionTest {
+
+    private static final String advisoryJson = """
+            { "type": "Advisory", "owner": "Mustermann", "workflowState": "%s",
+              "csaf": { "document": { "title": "%s", "tracking": { "id": "tracking1" } } } }""";
+
+    private CouchDbService couchDbService;
+    private AdvisoryProjection projection;
+    private Path snapshotFile;
+
+    @BeforeEach
+    void createProjection() throws IOException {
+
+        couchDbService = mock(CouchDbService.class);
+        snapshotFile = Files.createTempFile("advisory-projection", ".json");
+        Files.delete(snapshotFile);
+        projection = new AdvisoryProjection();
+        ReflectionTestUtils.setField(projection, "enabled", true);
+        ReflectionTestUtils.setField(projection, "couchDbService", couchDbService);
+        ReflectionTestUtils.setField(projection, "changesLimit", 100L);
+        ReflectionTestUtils.setField(projection, "snapshotFile", snapshotFile.toString());
+    }
+
+    @Test
+    public void readChangesTest() throws IOException {
+
+        when(couchDbService.readChangesAsStream(eq("0"), anyLong(), anyBoolean(), anyLong())).thenReturn(stream("""
+                { "results": [
+                    { "id": "advisory1", "seq": "1-a", "changes": [{"rev": "1-a"}] },
+                    { "id": "auditTrail1", "seq": "2-a", "changes": [{"rev": "1-b"}] },
+                    { "id": "deletedAdvisory", "seq": "3-a", "changes": [{"rev": "2-c"}], "deleted": true }
+                  ],
+                  "last_seq": "3-a" }"""));
+        when(couchDbService.findDocumentsAsStream(any(), any(), isNull())).thenReturn(stream(
+                "{ \"docs\": [" + withIdAndRevision(String.format(advisoryJson, "Draft", "title1"), "advisory1", "1-a") + "]}"));
+
+        assertEquals(3, projection.readChanges(false));
+
+        List<AdvisoryInformationResponse> infos = projection.getAdvisoryInformations(ObjectType.Advisory);
+        assertEquals(1, infos.size());
+        assertThat(infos.get(0).getAdvisoryId(), equalTo("advisory1"));
+        assertThat(infos.get(0).getRevision(), equalTo("1-a"));
+        assertThat(infos.get(0).getTitle(), equalTo("title1"));
+        assertThat(infos.get(0).getWorkflowState(), equalTo(WorkflowState.Draft));
+        assertThat(projection.getAdvisoryInformation("deletedAdvisory"), is(nullValue()));
+        assertEquals(0, projection.getAdvisoryInformations(ObjectType.AdvisoryVersion).size());
+    }
+
+    @Test
+    public void documentsWrittenTest_newerRevisionWins() {
+
+        DocumentResult result2 = documentResult("advisory1", "2-b");
+        projection.documentsWritten(List.of(BulkWriteDocument.changedDocument(String.format(advisoryJson, "Review", "title2"))),
+                List.of(result2));
+        DocumentResult result1 = documentResult("advisory1", "1-a");
+        projection.documentsWritten(List.of(BulkWriteDocument.changedDocument(String.format(advisoryJson, "Draft", "title1"))),
+                List.of(result1));
+
+        AdvisoryInformationResponse info = projection.getAdvisoryInformation("advisory1");
+        assertThat(info.getTitle(), equalTo("title2"));
+        assertThat(info.getWorkflowState(), equalTo(WorkflowState.Review));
+
+        projection.documentDeleted("advisory1", "2-b");
+        assertThat(projection.getAdvisoryInformation("advisory1"), is(nullValue()));
+    }
+
+    @Test
+    public void documentsWrittenTest_partlyWrittenChangeNotApplied() {
+
+        DocumentResult failedResult = mock(DocumentResult.class);
+        when(failedResult.isOk()).thenReturn(Boolean.FALSE);
+        projection.documentsWritten(List.of(BulkWriteDocument.changedDocument(String.format(advisoryJson, "Draft", "title1")),
+                        BulkWriteDocument.newDocument("auditTrail1", "{}")),
+                List.of(documentResult("advisory1", "1-a"), failedResult));
+
+        assertThat(projection.getAdvisoryInformation("advisory1"), is(nullValue()));
+    }
+
+    @Test
+    public void documentUpdatedTest() {
+
+        projection.documentsWritten(List.of(BulkWriteDocument.changedDocument(String.format(advisoryJson, "Draft", "title1"))),
+                List.of(documentResult("advisory1", "1-a")));
+        String versionBefore = projection.getVersion();
+
+        projection.documentUpdated("advisory1", "2-b", Map.of(AdvisoryField.WORKFLOW_STATE, "Review"));
+        AdvisoryInformationResponse info = projection.getAdvisoryInformation("advisory1");
+        assertThat(info.getRevision(), equalTo("2-b"));
+        assertThat(info.getWorkflowState(), equalTo(WorkflowState.Review));
+        assertThat(info.getTitle(), equalTo("title1"));
+        assertNotEquals(versionBefore, projection.getVersion());
+
+        // the summary missed revision 3, the change is left to the _changes feed
+        projection.documentUpdated("advisory1", "4-d", Map.of(AdvisoryField.WORKFLOW_STATE, "RfPublication"));
+        assertThat(projection.getAdvisoryInformation("advisory1").getRevision(), equalTo("2-b"));
+
+        String versionUnknown = projection.getVersion();
+        projection.documentUpdated("comment1", "2-b", Map.of());
+        assertEquals(versionUnknown, projection.getVersion());
+    }
+
+    @Test
+    public void readChangesTest_tombstoneRemoved() throws IOException {
+
+        projection.documentsWritten(List.of(BulkWriteDocument.changedDocument(String.format(advisoryJson, "Draft", "title1"))),
+                List.of(documentResult("advisory1", "1-a")));
+        projection.documentDeleted("advisory1", "1-a");
+        // the tombstone keeps a late write of the deleted revision out
+        projection.documentsWritten(List.of(BulkWriteDocument.changedDocument(String.format(advisoryJson, "Draft", "title1"))),
+                List.of(documentResult("advisory1", "1-a")));
+        assertThat(projection.getAdvisoryInformation("advisory1"), is(nullValue()));
+        assertEquals(1, summaryCount());
+
+        when(couchDbService.readChangesAsStream(eq("0"), anyLong(), anyBoolean(), anyLong())).thenReturn(stream("""
+                { "results": [
+                    { "id": "advisory1", "seq": "1-a", "changes": [{"rev": "2-b"}], "deleted": true }
+                  ],
+                  "last_seq": "1-a" }"""));
+        assertEquals(1, projection.readChanges(false));
+        assertEquals(0, summaryCount());
+    }
+
+    @Test
+    public void snapshotTest() {
+
+        DocumentResult result = documentResult("advisory1", "1-a");
+        projection.documentsWritten(List.of(BulkWriteDocument.changedDocument(String.format(advisoryJson, "Draft", "title1"))),
+                List.of(result));
+        projection.saveSnapshot();
+
+        AdvisoryProjection restoredProjection = new AdvisoryProjection();
+        ReflectionTestUtils.setField(restoredProjection, "snapshotFile", snapshotFile.toString());
+        ReflectionTestUtils.invokeMethod(restoredProjection, "loadSnapshot");
+
+        AdvisoryInformationResponse info = restoredProjection.getAdvisoryInformation("advisory1");
+        assertThat(info.getTitle(), equalTo("title1"));
+        assertThat(info.getDocumentTrackingId(), equalTo("tracking1"));
+        assertThat(info.getOwner(), equalTo("Mustermann"));
+        assertThat(info.getRevision(), equalTo("1-a"));
+    }
+
+    private int summaryCount() {
+
+        Map<?, ?> summaries = (Map<?, ?>) ReflectionTestUtils.getField(projection, "summaries");
+        return summaries != null ? summaries.size() : 0;
+    }
+
+    private static DocumentResult documentResult(String id, String revision) {
+
+        DocumentResult result = mock(DocumentResult.class);
+        when(result.isOk()).thenReturn(Boolean.TRUE);
+        when(result.getId()).thenReturn(id);
+        when(result.getRev()).thenReturn(revision);
+        return result;
+    }
+
+    private static String withIdAndRevision(String json, String id, String revision) {
+        return json.replaceFirst("\\{", String.format("{ \"_id\": \"%s\", \"_rev\": \"%s\",", id, revision));
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
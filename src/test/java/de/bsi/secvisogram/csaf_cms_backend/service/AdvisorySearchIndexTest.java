@@ -0,0 +1,131 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class AdvisorySearchIndexTest {
+
+    private static final String advisory1 = """
+            { "_id": "advisory1", "csaf": {
+                "document": { "title": "Log4j remote code execution",
+                              "notes": [{ "category": "summary", "text": "Lookups in log messages are evaluated" }] },
+                "vulnerabilities": [{ "cve": "CVE-2021-44228" }],
+                "product_tree": { "branches": [{ "name": "Apache Log4j", "category": "product_name" }] } } }""";
+    private static final String advisory2 = """
+            { "_id": "advisory2", "csaf": {
+                "document": { "title": "Spring framework update" },
+                "vulnerabilities": [{ "notes": [{ "text": "The exploit uses log4j in a dependency" }] }],
+                "product_tree": { "full_product_names": [{ "name": "Spring Framework 5.3", "product_id": "CSAFPID-0001" }] } } }""";
+
+    private CouchDbService couchDbService;
+    private AdvisorySearchIndex searchIndex;
+
+    @BeforeEach
+    void createIndex() throws IOException {
+
+        couchDbService = mock(CouchDbService.class);
+        Path indexDirectory = Files.createTempDirectory("advisory-search-index");
+        searchIndex = new AdvisorySearchIndex();
+        ReflectionTestUtils.setField(searchIndex, "couchDbService", couchDbService);
+        ReflectionTestUtils.setField(searchIndex, "changesLimit", 100L);
+        ReflectionTestUtils.setField(searchIndex, "indexDirectory", indexDirectory.toString());
+        searchIndex.openIndex();
+    }
+
+    @AfterEach
+    void closeIndex() throws IOException {
+        searchIndex.closeIndex();
+    }
+
+    @Test
+    public void searchTest_rankedAndFiltered() throws IOException {
+
+        when(couchDbService.readChangesAsStream(eq("0"), anyLong(), anyBoolean(), anyLong())).thenReturn(stream("""
+                { "results": [
+                    { "id": "advisory1", "seq": "1-a", "changes": [{"rev": "1-a"}] },
+                    { "id": "advisory2", "seq": "2-a", "changes": [{"rev": "1-b"}] }
+                  ],
+                  "last_seq": "2-a" }"""));
+        when(couchDbService.findDocumentsAsStream(any(), any(), isNull()))
+                .thenReturn(stream("{ \"docs\": [" + advisory1 + "," + advisory2 + "]}"));
+
+        assertEquals(2, searchIndex.readChanges(false));
+
+        // the match in the title ranks higher than the match in a vulnerability note
+        assertThat(advisoryIds(searchIndex.search("LOG4J", 10, id -> true)), contains("advisory1", "advisory2"));
+        assertThat(advisoryIds(searchIndex.search("log4j", 10, "advisory2"::equals)), contains("advisory2"));
+        assertThat(advisoryIds(searchIndex.search("log4j", 1, id -> true)), contains("advisory1"));
+        // all words have to match, the last one as prefix
+        assertThat(advisoryIds(searchIndex.search("spring frame", 10, id -> true)), contains("advisory2"));
+        assertThat(advisoryIds(searchIndex.search("cve-2021-44228", 10, id -> true)), contains("advisory1"));
+        assertThat(advisoryIds(searchIndex.search("csafpid-0001", 10, id -> true)), contains("advisory2"));
+        assertThat(searchIndex.search("log4j unknownword", 10, id -> true), empty());
+        assertThat(searchIndex.search(" ", 10, id -> true), empty());
+    }
+
+    @Test
+    public void readChangesTest_deleted() throws IOException {
+
+        when(couchDbService.readChangesAsStream(eq("0"), anyLong(), anyBoolean(), anyLong())).thenReturn(stream("""
+                { "results": [ { "id": "advisory1", "seq": "1-a", "changes": [{"rev": "1-a"}] } ],
+                  "last_seq": "1-a" }"""));
+        when(couchDbService.readChangesAsStream(eq("1-a"), anyLong(), anyBoolean(), anyLong())).thenReturn(stream("""
+                { "results": [ { "id": "advisory1", "seq": "2-a", "changes": [{"rev": "2-a"}], "deleted": true } ],
+                  "last_seq": "2-a" }"""));
+        when(couchDbService.findDocumentsAsStream(any(), any(), isNull()))
+                .thenReturn(stream("{ \"docs\": [" + advisory1 + "]}"));
+
+        searchIndex.readChanges(false);
+        assertThat(advisoryIds(searchIndex.search("log4j", 10, id -> true)), contains("advisory1"));
+
+        searchIndex.readChanges(false);
+        assertThat(searchIndex.search("log4j", 10, id -> true), empty());
+    }
+
+    @Test
+    public void commitTest_sequenceRestored() throws IOException {
+
+        when(couchDbService.readChangesAsStream(eq("0"), anyLong(), anyBoolean(), anyLong())).thenReturn(stream("""
+                { "results": [ { "id": "advisory1", "seq": "1-a", "changes": [{"rev": "1-a"}] } ],
+                  "last_seq": "1-a" }"""));
+        when(couchDbService.findDocumentsAsStream(any(), any(), isNull()))
+                .thenReturn(stream("{ \"docs\": [" + advisory1 + "]}"));
+        searchIndex.readChanges(false);
+        searchIndex.closeIndex();
+
+        searchIndex.openIndex();
+        assertThat(ReflectionTestUtils.getField(searchIndex, "lastSequence"), equalTo("1-a"));
+        assertThat(advisoryIds(searchIndex.search("log4j", 10, id -> true)), contains("advisory1"));
+    }
+
+    private static List<String> advisoryIds(List<AdvisorySearchIndex.SearchHit> hits) {
+        return hits.stream().map(AdvisorySearchIndex.SearchHit::getAdvisoryId).toList();
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
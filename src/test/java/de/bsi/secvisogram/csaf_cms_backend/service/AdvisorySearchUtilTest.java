@@ -4,10 +4,14 @@ import static de.bsi.secvisogram.csaf_cms_backend.fixture.CsafDocumentJsonCreato
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 import de.bsi.secvisogram.csaf_cms_backend.CouchDBExtension;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.QueryPlan;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
 import de.bsi.secvisogram.csaf_cms_backend.rest.request.CreateAdvisoryRequest;
 import de.bsi.secvisogram.csaf_cms_backend.rest.response.AdvisoryInformationResponse;
 import java.io.IOException;
@@ -117,6 +121,49 @@ public class AdvisorySearchUtilTest {
 
 
 
+    @Test
+    @WithMockUser(username = "editor", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void getAdvisoryInformationsTest_documentTitleStartsWith() throws IOException, CsafException {
+
+        IdAndRevision idRev1 = this.advisoryService.addAdvisory(csafToRequest(csafJsonTitle("Log4j vulnerability")));
+        IdAndRevision idRev2 = this.advisoryService.addAdvisory(csafToRequest(csafJsonTitle("Log4Shell")));
+        this.advisoryService.addAdvisory(csafToRequest(csafJsonTitle("Spring4Shell")));
+        String expression = """
+                { "type" : "Operator",
+                  "selector" : [ "csaf", "document", "title" ],
+                  "operatorType" : "StartsWith",
+                  "value" : "Log4",
+                  "valueType" : "Text"
+                }
+                """;
+        List<AdvisoryInformationResponse> infos = this.advisoryService.getAdvisoryInformations(expression);
+        List<String> ids = infos.stream().map(AdvisoryInformationResponse::getAdvisoryId).toList();
+        assertThat(ids.size(), equalTo(2));
+        assertThat(ids, hasItems(idRev1.getId(), idRev2.getId()));
+    }
+
+    @Test
+    public void planAdvisoryQueryTest_cached() throws CsafException {
+
+        String expression = createExprDocumentTitle("title 1");
+        QueryPlan plan = AdvisorySearchUtil.planAdvisoryQuery(expression, List.of(ObjectType.Advisory));
+        // formatting outside of strings does not matter, whitespace in values does
+        assertThat(AdvisorySearchUtil.planAdvisoryQuery(expression.replace("\n", " \n\t"), List.of(ObjectType.Advisory)),
+                sameInstance(plan));
+        assertThat(AdvisorySearchUtil.planAdvisoryQuery(createExprDocumentTitle("title1"), List.of(ObjectType.Advisory)),
+                not(sameInstance(plan)));
+        assertThat(AdvisorySearchUtil.planAdvisoryQuery(expression, List.of(ObjectType.AdvisoryVersion)),
+                not(sameInstance(plan)));
+    }
+
+    @Test
+    public void compactJsonTest() {
+
+        assertThat(AdvisorySearchUtil.compactJson("{ \"a b\" : [ 1, \"x \\\" y\" ]\n}"),
+                equalTo("{\"a b\":[1,\"x \\\" y\"]}"));
+        assertThat(AdvisorySearchUtil.compactJson(null), equalTo(""));
+    }
+
     private String createExprDocumentTitle(String value) {
 
         return createExpr(value, "csaf", "document", "title");
@@ -1,18 +1,25 @@
 package de.bsi.secvisogram.csaf_cms_backend.service;
 
 import static de.bsi.secvisogram.csaf_cms_backend.fixture.CsafDocumentJsonCreator.csafToRequest;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import de.bsi.secvisogram.csaf_cms_backend.CouchDBExtension;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Path;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -62,18 +69,43 @@ public class AdvisoryServiceExportNoLogoTest {
 
         when(this.pandocService.isReady()).thenReturn(Boolean.TRUE);
         when(this.weasyprintService.isReady()).thenReturn(Boolean.TRUE);
-        doNothing().when(this.pandocService).convert(any(), any());
-        doNothing().when(this.weasyprintService).convert(any(), any());
+        // the converters get the HTML export and write a minimal document of their format
+        doAnswer(invocation -> {
+            assertThat(invocation.<String>getArgument(0), containsString("<html"));
+            invocation.<OutputStream>getArgument(1).write("# Advisory".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(this.pandocService).convert(any(), any());
+        doAnswer(invocation -> {
+            assertThat(invocation.<String>getArgument(0), containsString("<html"));
+            invocation.<OutputStream>getArgument(1).write("%PDF-1.7\n%%EOF".getBytes(StandardCharsets.US_ASCII));
+            return null;
+        }).when(this.weasyprintService).convert(any(), any());
 
         IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafJson));
-        Path jsonExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.JSON);
-        Assertions.assertNotNull(jsonExport);
-        Path pdfExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.PDF);
-        Assertions.assertNotNull(pdfExport);
-        Path htmlExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.HTML);
-        Assertions.assertNotNull(htmlExport);
-        Path mdExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.Markdown);
-        Assertions.assertNotNull(mdExport);
+        for (ExportFormat format : ExportFormat.values()) {
+            ByteArrayOutputStream exportStream = new ByteArrayOutputStream();
+            advisoryService.exportAdvisory(idRev.getId(), format).writeTo(exportStream);
+            Assertions.assertTrue(exportStream.size() > 0, "Export " + format + " should not be empty");
+        }
+
+        ByteArrayOutputStream jsonStream = new ByteArrayOutputStream();
+        advisoryService.exportAdvisory(idRev.getId(), ExportFormat.JSON).writeTo(jsonStream);
+        JsonNode exportedCsaf = new ObjectMapper().readTree(jsonStream.toByteArray());
+        Assertions.assertEquals("CSAF_BASE", exportedCsaf.at("/document/category").asText());
+
+        ByteArrayOutputStream pdfStream = new ByteArrayOutputStream();
+        advisoryService.exportAdvisory(idRev.getId(), ExportFormat.PDF).writeTo(pdfStream);
+        Assertions.assertTrue(pdfStream.toString(StandardCharsets.US_ASCII).startsWith("%PDF"));
+
+        ByteArrayOutputStream markdownStream = new ByteArrayOutputStream();
+        advisoryService.exportAdvisory(idRev.getId(), ExportFormat.Markdown).writeTo(markdownStream);
+        Assertions.assertEquals("# Advisory", markdownStream.toString(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream htmlStream = new ByteArrayOutputStream();
+        advisoryService.exportAdvisory(idRev.getId(), ExportFormat.HTML).writeTo(htmlStream);
+        String html = htmlStream.toString(StandardCharsets.UTF_8);
+        assertThat(html, containsString("<html"));
+        Assertions.assertFalse(html.contains("data:image"));
     }
 
     @Test
@@ -14,17 +14,25 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ibm.cloud.cloudant.v1.Cloudant;
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
 import de.bsi.secvisogram.csaf_cms_backend.CouchDBExtension;
 import de.bsi.secvisogram.csaf_cms_backend.config.CsafRoles;
 import de.bsi.secvisogram.csaf_cms_backend.couchdb.*;
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
 import de.bsi.secvisogram.csaf_cms_backend.json.AdvisoryWrapper;
 import de.bsi.secvisogram.csaf_cms_backend.json.ObjectType;
 import de.bsi.secvisogram.csaf_cms_backend.json.TrackingIdCounter;
@@ -37,10 +45,11 @@ import de.bsi.secvisogram.csaf_cms_backend.rest.response.*;
 import de.bsi.secvisogram.csaf_cms_backend.validator.ValidatorServiceClient;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
@@ -51,6 +60,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.info.BuildProperties;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.TestConfiguration;
@@ -64,6 +74,7 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.security.web.authentication.switchuser.SwitchUserGrantedAuthority;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  * Test for the Advisory service. The required CouchDB container is started in the CouchDBExtension.
@@ -73,6 +84,8 @@ import org.springframework.test.context.ContextConfiguration;
         "csaf.summary.publication=testPublishMessage",
         "csaf.trackingid.company=",
         "csaf.trackingid.digits=7",
+        // the database is cleared for each test, leased numbers would outlive it
+        "csaf.trackingid.leaseSize=1",
 })
 @ExtendWith(CouchDBExtension.class)
 @DirtiesContext
@@ -83,6 +96,18 @@ public class AdvisoryServiceTest {
     @Autowired
     private AdvisoryService advisoryService;
 
+    @Autowired
+    private CouchDbService couchDbService;
+
+    @Autowired
+    private Cloudant cloudantClient;
+
+    @Autowired
+    private AuditTrailWriter auditTrailWriter;
+
+    @Value("${csaf.couchdb.bulkDeleteChunkSize}")
+    private int bulkDeleteChunkSize;
+
     @MockBean
     private PandocService pandocService;
 
@@ -149,6 +174,109 @@ public class AdvisoryServiceTest {
         assertEquals(0, ids.size());
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void streamAdvisoryInformationsTest() throws IOException, CsafException {
+
+        IdAndRevision idRev1 = this.advisoryService.addAdvisory(csafToRequest(csafJson));
+        IdAndRevision idRev2 = this.advisoryService.addAdvisory(csafToRequest(csafJson));
+
+        List<AdvisoryInformationResponse> infos = new ArrayList<>();
+        this.advisoryService.streamAdvisoryInformations(null).forEach(infos::add);
+
+        List<String> ids = infos.stream().map(AdvisoryInformationResponse::getAdvisoryId).toList();
+        assertEquals(2, ids.size());
+        assertTrue(ids.containsAll(List.of(idRev1.getId(), idRev2.getId())));
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void getAdvisoryInformationsTest_paged() throws IOException, CsafException {
+
+        this.couchDbService.createIndex(CouchDbIndex.TITLE_TYPE);
+        List<String> titles = List.of("title2", "title3", "title1");
+        for (String title : titles) {
+            this.advisoryService.addAdvisory(csafToRequest(String.format("""
+                    {
+                        "document": {
+                            "category": "CSAF_BASE",
+                            "title": "%s"
+                        }
+                    }""", title)));
+        }
+
+        Page<AdvisoryInformationResponse> firstPage
+                = this.advisoryService.getAdvisoryInformations(null, 2, null, AdvisorySortField.title, false);
+        assertEquals(List.of("title1", "title2"),
+                firstPage.getItems().stream().map(AdvisoryInformationResponse::getTitle).toList());
+        assertNotNull(firstPage.getBookmark());
+
+        Page<AdvisoryInformationResponse> secondPage
+                = this.advisoryService.getAdvisoryInformations(null, 2, firstPage.getBookmark(), AdvisorySortField.title, false);
+        assertEquals(List.of("title3"),
+                secondPage.getItems().stream().map(AdvisoryInformationResponse::getTitle).toList());
+        assertNull(secondPage.getBookmark());
+
+        Page<AdvisoryInformationResponse> descendingPage
+                = this.advisoryService.getAdvisoryInformations(null, 1, null, AdvisorySortField.title, true);
+        assertEquals("title3", descendingPage.getItems().get(0).getTitle());
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void getAdvisoryInformationsTest_pageFilledWithVisibleAdvisories() throws IOException, CsafException {
+
+        this.couchDbService.createIndex(CouchDbIndex.TITLE_TYPE);
+        this.advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "title1")));
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("author2", null,
+                Collections.singletonList(new SwitchUserGrantedAuthority(CsafRoles.ROLE_AUTHOR, auth))));
+        this.advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "title2")));
+        this.advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "title3")));
+        SecurityContextHolder.getContext().setAuthentication(auth);
+        this.advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "title4")));
+        // an advisory without the sort field is not in the sorted list
+        this.advisoryService.addAdvisory(csafToRequest("""
+                {
+                    "document": {
+                        "category": "CSAF_BASE"
+                    }
+                }"""));
+
+        // the drafts of author2 are skipped, the page is filled with the following advisories
+        Page<AdvisoryInformationResponse> firstPage
+                = this.advisoryService.getAdvisoryInformations(null, 2, null, AdvisorySortField.title, false);
+        assertEquals(List.of("title1", "title4"),
+                firstPage.getItems().stream().map(AdvisoryInformationResponse::getTitle).toList());
+
+        Page<AdvisoryInformationResponse> secondPage
+                = this.advisoryService.getAdvisoryInformations(null, 2, firstPage.getBookmark(), AdvisorySortField.title, false);
+        assertEquals(0, secondPage.getItems().size());
+        assertNull(secondPage.getBookmark());
+        assertEquals(3, this.advisoryService.getAdvisoryInformations(null, 10, null, null, false).getItems().size());
+    }
+
+    @Test
+    @WithMockUser(username = "auditor", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_AUDITOR})
+    public void getAdvisoryInformationsTest_pageOfAdvisoriesAndVersionsSorted() throws IOException, CsafException,
+            DatabaseException {
+
+        this.couchDbService.createIndex(CouchDbIndex.TITLE_TYPE);
+        IdAndRevision idRev = this.advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "title1")));
+        this.advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "title3")));
+        ObjectNode advisoryVersion = this.couchDbService.readDocument(idRev.getId()).deepCopy();
+        advisoryVersion.remove(List.of(CouchDbField.ID_FIELD.getDbName(), CouchDbField.REVISION_FIELD.getDbName()));
+        advisoryVersion.put(CouchDbField.TYPE_FIELD.getDbName(), ObjectType.AdvisoryVersion.name());
+        ((ObjectNode) advisoryVersion.at("/csaf/document")).put("title", "title2");
+        this.couchDbService.writeDocument(UUID.randomUUID(), advisoryVersion.toString());
+
+        // advisories and advisory versions are sorted together
+        Page<AdvisoryInformationResponse> page
+                = this.advisoryService.getAdvisoryInformations(null, 3, null, AdvisorySortField.title, false);
+        assertEquals(List.of("title1", "title2", "title3"),
+                page.getItems().stream().map(AdvisoryInformationResponse::getTitle).toList());
+    }
+
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
     @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "Ok for test")
@@ -208,18 +336,29 @@ public class AdvisoryServiceTest {
 
         when(this.pandocService.isReady()).thenReturn(Boolean.TRUE);
         when(this.weasyprintService.isReady()).thenReturn(Boolean.TRUE);
-        doNothing().when(this.pandocService).convert(any(), any());
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write("# markdown".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(this.pandocService).convert(any(), any());
         doNothing().when(this.weasyprintService).convert(any(), any());
 
         IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafJson));
-        Path jsonExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.JSON);
-        Assertions.assertNotNull(jsonExport);
-        Path pdfExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.PDF);
-        Assertions.assertNotNull(pdfExport);
-        Path htmlExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.HTML);
-        Assertions.assertNotNull(htmlExport);
-        Path mdExport = advisoryService.exportAdvisory(idRev.getId(), ExportFormat.Markdown);
-        Assertions.assertNotNull(mdExport);
+        String jsonExport = export(idRev.getId(), ExportFormat.JSON);
+        assertEquals("CSAF_BASE", new ObjectMapper().readTree(jsonExport).at("/document/category").asText());
+        Assertions.assertNotNull(export(idRev.getId(), ExportFormat.PDF));
+        assertThat(export(idRev.getId(), ExportFormat.HTML), startsWith("<!DOCTYPE html>"));
+        assertEquals("# markdown", export(idRev.getId(), ExportFormat.Markdown));
+    }
+
+    @Test
+    @WithMockUser(username = "editor", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void exportAdvisoryTest_toolNotReady() throws IOException, CsafException {
+
+        when(this.weasyprintService.isReady()).thenReturn(Boolean.FALSE);
+        IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafJson));
+        CsafException exception = assertThrows(CsafException.class,
+                () -> advisoryService.exportAdvisory(idRev.getId(), ExportFormat.PDF));
+        assertEquals(CsafExceptionKey.UnknownExportFormat, exception.getExceptionKey());
     }
 
     @Test
@@ -230,6 +369,35 @@ public class AdvisoryServiceTest {
         assertThrows(CsafException.class, () -> advisoryService.exportAdvisory("wrong Id", ExportFormat.JSON));
     }
 
+    @Test
+    @WithMockUser(username = "editor", authorities = {CsafRoles.ROLE_REGISTERED, CsafRoles.ROLE_AUTHOR})
+    public void exportAdvisoryTest_cachedByRevision() throws IOException, DatabaseException, CsafException {
+
+        when(this.weasyprintService.isReady()).thenReturn(Boolean.TRUE);
+        doNothing().when(this.weasyprintService).convert(any(), any());
+
+        IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        export(idRev.getId(), ExportFormat.PDF);
+        export(idRev.getId(), ExportFormat.PDF);
+        verify(this.weasyprintService, times(1)).convert(any(), any());
+
+        // a new revision is exported again
+        advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(), csafToRequest(csafDocumentJson("Category2", "Title2")));
+        export(idRev.getId(), ExportFormat.PDF);
+        verify(this.weasyprintService, times(2)).convert(any(), any());
+
+        String jsonExport = export(idRev.getId(), ExportFormat.JSON);
+        assertEquals(jsonExport, export(idRev.getId(), ExportFormat.JSON));
+        assertThat(jsonExport, containsString("Title2"));
+    }
+
+    private String export(String advisoryId, ExportFormat format) throws IOException, CsafException {
+
+        ByteArrayOutputStream exportStream = new ByteArrayOutputStream();
+        advisoryService.exportAdvisory(advisoryId, format).writeTo(exportStream);
+        return exportStream.toString(StandardCharsets.UTF_8);
+    }
+
     @Test
     public void getAdvisoryTest_notPresent() {
         UUID noAdvisoryId = UUID.randomUUID();
@@ -245,6 +413,22 @@ public class AdvisoryServiceTest {
         assertEquals(idRev.getId(), advisory.getAdvisoryId());
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void streamAdvisoriesTest() throws IOException, CsafException {
+        IdAndRevision idRev1 = advisoryService.addAdvisory(csafToRequest(csafJson));
+        IdAndRevision idRev2 = advisoryService.addAdvisory(csafToRequest(csafJson));
+        String missingId = UUID.randomUUID().toString();
+
+        List<AdvisoryResponse> advisories = new ArrayList<>();
+        advisoryService.streamAdvisories(List.of(idRev2.getId(), missingId, idRev1.getId())).forEach(advisories::add);
+
+        assertEquals(2, advisories.size());
+        assertEquals(idRev2.getId(), advisories.get(0).getAdvisoryId());
+        assertEquals(idRev1.getId(), advisories.get(1).getAdvisoryId());
+        assertEquals(idRev1.getRevision(), advisories.get(1).getRevision());
+    }
+
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
     public void getAdvisoryTest_engineDataSet() throws IOException, DatabaseException, CsafException {
@@ -325,6 +509,35 @@ public class AdvisoryServiceTest {
         assertEquals(1, advisoryService.getDocumentCount(), "the comment and answer and their audit trails should also be deleted");
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    @SuppressFBWarnings(value = "PRMC_POSSIBLY_REDUNDANT_METHOD_CALLS", justification = "Ok for test")
+    public void deleteAdvisoryTest_withManyComments() throws IOException, DatabaseException, CsafException {
+        IdAndRevision idRevAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        IdAndRevision otherAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        advisoryService.addComment(otherAdvisory.getId(), new CreateCommentRequest("Other comment", UUID.randomUUID().toString()));
+        for (int i = 0; i < 5; i++) {
+            CreateCommentRequest comment = new CreateCommentRequest("Comment " + i, UUID.randomUUID().toString());
+            IdAndRevision idRevComment = advisoryService.addComment(idRevAdvisory.getId(), comment);
+            advisoryService.addAnswer(idRevAdvisory.getId(), idRevComment.getId(), answerText);
+        }
+
+        assertEquals(27, advisoryService.getDocumentCount(), "there should be 2 advisories, 1 counter, 6 comments and 5 answers each with an audit trail");
+
+        Cloudant bulkCountingClient = Mockito.spy(cloudantClient);
+        ReflectionTestUtils.setField(couchDbService, "client", bulkCountingClient);
+        ReflectionTestUtils.setField(couchDbService, "bulkDeleteChunkSize", 2);
+        try {
+            this.advisoryService.deleteAdvisory(idRevAdvisory.getId(), idRevAdvisory.getRevision());
+        } finally {
+            ReflectionTestUtils.setField(couchDbService, "client", cloudantClient);
+            ReflectionTestUtils.setField(couchDbService, "bulkDeleteChunkSize", bulkDeleteChunkSize);
+        }
+        assertEquals(5, advisoryService.getDocumentCount(), "only the other advisory and its comment with their audit trails should remain");
+        // the advisory audit trail, 5 comments and 5 answers with their audit trails in chunks of 2 documents
+        verify(bulkCountingClient, times(11)).postBulkDocs(any());
+    }
+
 
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
@@ -358,6 +571,20 @@ public class AdvisoryServiceTest {
 
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void updateAdvisoryTest_outdatedRevision() throws IOException, DatabaseException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(), csafToRequest(csafDocumentJson("Category2", "Title2")));
+        assertThrows(IdNotFoundException.class, () -> advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(),
+                csafToRequest(csafDocumentJson("Category3", "Title3"))));
+
+        // the audit trail of the failed update is removed again: an advisory, 1 counter and 2 audit trails remain
+        assertEquals(4, advisoryService.getDocumentCount());
+        assertEquals(2, readAllAuditTrailDocumentsFromDb().size());
+    }
+
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
     public void updateAdvisoryTest_auditTrail() throws IOException, DatabaseException, CsafException {
@@ -389,6 +616,68 @@ public class AdvisoryServiceTest {
         assertThat(node4.at(AdvisorySearchField.DOCUMENT_TITLE).asText(), equalTo("Title4"));
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void updateAdvisoryTest_auditTrailRetried() throws IOException, DatabaseException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        CouchDbService auditTrailFailingDbService = failAuditTrailsInBulkWrites();
+        ReflectionTestUtils.setField(advisoryService, "couchDbService", auditTrailFailingDbService);
+        try {
+            advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(), csafToRequest(csafDocumentJson("Category2", "Title2")));
+        } finally {
+            ReflectionTestUtils.setField(advisoryService, "couchDbService", couchDbService);
+        }
+
+        // the audit trail is written again after the bulk request
+        verify(auditTrailFailingDbService).writeDocument(anyString(), anyString());
+        assertEquals("Title2", advisoryService.getAdvisory(idRev.getId()).getCsaf().at("/document/title").asText());
+        assertEquals(2, readAllAuditTrailDocumentsFromDb().size());
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    public void updateAdvisoryTest_auditTrailFailedChangeRolledBack() throws IOException, DatabaseException, CsafException {
+
+        var idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        CouchDbService auditTrailFailingDbService = failAuditTrailsInBulkWrites();
+        doThrow(new IllegalStateException("Database not available"))
+                .when(auditTrailFailingDbService).writeDocument(anyString(), anyString());
+        ReflectionTestUtils.setField(advisoryService, "couchDbService", auditTrailFailingDbService);
+        try {
+            assertThrows(DatabaseException.class, () -> advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(),
+                    csafToRequest(csafDocumentJson("Category2", "Title2"))));
+        } finally {
+            ReflectionTestUtils.setField(advisoryService, "couchDbService", couchDbService);
+        }
+
+        // the advisory has the content before the change and no change remains without audit trail
+        AdvisoryResponse advisory = advisoryService.getAdvisory(idRev.getId());
+        assertEquals("Title1", advisory.getCsaf().at("/document/title").asText());
+        assertNotEquals(idRev.getRevision(), advisory.getRevision());
+        assertEquals(1, readAllAuditTrailDocumentsFromDb().size());
+    }
+
+    /**
+     * Create a CouchDbService whose bulk requests write all documents but the last, the audit trail,
+     * which is answered as failed
+     */
+    private CouchDbService failAuditTrailsInBulkWrites() throws DatabaseException {
+
+        CouchDbService auditTrailFailingDbService = Mockito.spy(couchDbService);
+        DocumentResult failedResult = Mockito.mock(DocumentResult.class);
+        when(failedResult.getError()).thenReturn("forbidden");
+        when(failedResult.getReason()).thenReturn("audit trail rejected");
+        doAnswer(invocation -> {
+            List<BulkWriteDocument> documents = new ArrayList<>(invocation.getArgument(0));
+            documents.remove(documents.size() - 1);
+            List<DocumentResult> results = new ArrayList<>(couchDbService.writeDocuments(documents));
+            results.add(failedResult);
+            return results;
+        }).when(auditTrailFailingDbService).writeDocuments(any());
+        return auditTrailFailingDbService;
+    }
+
     private List<JsonNode> readAllAuditTrailDocumentsFromDb() throws IOException {
 
         Collection<DbField> fields = Arrays.asList(CouchDbField.ID_FIELD, ADVISORY_ID, CREATED_AT,
@@ -959,6 +1248,37 @@ public class AdvisoryServiceTest {
         Assertions.assertEquals("updated comment text", newComment.getCommentText());
     }
 
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    void getAdvisoryETagTest() throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        String eTag = advisoryService.getAdvisoryETag(idRev.getId());
+        assertNotNull(eTag);
+        assertEquals(eTag, advisoryService.getAdvisoryETag(idRev.getId()));
+
+        advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(), csafToRequest(csafDocumentJson("Category2", "Title2")));
+        assertNotEquals(eTag, advisoryService.getAdvisoryETag(idRev.getId()), "the ETag should change with the revision");
+
+        CouchDbService spyDbService = Mockito.spy(couchDbService);
+        ReflectionTestUtils.setField(advisoryService, "couchDbService", spyDbService);
+        try {
+            advisoryService.getAdvisoryETag(idRev.getId());
+            verify(spyDbService, times(0)).readDocument(anyString());
+        } finally {
+            ReflectionTestUtils.setField(advisoryService, "couchDbService", couchDbService);
+        }
+        assertThrows(IdNotFoundException.class, () -> advisoryService.getAdvisoryETag(UUID.randomUUID().toString()));
+
+        // another author may not view the draft, so there is no ETag to answer Not Modified with
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        SwitchUserGrantedAuthority registeredAuthority = new SwitchUserGrantedAuthority(CsafRoles.ROLE_AUTHOR, auth);
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken("author2", null, Collections.singletonList(registeredAuthority)));
+        CsafException noPermission = assertThrows(CsafException.class, () -> advisoryService.getAdvisoryETag(idRev.getId()));
+        assertEquals(CsafExceptionKey.NoPermissionForAdvisory, noPermission.getExceptionKey());
+    }
+
     @Test
     @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
     void getCommentTest_accessDenied() throws IOException, DatabaseException, CsafException {
@@ -1011,6 +1331,129 @@ public class AdvisoryServiceTest {
                 () -> advisoryService.updateComment(idRevAdvisory.getId(), idRevComment.getId(), idRevComment.getRevision(),
                         "updated comment text"));
 
+        assertEquals(5, advisoryService.getDocumentCount(), "the audit trail of the denied change should be deleted");
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    void updateCommentTest_auditTrailUser() throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRevAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        CreateCommentRequest comment = new CreateCommentRequest("comment text", UUID.randomUUID().toString());
+        IdAndRevision idRevComment = advisoryService.addComment(idRevAdvisory.getId(), comment);
+
+        advisoryService.updateComment(idRevAdvisory.getId(), idRevComment.getId(), idRevComment.getRevision(), "updated comment text");
+
+        List<JsonNode> updateAuditTrails = readCommentAuditTrailsFromDb().stream()
+                .filter(auditTrail -> ChangeType.Update.name().equals(auditTrail.get(CHANGE_TYPE.getDbName()).asText()))
+                .toList();
+        assertEquals(1, updateAuditTrails.size());
+        JsonNode updateAuditTrail = updateAuditTrails.get(0);
+        assertEquals(idRevComment.getId(), updateAuditTrail.get(CommentAuditTrailField.COMMENT_ID.getDbName()).asText());
+        assertEquals("updated comment text", updateAuditTrail.get(CommentAuditTrailField.COMMENT_TEXT.getDbName()).asText());
+        assertEquals("author1", updateAuditTrail.get(AuditTrailField.USER.getDbName()).asText());
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    void updateCommentTest_outdatedRevision() throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRevAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        CreateCommentRequest comment = new CreateCommentRequest("comment text", UUID.randomUUID().toString());
+        IdAndRevision idRevComment = advisoryService.addComment(idRevAdvisory.getId(), comment);
+        advisoryService.updateComment(idRevAdvisory.getId(), idRevComment.getId(), idRevComment.getRevision(), "updated comment text");
+        assertEquals(6, advisoryService.getDocumentCount());
+
+        // the update handler answers 409 for the outdated revision
+        assertThrows(IdNotFoundException.class,
+                () -> advisoryService.updateComment(idRevAdvisory.getId(), idRevComment.getId(), idRevComment.getRevision(),
+                        "conflicting comment text"));
+
+        assertEquals(6, advisoryService.getDocumentCount(), "the audit trail of the conflicting change should be deleted");
+        assertEquals("updated comment text", advisoryService.getComment(idRevComment.getId()).getCommentText());
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    void updateCommentTest_auditTrailNotWritten() throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRevAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        CreateCommentRequest comment = new CreateCommentRequest("comment text", UUID.randomUUID().toString());
+        IdAndRevision idRevComment = advisoryService.addComment(idRevAdvisory.getId(), comment);
+
+        CouchDbService auditTrailFailingDbService = Mockito.spy(couchDbService);
+        doThrow(new IllegalStateException("Database not available"))
+                .when(auditTrailFailingDbService).writeDocument(anyString(), anyString());
+        ReflectionTestUtils.setField(advisoryService, "couchDbService", auditTrailFailingDbService);
+        try {
+            assertThrows(IllegalStateException.class,
+                    () -> advisoryService.updateComment(idRevAdvisory.getId(), idRevComment.getId(), idRevComment.getRevision(),
+                            "updated comment text"));
+            verify(auditTrailFailingDbService, times(0)).callUpdateHandler(any(), anyString(), any(), anyString());
+        } finally {
+            ReflectionTestUtils.setField(advisoryService, "couchDbService", couchDbService);
+        }
+
+        assertEquals(5, advisoryService.getDocumentCount());
+        assertEquals("comment text", advisoryService.getComment(idRevComment.getId()).getCommentText());
+    }
+
+    @Test
+    @WithMockUser(username = "author1", authorities = {CsafRoles.ROLE_AUTHOR})
+    void updateCommentTest_asyncAuditTrail() throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRevAdvisory = advisoryService.addAdvisory(csafToRequest(csafJson));
+        CreateCommentRequest comment = new CreateCommentRequest("comment text", UUID.randomUUID().toString());
+        IdAndRevision idRevComment = advisoryService.addComment(idRevAdvisory.getId(), comment);
+
+        AuditTrailWriter asyncAuditTrailWriter = Mockito.mock(AuditTrailWriter.class);
+        when(asyncAuditTrailWriter.isAsync()).thenReturn(true);
+        CouchDbService spyDbService = Mockito.spy(couchDbService);
+        ReflectionTestUtils.setField(advisoryService, "auditTrailWriter", asyncAuditTrailWriter);
+        ReflectionTestUtils.setField(advisoryService, "couchDbService", spyDbService);
+        try {
+            advisoryService.updateComment(idRevAdvisory.getId(), idRevComment.getId(), idRevComment.getRevision(),
+                    "updated comment text");
+            assertThrows(IdNotFoundException.class,
+                    () -> advisoryService.updateComment(idRevAdvisory.getId(), idRevComment.getId(), idRevComment.getRevision(),
+                            "conflicting comment text"));
+
+            // the audit trail is handed to the writer after the change, only for the applied change
+            verify(spyDbService, times(0)).writeDocument(anyString(), anyString());
+            verify(asyncAuditTrailWriter, times(1)).write(anyString(), anyString());
+        } finally {
+            ReflectionTestUtils.setField(advisoryService, "auditTrailWriter", auditTrailWriter);
+            ReflectionTestUtils.setField(advisoryService, "couchDbService", couchDbService);
+        }
+        assertEquals("updated comment text", advisoryService.getComment(idRevComment.getId()).getCommentText());
+    }
+
+    @Test
+    @WithMockUser(username = "editor1", authorities = {CsafRoles.ROLE_AUTHOR, CsafRoles.ROLE_EDITOR, CsafRoles.ROLE_REVIEWER})
+    void changeAdvisoryWorkflowStateTest_outdatedRevision() throws IOException, DatabaseException, CsafException {
+
+        IdAndRevision idRev = advisoryService.addAdvisory(csafToRequest(csafDocumentJson("Category1", "Title1")));
+        String revision = advisoryService.updateAdvisory(idRev.getId(), idRev.getRevision(),
+                csafToRequest(csafDocumentJson("Category2", "Title2")));
+        assertNotEquals(idRev.getRevision(), revision);
+
+        // the update handler answers 409 for the outdated revision
+        assertThrows(IdNotFoundException.class,
+                () -> advisoryService.changeAdvisoryWorkflowState(idRev.getId(), idRev.getRevision(), WorkflowState.Review, null, null));
+
+        Map<String, Object> workflowAuditTrailsSelector = expr2CouchDBFilter(equal(ObjectType.AuditTrailWorkflow.name(), TYPE_FIELD.getDbName()));
+        List<JsonNode> workflowAuditTrails = advisoryService.findDocuments(workflowAuditTrailsSelector,
+                Arrays.asList(CouchDbField.ID_FIELD, NEW_WORKFLOW_STATE));
+        assertEquals(0, workflowAuditTrails.size(), "the audit trail of the conflicting change should be deleted");
+        assertEquals(WorkflowState.Draft, advisoryService.getAdvisory(idRev.getId()).getWorkflowState());
+    }
+
+    private List<JsonNode> readCommentAuditTrailsFromDb() throws IOException {
+
+        Collection<DbField> fields = Arrays.asList(CouchDbField.ID_FIELD, CommentAuditTrailField.COMMENT_ID,
+                CommentAuditTrailField.COMMENT_TEXT, CHANGE_TYPE, AuditTrailField.USER);
+        Map<String, Object> selector = expr2CouchDBFilter(equal(ObjectType.CommentAuditTrail.name(), TYPE_FIELD.getDbName()));
+        return advisoryService.findDocuments(selector, fields);
     }
 
     @Test
@@ -0,0 +1,177 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ibm.cloud.cloudant.v1.model.DocumentResult;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.BulkWriteDocument;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.DatabaseException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@SpringBootTest(properties = {
+        "csaf.audittrail.async.enabled=true",
+        "csaf.audittrail.async.batchSize=2",
+        "csaf.audittrail.async.flushIntervalMillis=600000",
+        "csaf.audittrail.async.queueCapacity=4",
+        "csaf.audittrail.async.enqueueTimeoutMillis=10",
+        "csaf.audittrail.async.spoolFile=" + AuditTrailWriterTest.SPOOL_FILE
+})
+@DirtiesContext
+public class AuditTrailWriterTest {
+
+    static final String SPOOL_FILE = "./build/tmp/audittrail-writer-test.spool";
+    private static final String auditTrailJson = "{\"type\": \"AuditTrailDocument\"}";
+
+    @Autowired
+    private AuditTrailWriter auditTrailWriter;
+
+    @MockBean
+    private CouchDbService couchDbService;
+
+    @BeforeAll
+    static void deleteSpoolFile() throws IOException {
+        Files.deleteIfExists(Path.of(SPOOL_FILE));
+    }
+
+    @Test
+    public void writeTest_flushWhenBatchIsFull() throws IOException, DatabaseException, InterruptedException {
+
+        DocumentResult okResult = mock(DocumentResult.class);
+        when(okResult.isOk()).thenReturn(Boolean.TRUE);
+        when(couchDbService.writeDocuments(any())).thenReturn(List.of(okResult, okResult));
+
+        auditTrailWriter.write(UUID.randomUUID().toString(), auditTrailJson);
+        assertEquals(1, Files.readAllLines(Path.of(SPOOL_FILE)).size());
+        verify(couchDbService, never()).writeDocuments(any());
+
+        auditTrailWriter.write(UUID.randomUUID().toString(), auditTrailJson);
+        verify(couchDbService, timeout(5000)).writeDocuments(argThat(docs -> docs.size() == 2));
+        assertTrue(waitForEmptySpool());
+    }
+
+    @Test
+    public void flushTest_retryFailedEntries() throws IOException, DatabaseException, InterruptedException {
+
+        DocumentResult okResult = mock(DocumentResult.class);
+        when(okResult.isOk()).thenReturn(Boolean.TRUE);
+        when(couchDbService.writeDocuments(any()))
+                .thenThrow(new DatabaseException("Database not available"))
+                .thenReturn(List.of(okResult));
+
+        auditTrailWriter.write(UUID.randomUUID().toString(), auditTrailJson);
+        auditTrailWriter.flush();
+        // the entry remains in the spool file until it is written
+        assertEquals(1, Files.readAllLines(Path.of(SPOOL_FILE)).size());
+
+        auditTrailWriter.flush();
+        verify(couchDbService, times(2)).writeDocuments(argThat(docs -> docs.size() == 1));
+        assertTrue(waitForEmptySpool());
+    }
+
+    @Test
+    public void flushTest_compactSpoolWhileEntriesArePending() throws IOException, DatabaseException, InterruptedException {
+
+        String failingId = UUID.randomUUID().toString();
+        DocumentResult okResult = mock(DocumentResult.class);
+        when(okResult.isOk()).thenReturn(Boolean.TRUE);
+        DocumentResult failedResult = mock(DocumentResult.class);
+        when(failedResult.getError()).thenReturn("forbidden");
+        when(couchDbService.writeDocuments(any())).thenAnswer(invocation -> invocation.<Collection<BulkWriteDocument>>getArgument(0)
+                .stream().map(entry -> failingId.equals(entry.getId()) ? failedResult : okResult).toList());
+
+        auditTrailWriter.write(failingId, auditTrailJson);
+        for (int i = 0; i < 40; i++) {
+            auditTrailWriter.write(UUID.randomUUID().toString(), auditTrailJson);
+        }
+        flushInWriterThread();
+
+        // the pending entry keeps the spool from being truncated, but the written entries are removed
+        List<String> spooledLines = Files.readAllLines(Path.of(SPOOL_FILE));
+        assertTrue(spooledLines.size() < 15, "spool file has " + spooledLines.size() + " lines");
+        assertTrue(spooledLines.get(0).startsWith(failingId));
+
+        when(couchDbService.writeDocuments(any())).thenAnswer(invocation -> invocation.<Collection<BulkWriteDocument>>getArgument(0)
+                .stream().map(entry -> okResult).toList());
+        assertTrue(waitForEmptySpool());
+    }
+
+    @Test
+    public void writeTest_retryFailedSynchronousWrite() throws IOException, DatabaseException, InterruptedException {
+
+        DocumentResult okResult = mock(DocumentResult.class);
+        when(okResult.isOk()).thenReturn(Boolean.TRUE);
+        when(couchDbService.writeDocuments(any())).thenAnswer(invocation -> invocation.<Collection<BulkWriteDocument>>getArgument(0)
+                .stream().map(entry -> okResult).toList());
+        String auditTrailId = UUID.randomUUID().toString();
+        when(couchDbService.writeDocument(eq(auditTrailId), anyString())).thenThrow(new IllegalStateException("Database not available"));
+
+        // a full queue makes the writer write the entry itself
+        BlockingQueue<BulkWriteDocument> queue = auditTrailQueue();
+        while (queue.remainingCapacity() > 0) {
+            queue.add(BulkWriteDocument.newDocument(UUID.randomUUID().toString(), auditTrailJson));
+        }
+        auditTrailWriter.write(auditTrailId, auditTrailJson);
+        verify(couchDbService).writeDocument(eq(auditTrailId), anyString());
+        assertEquals(1, Files.readAllLines(Path.of(SPOOL_FILE)).size());
+
+        // the failed entry is written with the next flush
+        assertTrue(waitForEmptySpool());
+        verify(couchDbService, timeout(5000).atLeastOnce())
+                .writeDocuments(argThat(docs -> docs.stream().anyMatch(entry -> auditTrailId.equals(entry.getId()))));
+    }
+
+    private BlockingQueue<BulkWriteDocument> auditTrailQueue() {
+
+        @SuppressWarnings("unchecked")
+        BlockingQueue<BulkWriteDocument> queue = (BlockingQueue<BulkWriteDocument>) ReflectionTestUtils.getField(auditTrailWriter, "queue");
+        return queue;
+    }
+
+    private void flushInWriterThread() throws InterruptedException {
+
+        ExecutorService flushExecutor = (ExecutorService) ReflectionTestUtils.getField(auditTrailWriter, "flushExecutor");
+        try {
+            flushExecutor.submit(auditTrailWriter::flush).get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private boolean waitForEmptySpool() throws IOException, InterruptedException {
+
+        for (int i = 0; i < 50; i++) {
+            if (Files.size(Path.of(SPOOL_FILE)) == 0 && auditTrailQueue().isEmpty()) {
+                return true;
+            }
+            flushInWriterThread();
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,150 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ExportCacheTest {
+
+    private Path cacheDirectory;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        cacheDirectory = Files.createTempDirectory("export-cache");
+    }
+
+    @Test
+    public void getTest_heapAndDisk() throws IOException {
+
+        ExportCache cache = createCache(1000, 1000, 10);
+        assertNull(read(cache.get("advisory1", "1-a", ExportFormat.HTML)));
+        put(cache, "advisory1", "1-a", ExportFormat.HTML, "small");
+        put(cache, "advisory2", "1-b", ExportFormat.HTML, "larger than 10");
+
+        assertThat(read(cache.get("advisory1", "1-a", ExportFormat.HTML)), equalTo("small"));
+        assertThat(read(cache.get("advisory2", "1-b", ExportFormat.HTML)), equalTo("larger than 10"));
+        assertNull(read(cache.get("advisory1", "1-a", ExportFormat.PDF)));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        assertEquals(1.0, registry.get("csaf.export.cache.reads").tags("result", "hit", "tier", "heap").functionCounter().count());
+        assertEquals(1.0, registry.get("csaf.export.cache.reads").tags("result", "hit", "tier", "disk").functionCounter().count());
+        assertEquals(2.0, registry.get("csaf.export.cache.reads").tags("result", "miss").functionCounter().count());
+        assertEquals(19.0, registry.get("csaf.export.cache.size").tags("tier", "disk").gauge().value());
+    }
+
+    @Test
+    public void getTest_outdatedRevision() throws IOException {
+
+        ExportCache cache = createCache(1000, 1000, 1000);
+        put(cache, "advisory1", "1-a", ExportFormat.PDF, "revision 1");
+
+        assertNull(read(cache.get("advisory1", "2-b", ExportFormat.PDF)));
+        // the outdated export is removed from both tiers
+        assertNull(read(cache.get("advisory1", "1-a", ExportFormat.PDF)));
+        assertThat(cachedFiles(), hasSize(0));
+
+        put(cache, "advisory1", "2-b", ExportFormat.PDF, "revision 2");
+        assertThat(read(cache.get("advisory1", "2-b", ExportFormat.PDF)), equalTo("revision 2"));
+    }
+
+    @Test
+    public void cacheWhileWritingTest_leastRecentlyUsedEvicted() throws IOException {
+
+        ExportCache cache = createCache(0, 25, 0);
+        put(cache, "advisory1", "1-a", ExportFormat.JSON, "0123456789");
+        put(cache, "advisory2", "1-a", ExportFormat.JSON, "0123456789");
+        assertThat(read(cache.get("advisory1", "1-a", ExportFormat.JSON)), equalTo("0123456789"));
+        put(cache, "advisory3", "1-a", ExportFormat.JSON, "0123456789");
+
+        assertThat(read(cache.get("advisory1", "1-a", ExportFormat.JSON)), equalTo("0123456789"));
+        assertNull(read(cache.get("advisory2", "1-a", ExportFormat.JSON)));
+        assertThat(read(cache.get("advisory3", "1-a", ExportFormat.JSON)), equalTo("0123456789"));
+        assertThat(cachedFiles(), hasSize(2));
+        assertEquals(20, cache.diskBytes());
+    }
+
+    @Test
+    public void cacheWhileWritingTest_notCommitted() throws IOException {
+
+        ExportCache cache = createCache(1000, 1000, 1000);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ExportCache.CachingOutputStream cachingOutput = cache.cacheWhileWriting("advisory1", "1-a", ExportFormat.PDF, output)) {
+            cachingOutput.write("incomplete".getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(output.toString(StandardCharsets.UTF_8), equalTo("incomplete"));
+        assertNull(read(cache.get("advisory1", "1-a", ExportFormat.PDF)));
+        assertThat(cachedFiles(), hasSize(0));
+    }
+
+    @Test
+    public void openTest_diskEntriesOfLastRun() throws IOException {
+
+        ExportCache cache = createCache(1000, 1000, 1000);
+        put(cache, "advisory1", "1-a", ExportFormat.Markdown, "markdown");
+        put(cache, "advisory1", "1-a", ExportFormat.JSON, "json");
+        Files.writeString(cacheDirectory.resolve("left-over.tmp"), "partially written");
+
+        ExportCache restartedCache = createCache(1000, 1000, 1000);
+        assertThat(read(restartedCache.get("advisory1", "1-a", ExportFormat.Markdown)), equalTo("markdown"));
+        assertThat(read(restartedCache.get("advisory1", "1-a", ExportFormat.JSON)), equalTo("json"));
+        assertThat(cachedFiles(), hasSize(2));
+    }
+
+    private ExportCache createCache(long maxHeapBytes, long maxDiskBytes, long maxHeapEntryBytes) throws IOException {
+
+        ExportCache cache = new ExportCache();
+        ReflectionTestUtils.setField(cache, "maxHeapBytes", maxHeapBytes);
+        ReflectionTestUtils.setField(cache, "maxHeapEntryBytes", maxHeapEntryBytes);
+        ReflectionTestUtils.setField(cache, "directory", cacheDirectory.toString());
+        ReflectionTestUtils.setField(cache, "maxDiskBytes", maxDiskBytes);
+        ReflectionTestUtils.setField(cache, "companyLogoPath", "./src/test/resources/eXXcellent_solutions.png");
+        cache.open();
+        return cache;
+    }
+
+    private static void put(ExportCache cache, String advisoryId, String revision, ExportFormat format, String export)
+            throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ExportCache.CachingOutputStream cachingOutput = cache.cacheWhileWriting(advisoryId, revision, format, output)) {
+            cachingOutput.write(export.getBytes(StandardCharsets.UTF_8));
+            cachingOutput.commit();
+        }
+        assertThat(output.toString(StandardCharsets.UTF_8), equalTo(export));
+    }
+
+    private static String read(InputStream export) throws IOException {
+
+        if (export == null) {
+            return null;
+        }
+        try (export) {
+            return new String(export.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private List<Path> cachedFiles() throws IOException {
+
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            return files.toList();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafExceptionKey;
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportFormat;
+import de.bsi.secvisogram.csaf_cms_backend.model.ExportJobStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class ExportJobServiceTest {
+
+    private static final String advisoryId = UUID.randomUUID().toString();
+
+    private final AdvisoryService advisoryService = mock(AdvisoryService.class);
+    private final CouchDbService couchDbService = mock(CouchDbService.class);
+    private final CountDownLatch exportsReleased = new CountDownLatch(1);
+    private ExportJobService service;
+
+    @AfterEach
+    void stopService() {
+        exportsReleased.countDown();
+        service.stop();
+    }
+
+    @Test
+    public void createJobTest_finished() throws Exception {
+
+        service = createService(1, 1, 600);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+        when(couchDbService.readRevision(advisoryId)).thenReturn("1-a");
+        when(advisoryService.exportAdvisoryRevision(advisoryId, "1-a", ExportFormat.Markdown))
+                .thenReturn(output -> output.write("# Advisory".getBytes(StandardCharsets.UTF_8)));
+
+        ExportJob job = service.createJob(advisoryId, ExportFormat.Markdown);
+        awaitDone(job);
+
+        assertEquals(ExportJobStatus.Finished, job.getStatus());
+        assertThat(service.getJob(advisoryId, job.getJobId()), sameInstance(job));
+        try (InputStream result = service.openResult(advisoryId, job.getJobId())) {
+            assertThat(new String(result.readAllBytes(), StandardCharsets.UTF_8), equalTo("# Advisory"));
+        }
+        assertEquals(1, registry.get("csaf.export.jobs.duration").tags("format", "Markdown", "status", "Finished")
+                .timer().count());
+        assertEquals(1, registry.get("csaf.export.jobs.wait").timer().count());
+    }
+
+    @Test
+    public void createJobTest_failed() throws Exception {
+
+        service = createService(1, 1, 600);
+        when(couchDbService.readRevision(advisoryId)).thenReturn("1-a");
+        when(advisoryService.exportAdvisoryRevision(advisoryId, "1-a", ExportFormat.PDF)).thenReturn(output -> {
+            throw new IOException("The cli tool returned with exit code 1");
+        });
+
+        ExportJob job = service.createJob(advisoryId, ExportFormat.PDF);
+        awaitDone(job);
+
+        assertEquals(ExportJobStatus.Failed, job.getStatus());
+        assertEquals("The cli tool returned with exit code 1", job.getError());
+        CsafException ex = assertThrows(CsafException.class, () -> service.openResult(advisoryId, job.getJobId()));
+        assertEquals(CsafExceptionKey.ExportJobNotFinished, ex.getExceptionKey());
+        assertEquals(HttpStatus.CONFLICT, ex.getRecommendedHttpState());
+    }
+
+    @Test
+    public void createJobTest_deduplicated() throws Exception {
+
+        service = createService(1, 1, 600);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+        when(couchDbService.readRevision(advisoryId)).thenReturn("1-a");
+        when(advisoryService.exportAdvisoryRevision(advisoryId, "1-a", ExportFormat.PDF))
+                .thenReturn(output -> awaitRelease());
+        when(advisoryService.exportAdvisoryRevision(advisoryId, "2-b", ExportFormat.PDF))
+                .thenReturn(output -> awaitRelease());
+
+        ExportJob job = service.createJob(advisoryId, ExportFormat.PDF);
+        assertThat(service.createJob(advisoryId, ExportFormat.PDF), sameInstance(job));
+        // a new revision is exported again
+        when(couchDbService.readRevision(advisoryId)).thenReturn("2-b");
+        ExportJob newRevisionJob = service.createJob(advisoryId, ExportFormat.PDF);
+        assertThat(newRevisionJob, not(sameInstance(job)));
+
+        // the export is only created for a new job
+        verify(advisoryService, times(1)).exportAdvisoryRevision(advisoryId, "1-a", ExportFormat.PDF);
+        verify(advisoryService, times(1)).exportAdvisoryRevision(advisoryId, "2-b", ExportFormat.PDF);
+        assertEquals(1.0, registry.get("csaf.export.jobs.deduplicated").functionCounter().count());
+        exportsReleased.countDown();
+        awaitDone(newRevisionJob);
+        assertEquals(ExportJobStatus.Finished, job.getStatus());
+    }
+
+    @Test
+    public void createJobTest_queueFull() throws Exception {
+
+        service = createService(1, 1, 600);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        service.bindTo(registry);
+        when(couchDbService.readRevision(advisoryId)).thenReturn("1-a");
+        for (ExportFormat format : ExportFormat.values()) {
+            when(advisoryService.exportAdvisoryRevision(advisoryId, "1-a", format))
+                    .thenReturn(output -> awaitRelease());
+        }
+
+        ExportJob runningJob = service.createJob(advisoryId, ExportFormat.PDF);
+        ExportJob queuedJob = service.createJob(advisoryId, ExportFormat.HTML);
+        CsafException ex = assertThrows(CsafException.class, () -> service.createJob(advisoryId, ExportFormat.Markdown));
+
+        assertEquals(CsafExceptionKey.ExportQueueFull, ex.getExceptionKey());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, ex.getRecommendedHttpState());
+        assertEquals(ExportJobStatus.Queued, queuedJob.getStatus());
+        assertEquals(1.0, registry.get("csaf.export.jobs.queue.depth").gauge().value());
+        assertEquals(1.0, registry.get("csaf.export.jobs.rejected").functionCounter().count());
+        verify(advisoryService, never()).exportAdvisoryRevision(advisoryId, "1-a", ExportFormat.Markdown);
+        exportsReleased.countDown();
+        awaitDone(runningJob);
+        awaitDone(queuedJob);
+
+        // the slots of the finished jobs are free again
+        ExportJob nextJob = service.createJob(advisoryId, ExportFormat.Markdown);
+        awaitDone(nextJob);
+        assertEquals(ExportJobStatus.Finished, nextJob.getStatus());
+    }
+
+    @Test
+    public void createJobTest_exportNotCreated() throws Exception {
+
+        service = createService(1, 0, 600);
+        when(couchDbService.readRevision(advisoryId)).thenReturn("1-a");
+        when(advisoryService.exportAdvisoryRevision(advisoryId, "1-a", ExportFormat.PDF))
+                .thenThrow(new CsafException("Unknown export format: PDF", CsafExceptionKey.UnknownExportFormat,
+                        HttpStatus.BAD_REQUEST))
+                .thenReturn(output -> output.write('%'));
+
+        CsafException ex = assertThrows(CsafException.class, () -> service.createJob(advisoryId, ExportFormat.PDF));
+        assertEquals(CsafExceptionKey.UnknownExportFormat, ex.getExceptionKey());
+
+        // neither the slot nor the export key are kept by the job that was not created
+        ExportJob job = service.createJob(advisoryId, ExportFormat.PDF);
+        awaitDone(job);
+        assertEquals(ExportJobStatus.Finished, job.getStatus());
+    }
+
+    @Test
+    public void getJobTest_notFound() throws Exception {
+
+        service = createService(1, 1, 0);
+        when(couchDbService.readRevision("unknown")).thenThrow(new IdNotFoundException("not found"));
+        CsafException ex = assertThrows(CsafException.class, () -> service.createJob("unknown", ExportFormat.JSON));
+        assertEquals(CsafExceptionKey.AdvisoryNotFound, ex.getExceptionKey());
+
+        when(couchDbService.readRevision(advisoryId)).thenReturn("1-a");
+        when(advisoryService.exportAdvisoryRevision(advisoryId, "1-a", ExportFormat.JSON))
+                .thenReturn(output -> output.write('{'));
+        ExportJob job = service.createJob(advisoryId, ExportFormat.JSON);
+        ex = assertThrows(CsafException.class, () -> service.getJob(UUID.randomUUID().toString(), job.getJobId()));
+        assertEquals(HttpStatus.NOT_FOUND, ex.getRecommendedHttpState());
+
+        // finished jobs without time to live are removed with their result at the next request
+        awaitDone(job);
+        ex = assertThrows(CsafException.class, () -> service.getJob(advisoryId, job.getJobId()));
+        assertEquals(CsafExceptionKey.ExportJobNotFound, ex.getExceptionKey());
+    }
+
+    private ExportJobService createService(int poolSize, int queueCapacity, long resultTtlSeconds) {
+
+        ExportJobService jobService = new ExportJobService();
+        ReflectionTestUtils.setField(jobService, "poolSize", poolSize);
+        ReflectionTestUtils.setField(jobService, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(jobService, "resultTtlSeconds", resultTtlSeconds);
+        ReflectionTestUtils.setField(jobService, "advisoryService", advisoryService);
+        ReflectionTestUtils.setField(jobService, "couchDbService", couchDbService);
+        jobService.start();
+        return jobService;
+    }
+
+    private void awaitRelease() throws IOException {
+
+        try {
+            assertTrue(exportsReleased.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+    }
+
+    private static void awaitDone(ExportJob job) throws InterruptedException {
+
+        long timeout = System.currentTimeMillis() + 10_000;
+        while (!job.isDone() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isDone());
+    }
+}
@@ -2,6 +2,7 @@ package de.bsi.secvisogram.csaf_cms_backend.service;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
@@ -11,9 +12,9 @@ import static org.mockito.Mockito.when;
 
 import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedConstruction;
 import org.mockito.Mockito;
@@ -36,11 +37,12 @@ public class PandocServiceTest {
                     when(processMock.waitFor(anyLong(), any())).thenReturn(Boolean.TRUE);
                     when(processMock.getErrorStream()).thenReturn(new ByteArrayInputStream("Error".getBytes(UTF_8)));
                     when(processMock.exitValue()).thenReturn(0);
+                    mockPipe(processMock);
                 })) {
-            final Path input = Files.createTempFile("input", ".md");
-            final Path output = Files.createTempFile("output", ".md");
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
             pandocService.isReady();
-            pandocService.convert(input, output);
+            pandocService.convert("<html></html>", output);
+            assertThat(output.toString(UTF_8), equalTo("converted"));
         }
     }
 
@@ -55,13 +57,19 @@ public class PandocServiceTest {
                     when(processMock.waitFor(anyLong(), any())).thenReturn(Boolean.TRUE);
                     when(processMock.getErrorStream()).thenReturn(new ByteArrayInputStream("Error".getBytes(UTF_8)));
                     when(processMock.exitValue()).thenReturn(exitValue);
+                    mockPipe(processMock);
                 })) {
 
-            final Path input = Files.createTempFile("input", ".md");
-            final Path output = Files.createTempFile("output", ".md");
-            IOException ioException = assertThrows(IOException.class, () -> this.pandocService.convert(input, output));
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            IOException ioException = assertThrows(IOException.class, () -> this.pandocService.convert("<html></html>", output));
             assertThat(ioException.getMessage(), startsWith("The cli tool returned with exit code " + exitValue));
         }
     }
 
+    private static void mockPipe(Process processMock) {
+
+        when(processMock.onExit()).thenReturn(CompletableFuture.completedFuture(processMock));
+        when(processMock.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+        when(processMock.getInputStream()).thenReturn(new ByteArrayInputStream("converted".getBytes(UTF_8)));
+    }
 }
@@ -0,0 +1,90 @@
+package de.bsi.secvisogram.csaf_cms_backend.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.bsi.secvisogram.csaf_cms_backend.CouchDBExtension;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.CouchDbService;
+import de.bsi.secvisogram.csaf_cms_backend.couchdb.IdNotFoundException;
+import de.bsi.secvisogram.csaf_cms_backend.exception.CsafException;
+import de.bsi.secvisogram.csaf_cms_backend.json.TrackingIdCounter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+/**
+ * Test for the tracking id allocator. The required CouchDB container is started in the CouchDBExtension.
+ * The leases outlive the database, that is cleared for each test, so every test uses its own counters.
+ */
+@SpringBootTest(properties = {
+        "csaf.trackingid.leaseSize=5",
+        "csaf.trackingid.finalGapFree=true"
+})
+@ExtendWith(CouchDBExtension.class)
+@DirtiesContext
+public class TrackingIdAllocatorTest {
+
+    @Autowired
+    private TrackingIdAllocator trackingIdAllocator;
+
+    @Autowired
+    private CouchDbService couchDbService;
+
+    @Test
+    public void nextNumberTest_leasesBlocks() throws CsafException, IOException, IdNotFoundException {
+
+        String counterName = UUID.randomUUID().toString();
+        for (long expected = 1; expected <= 7; expected++) {
+            assertEquals(expected, trackingIdAllocator.nextNumber(counterName));
+        }
+        assertEquals(10, readCount(counterName), "two blocks of 5 numbers should be leased");
+    }
+
+    @Test
+    public void nextNumberTest_concurrent() throws Exception {
+
+        String counterName = UUID.randomUUID().toString();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Long>> numbers = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                numbers.add(executor.submit(() -> trackingIdAllocator.nextNumber(counterName)));
+            }
+            Set<Long> allocated = new TreeSet<>();
+            for (Future<Long> number : numbers) {
+                allocated.add(number.get());
+            }
+            assertEquals(LongStream.rangeClosed(1, 100).boxed().toList(), new ArrayList<>(allocated));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void nextNumberTest_finalGapFree() throws CsafException, IOException, IdNotFoundException {
+
+        assertEquals(1, trackingIdAllocator.nextNumber(TrackingIdCounter.FINAL_OBJECT_ID));
+        assertEquals(2, trackingIdAllocator.nextNumber(TrackingIdCounter.FINAL_OBJECT_ID));
+        assertEquals(2, readCount(TrackingIdCounter.FINAL_OBJECT_ID), "the final numbers should be leased one by one");
+    }
+
+    private long readCount(String counterName) throws IOException, IdNotFoundException {
+
+        try (InputStream counterStream = couchDbService.readDocumentAsStream(couchDbService.counterId(counterName))) {
+            return new ObjectMapper().readValue(counterStream, TrackingIdCounter.class).getCount();
+        }
+    }
+}